@@ -0,0 +1,349 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.publication.PublicationsFile;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
+import com.guardtime.ksi.unisignature.KSISignature;
+import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
+import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureComponentFactory;
+import com.guardtime.ksi.unisignature.verifier.KSISignatureVerifier;
+import com.guardtime.ksi.unisignature.verifier.VerificationContext;
+import com.guardtime.ksi.unisignature.verifier.VerificationContextBuilder;
+import com.guardtime.ksi.unisignature.verifier.VerificationResult;
+import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicy;
+import com.guardtime.ksi.unisignature.verifier.policies.PolicyContext;
+import com.guardtime.ksi.util.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies batches of KSI signatures with one policy on a worker pool.
+ * <p>
+ * The publications file is fetched at most once per batch, when first needed by the policy, and the certificates
+ * found from it are remembered for the rest of the batch. The calendar hash chains received from the extender are
+ * cached and shared between the signatures with the same aggregation time, also across batches. At most the
+ * configured number of signatures are verified at once, the following signatures are taken from the batch as the
+ * verifications finish.
+ * </p>
+ * Use {@link BatchVerifierBuilder} to create instances of this class. Instances are thread-safe.
+ */
+public final class BatchVerifier {
+
+    private final KSISignatureVerifier verifier = new KSISignatureVerifier();
+    private final KSISignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
+    private final ContextAwarePolicy policy;
+    private final Executor executor;
+    private final int parallelism;
+    private final ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
+
+    BatchVerifier(ContextAwarePolicy policy, Executor executor, int parallelism,
+                  ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
+        this.policy = policy;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
+    }
+
+    /**
+     * Starts verifying the given signatures and returns without waiting for the results.
+     *
+     * @param requests signatures to be verified, with optional document hashes.
+     * @return futures of the verification results, in the same order as the requests.
+     */
+    public List<Future<VerificationResult>> verify(Collection<Request> requests) {
+        Util.notNull(requests, "Requests");
+        Request[] batch = requests.toArray(new Request[requests.size()]);
+        final List<SettableFuture<VerificationResult>> futures = new ArrayList<>(batch.length);
+        for (int i = 0; i < batch.length; i++) {
+            futures.add(new SettableFuture<VerificationResult>());
+        }
+        new Batch(Arrays.asList(batch).iterator()) {
+            void completed(int index, Request request, VerificationResult result) {
+                futures.get(index).set(result);
+            }
+
+            void failed(int index, Request request, Exception exception) {
+                futures.get(index).setException(exception);
+            }
+        }.dispatch();
+        return new ArrayList<Future<VerificationResult>>(futures);
+    }
+
+    /**
+     * Verifies the given signatures, reporting the results to the listener as they complete. The requests are read
+     * only as fast as the signatures get verified, so the requests may be produced lazily. Returns when all the
+     * signatures have been verified.
+     *
+     * @param requests signatures to be verified, with optional document hashes.
+     * @param listener listener notified of each result, called from the worker threads.
+     * @throws KSIException when the calling thread is interrupted or reading the requests fails. In the latter case
+     *                      the verifications already started are finished before throwing.
+     */
+    public void verify(Iterable<Request> requests, final Listener listener) throws KSIException {
+        Util.notNull(requests, "Requests");
+        Util.notNull(listener, "Listener");
+        Batch batch = new Batch(requests.iterator()) {
+            void completed(int index, Request request, VerificationResult result) {
+                listener.verified(request, result);
+            }
+
+            void failed(int index, Request request, Exception exception) {
+                listener.failed(request, exception);
+            }
+        };
+        batch.dispatch();
+        RuntimeException failure;
+        try {
+            failure = batch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KSIException("Batch verification was interrupted", e);
+        }
+        if (failure != null) {
+            throw new KSIException("Reading the batch verification requests failed", failure);
+        }
+    }
+
+    private VerificationResult verify(Request request, PublicationsHandler publicationsHandler) throws KSIException {
+        PolicyContext c = policy.getPolicyContext();
+        VerificationContext context = new VerificationContextBuilder()
+                .setDocumentHash(request.documentHash, request.level)
+                .setExtendingService(c.getExtendingService())
+                .setExtendingAllowed(c.isExtendingAllowed())
+                .setPublicationsHandler(publicationsHandler)
+                .setSignature(request.signature)
+                .setUserPublication(c.getUserPublication())
+                .setExtendedCalendarHashChainCache(extendedCalendarHashChainCache)
+                .build();
+        context.setKsiSignatureComponentFactory(signatureComponentFactory);
+        return verifier.verify(context, policy);
+    }
+
+    /**
+     * Signature to be verified, with the optional document hash and level.
+     */
+    public static final class Request {
+
+        private final KSISignature signature;
+        private final DataHash documentHash;
+        private final Long level;
+
+        public Request(KSISignature signature) {
+            this(signature, null, null);
+        }
+
+        public Request(KSISignature signature, DataHash documentHash) {
+            this(signature, documentHash, null);
+        }
+
+        public Request(KSISignature signature, DataHash documentHash, Long level) {
+            Util.notNull(signature, "Signature");
+            this.signature = signature;
+            this.documentHash = documentHash;
+            this.level = level;
+        }
+
+        public KSISignature getSignature() {
+            return signature;
+        }
+
+        public DataHash getDocumentHash() {
+            return documentHash;
+        }
+
+        public Long getLevel() {
+            return level;
+        }
+    }
+
+    /**
+     * Receives the results of {@link BatchVerifier#verify(Iterable, Listener)} as they complete.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the signature has been verified, whether the verification succeeded or not.
+         */
+        void verified(Request request, VerificationResult result);
+
+        /**
+         * Called when an error occurred and the signature could not be verified.
+         */
+        void failed(Request request, Exception exception);
+    }
+
+    /**
+     * Takes the requests from the iterator and hands them to the executor while the parallelism allows.
+     */
+    private abstract class Batch {
+
+        private final Iterator<Request> requests;
+        private final PublicationsHandler publicationsHandler;
+        private final AtomicInteger dispatchCalls = new AtomicInteger();
+        private int nextIndex;
+        private int verificationsInProgress;
+        private boolean exhausted;
+        private RuntimeException failure;
+
+        Batch(Iterator<Request> requests) {
+            this.requests = requests;
+            PublicationsHandler handler = policy.getPolicyContext().getPublicationsHandler();
+            this.publicationsHandler = handler != null ? new BatchPublicationsHandler(handler) : null;
+        }
+
+        abstract void completed(int index, Request request, VerificationResult result);
+
+        abstract void failed(int index, Request request, Exception exception);
+
+        /**
+         * Starts the verifications while the parallelism allows. A direct executor may finish the verification in the
+         * calling thread, so the calls made meanwhile are only counted and handled by the loop of the first call.
+         */
+        void dispatch() {
+            if (dispatchCalls.getAndIncrement() != 0) {
+                return;
+            }
+            int calls = 1;
+            do {
+                Verification verification;
+                while ((verification = nextVerification()) != null) {
+                    try {
+                        executor.execute(verification);
+                    } catch (RuntimeException e) {
+                        verification.reject(e);
+                    }
+                }
+                calls = dispatchCalls.addAndGet(-calls);
+            } while (calls != 0);
+        }
+
+        /**
+         * Waits until all the requests have been taken from the iterator and verified, or until the iterator has
+         * failed and the started verifications have finished.
+         *
+         * @return the exception thrown by the iterator, or null.
+         */
+        synchronized RuntimeException await() throws InterruptedException {
+            while (verificationsInProgress > 0 || !exhausted) {
+                wait();
+            }
+            return failure;
+        }
+
+        /**
+         * Takes the next request from the iterator. The batch is ended if the iterator fails, so that no more requests
+         * are read and the waiting thread gets woken up.
+         */
+        private synchronized Verification nextVerification() {
+            if (exhausted || verificationsInProgress >= parallelism) {
+                return null;
+            }
+            Request request;
+            try {
+                if (!requests.hasNext()) {
+                    exhausted = true;
+                    notifyAll();
+                    return null;
+                }
+                request = requests.next();
+            } catch (RuntimeException e) {
+                failure = e;
+                exhausted = true;
+                notifyAll();
+                return null;
+            }
+            verificationsInProgress++;
+            return new Verification(nextIndex++, request);
+        }
+
+        private void finished() {
+            synchronized (this) {
+                verificationsInProgress--;
+                notifyAll();
+            }
+            dispatch();
+        }
+
+        private final class Verification implements Runnable {
+
+            private final int index;
+            private final Request request;
+
+            private Verification(int index, Request request) {
+                this.index = index;
+                this.request = request;
+            }
+
+            public void run() {
+                try {
+                    VerificationResult result;
+                    try {
+                        result = verify(request, publicationsHandler);
+                    } catch (KSIException | RuntimeException e) {
+                        failed(index, request, e);
+                        return;
+                    }
+                    completed(index, request, result);
+                } finally {
+                    finished();
+                }
+            }
+
+            private void reject(RuntimeException exception) {
+                try {
+                    failed(index, request, exception);
+                } finally {
+                    finished();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the publications file on the first request and keeps it for the rest of the batch.
+     */
+    private static final class BatchPublicationsHandler implements PublicationsHandler {
+
+        private final PublicationsHandler publicationsHandler;
+        private PublicationsFile publicationsFile;
+
+        private BatchPublicationsHandler(PublicationsHandler publicationsHandler) {
+            this.publicationsHandler = publicationsHandler;
+        }
+
+        public synchronized PublicationsFile getPublicationsFile() throws KSIException {
+            if (publicationsFile == null) {
+                publicationsFile = new CertificateCachingPublicationsFile(publicationsHandler.getPublicationsFile());
+            }
+            return publicationsFile;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
+import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicy;
+import com.guardtime.ksi.util.Util;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Obtaining and configuring the {@link BatchVerifier} object(s).
+ * At least the verification policy must be set to build the {@link BatchVerifier} object,
+ * otherwise the {@link NullPointerException} is thrown.
+ */
+public final class BatchVerifierBuilder {
+
+    private ContextAwarePolicy policy;
+    private Executor executor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
+
+    /**
+     * Sets the policy used to verify the signatures. The publications file handler and the extending service of the
+     * policy context are used by all the verifications.
+     */
+    public BatchVerifierBuilder setPolicy(ContextAwarePolicy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * Sets the executor running the verifications. By default the executor returned by
+     * {@link DefaultExecutorServiceProvider#getExecutorService()} is used.
+     */
+    public BatchVerifierBuilder setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of signatures verified at once. By default the number of available processors is used.
+     */
+    public BatchVerifierBuilder setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the cache of extended calendar hash chains. The cache can be shared with extenders and other verifications,
+     * by default each {@link BatchVerifier} uses a cache of its own.
+     */
+    public BatchVerifierBuilder setExtendedCalendarHashChainCache(ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
+        return this;
+    }
+
+    /**
+     * Builds the {@link BatchVerifier} instance. Checks that the policy is set. If not configured,
+     * {@link NullPointerException} is thrown.
+     *
+     * @return Instance of {@link BatchVerifier} class.
+     */
+    public BatchVerifier build() {
+        Util.notNull(policy, "Policy");
+        Executor executor = this.executor != null ? this.executor : DefaultExecutorServiceProvider.getExecutorService();
+        ExtendedCalendarHashChainCache cache = extendedCalendarHashChainCache != null ? extendedCalendarHashChainCache
+                : new ExtendedCalendarHashChainCache();
+        return new BatchVerifier(policy, executor, parallelism, cache);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.pdu.ExtenderConfiguration;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.unisignature.KSISignature;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Extending a batch of KSI signatures. The extenders built by {@link ExtenderBuilder#buildBulkExtender()} and the
+ * {@link KSI} instances built by {@link KSIBuilder} implement this interface.
+ */
+public interface BulkExtender extends Extender {
+
+    /**
+     * Extends the signatures to the closest publications in publications file. The signatures with the same aggregation
+     * time that are extended to the same publication are extended using a single extender request.
+     *
+     * @param signatures {@link KSISignature}s to be extended, not null.
+     * @return Extended KSI signatures in the order of the given signatures.
+     * @throws KSIException when extending any of the signatures fails.
+     * @see #asyncExtendAll(Collection)
+     */
+    List<KSISignature> extendAll(Collection<KSISignature> signatures) throws KSIException;
+
+    /**
+     * Extends the signatures asynchronously to the closest publications in publications file. The signatures are
+     * grouped by aggregation time and publication, one extender request is sent per group and the received calendar
+     * hash chain is used to extend all the signatures of the group. Within any second at most as many requests are sent
+     * as the extender allows to be sent in a second (see {@link ExtenderConfiguration#getMaximumRequests()}), and at most
+     * that many requests wait for a response at once. The others are sent as the responses arrive and the rate allows.
+     *
+     * @param signatures {@link KSISignature}s to be extended, not null.
+     * @return Instances of {@link Future} in the order of the given signatures. If extending a signature fails, e.g.
+     * there is no suitable publication yet, then only its future fails.
+     * @throws KSIException when error occurs (e.g. when the publications file can not be obtained).
+     */
+    List<Future<KSISignature>> asyncExtendAll(Collection<KSISignature> signatures) throws KSIException;
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.pdu.ExtensionResponse;
+import com.guardtime.ksi.publication.PublicationRecord;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.Futures;
+import com.guardtime.ksi.service.KSIExtendingService;
+import com.guardtime.ksi.service.KSIProtocolException;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.tlv.TLVElement;
+import com.guardtime.ksi.tlv.TLVParserException;
+import com.guardtime.ksi.tlv.TLVStructure;
+import com.guardtime.ksi.unisignature.CalendarHashChain;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache.Key;
+import com.guardtime.ksi.unisignature.KSISignature;
+import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
+import com.guardtime.ksi.unisignature.KSISignatureFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extends a batch of signatures. The extender response depends only on the aggregation time and the publication time,
+ * so the signatures are grouped by these and one extension request is sent per group. The calendar hash chain received
+ * for a group is used to extend every signature of the group, each of them getting its own copy of the chain.
+ * <p>
+ * The given maximum number of requests is the number of requests the extender allows to be sent within one second.
+ * At most that many requests are sent in any one second window and at most that many requests are waiting for a
+ * response at once, the following requests are sent as the responses arrive and the window allows. The extended
+ * signatures of a group are created using the given executor, not in the I/O thread that receives the response.
+ * </p>
+ */
+final class BulkExtension {
+
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final ScheduledThreadPoolExecutor RATE_LIMIT_SCHEDULER = createRateLimitScheduler();
+
+    private final KSIExtendingService extendingService;
+    private final KSISignatureComponentFactory signatureComponentFactory;
+    private final KSISignatureFactory signatureFactory;
+    private final ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
+    private final int maximumRequests;
+    private final Executor executor;
+
+    private final Map<Key, Group> groups = new LinkedHashMap<>();
+    private final Queue<Group> pendingRequests = new LinkedList<>();
+    private final AtomicInteger sendRequestsCalls = new AtomicInteger();
+    private int requestsInProgress;
+    /**
+     * Send times of the requests sent within the last second, oldest first.
+     */
+    private final Queue<Long> sendTimes = new LinkedList<>();
+    private boolean retryScheduled;
+
+    BulkExtension(KSIExtendingService extendingService, KSISignatureComponentFactory signatureComponentFactory,
+                  KSISignatureFactory signatureFactory, ExtendedCalendarHashChainCache extendedCalendarHashChainCache,
+                  int maximumRequests, Executor executor) {
+        this.extendingService = extendingService;
+        this.signatureComponentFactory = signatureComponentFactory;
+        this.signatureFactory = signatureFactory;
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
+        this.maximumRequests = maximumRequests;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a signature to be extended to the given publication record. Must be called before {@link #start()}.
+     *
+     * @return future of the extended signature, failed if the publication record is missing or before the signature.
+     */
+    Future<KSISignature> add(KSISignature signature, PublicationRecord publicationRecord) {
+        SettableFuture<KSISignature> future = new SettableFuture<>();
+        if (publicationRecord == null) {
+            future.setException(new KSIException("No suitable publication yet"));
+        } else if (signature.getAggregationTime().after(publicationRecord.getPublicationTime())) {
+            future.setException(new IllegalArgumentException("Publication is before signature"));
+        } else {
+            Key key = new Key(signature.getAggregationTime(), publicationRecord.getPublicationTime());
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(signature.getAggregationTime(), publicationRecord.getPublicationTime());
+                groups.put(key, group);
+            }
+            group.members.add(new Member(signature, publicationRecord, future));
+        }
+        return future;
+    }
+
+    /**
+     * Extends the groups found from the cache and starts sending the requests for the others.
+     */
+    void start() throws KSIException {
+        for (Group group : groups.values()) {
+            CalendarHashChain cached = extendedCalendarHashChainCache != null ? extendedCalendarHashChainCache.get(
+                    group.aggregationTime, group.publicationTime, signatureComponentFactory) : null;
+            if (cached != null) {
+                group.complete(((TLVStructure) cached).getRootElement().getEncoded());
+            } else {
+                pendingRequests.add(group);
+            }
+        }
+        sendRequests();
+    }
+
+    /**
+     * Sends the pending requests while the limit allows. The responses may arrive in the calling thread, so the calls
+     * made meanwhile are only counted and handled by the loop of the first call.
+     */
+    private void sendRequests() {
+        if (sendRequestsCalls.getAndIncrement() != 0) {
+            return;
+        }
+        int calls = 1;
+        do {
+            Group group;
+            while ((group = nextRequest()) != null) {
+                send(group);
+            }
+            calls = sendRequestsCalls.addAndGet(-calls);
+        } while (calls != 0);
+    }
+
+    private Group nextRequest() {
+        synchronized (pendingRequests) {
+            if (requestsInProgress >= maximumRequests || pendingRequests.isEmpty()) {
+                return null;
+            }
+            long now = System.nanoTime();
+            while (!sendTimes.isEmpty() && now - sendTimes.peek() >= RATE_WINDOW_NANOS) {
+                sendTimes.poll();
+            }
+            if (sendTimes.size() >= maximumRequests) {
+                scheduleRetry(sendTimes.peek() + RATE_WINDOW_NANOS - now);
+                return null;
+            }
+            sendTimes.add(now);
+            requestsInProgress++;
+            return pendingRequests.poll();
+        }
+    }
+
+    /**
+     * Sends the pending requests again once the oldest request of the window is more than a second old. The requests
+     * are sent using the executor, so the scheduler thread is never blocked by an extender client.
+     */
+    private void scheduleRetry(long delayNanos) {
+        if (retryScheduled) {
+            return;
+        }
+        retryScheduled = true;
+        final Runnable retry = new Runnable() {
+            public void run() {
+                synchronized (pendingRequests) {
+                    retryScheduled = false;
+                }
+                sendRequests();
+            }
+        };
+        RATE_LIMIT_SCHEDULER.schedule(new Runnable() {
+            public void run() {
+                try {
+                    executor.execute(retry);
+                } catch (RejectedExecutionException e) {
+                    retry.run();
+                }
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void requestFinished() {
+        synchronized (pendingRequests) {
+            requestsInProgress--;
+        }
+        sendRequests();
+    }
+
+    private void send(final Group group) {
+        Future<ExtensionResponse> future;
+        try {
+            future = extendingService.extend(group.aggregationTime, group.publicationTime);
+        } catch (KSIException | RuntimeException e) {
+            group.fail(e);
+            requestFinished();
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<ExtensionResponse>() {
+            public void onSuccess(ExtensionResponse response) {
+                try {
+                    group.complete(response.getCalendarHashChain().getEncoded());
+                } catch (TLVParserException e) {
+                    group.fail(new KSIProtocolException("Can't parse response message", e));
+                } catch (RuntimeException e) {
+                    group.fail(e);
+                } finally {
+                    requestFinished();
+                }
+            }
+
+            public void onFailure(Exception exception) {
+                group.fail(exception);
+                requestFinished();
+            }
+        }, executor);
+    }
+
+    private static ScheduledThreadPoolExecutor createRateLimitScheduler() {
+        return new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ksi-bulk-extension-rate-limit");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Signatures with the same aggregation time extended to the same publication.
+     */
+    private final class Group {
+
+        private final Date aggregationTime;
+        private final Date publicationTime;
+        private final List<Member> members = new ArrayList<>();
+
+        private Group(Date aggregationTime, Date publicationTime) {
+            this.aggregationTime = aggregationTime;
+            this.publicationTime = publicationTime;
+        }
+
+        /**
+         * Extends the signatures of the group using the encoded calendar hash chain. The chain is added to the cache
+         * once a signature has successfully been extended with it.
+         */
+        private void complete(byte[] calendarHashChain) {
+            boolean cached = extendedCalendarHashChainCache == null;
+            for (Member member : members) {
+                try {
+                    CalendarHashChain chain = signatureComponentFactory.createCalendarHashChain(TLVElement.create(calendarHashChain));
+                    member.future.set(ExtensionFuture.createExtendedSignature(member.signature, chain,
+                            member.publicationRecord, signatureComponentFactory, signatureFactory));
+                    if (!cached) {
+                        extendedCalendarHashChainCache.put(chain, member.publicationRecord.getPublicationData());
+                        cached = true;
+                    }
+                } catch (KSIException | RuntimeException e) {
+                    member.future.setException(e);
+                }
+            }
+        }
+
+        private void fail(Exception exception) {
+            for (Member member : members) {
+                member.future.setException(exception);
+            }
+        }
+    }
+
+    private static final class Member {
+
+        private final KSISignature signature;
+        private final PublicationRecord publicationRecord;
+        private final SettableFuture<KSISignature> future;
+
+        private Member(KSISignature signature, PublicationRecord publicationRecord, SettableFuture<KSISignature> future) {
+            this.signature = signature;
+            this.publicationRecord = publicationRecord;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.publication.PublicationRecord;
+import com.guardtime.ksi.publication.PublicationsFile;
+import com.guardtime.ksi.publication.inmemory.CertificateNotFoundException;
+import com.guardtime.ksi.util.Base16;
+
+import java.security.cert.Certificate;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link PublicationsFile} decorator that remembers the certificates found by their ID, so that the certificate is
+ * looked up and parsed only once however many signatures are verified against the same publications file.
+ */
+final class CertificateCachingPublicationsFile implements PublicationsFile {
+
+    private final PublicationsFile publicationsFile;
+    private final ConcurrentMap<String, Certificate> certificates = new ConcurrentHashMap<>();
+
+    CertificateCachingPublicationsFile(PublicationsFile publicationsFile) {
+        this.publicationsFile = publicationsFile;
+    }
+
+    public Certificate findCertificateById(byte[] certificateId) throws CertificateNotFoundException {
+        if (certificateId == null) {
+            return publicationsFile.findCertificateById(null);
+        }
+        String key = Base16.encode(certificateId);
+        Certificate certificate = certificates.get(key);
+        if (certificate == null) {
+            certificate = publicationsFile.findCertificateById(certificateId);
+            certificates.putIfAbsent(key, certificate);
+        }
+        return certificate;
+    }
+
+    public PublicationRecord getPublicationRecord(Date publicationTime) {
+        return publicationsFile.getPublicationRecord(publicationTime);
+    }
+
+    public List<PublicationRecord> getPublicationRecords() {
+        return publicationsFile.getPublicationRecords();
+    }
+
+    public PublicationRecord getLatestPublication() throws KSIException {
+        return publicationsFile.getLatestPublication();
+    }
+
+    public String getName() {
+        return publicationsFile.getName();
+    }
+
+    @Override
+    public String toString() {
+        return publicationsFile.toString();
+    }
+}
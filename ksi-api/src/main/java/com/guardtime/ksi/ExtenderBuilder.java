@@ -20,12 +20,18 @@
 
 package com.guardtime.ksi;
 
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.pdu.ExtenderConfiguration;
 import com.guardtime.ksi.pdu.ExtensionResponse;
 import com.guardtime.ksi.publication.PublicationRecord;
+import com.guardtime.ksi.publication.PublicationsFile;
+import com.guardtime.ksi.service.ConfigurationListener;
 import com.guardtime.ksi.service.Future;
 import com.guardtime.ksi.service.KSIExtendingService;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.unisignature.CalendarHashChain;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
 import com.guardtime.ksi.unisignature.KSISignatureFactory;
@@ -37,6 +43,9 @@ import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicyAdapte
 import com.guardtime.ksi.util.Util;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import static com.guardtime.ksi.util.Util.notNull;
 
@@ -46,9 +55,16 @@ import static com.guardtime.ksi.util.Util.notNull;
  * otherwise the {@link NullPointerException} is thrown.
  */
 public final class ExtenderBuilder {
+
+    /**
+     * Maximum number of requests sent at once by bulk extension until the extender configuration is received.
+     */
+    private static final int DEFAULT_MAXIMUM_REQUESTS = 8;
+
     private KSIExtendingService extendingService;
     private PublicationsHandler publicationsHandler;
     private ContextAwarePolicy policy;
+    private ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
 
     /**
      * Sets the extending service to be used in extending and verification process.
@@ -81,6 +97,16 @@ public final class ExtenderBuilder {
         return this;
     }
 
+    /**
+     * Sets the cache of extended calendar hash chains. A signature is extended using the cached calendar hash chain if
+     * present, the calendar hash chains received from the extender are added to the cache. The cache can be shared
+     * with other extenders and verifications, by default no cache is used.
+     */
+    public ExtenderBuilder setExtendedCalendarHashChainCache(ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
+        return this;
+    }
+
     /**
      * Builds the {@link Extender} instance. Checks that the extender and the publications file handler are set.
      * If not configured, {@link NullPointerException} is thrown.
@@ -89,6 +115,18 @@ public final class ExtenderBuilder {
      * @throws KSIException will be thrown when errors occur on {@link Extender} class initialization.
      */
     public Extender build() throws KSIException {
+        return buildBulkExtender();
+    }
+
+    /**
+     * Builds the {@link BulkExtender} instance, which can also extend multiple signatures with shared extension
+     * requests. Checks that the extender and the publications file handler are set. If not configured, {@link
+     * NullPointerException} is thrown.
+     *
+     * @return Instance of {@link BulkExtender} class.
+     * @throws KSIException will be thrown when errors occur on {@link Extender} class initialization.
+     */
+    public BulkExtender buildBulkExtender() throws KSIException {
         Util.notNull(extendingService, "KSI extending service");
         Util.notNull(publicationsHandler, "KSI publications handler");
         if (policy == null) {
@@ -96,22 +134,39 @@ public final class ExtenderBuilder {
         }
         KSISignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
         KSISignatureFactory signatureFactory = new InMemoryKsiSignatureFactory(policy, signatureComponentFactory);
-        return new ExtenderImpl(extendingService, publicationsHandler, signatureFactory, signatureComponentFactory);
+        return new ExtenderImpl(extendingService, publicationsHandler, signatureFactory, signatureComponentFactory,
+                extendedCalendarHashChainCache);
     }
 
-    private class ExtenderImpl implements Extender {
+    private class ExtenderImpl implements BulkExtender {
         private final KSISignatureFactory signatureFactory;
         private final KSISignatureComponentFactory signatureComponentFactory;
         private final KSIExtendingService extendingService;
         private final PublicationsHandler publicationsHandler;
+        private final ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
+        private volatile int maximumRequests = DEFAULT_MAXIMUM_REQUESTS;
 
         public ExtenderImpl(KSIExtendingService extendingService,
                 PublicationsHandler publicationsHandler, KSISignatureFactory signatureFactory,
-                            KSISignatureComponentFactory signatureComponentFactory) {
+                            KSISignatureComponentFactory signatureComponentFactory,
+                            ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
             this.signatureFactory = signatureFactory;
             this.signatureComponentFactory = signatureComponentFactory;
             this.extendingService = extendingService;
             this.publicationsHandler = publicationsHandler;
+            this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
+            extendingService.registerExtenderConfigurationListener(new ConfigurationListener<ExtenderConfiguration>() {
+                public void updated(ExtenderConfiguration configuration) {
+                    Long maximum = configuration.getMaximumRequests();
+                    if (maximum != null && maximum > 0) {
+                        maximumRequests = (int) Math.min(maximum, Integer.MAX_VALUE);
+                    }
+                }
+
+                public void updateFailed(Throwable reason) {
+                    // the last known limit is used
+                }
+            });
         }
 
         public KSISignature extend(KSISignature signature) throws KSIException {
@@ -139,8 +194,53 @@ public final class ExtenderBuilder {
             if (signature.getAggregationTime().after(publicationRecord.getPublicationTime())) {
                 throw new IllegalArgumentException("Publication is before signature");
             }
+            if (extendedCalendarHashChainCache != null) {
+                CalendarHashChain calendarHashChain = extendedCalendarHashChainCache.get(signature.getAggregationTime(),
+                        publicationRecord.getPublicationTime(), signatureComponentFactory);
+                if (calendarHashChain != null) {
+                    return createExtendedSignature(signature, publicationRecord, calendarHashChain);
+                }
+            }
             Future<ExtensionResponse> extenderFuture = extendingService.extend(signature.getAggregationTime(), publicationRecord.getPublicationTime());
-            return new ExtensionFuture(extenderFuture, publicationRecord, signature, signatureComponentFactory, signatureFactory);
+            return new ExtensionFuture(extenderFuture, publicationRecord, signature, signatureComponentFactory, signatureFactory,
+                    extendedCalendarHashChainCache);
+        }
+
+        private Future<KSISignature> createExtendedSignature(KSISignature signature, PublicationRecord publicationRecord,
+                                                             CalendarHashChain calendarHashChain) {
+            SettableFuture<KSISignature> future = new SettableFuture<>();
+            try {
+                future.set(ExtensionFuture.createExtendedSignature(signature, calendarHashChain, publicationRecord,
+                        signatureComponentFactory, signatureFactory));
+            } catch (KSIException e) {
+                future.setException(e);
+            }
+            return future;
+        }
+
+        public List<KSISignature> extendAll(Collection<KSISignature> signatures) throws KSIException {
+            List<Future<KSISignature>> futures = asyncExtendAll(signatures);
+            List<KSISignature> extendedSignatures = new ArrayList<>(futures.size());
+            for (Future<KSISignature> future : futures) {
+                extendedSignatures.add(future.getResult());
+            }
+            return extendedSignatures;
+        }
+
+        public List<Future<KSISignature>> asyncExtendAll(Collection<KSISignature> signatures) throws KSIException {
+            notNull(signatures, "KSI signatures");
+            for (KSISignature signature : signatures) {
+                notNull(signature, "KSI signature");
+            }
+            PublicationsFile publicationsFile = publicationsHandler.getPublicationsFile();
+            BulkExtension extension = new BulkExtension(extendingService, signatureComponentFactory, signatureFactory,
+                    extendedCalendarHashChainCache, maximumRequests, DefaultExecutorServiceProvider.getExecutorService());
+            List<Future<KSISignature>> futures = new ArrayList<>(signatures.size());
+            for (KSISignature signature : signatures) {
+                futures.add(extension.add(signature, publicationsFile.getPublicationRecord(signature.getAggregationTime())));
+            }
+            extension.start();
+            return futures;
         }
 
         public KSIExtendingService getExtendingService() {
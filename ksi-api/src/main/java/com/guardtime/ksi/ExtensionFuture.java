@@ -19,17 +19,24 @@
  */
 package com.guardtime.ksi;
 
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.pdu.ExtensionResponse;
 import com.guardtime.ksi.publication.PublicationRecord;
 import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.Futures;
+import com.guardtime.ksi.service.ListenableFuture;
 import com.guardtime.ksi.service.KSIProtocolException;
 import com.guardtime.ksi.unisignature.CalendarHashChain;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
 import com.guardtime.ksi.unisignature.KSISignatureFactory;
 import com.guardtime.ksi.unisignature.SignaturePublicationRecord;
 
+import java.util.concurrent.Executor;
+
 import static com.guardtime.ksi.unisignature.CalendarHashChainUtil.areRightLinksConsistent;
 import static java.util.Arrays.asList;
 
@@ -38,35 +45,43 @@ import static java.util.Arrays.asList;
  *
  * @see Future
  */
-public final class ExtensionFuture implements Future<KSISignature> {
+public final class ExtensionFuture implements ListenableFuture<KSISignature> {
 
     private final Future<ExtensionResponse> future;
     private final PublicationRecord publicationRecord;
     private final KSISignature signature;
     private final KSISignatureFactory signatureFactory;
     private final KSISignatureComponentFactory signatureComponentFactory;
+    private final ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
 
     private KSISignature extendedSignature;
 
     public ExtensionFuture(Future<ExtensionResponse> future, PublicationRecord publicationRecord, KSISignature signature,
                            KSISignatureComponentFactory signatureComponentFactory, KSISignatureFactory signatureFactory) {
+        this(future, publicationRecord, signature, signatureComponentFactory, signatureFactory, null);
+    }
+
+    ExtensionFuture(Future<ExtensionResponse> future, PublicationRecord publicationRecord, KSISignature signature,
+                    KSISignatureComponentFactory signatureComponentFactory, KSISignatureFactory signatureFactory,
+                    ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
         this.future = future;
         this.publicationRecord = publicationRecord;
         this.signature = signature;
         this.signatureComponentFactory = signatureComponentFactory;
         this.signatureFactory = signatureFactory;
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
     }
 
-    public KSISignature getResult() throws KSIException {
+    public synchronized KSISignature getResult() throws KSIException {
         if (extendedSignature == null) {
             try {
                 ExtensionResponse extensionResponse = future.getResult();
                 CalendarHashChain calendarHashChain = signatureComponentFactory.createCalendarHashChain(extensionResponse.getCalendarHashChain());
-                if (signature.getCalendarHashChain() != null && !areRightLinksConsistent(signature.getCalendarHashChain(), calendarHashChain)) {
-                    throw new InconsistentCalendarHashChainException("Right links of signature calendar hash chain and extended calendar hash chain do not match");
+                extendedSignature = createExtendedSignature(signature, calendarHashChain, publicationRecord,
+                        signatureComponentFactory, signatureFactory);
+                if (extendedCalendarHashChainCache != null) {
+                    extendedCalendarHashChainCache.put(calendarHashChain, publicationRecord.getPublicationData());
                 }
-                SignaturePublicationRecord publication = signatureComponentFactory.createPublicationRecord(publicationRecord.getPublicationData(), publicationRecord.getPublicationReferences(), publicationRecord.getPublicationRepositoryURIs());
-                extendedSignature = signatureFactory.createSignature(asList(signature.getAggregationHashChains()), calendarHashChain, null, publication, signature.getRfc3161Record());
             } catch (com.guardtime.ksi.tlv.TLVParserException e) {
                 throw new KSIProtocolException("Can't parse response message", e);
             }
@@ -74,7 +89,45 @@ public final class ExtensionFuture implements Future<KSISignature> {
         return extendedSignature;
     }
 
+    /**
+     * Creates the extended signature from the original signature and the calendar hash chain extended to the
+     * publication.
+     */
+    static KSISignature createExtendedSignature(KSISignature signature, CalendarHashChain calendarHashChain,
+                                                PublicationRecord publicationRecord,
+                                                KSISignatureComponentFactory signatureComponentFactory,
+                                                KSISignatureFactory signatureFactory) throws KSIException {
+        if (signature.getCalendarHashChain() != null && !areRightLinksConsistent(signature.getCalendarHashChain(), calendarHashChain)) {
+            throw new InconsistentCalendarHashChainException("Right links of signature calendar hash chain and extended calendar hash chain do not match");
+        }
+        SignaturePublicationRecord publication = signatureComponentFactory.createPublicationRecord(publicationRecord.getPublicationData(), publicationRecord.getPublicationReferences(), publicationRecord.getPublicationRepositoryURIs());
+        return signatureFactory.createSignature(asList(signature.getAggregationHashChains()), calendarHashChain, null, publication, signature.getRfc3161Record());
+    }
+
     public boolean isFinished() {
         return future.isFinished();
     }
+
+    /**
+     * Registers a callback which is notified with the extended signature as soon as the extension response arrives. The signature is
+     * created and the callback is called in a thread of the {@link DefaultExecutorServiceProvider}'s executor, so the
+     * work is never done in the thread that receives the response.
+     */
+    public void addCallback(FutureCallback<? super KSISignature> callback) {
+        addCallback(callback, DefaultExecutorServiceProvider.getExecutorService());
+    }
+
+    /**
+     * Registers a callback which is notified with the extended signature as soon as the extension response arrives. The signature is
+     * created and the callback is called using the given executor. If the executor rejects the task then the callback
+     * is notified about the rejection in the thread that receives the response.
+     *
+     * @param callback
+     *         callback to be notified, not null.
+     * @param executor
+     *         executor used to create the signature and call the callback, not null.
+     */
+    public void addCallback(FutureCallback<? super KSISignature> callback, Executor executor) {
+        Futures.addDerivedCallback(future, this, callback, executor);
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.unisignature.KSISignature;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * Signing files asynchronously using a caller provided executor. The signers built by
+ * {@link SignerBuilder#buildFileSigner()} and the {@link KSI} instances built by {@link KSIBuilder} implement this
+ * interface.
+ */
+public interface FileSigner extends Signer {
+
+    /**
+     * Signs the file asynchronously. The file is hashed and, once the aggregation response has arrived, the signature
+     * is created and verified using the given executor. Uses hash algorithm defined by method
+     * {@link KSIBuilder#setDefaultSigningHashAlgorithm(HashAlgorithm)}. Errors reading the file are reported by
+     * {@link Future#getResult()}.
+     *
+     * @param file
+     *         file to sign, not null.
+     * @param executor
+     *         executor used to hash the file and to create the signature, not null.
+     * @return Instance of {@link Future}.
+     * @throws KSIException
+     *         when error occurs (e.g. when communication with KSI service fails).
+     */
+    Future<KSISignature> asyncSign(File file, Executor executor) throws KSIException;
+
+}
@@ -38,6 +38,7 @@ import com.guardtime.ksi.service.client.KSIExtenderClient;
 import com.guardtime.ksi.service.client.KSIPublicationsFileClient;
 import com.guardtime.ksi.service.client.KSISigningClient;
 import com.guardtime.ksi.trust.X509CertificateSubjectRdnSelector;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
 import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureComponentFactory;
@@ -62,6 +63,9 @@ import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.cert.CertSelector;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import static com.guardtime.ksi.util.Util.getDefaultTrustStore;
 import static com.guardtime.ksi.util.Util.notNull;
@@ -87,6 +91,8 @@ public final class KSIBuilder {
 
     private Policy defaultVerificationPolicy;
 
+    private ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
+
     /**
      * Sets the default signing algorithm to be used to create new KSI signatures. When using {@link KSI#sign(DataHash)}
      * method, this algorithm is ignored. Default value is {@link HashAlgorithm#SHA2_256}
@@ -229,6 +235,15 @@ public final class KSIBuilder {
         return this;
     }
 
+    /**
+     * Sets the cache of extended calendar hash chains used when signatures are extended or verified using the
+     * extender. The cache can be shared by several {@link KSI} instances. By default no cache is used.
+     */
+    public KSIBuilder setExtendedCalendarHashChainCache(ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
+        return this;
+    }
+
     @Deprecated
     public KSIBuilder setPduIdentifierProvider(PduIdentifierProvider pduIdentifierProvider) {
         return this;
@@ -309,26 +324,27 @@ public final class KSIBuilder {
                 ContextAwarePolicyAdapter.createPolicy(defaultVerificationPolicy, publicationsHandler, extendingService);
 
         Reader reader = new SignatureReader(contextAwarePolicy);
-        Signer signer = new SignerBuilder().setDefaultSigningHashAlgorithm(defaultHashAlgorithm)
+        FileSigner signer = new SignerBuilder().setDefaultSigningHashAlgorithm(defaultHashAlgorithm)
                 .setDefaultVerificationPolicy(contextAwarePolicy)
-                .setSigningService(signingService).build();
-        Extender extender = new ExtenderBuilder().setDefaultVerificationPolicy(contextAwarePolicy)
+                .setSigningService(signingService).buildFileSigner();
+        BulkExtender extender = new ExtenderBuilder().setDefaultVerificationPolicy(contextAwarePolicy)
                 .setExtendingService(extendingService)
-                .setPublicationsHandler(publicationsHandler).build();
+                .setExtendedCalendarHashChainCache(extendedCalendarHashChainCache)
+                .setPublicationsHandler(publicationsHandler).buildBulkExtender();
         return new KSIImpl(reader, signer, extender, publicationsHandler);
     }
 
     /**
      * {@link KSI} class implementation
      */
-    private class KSIImpl extends SignatureVerifier implements KSI {
+    private class KSIImpl extends SignatureVerifier implements KSI, FileSigner, BulkExtender {
         private final Reader reader;
-        private final Signer signer;
-        private final Extender extender;
+        private final FileSigner signer;
+        private final BulkExtender extender;
         private final PublicationsHandler publicationsHandler;
         private final KSISignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
 
-        public KSIImpl(Reader reader, Signer signer, Extender extender, PublicationsHandler publicationsHandler) {
+        public KSIImpl(Reader reader, FileSigner signer, BulkExtender extender, PublicationsHandler publicationsHandler) {
             this.reader = reader;
             this.signer = signer;
             this.extender = extender;
@@ -375,6 +391,10 @@ public final class KSIBuilder {
             return signer.asyncSign(file);
         }
 
+        public Future<KSISignature> asyncSign(File file, Executor executor) throws KSIException {
+            return signer.asyncSign(file, executor);
+        }
+
         public Future<KSISignature> asyncSign(byte[] bytes) throws KSIException {
             return signer.asyncSign(bytes);
         }
@@ -404,6 +424,14 @@ public final class KSIBuilder {
             return extender.asyncExtend(signature, publicationRecord);
         }
 
+        public List<KSISignature> extendAll(Collection<KSISignature> signatures) throws KSIException {
+            return extender.extendAll(signatures);
+        }
+
+        public List<Future<KSISignature>> asyncExtendAll(Collection<KSISignature> signatures) throws KSIException {
+            return extender.asyncExtendAll(signatures);
+        }
+
         public KSIExtendingService getExtendingService() {
             return extender.getExtendingService();
         }
@@ -439,7 +467,8 @@ public final class KSIBuilder {
             VerificationContextBuilder builder = new VerificationContextBuilder();
             builder.setDocumentHash(documentHash).setSignature(signature);
             builder.setExtendingService(extendingService).setExtendingAllowed(true).setUserPublication(publicationData);
-            VerificationContext context = builder.setPublicationsFile(getPublicationsFile()).build();
+            builder.setExtendedCalendarHashChainCache(extendedCalendarHashChainCache);
+            VerificationContext context = builder.setPublicationsHandler(publicationsHandler).build();
             return verify(context, policy);
         }
 
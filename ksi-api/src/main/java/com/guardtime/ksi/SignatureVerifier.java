@@ -58,7 +58,7 @@ public class SignatureVerifier implements Verifier {
                 .setDocumentHash(documentHash, level)
                 .setExtendingService(c.getExtendingService())
                 .setExtendingAllowed(c.isExtendingAllowed())
-                .setPublicationsFile(c.getPublicationsHandler() != null ? c.getPublicationsHandler().getPublicationsFile() : null)
+                .setPublicationsHandler(c.getPublicationsHandler())
                 .setSignature(signature)
                 .setUserPublication(c.getUserPublication())
                 .build();
@@ -114,6 +114,8 @@ public interface Signer extends Closeable {
     /**
      * Signs the file asynchronously. Uses hash algorithm defined by method
      * {@link KSIBuilder#setDefaultSigningHashAlgorithm(HashAlgorithm)}.
+     * The file is hashed in a thread of the {@link com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider}'s
+     * executor, so the method returns without waiting for the hashing to finish.
      * Use method {@link Future#getResult()} to get the KSI signature.
      *
      * @param file
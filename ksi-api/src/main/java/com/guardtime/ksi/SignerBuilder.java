@@ -20,6 +20,7 @@
 
 package com.guardtime.ksi;
 
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.hashing.DataHasher;
@@ -27,7 +28,9 @@ import com.guardtime.ksi.hashing.HashAlgorithm;
 import com.guardtime.ksi.pdu.AggregationResponse;
 import com.guardtime.ksi.pdu.AggregatorConfiguration;
 import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
 import com.guardtime.ksi.service.KSISigningService;
+import com.guardtime.ksi.service.SettableFuture;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
 import com.guardtime.ksi.unisignature.KSISignatureFactory;
@@ -40,6 +43,7 @@ import com.guardtime.ksi.util.Util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import static com.guardtime.ksi.util.Util.notNull;
 
@@ -89,6 +93,14 @@ public final class SignerBuilder {
      * Builds and returns the {@link Signer} instance. If signing client isn't configured, {@link NullPointerException} is thrown.
      */
     public Signer build() {
+        return buildFileSigner();
+    }
+
+    /**
+     * Builds and returns the {@link FileSigner} instance, which can also sign files using a caller provided executor.
+     * If signing client isn't configured, {@link NullPointerException} is thrown.
+     */
+    public FileSigner buildFileSigner() {
         Util.notNull(signingService, "KSI signing service");
         if (defaultHashAlgorithm == null) {
             this.defaultHashAlgorithm = HashAlgorithm.SHA2_256;
@@ -102,7 +114,7 @@ public final class SignerBuilder {
         return new SignerImpl(signingService, uniSignatureFactory, defaultHashAlgorithm);
     }
 
-    private class SignerImpl implements Signer {
+    private class SignerImpl implements FileSigner {
 
         private final Long DEFAULT_LEVEL = 0L;
         private static final int MAXIMUM_LEVEL = 255;
@@ -128,7 +140,8 @@ public final class SignerBuilder {
         }
 
         public KSISignature sign(File file) throws KSIException {
-            Future<KSISignature> future = asyncSign(file);
+            notNull(file, "File");
+            Future<KSISignature> future = asyncSign(hash(file));
             return future.getResult();
         }
 
@@ -142,6 +155,10 @@ public final class SignerBuilder {
         }
 
         public Future<KSISignature> asyncSign(DataHash dataHash, long level) throws KSIException {
+            return signHash(dataHash, level);
+        }
+
+        private SigningFuture signHash(DataHash dataHash, long level) throws KSIException {
             notNull(dataHash, "Data hash");
             dataHash.getAlgorithm().checkExpiration();
             if (level < 0 || level > MAXIMUM_LEVEL) {
@@ -152,10 +169,31 @@ public final class SignerBuilder {
         }
 
         public Future<KSISignature> asyncSign(File file) throws KSIException {
+            return asyncSign(file, DefaultExecutorServiceProvider.getExecutorService());
+        }
+
+        public Future<KSISignature> asyncSign(final File file, final Executor executor) throws KSIException {
             notNull(file, "File");
-            DataHasher hasher = new DataHasher(defaultHashAlgorithm);
-            hasher.addData(file);
-            return asyncSign(hasher.getHash());
+            notNull(executor, "Executor");
+            final SettableFuture<KSISignature> future = new SettableFuture<>();
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        signHash(hash(file), DEFAULT_LEVEL).addCallback(new FutureCallback<KSISignature>() {
+                            public void onSuccess(KSISignature signature) {
+                                future.set(signature);
+                            }
+
+                            public void onFailure(Exception exception) {
+                                future.setException(exception);
+                            }
+                        }, executor);
+                    } catch (Exception e) {
+                        future.setException(e);
+                    }
+                }
+            });
+            return future;
         }
 
         public Future<KSISignature> asyncSign(byte[] bytes) throws KSIException {
@@ -165,6 +203,12 @@ public final class SignerBuilder {
             return asyncSign(hasher.getHash());
         }
 
+        private DataHash hash(File file) {
+            DataHasher hasher = new DataHasher(defaultHashAlgorithm);
+            hasher.addData(file);
+            return hasher.getHash();
+        }
+
         public KSISigningService getSigningService() {
             return signingService;
         }
@@ -19,11 +19,15 @@
  */
 package com.guardtime.ksi;
 
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.hashing.HashException;
 import com.guardtime.ksi.pdu.AggregationResponse;
 import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.Futures;
+import com.guardtime.ksi.service.ListenableFuture;
 import com.guardtime.ksi.service.KSIProtocolException;
 import com.guardtime.ksi.tlv.TLVElement;
 import com.guardtime.ksi.tlv.TLVParserException;
@@ -31,13 +35,14 @@ import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.KSISignatureFactory;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * The future of the signing request's response.
  *
  * @see Future
  */
-public final class SigningFuture implements Future<KSISignature> {
+public final class SigningFuture implements ListenableFuture<KSISignature> {
 
     private final Future<AggregationResponse> aggregationResponseFuture;
     private KSISignatureFactory signatureFactory;
@@ -61,7 +66,7 @@ public final class SigningFuture implements Future<KSISignature> {
         this.level = level;
     }
 
-    public final KSISignature getResult() throws KSIException {
+    public final synchronized KSISignature getResult() throws KSIException {
         try {
             if (response == null) {
                 AggregationResponse aggregationResponse = aggregationResponseFuture.getResult();
@@ -77,6 +82,29 @@ public final class SigningFuture implements Future<KSISignature> {
         return this.aggregationResponseFuture.isFinished();
     }
 
+    /**
+     * Registers a callback which is notified with the signature as soon as the aggregation response arrives. The signature is
+     * created and the callback is called in a thread of the {@link DefaultExecutorServiceProvider}'s executor, so the
+     * work is never done in the thread that receives the response.
+     */
+    public void addCallback(FutureCallback<? super KSISignature> callback) {
+        addCallback(callback, DefaultExecutorServiceProvider.getExecutorService());
+    }
+
+    /**
+     * Registers a callback which is notified with the signature as soon as the aggregation response arrives. The signature is
+     * created and the callback is called using the given executor. If the executor rejects the task then the callback
+     * is notified about the rejection in the thread that receives the response.
+     *
+     * @param callback
+     *         callback to be notified, not null.
+     * @param executor
+     *         executor used to create the signature and call the callback, not null.
+     */
+    public void addCallback(FutureCallback<? super KSISignature> callback, Executor executor) {
+        Futures.addDerivedCallback(aggregationResponseFuture, this, callback, executor);
+    }
+
     private TLVElement convert(TLVElement response) throws TLVParserException {
         TLVElement element = new TLVElement(false, false, 0x0800);
         List<TLVElement> children = response.getChildElements();
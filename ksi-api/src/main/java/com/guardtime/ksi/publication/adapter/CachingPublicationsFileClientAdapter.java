@@ -24,26 +24,45 @@ import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.publication.PublicationsFile;
 import com.guardtime.ksi.publication.PublicationsFileFactory;
 import com.guardtime.ksi.service.client.KSIPublicationsFileClient;
+import com.guardtime.ksi.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An adapter for publications file client. It's responsibility is to cache the publication file data so that it
  * would not be fetched again over the network on each KSI request that needs a publication file. Cache is loaded for
  * the first time lazily (e.g. it's not loaded until it's actually needed).
+ * <p>
+ * The cached publications file is served without locking. When three quarters of the expiration time have passed,
+ * the publications file is refreshed in the background while the callers are still served the cached one. Only when
+ * the cache has expired (e.g. the background refresh has failed) the callers wait for the publications file to be
+ * downloaded. If the downloaded publications file is identical to the cached one and it has been verified within the
+ * cache expiration time, it isn't parsed and verified again.
+ * </p>
  */
 public class CachingPublicationsFileClientAdapter implements PublicationsFileClientAdapter {
 
     private static final Logger logger = LoggerFactory.getLogger(CachingPublicationsFileClientAdapter.class);
 
+    private static final long REFRESH_THREAD_KEEP_ALIVE_SECONDS = 60L;
+
     private final PublicationsFileFactory publicationsFileFactory;
     private final KSIPublicationsFileClient publicationsFileClient;
     private final long cacheExpirationTime;
-    private long cacheLastUpdated;
-    private PublicationsFile cachedPublicationsFile;
+    private final Executor refreshExecutor;
+    private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
+    private final Object updateLock = new Object();
+    private volatile CacheEntry cache;
 
     /**
      * @param publicationsFileClient
@@ -54,21 +73,44 @@ public class CachingPublicationsFileClientAdapter implements PublicationsFileCli
      *         The amount of time in milliseconds after which cache needs to be updated.
      */
     public CachingPublicationsFileClientAdapter(KSIPublicationsFileClient publicationsFileClient, PublicationsFileFactory publicationsFileFactory, long cacheExpirationTime) {
+        this(publicationsFileClient, publicationsFileFactory, cacheExpirationTime, createRefreshExecutor());
+    }
+
+    /**
+     * @param publicationsFileClient
+     *         The actual publications file client that fetches the file if cache needs updating.
+     * @param publicationsFileFactory
+     *         factory to use to parse publications file
+     * @param cacheExpirationTime
+     *         The amount of time in milliseconds after which cache needs to be updated.
+     * @param refreshExecutor
+     *         executor used to refresh the publications file in the background.
+     */
+    public CachingPublicationsFileClientAdapter(KSIPublicationsFileClient publicationsFileClient, PublicationsFileFactory publicationsFileFactory,
+                                                long cacheExpirationTime, Executor refreshExecutor) {
+        Util.notNull(refreshExecutor, "Refresh executor");
         this.publicationsFileClient = publicationsFileClient;
         this.publicationsFileFactory = publicationsFileFactory;
         this.cacheExpirationTime = cacheExpirationTime;
+        this.refreshExecutor = refreshExecutor;
     }
 
-    public synchronized PublicationsFile getPublicationsFile() throws KSIException {
-        if (isCacheUpdateNeeded()) {
-            logger.debug("Publication file cache will be updated.");
-            ByteBuffer data = publicationsFileClient.getPublicationsFile().getResult();
-            cachedPublicationsFile = publicationsFileFactory.create(new ByteArrayInputStream(data.array()));
-            cacheLastUpdated = System.currentTimeMillis();
+    public PublicationsFile getPublicationsFile() throws KSIException {
+        CacheEntry entry = cache;
+        if (isCacheUpdateNeeded(entry)) {
+            synchronized (updateLock) {
+                if (entry == cache) {
+                    logger.debug("Publication file cache will be updated.");
+                    update();
+                }
+                entry = cache;
+            }
+        } else if (isRefreshNeeded(entry)) {
+            scheduleRefresh();
         } else {
             logger.debug("Returning cached publication file data.");
         }
-        return cachedPublicationsFile;
+        return entry.publicationsFile;
     }
 
     public KSIPublicationsFileClient getPublicationsFileClient() {
@@ -76,7 +118,90 @@ public class CachingPublicationsFileClientAdapter implements PublicationsFileCli
     }
 
     boolean isCacheUpdateNeeded() {
-        return cachedPublicationsFile == null || System.currentTimeMillis() - cacheExpirationTime >= cacheLastUpdated;
+        return isCacheUpdateNeeded(cache);
+    }
+
+    /**
+     * The decision is made on the given entry, the entry read once by the caller, as the cache may be updated by
+     * another thread meanwhile.
+     */
+    boolean isCacheUpdateNeeded(CacheEntry entry) {
+        return entry == null || System.currentTimeMillis() - cacheExpirationTime >= entry.lastUpdated;
+    }
+
+    private boolean isRefreshNeeded(CacheEntry entry) {
+        return System.currentTimeMillis() - (cacheExpirationTime - cacheExpirationTime / 4) >= entry.lastUpdated;
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        final CacheEntry entry = cache;
+        try {
+            refreshExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        synchronized (updateLock) {
+                            if (entry == cache) {
+                                logger.debug("Publication file cache will be refreshed in the background.");
+                                update();
+                            }
+                        }
+                    } catch (Exception e) {
+                        logger.warn("Refreshing the publications file failed, the cached publications file will be used until it expires", e);
+                    } finally {
+                        refreshInProgress.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshInProgress.set(false);
+            logger.warn("Scheduling the publications file refresh failed", e);
+        }
+    }
+
+    /**
+     * Downloads the publications file. The publications file is parsed and verified if it differs from the cached one
+     * or if the cached one was verified more than the cache expiration time ago, so that the certificates are checked
+     * again at least once per expiration period.
+     */
+    private void update() throws KSIException {
+        ByteBuffer data = publicationsFileClient.getPublicationsFile().getResult();
+        byte[] bytes = data.array();
+        CacheEntry entry = cache;
+        long now = System.currentTimeMillis();
+        if (entry != null && Arrays.equals(entry.bytes, bytes) && now - entry.verified < cacheExpirationTime) {
+            logger.debug("Publication file hasn't changed.");
+            cache = new CacheEntry(entry.publicationsFile, bytes, now, entry.verified);
+        } else {
+            PublicationsFile publicationsFile = publicationsFileFactory.create(new ByteArrayInputStream(bytes));
+            cache = new CacheEntry(publicationsFile, bytes, now, now);
+        }
+    }
+
+    private static Executor createRefreshExecutor() {
+        return new ThreadPoolExecutor(0, 1, REFRESH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ksi-publications-file-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    static final class CacheEntry {
+        private final PublicationsFile publicationsFile;
+        private final byte[] bytes;
+        private final long lastUpdated;
+        private final long verified;
+
+        CacheEntry(PublicationsFile publicationsFile, byte[] bytes, long lastUpdated, long verified) {
+            this.publicationsFile = publicationsFile;
+            this.bytes = bytes;
+            this.lastUpdated = lastUpdated;
+            this.verified = verified;
+        }
     }
 
 }
@@ -35,12 +35,14 @@ public final class AggregationHashChainUtil {
     public static long calculateIndex(List<AggregationChainLink> links) {
         notNull(links, "Aggregation chain links");
         long chainIndex = 0;
-        for (int i = 0; i < links.size(); i++) {
-            if (links.get(i).isLeft()) {
+        int i = 0;
+        for (AggregationChainLink link : links) {
+            if (link.isLeft()) {
                 chainIndex |= 1L << i;
             }
+            i++;
         }
-        chainIndex |= 1L << links.size();
+        chainIndex |= 1L << i;
         return chainIndex;
     }
 
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.unisignature;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.publication.PublicationData;
+import com.guardtime.ksi.tlv.TLVElement;
+import com.guardtime.ksi.tlv.TLVStructure;
+import com.guardtime.ksi.util.Util;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of extended calendar hash chains, keyed by the aggregation time and the publication time of the chain.
+ * A calendar hash chain extended to a publication never changes, so one cache can be shared by all verifications and
+ * extensions to avoid asking the extender for the same chain again. When the cache is full, the least recently used
+ * chain is evicted.
+ * <p>
+ * The chains are kept in their encoded form and every {@link #get(Date, Date, KSISignatureComponentFactory)} returns a
+ * new instance, so a cached chain is never shared between signatures. A chain is cached only together with the
+ * publication it ends with, therefore chains extended to the calendar head, which change every second, are never
+ * cached.
+ * </p>
+ * Instances of this class are thread-safe.
+ */
+public final class ExtendedCalendarHashChainCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final Map<Key, byte[]> chains;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most {@link #DEFAULT_MAXIMUM_SIZE} chains.
+     */
+    public ExtendedCalendarHashChainCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of chains.
+     *
+     * @param maximumSize maximum number of cached chains, must be positive.
+     */
+    public ExtendedCalendarHashChainCache(final int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum cache size must be positive");
+        }
+        this.chains = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached calendar hash chain extended from the aggregation time to the publication time.
+     *
+     * @param aggregationTime           aggregation time of the chain, not null.
+     * @param publicationTime           publication time of the chain, not null.
+     * @param signatureComponentFactory factory used to create the returned chain, not null.
+     * @return new instance of the cached {@link CalendarHashChain} or null if the chain isn't cached.
+     * @throws KSIException when the cached chain can not be parsed.
+     */
+    public CalendarHashChain get(Date aggregationTime, Date publicationTime,
+                                 KSISignatureComponentFactory signatureComponentFactory) throws KSIException {
+        Util.notNull(aggregationTime, "Aggregation time");
+        Util.notNull(publicationTime, "Publication time");
+        Util.notNull(signatureComponentFactory, "Signature component factory");
+        byte[] encoded;
+        synchronized (chains) {
+            encoded = chains.get(new Key(aggregationTime, publicationTime));
+        }
+        if (encoded == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return signatureComponentFactory.createCalendarHashChain(TLVElement.create(encoded));
+    }
+
+    /**
+     * Adds an extended calendar hash chain to the cache. The chain is cached by its own aggregation and publication
+     * time, but only if it ends with the given publication: the publication time and the publication hash must match
+     * the publication time and the output hash of the chain.
+     *
+     * @param calendarHashChain extended calendar hash chain, not null.
+     * @param publication       publication the chain has been extended to, not null.
+     * @return true if the chain was cached, false if it doesn't end with the publication.
+     * @throws KSIException when the chain can not be encoded.
+     */
+    public boolean put(CalendarHashChain calendarHashChain, PublicationData publication) throws KSIException {
+        Util.notNull(calendarHashChain, "Calendar hash chain");
+        Util.notNull(publication, "Publication");
+        if (!publication.getPublicationTime().equals(calendarHashChain.getPublicationTime())
+                || !publication.getPublicationDataHash().equals(calendarHashChain.getOutputHash())) {
+            return false;
+        }
+        byte[] encoded = ((TLVStructure) calendarHashChain).getRootElement().getEncoded();
+        Key key = new Key(calendarHashChain.getAggregationTime(), calendarHashChain.getPublicationTime());
+        synchronized (chains) {
+            chains.put(key, encoded);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of lookups that found a cached chain.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of lookups that didn't find a cached chain.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of cached chains.
+     */
+    public int size() {
+        synchronized (chains) {
+            return chains.size();
+        }
+    }
+
+    /**
+     * Removes all the cached chains, the hit and miss counts are not reset.
+     */
+    public void clear() {
+        synchronized (chains) {
+            chains.clear();
+        }
+    }
+
+    /**
+     * Identifies an extended calendar hash chain by its aggregation time and publication time, the extender returns
+     * the same chain for the same pair of times.
+     */
+    public static final class Key {
+
+        private final long aggregationTime;
+        private final long publicationTime;
+
+        public Key(Date aggregationTime, Date publicationTime) {
+            Util.notNull(aggregationTime, "Aggregation time");
+            Util.notNull(publicationTime, "Publication time");
+            this.aggregationTime = aggregationTime.getTime();
+            this.publicationTime = publicationTime.getTime();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return aggregationTime == key.aggregationTime && publicationTime == key.publicationTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (aggregationTime ^ (aggregationTime >>> 32)) + (int) (publicationTime ^ (publicationTime >>> 32));
+        }
+    }
+}
@@ -215,11 +215,7 @@ abstract class InMemoryAggregationChainLink extends TLVStructure implements Aggr
         if (!algorithm.isImplemented()) {
             throw new InvalidAggregationHashChainException("Invalid aggregation hash chain. Hash algorithm " + algorithm.getName() + " is not implemented");
         }
-        DataHasher hasher = new DataHasher(algorithm, false);
-        hasher.addData(hash1);
-        hasher.addData(hash2);
-        hasher.addData(Util.encodeUnsignedLong(level));
-        return hasher.getHash();
+        return DataHasher.hash(algorithm, hash1, hash2, level);
     }
 
     /**
@@ -57,7 +57,7 @@ class InMemoryAggregationHashChain extends TLVStructure implements AggregationHa
     private byte[] inputData;
     private DataHash inputHash;
     private HashAlgorithm aggregationAlgorithm;
-    private DataHash outputHash;
+    private volatile CalculatedOutput calculatedOutput;
 
     public InMemoryAggregationHashChain(DataHash inputHash, Date aggregationTime, LinkedList<Long> chainIndex, LinkedList<AggregationChainLink> links, HashAlgorithm aggregationAlgorithm) throws KSIException {
         this.inputHash = inputHash;
@@ -131,13 +131,24 @@ class InMemoryAggregationHashChain extends TLVStructure implements AggregationHa
     }
 
     /**
-     * Calculate hash chain output hash.
+     * Calculate hash chain output hash. The hash chain doesn't change, so the result is calculated once and returned
+     * again when asked with the same level.
      *
      * @param level
      *         hash chain level
      * @return hash chain result
      */
     public final ChainResult calculateOutputHash(long level) throws KSIException {
+        CalculatedOutput calculated = calculatedOutput;
+        if (calculated != null && calculated.level == level) {
+            return calculated.result;
+        }
+        ChainResult result = calculateChain(level);
+        this.calculatedOutput = new CalculatedOutput(level, result);
+        return result;
+    }
+
+    private ChainResult calculateChain(long level) throws KSIException {
         // TODO task KSIJAVAAPI-207 If the aggregation hash chain component contains the `input data' field, hash the value part of the field
         // using the hash algorithm specified by the first octet of the `input hash' field and verify that the result of
         // hashing `input data' equals `input hash'; terminate with a consistency error if they do not match.(spec. 4.1.1.2)
@@ -152,7 +163,6 @@ class InMemoryAggregationHashChain extends TLVStructure implements AggregationHa
             lastHash = step.getOutputHash();
             currentLevel = step.getLevel();
         }
-        this.outputHash = lastHash;
         return new InMemoryChainResult(lastHash, currentLevel);
     }
 
@@ -168,10 +178,12 @@ class InMemoryAggregationHashChain extends TLVStructure implements AggregationHa
     }
 
     /**
-     * @return returns aggregation chain output hash
+     * @return returns aggregation chain output hash of the last calculation or null when the output hash hasn't been
+     * calculated yet
      */
     public DataHash getOutputHash() {
-        return outputHash;
+        CalculatedOutput calculated = calculatedOutput;
+        return calculated != null ? calculated.result.getOutputHash() : null;
     }
 
     public List<AggregationChainLink> getChainLinks() {
@@ -224,4 +236,15 @@ class InMemoryAggregationHashChain extends TLVStructure implements AggregationHa
     public List<Long> getChainIndex() {
         return chainIndex;
     }
+
+    private static final class CalculatedOutput {
+
+        private final long level;
+        private final ChainResult result;
+
+        private CalculatedOutput(long level, ChainResult result) {
+            this.level = level;
+            this.result = result;
+        }
+    }
 }
@@ -90,15 +90,21 @@ class InMemoryCalendarHashChain extends TLVStructure implements CalendarHashChai
             throw new InvalidCalendarHashChainException("Calendar hash chain does not contain link elements");
         }
 
-        this.outputHash = calculateCalendarHashChainHash();
+        calculateCalendarHashChainHash();
     }
 
+    /**
+     * Calculates the output hash of the hash chain. The hash chain doesn't change, so it is calculated once.
+     */
     public final DataHash calculateCalendarHashChainHash() throws InvalidCalendarHashChainException {
-        DataHash input = inputHash;
-        for (CalendarHashChainLink link : chain) {
-            input = link.calculateChainStep(input);
+        if (outputHash == null) {
+            DataHash input = inputHash;
+            for (CalendarHashChainLink link : chain) {
+                input = link.calculateChainStep(input);
+            }
+            this.outputHash = input;
         }
-        return input;
+        return outputHash;
     }
 
     /**
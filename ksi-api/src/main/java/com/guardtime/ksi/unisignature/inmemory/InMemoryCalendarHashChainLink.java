@@ -37,6 +37,11 @@ abstract class InMemoryCalendarHashChainLink extends TLVStructure implements Cal
 
     protected final DataHash dataHash;
 
+    /**
+     * Calendar hash chain steps are hashed with level byte 0xFF.
+     */
+    private static final long CALENDAR_LINK_LEVEL = 0xFF;
+
     InMemoryCalendarHashChainLink(TLVElement rootElement) throws KSIException {
         super(rootElement);
         this.dataHash = rootElement.getDecodedDataHash();
@@ -54,11 +59,7 @@ abstract class InMemoryCalendarHashChainLink extends TLVStructure implements Cal
         if (!algorithm.isImplemented()) {
             throw new InvalidCalendarHashChainException("Invalid calendar hash chain. Hash algorithm " +algorithm.getName() + " is not implemented");
         }
-        DataHasher hasher = new DataHasher(algorithm, false);
-        hasher.addData(imprintA);
-        hasher.addData(imprintB);
-        hasher.addData(new byte[]{(byte) 0xFF});
-        return hasher.getHash();
+        return DataHasher.hash(algorithm, imprintA, imprintB, CALENDAR_LINK_LEVEL);
     }
 
     @Override
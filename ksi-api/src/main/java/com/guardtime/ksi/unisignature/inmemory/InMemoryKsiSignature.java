@@ -97,6 +97,26 @@ final class InMemoryKsiSignature extends TLVStructure implements KSISignature {
                     verifyCriticalFlag(child);
             }
         }
+        verifyComponents(aggregations);
+    }
+
+    /**
+     * Creates a signature from already parsed components, e.g. components shared with another signature. The components
+     * are checked as when parsing, the hash chain results already calculated by the shared components are reused.
+     */
+    InMemoryKsiSignature(TLVElement element, List<AggregationHashChain> aggregationChains,
+                         InMemoryCalendarHashChain calendarChain, InMemorySignaturePublicationRecord publicationRecord,
+                         InMemoryCalendarAuthenticationRecord calendarAuthenticationRecord,
+                         InMemoryRFC3161Record rfc3161Record) throws KSIException {
+        super(element);
+        this.calendarChain = calendarChain;
+        this.publicationRecord = publicationRecord;
+        this.calendarAuthenticationRecord = calendarAuthenticationRecord;
+        this.rfc3161Record = rfc3161Record;
+        verifyComponents(new ArrayList<>(aggregationChains));
+    }
+
+    private void verifyComponents(List<AggregationHashChain> aggregations) throws KSIException {
         if (aggregations.isEmpty()) {
             throw new InvalidSignatureException("At least one aggregation chain required");
         }
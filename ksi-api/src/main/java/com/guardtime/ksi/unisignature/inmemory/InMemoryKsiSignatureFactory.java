@@ -170,25 +170,64 @@ public final class InMemoryKsiSignatureFactory implements KSISignatureFactory {
                 signature.getRfc3161Record(), originalInputHash);
     }
 
+    /**
+     * Creates a factory for prepending lower aggregation hash chains to the given signature, e.g. to create the
+     * signatures of the leaves of a locally aggregated hash tree. The signature is not verified by the returned factory,
+     * it must already be verified, e.g. by this factory when it was created.
+     *
+     * @param signature instance of {@link KSISignature} to be prepended, not null
+     * @return instance of {@link LeafSignatureFactory}
+     * @throws KSIException when error occurs (e.g signature data is invalid)
+     */
+    public LeafSignatureFactory createLeafSignatureFactory(KSISignature signature) throws KSIException {
+        return new LeafSignatureFactory(signature, signatureComponentFactory);
+    }
+
     private KSISignature createSignature(List<AggregationHashChain> aggregationHashChains,
                                          CalendarHashChain calendarChain, CalendarAuthenticationRecord calendarAuthenticationRecord,
                                          PublicationRecord signaturePublicationRecord, RFC3161Record rfc3161Record,
                                          DataHash inputHash) throws KSIException {
+        InMemoryKsiSignature signature = assembleSignature(aggregationHashChains, calendarChain, calendarAuthenticationRecord,
+                signaturePublicationRecord, rfc3161Record);
+        return verify(signature, extendingAllowed, inputHash, 0L);
+    }
 
+    /**
+     * Creates a signature from the components. When the components are in-memory components they are reused, so the
+     * unchanged components aren't parsed and their hash chains aren't calculated again.
+     */
+    private InMemoryKsiSignature assembleSignature(List<AggregationHashChain> aggregationHashChains,
+                                                   CalendarHashChain calendarChain, CalendarAuthenticationRecord calendarAuthenticationRecord,
+                                                   PublicationRecord signaturePublicationRecord, RFC3161Record rfc3161Record) throws KSIException {
         TLVElement root = new TLVElement(false, false, InMemoryKsiSignature.ELEMENT_TYPE);
+        boolean inMemory = true;
         for (AggregationHashChain chain : aggregationHashChains) {
             addTlvStructure(root, (TLVStructure) chain);
+            inMemory &= chain instanceof InMemoryAggregationHashChain;
         }
         if (calendarChain != null) {
             addTlvStructure(root, (TLVStructure) calendarChain);
             if (signaturePublicationRecord != null) {
                 addTlvStructure(root, (TLVStructure) signaturePublicationRecord);
+                calendarAuthenticationRecord = null;
             } else {
                 addTlvStructure(root, (TLVStructure) calendarAuthenticationRecord);
             }
+        } else {
+            signaturePublicationRecord = null;
+            calendarAuthenticationRecord = null;
         }
         addTlvStructure(root, (TLVStructure) rfc3161Record);
-        return createSignature(root, extendingAllowed, inputHash);
+        inMemory &= (calendarChain == null || calendarChain instanceof InMemoryCalendarHashChain)
+                && (signaturePublicationRecord == null || signaturePublicationRecord instanceof InMemorySignaturePublicationRecord)
+                && (calendarAuthenticationRecord == null || calendarAuthenticationRecord instanceof InMemoryCalendarAuthenticationRecord)
+                && (rfc3161Record == null || rfc3161Record instanceof InMemoryRFC3161Record);
+        if (!inMemory) {
+            return new InMemoryKsiSignature(root);
+        }
+        return new InMemoryKsiSignature(root, aggregationHashChains, (InMemoryCalendarHashChain) calendarChain,
+                (InMemorySignaturePublicationRecord) signaturePublicationRecord,
+                (InMemoryCalendarAuthenticationRecord) calendarAuthenticationRecord, (InMemoryRFC3161Record) rfc3161Record);
     }
 
     private KSISignature createSignature(TLVElement element, boolean extendingAllowed, DataHash inputHash) throws KSIException {
@@ -202,13 +241,17 @@ public final class InMemoryKsiSignatureFactory implements KSISignatureFactory {
             AggregationHashChain aggregationHashChain = createHashChainWithAddingLevelCorrection(aggregationHashChains.get(0), level);
             aggregationHashChains.set(0, aggregationHashChain);
 
-            signature = (InMemoryKsiSignature) createSignature(aggregationHashChains, signature.getCalendarHashChain(),
+            signature = assembleSignature(aggregationHashChains, signature.getCalendarHashChain(),
                     signature.getCalendarAuthenticationRecord(), signature.getPublicationRecord(), signature.getRfc3161Record());
         }
+        return verify(signature, extendingAllowed, inputHash, level);
+    }
+
+    private KSISignature verify(InMemoryKsiSignature signature, boolean extendingAllowed, DataHash inputHash, long level) throws KSIException {
         if (verifySignatures) {
             VerificationContextBuilder builder = new VerificationContextBuilder();
             builder.setSignature(signature).setExtendingService(extendingService)
-                    .setPublicationsFile(getPublicationsFile(publicationsHandler))
+                    .setPublicationsHandler(publicationsHandler)
                     .setExtendingAllowed(extendingAllowed);
             if (inputHash != null) {
                 builder.setDocumentHash(inputHash, level);
@@ -224,13 +267,6 @@ public final class InMemoryKsiSignatureFactory implements KSISignatureFactory {
         return signature;
     }
 
-    private PublicationsFile getPublicationsFile(PublicationsHandler handler) throws KSIException {
-        if (handler == null) {
-            return null;
-        }
-        return handler.getPublicationsFile();
-    }
-
     private PublicationsHandler createPublicationsHandler(final PublicationsFileClientAdapter clientAdapter) {
         return new PublicationsHandler() {
             public PublicationsFile getPublicationsFile() throws KSIException {
@@ -239,9 +275,13 @@ public final class InMemoryKsiSignatureFactory implements KSISignatureFactory {
         };
     }
 
+    /**
+     * Adds a copy of the structure's root element, so that the element trees of the new signature and the (possibly
+     * reused) component don't share element instances.
+     */
     private void addTlvStructure(TLVElement root, TLVStructure structure) throws KSIException {
         if (structure != null) {
-            root.addChildElement(structure.getRootElement());
+            root.addChildElement(TLVElement.create(structure.getRootElement().getEncoded()));
         }
     }
 
@@ -157,23 +157,10 @@ class InMemoryRFC3161Record extends TLVStructure implements RFC3161Record {
     public DataHash getOutputHash(HashAlgorithm hashAlgorithm) throws HashException {
         DataHash hash = getInputHash();
 
-        DataHasher hasher = new DataHasher(HashAlgorithm.getById(tstInfoAlgorithm.intValue()), false);
-        hasher.addData(tstInfoPrefix);
-        hasher.addData(hash.getValue());
-        hasher.addData(tstInfoSuffix);
-
-        hash = hasher.getHash();
-
-        hasher = new DataHasher(HashAlgorithm.getById(signedAttributesAlgorithm.intValue()), false);
-        hasher.addData(signedAttributesPrefix);
-        hasher.addData(hash.getValue());
-        hasher.addData(signedAttributesSuffix);
-        hash = hasher.getHash();
-
-        hasher = new DataHasher(hashAlgorithm, false);
-        hasher.addData(hash.getImprint());
-
-        return hasher.getHash();
+        hash = DataHasher.hash(HashAlgorithm.getById(tstInfoAlgorithm.intValue()), tstInfoPrefix, hash.getValue(), tstInfoSuffix);
+        hash = DataHasher.hash(HashAlgorithm.getById(signedAttributesAlgorithm.intValue()), signedAttributesPrefix,
+                hash.getValue(), signedAttributesSuffix);
+        return DataHasher.hash(hashAlgorithm, hash.getImprint());
     }
 
     public List<Long> getChainIndex() {
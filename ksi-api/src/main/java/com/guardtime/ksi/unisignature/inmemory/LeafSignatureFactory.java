@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.unisignature.inmemory;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.tlv.TLVElement;
+import com.guardtime.ksi.tlv.TLVStructure;
+import com.guardtime.ksi.unisignature.AggregationChainLink;
+import com.guardtime.ksi.unisignature.AggregationHashChain;
+import com.guardtime.ksi.unisignature.ChainResult;
+import com.guardtime.ksi.unisignature.KSISignature;
+import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
+import com.guardtime.ksi.util.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.guardtime.ksi.unisignature.AggregationHashChainUtil.calculateIndex;
+
+/**
+ * Creates signatures by prepending lower aggregation hash chains to one base signature, e.g. the signatures of the
+ * leaves of a locally aggregated hash tree whose root hash has been signed.
+ * <p>
+ * Unlike {@link InMemoryKsiSignatureFactory#createSignature(KSISignature, AggregationHashChain, DataHash)} the base
+ * signature is not parsed, computed nor verified again for every created signature. The components of the base
+ * signature are shared by all created signatures and their encoded form is prepared once. Only the prepended chain is
+ * computed and checked to be consistent with the base signature, so the base signature must already be verified.
+ * </p>
+ * Instances of this class are thread-safe.
+ */
+public final class LeafSignatureFactory {
+
+    private final KSISignatureComponentFactory signatureComponentFactory;
+    private final AggregationHashChain firstChain;
+    private final long firstChainLevelCorrection;
+    private final List<AggregationHashChain> upperChains;
+    private final InMemoryKsiSignature baseSignature;
+    private final List<byte[]> encodedUpperElements = new ArrayList<>();
+    private final ConcurrentMap<Long, FirstChain> firstChains = new ConcurrentHashMap<>();
+
+    LeafSignatureFactory(KSISignature signature, KSISignatureComponentFactory signatureComponentFactory) throws KSIException {
+        Util.notNull(signature, "Signature");
+        this.signatureComponentFactory = signatureComponentFactory;
+        this.baseSignature = signature instanceof InMemoryKsiSignature ? (InMemoryKsiSignature) signature
+                : new InMemoryKsiSignature(((TLVStructure) signature).getRootElement());
+        List<AggregationHashChain> chains = Arrays.asList(baseSignature.getAggregationHashChains());
+        this.firstChain = chains.get(0);
+        this.firstChainLevelCorrection = firstChain.getChainLinks().get(0).getLevelCorrection();
+        this.upperChains = chains.subList(1, chains.size());
+        for (AggregationHashChain chain : upperChains) {
+            addEncodedElement((TLVStructure) chain);
+        }
+        if (baseSignature.getCalendarHashChain() != null) {
+            addEncodedElement(baseSignature.getCalendarHashChain());
+            if (baseSignature.getPublicationRecord() != null) {
+                addEncodedElement(baseSignature.getPublicationRecord());
+            } else {
+                addEncodedElement((TLVStructure) baseSignature.getCalendarAuthenticationRecord());
+            }
+        }
+        addEncodedElement((TLVStructure) baseSignature.getRfc3161Record());
+    }
+
+    /**
+     * Creates a signature by prepending lower aggregation hash chain to the base signature.
+     *
+     * @param aggregationHashChain instance of lower {@link AggregationHashChain} to prepend, not null.
+     * @param originalInputHash    original input hash, if present then it must be the input hash of the chain.
+     * @return instance of {@link KSISignature}
+     * @throws AggregationHashChainPrependingException when the chain can not be prepended to the base signature.
+     * @throws KSIException                            when other error occurs.
+     */
+    public KSISignature createSignature(AggregationHashChain aggregationHashChain, DataHash originalInputHash) throws KSIException {
+        Util.notNull(aggregationHashChain, "Aggregation hash chain");
+        LinkedList<Long> chainIndex = new LinkedList<>(firstChain.getChainIndex());
+        LinkedList<AggregationChainLink> chainLinks = new LinkedList<>(aggregationHashChain.getChainLinks());
+        chainIndex.add(calculateIndex(chainLinks));
+        AggregationHashChain chain = signatureComponentFactory.createAggregationHashChain(aggregationHashChain.getInputHash(),
+                firstChain.getAggregationTime(), chainIndex, chainLinks, aggregationHashChain.getAggregationAlgorithm());
+        ChainResult result = chain.calculateOutputHash(0L);
+        verifyChainToBePrepended(chain, result, originalInputHash);
+        FirstChain first = getFirstChain(result.getLevel());
+
+        List<AggregationHashChain> chains = new ArrayList<>(upperChains.size() + 2);
+        chains.add(chain);
+        chains.add(first.chain);
+        chains.addAll(upperChains);
+
+        TLVElement root = new TLVElement(false, false, InMemoryKsiSignature.ELEMENT_TYPE);
+        root.addChildElement(((TLVStructure) chain).getRootElement());
+        root.addChildElement(TLVElement.create(first.encoded));
+        for (byte[] encoded : encodedUpperElements) {
+            root.addChildElement(TLVElement.create(encoded));
+        }
+        return new InMemoryKsiSignature(root, chains, baseSignature.getCalendarHashChain(),
+                baseSignature.getPublicationRecord(), (InMemoryCalendarAuthenticationRecord) baseSignature.getCalendarAuthenticationRecord(),
+                (InMemoryRFC3161Record) baseSignature.getRfc3161Record());
+    }
+
+    /**
+     * Returns the first chain of the base signature with the level correction of its first link adjusted to the output
+     * level of the prepended chain. Usually all prepended chains have the same output level, so it is created once.
+     */
+    private FirstChain getFirstChain(long level) throws KSIException {
+        FirstChain first = firstChains.get(level);
+        if (first == null) {
+            LinkedList<AggregationChainLink> links = new LinkedList<>(firstChain.getChainLinks());
+            AggregationChainLink link = links.get(0);
+            long levelCorrection = firstChainLevelCorrection - level;
+            links.set(0, link.isLeft() ? signatureComponentFactory.createLeftAggregationChainLink(link, levelCorrection)
+                    : signatureComponentFactory.createRightAggregationChainLink(link, levelCorrection));
+            AggregationHashChain chain = signatureComponentFactory.createAggregationHashChain(firstChain.getInputHash(),
+                    firstChain.getAggregationTime(), new LinkedList<>(firstChain.getChainIndex()), links,
+                    firstChain.getAggregationAlgorithm());
+            chain.calculateOutputHash(level);
+            first = new FirstChain(chain, ((TLVStructure) chain).getRootElement().getEncoded());
+            FirstChain existing = firstChains.putIfAbsent(level, first);
+            if (existing != null) {
+                first = existing;
+            }
+        }
+        return first;
+    }
+
+    private void verifyChainToBePrepended(AggregationHashChain chain, ChainResult result, DataHash originalInputHash) throws KSIException {
+        if (result.getLevel() > firstChainLevelCorrection) {
+            throw new AggregationHashChainPrependingException("The aggregation hash chain cannot be added as lowest level chain. " +
+                    "Its output level (" + result.getLevel() + ") is bigger than level correction of the first link of the " +
+                    "first aggregation hash chain of the base signature (" + firstChainLevelCorrection + ").");
+        }
+        if (!firstChain.getInputHash().equals(result.getOutputHash())) {
+            throw new AggregationHashChainPrependingException("The aggregation hash chain cannot be added as lowest level chain. " +
+                    "Its output hash (" + result.getOutputHash() + ") does not match base signature " +
+                    "input hash (" + firstChain.getInputHash() + ").");
+        }
+        if (originalInputHash != null && !originalInputHash.equals(chain.getInputHash())) {
+            throw new AggregationHashChainPrependingException("The aggregation hash chain input hash (" + chain.getInputHash() +
+                    ") does not match the original input hash (" + originalInputHash + ").");
+        }
+    }
+
+    private void addEncodedElement(TLVStructure structure) throws KSIException {
+        if (structure != null) {
+            encodedUpperElements.add(structure.getRootElement().getEncoded());
+        }
+    }
+
+    private static final class FirstChain {
+
+        private final AggregationHashChain chain;
+        private final byte[] encoded;
+
+        private FirstChain(AggregationHashChain chain, byte[] encoded) {
+            this.chain = chain;
+            this.encoded = encoded;
+        }
+    }
+}
@@ -43,7 +43,12 @@ public final class KSISignatureVerifier implements SignatureVerifier {
         KSIVerificationResult finalResult = new KSIVerificationResult();
         Policy runPolicy = policy;
         while (runPolicy != null) {
-            PolicyVerificationResult result = verifySignature(context, runPolicy);
+            PolicyVerificationResult result;
+            try {
+                result = verifySignature(context, runPolicy);
+            } catch (PublicationsFileNotAvailableException e) {
+                throw e.getCause();
+            }
             finalResult.addPolicyResult(result);
             if (VerificationResultCode.NA.equals(result.getPolicyStatus())) {
                 LOGGER.info("Using fallback policy {}", runPolicy.getFallbackPolicy());
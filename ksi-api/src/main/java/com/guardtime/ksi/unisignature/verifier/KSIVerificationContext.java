@@ -20,6 +20,7 @@
 
 package com.guardtime.ksi.unisignature.verifier;
 
+import com.guardtime.ksi.PublicationsHandler;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.pdu.ExtensionResponse;
@@ -35,6 +36,7 @@ import com.guardtime.ksi.tlv.TLVParserException;
 import com.guardtime.ksi.unisignature.AggregationHashChain;
 import com.guardtime.ksi.unisignature.CalendarAuthenticationRecord;
 import com.guardtime.ksi.unisignature.CalendarHashChain;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
 import com.guardtime.ksi.unisignature.RFC3161Record;
@@ -52,6 +54,7 @@ import java.util.Map;
 final class KSIVerificationContext implements VerificationContext {
 
     private PublicationsFile publicationsFile;
+    private PublicationsHandler publicationsHandler;
     private KSISignature signature;
     private PublicationData userPublication;
     private KSIExtendingService extendingService;
@@ -60,18 +63,22 @@ final class KSIVerificationContext implements VerificationContext {
     private Long inputHashLevel;
     private Map<Date, CalendarHashChain> extendedSignatures = new HashMap<>();
     private CalendarHashChain calendarExtendedToHead;
+    private ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
 
     private KSISignatureComponentFactory signatureComponentFactory;
 
-    KSIVerificationContext(PublicationsFile publicationsFile, KSISignature signature, PublicationData userPublication,
-                           boolean extendingAllowed, KSIExtendingService extendingService, DataHash documentHash, Long inputHashLevel) {
+    KSIVerificationContext(PublicationsFile publicationsFile, PublicationsHandler publicationsHandler, KSISignature signature,
+                           PublicationData userPublication, boolean extendingAllowed, KSIExtendingService extendingService, DataHash documentHash,
+                           Long inputHashLevel, ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
         this.publicationsFile = publicationsFile;
+        this.publicationsHandler = publicationsHandler;
         this.signature = signature;
         this.userPublication = userPublication;
         this.extendingAllowed = extendingAllowed;
         this.extendingService = extendingService;
         this.documentHash = documentHash;
         this.inputHashLevel = inputHashLevel;
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
     }
 
     public void setKsiSignatureComponentFactory(KSISignatureComponentFactory signatureComponentFactory) {
@@ -87,7 +94,7 @@ final class KSIVerificationContext implements VerificationContext {
             return getExtendedCalendarHashChain();
         }
         if (!extendedSignatures.containsKey(publicationTime)) {
-            extendedSignatures.put(publicationTime, extend(publicationTime));
+            extendedSignatures.put(publicationTime, extendToPublication(publicationTime));
         }
         return extendedSignatures.get(publicationTime);
     }
@@ -122,7 +129,7 @@ final class KSIVerificationContext implements VerificationContext {
 
     public Certificate getCertificate(byte[] certificateId) {
         try {
-            return publicationsFile.findCertificateById(certificateId);
+            return getPublicationsFile().findCertificateById(certificateId);
         } catch (CertificateNotFoundException e) {
             return null;
         }
@@ -152,10 +159,69 @@ final class KSIVerificationContext implements VerificationContext {
         return extendingAllowed;
     }
 
+    /**
+     * Returns the publications file, getting it from the publications handler on the first call.
+     *
+     * @throws PublicationsFileNotAvailableException when the publications handler fails to get the file.
+     */
     public PublicationsFile getPublicationsFile() {
+        if (publicationsFile == null && publicationsHandler != null) {
+            try {
+                publicationsFile = publicationsHandler.getPublicationsFile();
+            } catch (KSIException e) {
+                throw new PublicationsFileNotAvailableException(e);
+            }
+        }
         return publicationsFile;
     }
 
+    /**
+     * Extends the signature to the publication, the shared cache is used if present. The extender response is cached
+     * only if it is consistent with the signature and with a trusted publication of the given time, so that an invalid
+     * response can't be reused by other verifications.
+     */
+    private CalendarHashChain extendToPublication(Date publicationTime) throws KSIException {
+        if (extendedCalendarHashChainCache == null) {
+            return extend(publicationTime);
+        }
+        CalendarHashChain calendarHashChain = extendedCalendarHashChainCache.get(getSignature().getAggregationTime(),
+                publicationTime, signatureComponentFactory);
+        if (calendarHashChain == null) {
+            calendarHashChain = extend(publicationTime);
+            PublicationData publication = getTrustedPublication(publicationTime);
+            if (publication != null && startsFromSignature(calendarHashChain)) {
+                extendedCalendarHashChainCache.put(calendarHashChain, publication);
+            }
+        }
+        return calendarHashChain;
+    }
+
+    /**
+     * Checks that the extended calendar hash chain starts from the signature.
+     */
+    private boolean startsFromSignature(CalendarHashChain calendarHashChain) {
+        AggregationHashChain lastAggregationHashChain = getLastAggregationHashChain();
+        return lastAggregationHashChain.getAggregationTime().equals(calendarHashChain.getAggregationTime())
+                && calendarHashChain.getInputHash().equals(lastAggregationHashChain.getOutputHash());
+    }
+
+    /**
+     * Returns the trusted publication of the given time or null if there isn't one. The publication is taken from the
+     * user provided publication or from the publications file, if the latter has already been resolved.
+     */
+    private PublicationData getTrustedPublication(Date publicationTime) {
+        if (userPublication != null && publicationTime.equals(userPublication.getPublicationTime())) {
+            return userPublication;
+        }
+        if (publicationsFile != null) {
+            PublicationRecord publicationRecord = publicationsFile.getPublicationRecord(publicationTime);
+            if (publicationRecord != null && publicationTime.equals(publicationRecord.getPublicationTime())) {
+                return publicationRecord.getPublicationData();
+            }
+        }
+        return null;
+    }
+
     private CalendarHashChain extend(Date publicationTime) throws KSIException {
         Future<ExtensionResponse> extenderFuture = extendingService.extend(getSignature().getAggregationTime(), publicationTime);
         ExtensionResponse extensionResponse = extenderFuture.getResult();
@@ -17,26 +17,24 @@
  *  reserves and retains all trademark rights.
  *
  */
-package com.guardtime.ksi.service.ha;
 
-import java.util.Collection;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+package com.guardtime.ksi.unisignature.verifier;
+
+import com.guardtime.ksi.exceptions.KSIException;
 
 /**
- * Task for invoking all the subclient tasks and returning the first successful one or throwing an exception if they all fail.
+ * Thrown by {@link VerificationContext#getPublicationsFile()} and {@link VerificationContext#getCertificate(byte[])}
+ * when the publications file is resolved lazily and getting it fails. The exception is unchecked to keep the
+ * signatures of the {@link VerificationContext} methods unchanged, {@link KSISignatureVerifier} rethrows the cause.
  */
-class ServiceCallsTask<T> implements Callable<T> {
-
-    private final ExecutorService executorService;
-    private final Collection<Callable<T>> serviceCallTasks;
+public class PublicationsFileNotAvailableException extends RuntimeException {
 
-    ServiceCallsTask(ExecutorService executorService, Collection<Callable<T>> serviceCallTasks) {
-        this.executorService = executorService;
-        this.serviceCallTasks = serviceCallTasks;
+    public PublicationsFileNotAvailableException(KSIException cause) {
+        super(cause.getMessage(), cause);
     }
 
-    public T call() throws Exception {
-        return executorService.invokeAny(serviceCallTasks);
+    @Override
+    public synchronized KSIException getCause() {
+        return (KSIException) super.getCause();
     }
 }
@@ -88,7 +88,10 @@ public interface VerificationContext {
     boolean isExtendingAllowed();
 
     /**
-     * Returns instance of KSI publications file
+     * Returns instance of KSI publications file. The publications file may be downloaded by the first call.
+     *
+     * @throws PublicationsFileNotAvailableException
+     *         when the publications file can not be obtained
      */
     PublicationsFile getPublicationsFile();
 
@@ -98,6 +101,8 @@ public interface VerificationContext {
      * @param certificateId
      *         certificate id
      * @return instance of {@link Certificate} or null
+     * @throws PublicationsFileNotAvailableException
+     *         when the publications file can not be obtained
      */
     Certificate getCertificate(byte[] certificateId);
 
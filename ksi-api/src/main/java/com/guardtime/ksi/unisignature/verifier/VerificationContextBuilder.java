@@ -20,6 +20,7 @@
 
 package com.guardtime.ksi.unisignature.verifier;
 
+import com.guardtime.ksi.PublicationsHandler;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.publication.PublicationData;
@@ -27,6 +28,7 @@ import com.guardtime.ksi.publication.PublicationsFile;
 import com.guardtime.ksi.service.KSIExtendingClientServiceAdapter;
 import com.guardtime.ksi.service.KSIExtendingService;
 import com.guardtime.ksi.service.client.KSIExtenderClient;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.util.Util;
 
@@ -37,12 +39,14 @@ import com.guardtime.ksi.util.Util;
 public class VerificationContextBuilder {
 
     private PublicationsFile publicationsFile;
+    private PublicationsHandler publicationsHandler;
     private KSISignature signature;
     private PublicationData userPublication;
     private boolean extendingAllowed;
     private KSIExtendingService extendingService;
     private DataHash documentHash;
     private Long inputHashLevel;
+    private ExtendedCalendarHashChainCache extendedCalendarHashChainCache;
 
     /**
      * Used to set the KSI signature that is verified.
@@ -66,6 +70,19 @@ public class VerificationContextBuilder {
         return this;
     }
 
+    /**
+     * Used to set the publications handler that is used to get the publications file when the verification process
+     * first needs it, so that the publications file isn't downloaded for the policies not using it. Ignored when the
+     * publications file is set.
+     *
+     * @param publicationsHandler instance of publications handler. may be null.
+     * @return instance of {@link VerificationContextBuilder}
+     */
+    public VerificationContextBuilder setPublicationsHandler(PublicationsHandler publicationsHandler) {
+        this.publicationsHandler = publicationsHandler;
+        return this;
+    }
+
     /**
      * Used to set the user publication (e.g from newspaper). Used by {@link com.guardtime.ksi.unisignature.verifier.policies.UserProvidedPublicationBasedVerificationPolicy}.
      *
@@ -134,10 +151,22 @@ public class VerificationContextBuilder {
         return setDocumentHash(documentHash, 0L);
     }
 
+    /**
+     * Used to set the cache of extended calendar hash chains. The cache can be shared by many verification contexts,
+     * so the same calendar hash chain is requested from the extender only once.
+     *
+     * @param extendedCalendarHashChainCache instance of {@link ExtendedCalendarHashChainCache}. may be null.
+     * @return instance of {@link VerificationContextBuilder}
+     */
+    public VerificationContextBuilder setExtendedCalendarHashChainCache(ExtendedCalendarHashChainCache extendedCalendarHashChainCache) {
+        this.extendedCalendarHashChainCache = extendedCalendarHashChainCache;
+        return this;
+    }
+
     public VerificationContext build() {
         Util.notNull(signature, "Signature");
-        return new KSIVerificationContext(publicationsFile, signature, userPublication, extendingAllowed, extendingService,
-                documentHash, inputHashLevel);
+        return new KSIVerificationContext(publicationsFile, publicationsHandler, signature, userPublication, extendingAllowed,
+                extendingService, documentHash, inputHashLevel, extendedCalendarHashChainCache);
     }
 
     /**
@@ -157,7 +186,8 @@ public class VerificationContextBuilder {
         if (publicationsFile == null) {
             throw new KSIException("Failed to createSignature verification context. PublicationsFile must be present.");
         }
-        return new KSIVerificationContext(publicationsFile, signature, userPublication, extendingAllowed, extendingService, documentHash, inputHashLevel);
+        return new KSIVerificationContext(publicationsFile, null, signature, userPublication, extendingAllowed,
+                extendingService, documentHash, inputHashLevel, extendedCalendarHashChainCache);
     }
 
 }
@@ -31,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
 import java.security.Signature;
 import java.security.cert.Certificate;
 
@@ -47,7 +48,7 @@ public class CalendarAuthenticationRecordSignatureVerificationRule extends BaseR
         SignatureData signatureData = authenticationRecord.getSignatureData();
         Certificate certificate = context.getCertificate(signatureData.getCertificateId());
         try {
-            Signature sig = Signature.getInstance(signatureData.getSignatureType(), BouncyCastleProvider.PROVIDER_NAME);
+            Signature sig = getSignature(signatureData.getSignatureType());
             sig.initVerify(certificate);
             sig.update(authenticationRecord.getPublicationData().getEncoded());
             if (!sig.verify(signatureData.getSignatureValue())) {
@@ -63,6 +64,17 @@ public class CalendarAuthenticationRecordSignatureVerificationRule extends BaseR
         return VerificationResultCode.OK;
     }
 
+    /**
+     * Prefers the installed providers, BouncyCastle is used when none of these supports the signature type.
+     */
+    private Signature getSignature(String signatureType) throws GeneralSecurityException {
+        try {
+            return Signature.getInstance(signatureType);
+        } catch (NoSuchAlgorithmException e) {
+            return Signature.getInstance(signatureType, BouncyCastleProvider.PROVIDER_NAME);
+        }
+    }
+
     public VerificationErrorCode getErrorCode() {
         return VerificationErrorCode.KEY_02;
     }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.publication.PublicationsFile;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.KSIExtendingService;
+import com.guardtime.ksi.unisignature.KSISignature;
+import com.guardtime.ksi.unisignature.verifier.AlwaysSuccessfulPolicy;
+import com.guardtime.ksi.unisignature.verifier.VerificationResult;
+import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicy;
+import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicyAdapter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.guardtime.ksi.Resources.EXTENDED_SIGNATURE_2017_03_14;
+import static com.guardtime.ksi.Resources.PUBLICATIONS_FILE;
+import static com.guardtime.ksi.Resources.SIGNATURE_2014_06_02;
+import static com.guardtime.ksi.Resources.SIGNATURE_2017_03_14;
+import static com.guardtime.ksi.TestUtil.loadPublicationsFile;
+import static com.guardtime.ksi.TestUtil.loadSignature;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchVerifierTest {
+
+    @Test
+    public void testResultsAreReturnedInRequestOrder() throws Exception {
+        KSISignature signature = loadSignature(SIGNATURE_2017_03_14);
+        DataHash wrongHash = new DataHash(HashAlgorithm.SHA2_256, new byte[32]);
+        BatchVerifier verifier = new BatchVerifierBuilder()
+                .setPolicy(ContextAwarePolicyAdapter.createInternalPolicy())
+                .build();
+
+        List<Future<VerificationResult>> futures = verifier.verify(Arrays.asList(new BatchVerifier.Request(signature),
+                new BatchVerifier.Request(signature, wrongHash), new BatchVerifier.Request(signature, signature.getInputHash())));
+
+        Assert.assertEquals(futures.size(), 3);
+        Assert.assertTrue(futures.get(0).getResult().isOk());
+        Assert.assertFalse(futures.get(1).getResult().isOk());
+        Assert.assertTrue(futures.get(2).getResult().isOk());
+    }
+
+    @Test
+    public void testPublicationsFileIsFetchedOncePerBatch() throws Exception {
+        PublicationsHandler publicationsHandler = mock(PublicationsHandler.class);
+        PublicationsFile publicationsFile = loadPublicationsFile(PUBLICATIONS_FILE);
+        when(publicationsHandler.getPublicationsFile()).thenReturn(publicationsFile);
+        BatchVerifier verifier = new BatchVerifierBuilder()
+                .setPolicy(ContextAwarePolicyAdapter.createPublicationsFilePolicy(publicationsHandler))
+                .build();
+        List<BatchVerifier.Request> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new BatchVerifier.Request(loadSignature(EXTENDED_SIGNATURE_2017_03_14)));
+        }
+
+        for (Future<VerificationResult> future : verifier.verify(requests)) {
+            Assert.assertTrue(future.getResult().isOk());
+        }
+        verify(publicationsHandler, times(1)).getPublicationsFile();
+    }
+
+    @Test
+    public void testPublicationsFileIsNotFetchedWhenPolicyDoesNotUseIt() throws Exception {
+        PublicationsHandler publicationsHandler = mock(PublicationsHandler.class);
+        ContextAwarePolicy policy = ContextAwarePolicyAdapter.createPolicy(new AlwaysSuccessfulPolicy(), publicationsHandler,
+                mock(KSIExtendingService.class));
+        BatchVerifier verifier = new BatchVerifierBuilder()
+                .setPolicy(policy)
+                .build();
+
+        for (Future<VerificationResult> future : verifier.verify(Arrays.asList(new BatchVerifier.Request(loadSignature(SIGNATURE_2014_06_02))))) {
+            Assert.assertTrue(future.getResult().isOk());
+        }
+        verify(publicationsHandler, never()).getPublicationsFile();
+    }
+
+    @Test
+    public void testListenerReceivesAllResults() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BatchVerifier verifier = new BatchVerifierBuilder()
+                    .setPolicy(ContextAwarePolicyAdapter.createInternalPolicy())
+                    .setExecutor(executor)
+                    .setParallelism(2)
+                    .build();
+            List<BatchVerifier.Request> requests = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                requests.add(new BatchVerifier.Request(loadSignature(SIGNATURE_2017_03_14)));
+            }
+            final List<BatchVerifier.Request> verified = Collections.synchronizedList(new ArrayList<BatchVerifier.Request>());
+
+            verifier.verify(requests, new BatchVerifier.Listener() {
+                public void verified(BatchVerifier.Request request, VerificationResult result) {
+                    if (result.isOk()) {
+                        verified.add(request);
+                    }
+                }
+
+                public void failed(BatchVerifier.Request request, Exception exception) {
+                }
+            });
+
+            Assert.assertEquals(verified.size(), requests.size());
+            Assert.assertTrue(verified.containsAll(requests));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testBatchFailsWhenReadingRequestsFails() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BatchVerifier verifier = new BatchVerifierBuilder()
+                    .setPolicy(ContextAwarePolicyAdapter.createInternalPolicy())
+                    .setExecutor(executor)
+                    .setParallelism(2)
+                    .build();
+            final BatchVerifier.Request request = new BatchVerifier.Request(loadSignature(SIGNATURE_2017_03_14));
+            Iterable<BatchVerifier.Request> requests = new Iterable<BatchVerifier.Request>() {
+                public Iterator<BatchVerifier.Request> iterator() {
+                    return new Iterator<BatchVerifier.Request>() {
+                        private int count;
+
+                        public boolean hasNext() {
+                            return true;
+                        }
+
+                        public BatchVerifier.Request next() {
+                            if (count++ > 0) {
+                                throw new IllegalStateException("Request source is broken");
+                            }
+                            return request;
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+            BatchVerifier.Listener listener = mock(BatchVerifier.Listener.class);
+
+            try {
+                verifier.verify(requests, listener);
+                Assert.fail("Batch verification should fail");
+            } catch (KSIException e) {
+                Assert.assertEquals(e.getMessage(), "Reading the batch verification requests failed");
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Parallelism must be positive")
+    public void testBuildVerifierWithInvalidParallelism() throws Exception {
+        new BatchVerifierBuilder().setParallelism(0);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.pdu.ExtenderConfiguration;
+import com.guardtime.ksi.pdu.ExtensionResponse;
+import com.guardtime.ksi.publication.PublicationData;
+import com.guardtime.ksi.publication.PublicationRecord;
+import com.guardtime.ksi.publication.PublicationsFile;
+import com.guardtime.ksi.service.ConfigurationListener;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.KSIExtendingService;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.unisignature.CalendarHashChain;
+import com.guardtime.ksi.unisignature.KSISignature;
+import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureComponentFactory;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.guardtime.ksi.CommonTestUtil.loadTlv;
+import static com.guardtime.ksi.Resources.CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY;
+import static com.guardtime.ksi.Resources.SIGNATURE_2014_06_02;
+import static com.guardtime.ksi.Resources.SIGNATURE_2017_03_14;
+import static com.guardtime.ksi.Resources.SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS;
+import static com.guardtime.ksi.TestUtil.loadSignature;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkExtensionTest {
+
+    private KSIExtendingService extendingService;
+    private PublicationsFile publicationsFile;
+    private BulkExtender extender;
+    private PublicationRecord publicationRecord;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        InMemoryKsiSignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
+        CalendarHashChain calendarHashChain = signatureComponentFactory.createCalendarHashChain(
+                loadTlv(CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY));
+        this.publicationRecord = signatureComponentFactory.createPublicationRecord(
+                new PublicationData(calendarHashChain.getPublicationTime(), calendarHashChain.getOutputHash()), null, null);
+
+        this.extendingService = mock(KSIExtendingService.class);
+        this.publicationsFile = mock(PublicationsFile.class);
+        PublicationsHandler publicationsHandler = mock(PublicationsHandler.class);
+        when(publicationsHandler.getPublicationsFile()).thenReturn(publicationsFile);
+        this.extender = new ExtenderBuilder()
+                .setExtendingService(extendingService)
+                .setPublicationsHandler(publicationsHandler)
+                .buildBulkExtender();
+    }
+
+    @Test
+    public void testSignaturesWithSameAggregationTimeAreExtendedWithOneRequest() throws Exception {
+        when(publicationsFile.getPublicationRecord(any(Date.class))).thenReturn(publicationRecord);
+        Future<ExtensionResponse> response = createResponse();
+        when(extendingService.extend(any(Date.class), any(Date.class))).thenReturn(response);
+        List<KSISignature> signatures = Arrays.asList(loadSignature(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS),
+                loadSignature(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS), loadSignature(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS));
+
+        List<KSISignature> extendedSignatures = extender.extendAll(signatures);
+
+        Assert.assertEquals(extendedSignatures.size(), 3);
+        for (KSISignature extendedSignature : extendedSignatures) {
+            Assert.assertTrue(extendedSignature.isExtended());
+        }
+        Assert.assertNotSame(extendedSignatures.get(0).getCalendarHashChain(), extendedSignatures.get(1).getCalendarHashChain());
+        verify(extendingService, times(1)).extend(signatures.get(0).getAggregationTime(), publicationRecord.getPublicationTime());
+    }
+
+    @Test
+    public void testOnlySignatureWithoutPublicationFails() throws Exception {
+        KSISignature signature = loadSignature(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS);
+        KSISignature signatureWithoutPublication = loadSignature(SIGNATURE_2017_03_14);
+        when(publicationsFile.getPublicationRecord(signature.getAggregationTime())).thenReturn(publicationRecord);
+        Future<ExtensionResponse> response = createResponse();
+        when(extendingService.extend(any(Date.class), any(Date.class))).thenReturn(response);
+
+        List<Future<KSISignature>> futures = extender.asyncExtendAll(Arrays.asList(signatureWithoutPublication, signature));
+
+        try {
+            futures.get(0).getResult();
+            Assert.fail("Extending a signature without publication must fail");
+        } catch (KSIException e) {
+            Assert.assertEquals(e.getMessage(), "No suitable publication yet");
+        }
+        Assert.assertTrue(futures.get(1).getResult().isExtended());
+    }
+
+    @Test
+    public void testRequestsAreLimitedByExtenderConfiguration() throws Exception {
+        ArgumentCaptor<ConfigurationListener> listener = ArgumentCaptor.forClass(ConfigurationListener.class);
+        verify(extendingService).registerExtenderConfigurationListener(listener.capture());
+        ExtenderConfiguration configuration = mock(ExtenderConfiguration.class);
+        when(configuration.getMaximumRequests()).thenReturn(1L);
+        listener.getValue().updated(configuration);
+
+        PublicationRecord laterPublication = new InMemoryKsiSignatureComponentFactory().createPublicationRecord(
+                new PublicationData(new Date(4102444800000L), new DataHash(HashAlgorithm.SHA2_256, new byte[32])), null, null);
+        when(publicationsFile.getPublicationRecord(any(Date.class))).thenReturn(laterPublication);
+        final SettableFuture<ExtensionResponse> firstResponse = new SettableFuture<>();
+        final SettableFuture<ExtensionResponse> secondResponse = new SettableFuture<>();
+        final CountDownLatch secondRequestSent = new CountDownLatch(1);
+        final AtomicLong secondRequestTime = new AtomicLong();
+        when(extendingService.extend(any(Date.class), any(Date.class))).thenReturn(firstResponse).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                secondRequestTime.set(System.nanoTime());
+                secondRequestSent.countDown();
+                return secondResponse;
+            }
+        });
+
+        long start = System.nanoTime();
+        List<Future<KSISignature>> futures = extender.asyncExtendAll(Arrays.asList(loadSignature(SIGNATURE_2014_06_02),
+                loadSignature(SIGNATURE_2017_03_14)));
+        verify(extendingService, times(1)).extend(any(Date.class), any(Date.class));
+
+        firstResponse.setException(new KSIException("Extending failed"));
+        Assert.assertTrue(secondRequestSent.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(secondRequestTime.get() - start >= TimeUnit.SECONDS.toNanos(1),
+                "Second request was sent within the same second as the first one");
+        verify(extendingService, times(2)).extend(any(Date.class), any(Date.class));
+        Assert.assertTrue(futures.get(0).isFinished());
+        Assert.assertFalse(futures.get(1).isFinished());
+    }
+
+    private Future<ExtensionResponse> createResponse() throws Exception {
+        ExtensionResponse response = mock(ExtensionResponse.class);
+        when(response.getCalendarHashChain()).thenReturn(loadTlv(CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY));
+        SettableFuture<ExtensionResponse> future = new SettableFuture<>();
+        future.set(response);
+        return future;
+    }
+}
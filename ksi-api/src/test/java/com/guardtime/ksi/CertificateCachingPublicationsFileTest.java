@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi;
+
+import com.guardtime.ksi.publication.PublicationsFile;
+import com.guardtime.ksi.publication.inmemory.CertificateNotFoundException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.security.cert.Certificate;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CertificateCachingPublicationsFileTest {
+
+    @Test
+    public void testCertificateIsLookedUpOnce() throws Exception {
+        PublicationsFile publicationsFile = mock(PublicationsFile.class);
+        Certificate certificate = mock(Certificate.class);
+        when(publicationsFile.findCertificateById(new byte[]{1, 2, 3})).thenReturn(certificate);
+        CertificateCachingPublicationsFile cachingPublicationsFile = new CertificateCachingPublicationsFile(publicationsFile);
+
+        Assert.assertSame(cachingPublicationsFile.findCertificateById(new byte[]{1, 2, 3}), certificate);
+        Assert.assertSame(cachingPublicationsFile.findCertificateById(new byte[]{1, 2, 3}), certificate);
+        verify(publicationsFile, times(1)).findCertificateById(new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void testMissingCertificateIsNotCached() throws Exception {
+        PublicationsFile publicationsFile = mock(PublicationsFile.class);
+        when(publicationsFile.findCertificateById(new byte[]{1})).thenThrow(new CertificateNotFoundException("Not found"));
+        CertificateCachingPublicationsFile cachingPublicationsFile = new CertificateCachingPublicationsFile(publicationsFile);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cachingPublicationsFile.findCertificateById(new byte[]{1});
+                Assert.fail("Missing certificate must not be found");
+            } catch (CertificateNotFoundException e) {
+                Assert.assertEquals(e.getMessage(), "Not found");
+            }
+        }
+        verify(publicationsFile, times(2)).findCertificateById(new byte[]{1});
+    }
+}
@@ -24,7 +24,11 @@ import com.guardtime.ksi.pdu.ExtensionResponse;
 import com.guardtime.ksi.publication.PublicationData;
 import com.guardtime.ksi.publication.PublicationRecord;
 import com.guardtime.ksi.service.Future;
-import com.guardtime.ksi.tlv.TLVElement;
+import com.guardtime.ksi.service.KSIExtendingService;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.unisignature.CalendarHashChain;
+import com.guardtime.ksi.unisignature.ExtendedCalendarHashChainCache;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureComponentFactory;
 import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureFactory;
@@ -33,6 +37,13 @@ import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static com.guardtime.ksi.CommonTestUtil.loadTlv;
 import static com.guardtime.ksi.Resources.CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY;
 import static com.guardtime.ksi.Resources.CALENDAR_HASH_CHAIN_RIGHT_LINK_DATA_HASH_MISMATCH;
@@ -67,9 +78,114 @@ public class ExtensionFutureTest {
         Assert.assertTrue(signature.isExtended());
     }
 
+    @Test
+    public void testSignatureExtensionCallbackIsNotifiedWhenResponseArrives() throws Exception {
+        SettableFuture<ExtensionResponse> responseFuture = new SettableFuture<>();
+        ExtensionFuture extensionFuture = createExtensionFuture(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS, responseFuture);
+        final AtomicReference<KSISignature> extendedSignature = new AtomicReference<>();
+        final AtomicReference<Thread> callbackThread = new AtomicReference<>();
+        final CountDownLatch notified = new CountDownLatch(1);
+        extensionFuture.addCallback(new FutureCallback<KSISignature>() {
+            public void onSuccess(KSISignature result) {
+                extendedSignature.set(result);
+                callbackThread.set(Thread.currentThread());
+                notified.countDown();
+            }
+
+            public void onFailure(Exception exception) {
+                notified.countDown();
+            }
+        });
+        Assert.assertNull(extendedSignature.get());
+
+        ExtensionResponse extensionResponse = Mockito.mock(ExtensionResponse.class);
+        Mockito.when(extensionResponse.getCalendarHashChain()).thenReturn(loadTlv(CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY));
+        responseFuture.set(extensionResponse);
+        Assert.assertTrue(notified.await(10, TimeUnit.SECONDS));
+        Assert.assertNotNull(extendedSignature.get());
+        Assert.assertTrue(extendedSignature.get().isExtended());
+        Assert.assertSame(extendedSignature.get(), extensionFuture.getResult());
+        Assert.assertNotSame(callbackThread.get(), Thread.currentThread());
+    }
+
+    @Test
+    public void testSignatureExtensionCallbackIsNotifiedWhenExecutorRejectsTask() throws Exception {
+        SettableFuture<ExtensionResponse> responseFuture = new SettableFuture<>();
+        ExtensionFuture extensionFuture = createExtensionFuture(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS, responseFuture);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        extensionFuture.addCallback(new FutureCallback<KSISignature>() {
+            public void onSuccess(KSISignature result) {
+                Assert.fail("Extension should fail");
+            }
+
+            public void onFailure(Exception exception) {
+                failure.set(exception);
+            }
+        }, new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("Executor is full");
+            }
+        });
+
+        responseFuture.set(Mockito.mock(ExtensionResponse.class));
+        Assert.assertTrue(failure.get() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void testExtendedCalendarHashChainIsCached() throws Exception {
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        Future<ExtensionResponse> future = Mockito.mock(Future.class);
+        ExtensionResponse extensionResponse = Mockito.mock(ExtensionResponse.class);
+        Mockito.when(future.getResult()).thenReturn(extensionResponse);
+        Mockito.when(extensionResponse.getCalendarHashChain()).thenReturn(loadTlv(CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY));
+        KSISignature signature = loadSignature(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS);
+        InMemoryKsiSignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
+        PublicationRecord publicationRecord = signatureComponentFactory.createPublicationRecord(
+                new PublicationData("AAAAAA-C2VG3Y-AANAMA-FULJ3X-CMWLPB-F5O2BA-7Y6UE5-VOJKPQ-OV2VFQ-W3SXJM-JIDMWY-4PDBN2"), null, null);
+
+        new ExtensionFuture(future, publicationRecord, signature, signatureComponentFactory, new InMemoryKsiSignatureFactory(
+                ContextAwarePolicyAdapter.createInternalPolicy(), signatureComponentFactory), cache).getResult();
+
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertNotNull(cache.get(signature.getAggregationTime(),
+                signatureComponentFactory.createCalendarHashChain(loadTlv(CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY)).getPublicationTime(),
+                signatureComponentFactory));
+    }
+
+    @Test
+    public void testExtenderUsesCachedCalendarHashChain() throws Exception {
+        InMemoryKsiSignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
+        CalendarHashChain calendarHashChain = signatureComponentFactory.createCalendarHashChain(
+                loadTlv(CALENDAR_HASH_CHAIN_EXTENDED_FROM_SIG_WITH_AGGR_CHAIN_ONLY));
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        cache.put(calendarHashChain, new PublicationData(calendarHashChain.getPublicationTime(),
+                calendarHashChain.getOutputHash()));
+        KSIExtendingService extendingService = Mockito.mock(KSIExtendingService.class);
+        Extender extender = new ExtenderBuilder()
+                .setExtendingService(extendingService)
+                .setPublicationsHandler(Mockito.mock(PublicationsHandler.class))
+                .setExtendedCalendarHashChainCache(cache)
+                .build();
+        PublicationRecord publicationRecord = signatureComponentFactory.createPublicationRecord(
+                new PublicationData(calendarHashChain.getPublicationTime(), calendarHashChain.getOutputHash()), null, null);
+
+        KSISignature signature = extender.asyncExtend(loadSignature(SIGNATURE_ONLY_AGGREGATION_HASH_CHAINS), publicationRecord).getResult();
+
+        Assert.assertTrue(signature.isExtended());
+        Assert.assertEquals(cache.getHitCount(), 1L);
+        Mockito.verify(extendingService, Mockito.never()).extend(Mockito.any(Date.class), Mockito.any(Date.class));
+    }
+
     private ExtensionFuture createExtensionFuture(String signatureFileName, String extendedCalendarChainFileName) throws Exception {
+        Future<ExtensionResponse> future = Mockito.mock(Future.class);
+        ExtensionResponse extensionResponse = Mockito.mock(ExtensionResponse.class);
+        Mockito.when(future.getResult()).thenReturn(extensionResponse);
+        Mockito.when(extensionResponse.getCalendarHashChain()).thenReturn(loadTlv(extendedCalendarChainFileName));
+        return createExtensionFuture(signatureFileName, future);
+    }
+
+    private ExtensionFuture createExtensionFuture(String signatureFileName, Future<ExtensionResponse> future) throws Exception {
         KSISignature signature = loadSignature(signatureFileName);
-        TLVElement calendarChainTlvElement = loadTlv(extendedCalendarChainFileName);
 
         InMemoryKsiSignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
         InMemoryKsiSignatureFactory signatureFactory =
@@ -79,11 +195,6 @@ public class ExtensionFutureTest {
         PublicationRecord publicationRecord = signatureComponentFactory.createPublicationRecord(
                 new PublicationData(publicationString), null, null);
 
-        Future<ExtensionResponse> future = Mockito.mock(Future.class);
-        ExtensionResponse extensionResponse = Mockito.mock(ExtensionResponse.class);
-        Mockito.when(future.getResult()).thenReturn(extensionResponse);
-        Mockito.when(extensionResponse.getCalendarHashChain()).thenReturn(calendarChainTlvElement);
-
         return new ExtensionFuture(future, publicationRecord, signature, signatureComponentFactory, signatureFactory);
     }
 }
\ No newline at end of file
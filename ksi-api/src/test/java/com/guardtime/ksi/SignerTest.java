@@ -23,12 +23,18 @@ package com.guardtime.ksi;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.service.Future;
 import com.guardtime.ksi.service.KSISigningService;
+import com.guardtime.ksi.unisignature.KSISignature;
 
 import org.mockito.Mockito;
+import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.util.concurrent.Executor;
+
 public class SignerTest {
     private KSISigningService mockedSigningService;
 
@@ -85,4 +91,22 @@ public class SignerTest {
         signer.asyncSign(new DataHash(HashAlgorithm.SHA2_256, new byte[32]), 300);
     }
 
+    @Test(expectedExceptions = KSIException.class, expectedExceptionsMessageRegExp = "File not found, when calculating data hash")
+    public void testAsyncSignMissingFile_ReportsErrorInFuture() throws KSIException {
+        FileSigner signer = new SignerBuilder().setSigningService(mockedSigningService).buildFileSigner();
+        Future<KSISignature> future = signer.asyncSign(new File("missing-file.txt"), new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        Assert.assertTrue(future.isFinished());
+        future.getResult();
+    }
+
+    @Test(expectedExceptions = NullPointerException.class, expectedExceptionsMessageRegExp = "Executor can not be null")
+    public void testAsyncSignFileWithoutExecutor() throws KSIException {
+        FileSigner signer = new SignerBuilder().setSigningService(mockedSigningService).buildFileSigner();
+        signer.asyncSign(new File("missing-file.txt"), null);
+    }
+
 }
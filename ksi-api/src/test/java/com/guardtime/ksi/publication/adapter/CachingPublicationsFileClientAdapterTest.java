@@ -20,15 +20,26 @@
 
 package com.guardtime.ksi.publication.adapter;
 
+import com.guardtime.ksi.publication.PublicationsFile;
 import com.guardtime.ksi.publication.inmemory.InMemoryPublicationsFileFactory;
+import org.bouncycastle.util.Store;
+import org.mockito.Mockito;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertSame;
 
 
 public class CachingPublicationsFileClientAdapterTest extends AbstractPublicationsFileClientAdapterTest {
@@ -58,11 +69,50 @@ public class CachingPublicationsFileClientAdapterTest extends AbstractPublicatio
     @Test
     public void testCachingPublicationsFileAdapterUpdatesCache() throws Exception {
         CachingPublicationsFileClientAdapter spy = spy(adapter);
-        doReturn(true).doReturn(false).doReturn(true).when(spy).isCacheUpdateNeeded();
+        doReturn(true).doReturn(false).doReturn(true).when(spy)
+                .isCacheUpdateNeeded(Mockito.any(CachingPublicationsFileClientAdapter.CacheEntry.class));
         spy.getPublicationsFile();
         spy.getPublicationsFile();
         spy.getPublicationsFile();
         verify(mockedPublicationsFileClient, times(2)).getPublicationsFile();
     }
 
+    @Test
+    public void testCachingPublicationsFileAdapterRefreshesCacheInBackgroundBeforeExpiration() throws Exception {
+        RecordingExecutor executor = new RecordingExecutor();
+        CachingPublicationsFileClientAdapter adapter = new CachingPublicationsFileClientAdapter(mockedPublicationsFileClient,
+                new InMemoryPublicationsFileFactory(mockedTrustStore), CACHE_EXPIRATION_TIME, executor);
+        PublicationsFile publicationsFile = adapter.getPublicationsFile();
+        Thread.sleep(CACHE_EXPIRATION_TIME * 3 / 4);
+        assertSame(publicationsFile, adapter.getPublicationsFile());
+        assertSame(publicationsFile, adapter.getPublicationsFile());
+        assertEquals(1, executor.tasks.size());
+        verify(mockedPublicationsFileClient, times(1)).getPublicationsFile();
+
+        executor.tasks.get(0).run();
+        verify(mockedPublicationsFileClient, times(2)).getPublicationsFile();
+        assertFalse(adapter.isCacheUpdateNeeded());
+        assertSame(publicationsFile, adapter.getPublicationsFile());
+        verify(mockedTrustStore, times(1)).isTrusted(Mockito.any(X509Certificate.class), Mockito.any(Store.class));
+    }
+
+    @Test
+    public void testCachingPublicationsFileAdapterVerifiesUnchangedPublicationsFileOncePerExpirationTime() throws Exception {
+        CachingPublicationsFileClientAdapter adapter = new CachingPublicationsFileClientAdapter(mockedPublicationsFileClient,
+                new InMemoryPublicationsFileFactory(mockedTrustStore), 200L, new RecordingExecutor());
+        adapter.getPublicationsFile();
+        Thread.sleep(250L);
+        adapter.getPublicationsFile();
+        verify(mockedPublicationsFileClient, times(2)).getPublicationsFile();
+        verify(mockedTrustStore, times(2)).isTrusted(Mockito.any(X509Certificate.class), Mockito.any(Store.class));
+    }
+
+    private static class RecordingExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    }
+
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.unisignature;
+
+import com.guardtime.ksi.pdu.ExtensionResponse;
+import com.guardtime.ksi.publication.PublicationData;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.KSIExtendingService;
+import com.guardtime.ksi.tlv.TLVStructure;
+import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureComponentFactory;
+import com.guardtime.ksi.unisignature.verifier.VerificationContext;
+import com.guardtime.ksi.unisignature.verifier.VerificationContextBuilder;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Date;
+
+import static com.guardtime.ksi.Resources.EXTENDED_SIGNATURE_2014_06_02;
+import static com.guardtime.ksi.Resources.EXTENDED_SIGNATURE_2017_03_14;
+import static com.guardtime.ksi.Resources.RFC3161_EXTENDED_FOR_PUBLICATIONS_FILE_VERIFICATION;
+import static com.guardtime.ksi.Resources.SIGNATURE_2014_06_02;
+import static com.guardtime.ksi.TestUtil.loadSignature;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ExtendedCalendarHashChainCacheTest {
+
+    private final KSISignatureComponentFactory signatureComponentFactory = new InMemoryKsiSignatureComponentFactory();
+    private CalendarHashChain chain;
+    private CalendarHashChain chain2;
+    private CalendarHashChain chain3;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        this.chain = loadSignature(EXTENDED_SIGNATURE_2014_06_02).getCalendarHashChain();
+        this.chain2 = loadSignature(EXTENDED_SIGNATURE_2017_03_14).getCalendarHashChain();
+        this.chain3 = loadSignature(RFC3161_EXTENDED_FOR_PUBLICATIONS_FILE_VERIFICATION).getCalendarHashChain();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Maximum cache size must be positive")
+    public void testCreateCacheWithInvalidSize() {
+        new ExtendedCalendarHashChainCache(0);
+    }
+
+    @Test
+    public void testGetReturnsNewInstanceOfCachedChain() throws Exception {
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        cache.put(chain, publicationOf(chain));
+
+        CalendarHashChain cached = get(cache, chain);
+        assertNotNull(cached);
+        assertNotSame(cached, chain);
+        assertEquals(((TLVStructure) cached).getRootElement().getEncoded(), ((TLVStructure) chain).getRootElement().getEncoded());
+        assertEquals(cache.getHitCount(), 1L);
+        assertEquals(cache.getMissCount(), 0L);
+    }
+
+    @Test
+    public void testChainNotEndingWithPublicationIsNotCached() throws Exception {
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+
+        assertFalse(cache.put(chain, new PublicationData(chain.getPublicationTime(), chain2.getOutputHash())));
+        assertFalse(cache.put(chain, new PublicationData(chain2.getPublicationTime(), chain.getOutputHash())));
+        assertEquals(cache.size(), 0);
+        assertTrue(cache.put(chain, publicationOf(chain)));
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testMissingChainIsCounted() throws Exception {
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        cache.put(chain, publicationOf(chain));
+
+        assertNull(cache.get(chain.getAggregationTime(), new Date(chain.getPublicationTime().getTime() + 1000L), signatureComponentFactory));
+        assertNull(get(cache, chain2));
+        assertEquals(cache.getHitCount(), 0L);
+        assertEquals(cache.getMissCount(), 2L);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedChainIsEvicted() throws Exception {
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache(2);
+        cache.put(chain, publicationOf(chain));
+        cache.put(chain2, publicationOf(chain2));
+        assertNotNull(get(cache, chain));
+        cache.put(chain3, publicationOf(chain3));
+
+        assertEquals(cache.size(), 2);
+        assertNotNull(get(cache, chain));
+        assertNull(get(cache, chain2));
+        assertNotNull(get(cache, chain3));
+    }
+
+    @Test
+    public void testVerificationContextUsesCachedChain() throws Exception {
+        KSIExtendingService extendingService = Mockito.mock(KSIExtendingService.class);
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        cache.put(chain, publicationOf(chain));
+
+        VerificationContext context = buildContext(extendingService, cache);
+        CalendarHashChain extended = context.getExtendedCalendarHashChain(chain.getPublicationTime());
+
+        assertEquals(extended.getOutputHash(), chain.getOutputHash());
+        verify(extendingService, never()).extend(any(Date.class), any(Date.class));
+    }
+
+    @Test
+    public void testVerificationContextCachesExtendedChain() throws Exception {
+        KSIExtendingService extendingService = mockExtendingService(chain);
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        PublicationData publication = new PublicationData(chain.getPublicationTime(), chain.getOutputHash());
+
+        buildContext(extendingService, cache, publication).getExtendedCalendarHashChain(chain.getPublicationTime());
+        buildContext(extendingService, cache, publication).getExtendedCalendarHashChain(chain.getPublicationTime());
+
+        verify(extendingService).extend(chain.getAggregationTime(), chain.getPublicationTime());
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.getHitCount(), 1L);
+    }
+
+    @Test
+    public void testVerificationContextDoesNotCacheChainNotMatchingPublication() throws Exception {
+        KSIExtendingService extendingService = mockExtendingService(chain);
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        PublicationData publication = new PublicationData(chain.getPublicationTime(), chain2.getOutputHash());
+
+        CalendarHashChain extended = buildContext(extendingService, cache, publication).getExtendedCalendarHashChain(chain.getPublicationTime());
+
+        assertEquals(extended.getOutputHash(), chain.getOutputHash());
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testVerificationContextDoesNotCacheChainWithoutTrustedPublication() throws Exception {
+        KSIExtendingService extendingService = mockExtendingService(chain);
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+
+        buildContext(extendingService, cache).getExtendedCalendarHashChain(chain.getPublicationTime());
+
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testVerificationContextDoesNotCacheChainOfOtherSignature() throws Exception {
+        KSIExtendingService extendingService = mockExtendingService(chain2);
+        ExtendedCalendarHashChainCache cache = new ExtendedCalendarHashChainCache();
+        PublicationData publication = new PublicationData(chain2.getPublicationTime(), chain2.getOutputHash());
+
+        buildContext(extendingService, cache, publication).getExtendedCalendarHashChain(chain2.getPublicationTime());
+
+        assertEquals(cache.size(), 0);
+    }
+
+    private KSIExtendingService mockExtendingService(CalendarHashChain response) throws Exception {
+        KSIExtendingService extendingService = Mockito.mock(KSIExtendingService.class);
+        Future<ExtensionResponse> future = Mockito.mock(Future.class);
+        ExtensionResponse extensionResponse = Mockito.mock(ExtensionResponse.class);
+        when(extendingService.extend(any(Date.class), any(Date.class))).thenReturn(future);
+        when(future.getResult()).thenReturn(extensionResponse);
+        when(extensionResponse.getCalendarHashChain()).thenReturn(((TLVStructure) response).getRootElement());
+        return extendingService;
+    }
+
+    private VerificationContext buildContext(KSIExtendingService extendingService, ExtendedCalendarHashChainCache cache) throws Exception {
+        return buildContext(extendingService, cache, null);
+    }
+
+    private VerificationContext buildContext(KSIExtendingService extendingService, ExtendedCalendarHashChainCache cache,
+                                             PublicationData userPublication) throws Exception {
+        VerificationContext context = new VerificationContextBuilder()
+                .setSignature(loadSignature(SIGNATURE_2014_06_02))
+                .setUserPublication(userPublication)
+                .setExtendingService(extendingService)
+                .setExtendingAllowed(true)
+                .setExtendedCalendarHashChainCache(cache)
+                .build();
+        context.setKsiSignatureComponentFactory(signatureComponentFactory);
+        return context;
+    }
+
+    private PublicationData publicationOf(CalendarHashChain chain) throws Exception {
+        return new PublicationData(chain.getPublicationTime(), chain.getOutputHash());
+    }
+
+    private CalendarHashChain get(ExtendedCalendarHashChainCache cache, CalendarHashChain chain) throws Exception {
+        return cache.get(chain.getAggregationTime(), chain.getPublicationTime(), signatureComponentFactory);
+    }
+}
@@ -79,6 +79,17 @@ public class AggregationHashChainTest {
         Assert.assertEquals(chainHash.getOutputHash().getImprint(), Base16.decode("01C3EE66A55C8E277D4652549AE076EB22596AB9F56BB0775C62E2E02837A7FDFF"));
     }
 
+    @Test
+    public void testCalculateAggregationChainHashIsReusedForSameLevel() throws Exception {
+        InMemoryAggregationHashChain chain = load(SIGNATURE_AGGREGATION_HASH_CHAIN_OK);
+        ChainResult chainHash = chain.calculateOutputHash(0L);
+        Assert.assertSame(chain.calculateOutputHash(0L), chainHash);
+        ChainResult chainHashWithLevel = chain.calculateOutputHash(1L);
+        Assert.assertNotSame(chainHashWithLevel, chainHash);
+        Assert.assertEquals(chainHashWithLevel.getLevel(), 117L);
+        Assert.assertEquals(chain.calculateOutputHash(0L).getOutputHash(), chainHash.getOutputHash());
+    }
+
     @Test
     public void testGetChainIdentityFromAggregationHashChain_Ok() throws Exception {
         InMemoryAggregationHashChain chain = load(SIGNATURE_AGGREGATION_HASH_CHAIN_OK);
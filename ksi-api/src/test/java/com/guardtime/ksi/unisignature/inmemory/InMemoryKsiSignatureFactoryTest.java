@@ -20,12 +20,15 @@
 
 package com.guardtime.ksi.unisignature.inmemory;
 
+import com.guardtime.ksi.PublicationsHandler;
 import com.guardtime.ksi.SignatureVerifier;
 import com.guardtime.ksi.TestUtil;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.hashing.HashAlgorithm;
 import com.guardtime.ksi.publication.PublicationData;
 import com.guardtime.ksi.publication.adapter.PublicationsFileClientAdapter;
+import com.guardtime.ksi.service.KSIExtendingService;
+import com.guardtime.ksi.tlv.TLVStructure;
 import com.guardtime.ksi.service.client.KSIExtenderClient;
 import com.guardtime.ksi.unisignature.AggregationHashChain;
 import com.guardtime.ksi.unisignature.KSISignature;
@@ -33,6 +36,7 @@ import com.guardtime.ksi.unisignature.SignaturePublicationRecord;
 import com.guardtime.ksi.unisignature.verifier.VerificationResult;
 import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicy;
 import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicyAdapter;
+import com.guardtime.ksi.unisignature.verifier.policies.InternalVerificationPolicy;
 import com.guardtime.ksi.util.Base16;
 
 import org.mockito.Mockito;
@@ -44,6 +48,7 @@ import java.io.ByteArrayOutputStream;
 
 import static com.guardtime.ksi.CommonTestUtil.loadTlv;
 import static com.guardtime.ksi.Resources.AGGREGATION_HASH_CHAIN_WITH_HEIGHT_2;
+import static com.guardtime.ksi.Resources.EXTENDED_SIGNATURE_2017_03_14;
 import static com.guardtime.ksi.Resources.AGGREGATION_HASH_CHAIN_WITH_HEIGHT_3;
 import static com.guardtime.ksi.Resources.AGGREGATION_HASH_CHAIN_WITH_LEFT_AND_RIGHT_LINKS_AND_HEIGHT_3;
 import static com.guardtime.ksi.Resources.AGGREGATION_HASH_CHAIN_WITH_LEFT_LINKS_AND_HEIGHT_5;
@@ -82,6 +87,30 @@ public class InMemoryKsiSignatureFactoryTest {
         Assert.assertNotNull(signature);
     }
 
+    @Test
+    public void testCreateSignatureWithInternalPolicyDoesNotGetPublicationsFile() throws Exception {
+        PublicationsHandler publicationsHandler = Mockito.mock(PublicationsHandler.class);
+        ContextAwarePolicy internalPolicy = ContextAwarePolicyAdapter.createPolicy(new InternalVerificationPolicy(),
+                publicationsHandler, Mockito.mock(KSIExtendingService.class));
+        InMemoryKsiSignatureFactory factory = new InMemoryKsiSignatureFactory(internalPolicy, signatureComponentFactory);
+
+        Assert.assertNotNull(factory.createSignature(TestUtil.loadTlv(SIGNATURE_2017_03_14), null));
+        Mockito.verify(publicationsHandler, Mockito.never()).getPublicationsFile();
+    }
+
+    @Test
+    public void testCreateSignatureFromComponentsReusesComponents() throws Exception {
+        KSISignature signature = signatureFactory.createSignature(TestUtil.loadTlv(EXTENDED_SIGNATURE_2017_03_14), null);
+
+        KSISignature copy = signatureFactory.createSignature(asList(signature.getAggregationHashChains()),
+                signature.getCalendarHashChain(), null, signature.getPublicationRecord(), null);
+
+        Assert.assertSame(copy.getAggregationHashChains()[0], signature.getAggregationHashChains()[0]);
+        Assert.assertSame(copy.getCalendarHashChain(), signature.getCalendarHashChain());
+        Assert.assertSame(copy.getPublicationRecord(), signature.getPublicationRecord());
+        Assert.assertEquals(((TLVStructure) copy).getRootElement().getEncoded(), ((TLVStructure) signature).getRootElement().getEncoded());
+    }
+
     @Test
     public void testCreateSignatureWithAggregationHashChainWithLeftLinksOnly_Ok() throws Exception {
         createSignatureWithAggregationChainAndVerify(
@@ -140,6 +169,47 @@ public class InMemoryKsiSignatureFactoryTest {
         signatureFactory.createSignature(signature, chain, null);
     }
 
+    @Test
+    public void testCreateLeafSignature_Ok() throws Exception {
+        createLeafSignatureAndVerify(
+                AGGREGATION_HASH_CHAIN_WITH_LEFT_AND_RIGHT_LINKS_AND_HEIGHT_3,
+                SIGNATURE_WITH_LEVEL_CORRECTION_3,
+                "018D982C6911831201C5CF15E937514686A2169E2AD57BA36FD92CBEBD99A67E34");
+    }
+
+    @Test
+    public void testCreateLeafSignatureWithAggregationHashChainWithLeftLinksAndMetadata_Ok() throws Exception {
+        createLeafSignatureAndVerify(
+                AGGREGATION_HASH_CHAIN_WITH_LEFT_LINKS_AND_HEIGHT_5,
+                SIGNATURE_WITH_LEVEL_CORRECTION_5,
+                "04000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000");
+    }
+
+    @Test
+    public void testCreateLeafSignatureWithAggregationHashChainWithHeightLessThanLevelCorrection_Ok() throws Exception {
+        createLeafSignatureAndVerify(
+                AGGREGATION_HASH_CHAIN_WITH_LEFT_LINK_AND_HEIGHT_1,
+                SIGNATURE_WITH_LEVEL_CORRECTION_14,
+                "0111A700B0C8066C47ECBA05ED37BC14DCADB238552D86C659342D1D7E87B8772D");
+    }
+
+    @Test(expectedExceptions = AggregationHashChainPrependingException.class,
+            expectedExceptionsMessageRegExp = "The aggregation hash chain cannot be added as lowest level chain. " +
+                    "Its output hash .* does not match base signature input hash .*")
+    public void testCreateLeafSignatureWithInvalidOutputHash_throwsKSIException() throws Exception {
+        AggregationHashChain chain = new InMemoryAggregationHashChain(loadTlv(AGGREGATION_HASH_CHAIN_WITH_HEIGHT_2));
+        KSISignature signature = TestUtil.loadSignature(SIGNATURE_WITH_LEVEL_CORRECTION_3);
+        signatureFactory.createLeafSignatureFactory(signature).createSignature(chain, null);
+    }
+
+    @Test(expectedExceptions = AggregationHashChainPrependingException.class,
+            expectedExceptionsMessageRegExp = "The aggregation hash chain input hash .* does not match the original input hash .*")
+    public void testCreateLeafSignatureWithInvalidInputHash_throwsKSIException() throws Exception {
+        AggregationHashChain chain = new InMemoryAggregationHashChain(loadTlv(AGGREGATION_HASH_CHAIN_WITH_HEIGHT_3));
+        KSISignature signature = TestUtil.loadSignature(SIGNATURE_WITH_LEVEL_CORRECTION_3);
+        signatureFactory.createLeafSignatureFactory(signature).createSignature(chain, new DataHash(HashAlgorithm.SHA2_256, new byte[32]));
+    }
+
     @Test(expectedExceptions = InvalidSignatureContentException.class, expectedExceptionsMessageRegExp = "Signature .* is invalid: GEN_04.*Wrong input hash algorithm.*")
     public void testCreateSignatureWithInvalidInputHashAlgorithm_ThrowsInvalidSignatureContentException() throws Exception {
         signatureFactory.createSignature(TestUtil.loadTlv(SIGNATURE_2017_03_14), new DataHash(HashAlgorithm.SHA1, new byte[20]));
@@ -172,4 +242,24 @@ public class InMemoryKsiSignatureFactoryTest {
         VerificationResult result = verifier.verify(newSignature, inputHash, this.policy);
         Assert.assertTrue(result.isOk());
     }
+
+    private void createLeafSignatureAndVerify(String chainFilename, String signatureFilename, String inputHashImprint) throws Exception {
+        AggregationHashChain chain = new InMemoryAggregationHashChain(loadTlv(chainFilename));
+        KSISignature signature = TestUtil.loadSignature(signatureFilename);
+        DataHash inputHash = new DataHash(Base16.decode(inputHashImprint));
+        LeafSignatureFactory leafSignatureFactory = signatureFactory.createLeafSignatureFactory(signature);
+
+        KSISignature leafSignature = leafSignatureFactory.createSignature(chain, inputHash);
+        KSISignature expectedSignature = signatureFactory.createSignature(signature, chain, inputHash);
+
+        ByteArrayOutputStream leafSignatureBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream expectedSignatureBytes = new ByteArrayOutputStream();
+        leafSignature.writeTo(leafSignatureBytes);
+        expectedSignature.writeTo(expectedSignatureBytes);
+        Assert.assertEquals(leafSignatureBytes.toByteArray(), expectedSignatureBytes.toByteArray());
+        Assert.assertEquals(leafSignature.getInputHash(), inputHash);
+        Assert.assertEquals(leafSignature.getAggregationHashChainIdentity().length, expectedSignature.getAggregationHashChainIdentity().length);
+        VerificationResult result = verifier.verify(leafSignature, inputHash, this.policy);
+        Assert.assertTrue(result.isOk());
+    }
 }
@@ -21,6 +21,7 @@
 package com.guardtime.ksi.unisignature.verifier;
 
 import com.guardtime.ksi.TestUtil;
+import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.unisignature.verifier.policies.Policy;
 import com.guardtime.ksi.unisignature.verifier.rules.Rule;
 
@@ -96,6 +97,21 @@ public class SignatureVerifierTest {
         Assert.assertEquals(result.getPolicyVerificationResults().get(0).getRuleResults().get(mockedRule2).getResultCode(), VerificationResultCode.NA);
     }
 
+    @Test
+    public void testPublicationsFileFailureIsThrownAsKSIException() throws Exception {
+        KSIException failure = new KSIException("Publications file download failed");
+        Rule mockedRule = Mockito.mock(Rule.class);
+        Mockito.when(mockedRule.verify(Mockito.any(VerificationContext.class)))
+                .thenThrow(new PublicationsFileNotAvailableException(failure));
+        Mockito.when(mockedPolicy.getRules()).thenReturn(toList(mockedRule));
+        try {
+            verifier.verify(context, mockedPolicy);
+            Assert.fail("Publications file failure wasn't thrown");
+        } catch (KSIException e) {
+            Assert.assertSame(e, failure);
+        }
+    }
+
     @Test
     public void testFallbackPolicy() throws Exception {
         Rule mockedRule = Mockito.mock(Rule.class);
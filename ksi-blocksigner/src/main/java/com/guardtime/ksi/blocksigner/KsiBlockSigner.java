@@ -30,20 +30,24 @@ import com.guardtime.ksi.pdu.PduIdentifierProvider;
 import com.guardtime.ksi.service.Future;
 import com.guardtime.ksi.service.KSISigningClientServiceAdapter;
 import com.guardtime.ksi.service.KSISigningService;
+import com.guardtime.ksi.service.SettableFuture;
 import com.guardtime.ksi.service.client.KSISigningClient;
-import com.guardtime.ksi.tree.AggregationHashChainBuilder;
-import com.guardtime.ksi.tree.HashTreeBuilder;
-import com.guardtime.ksi.tree.ImprintNode;
+import com.guardtime.ksi.tree.ConcurrentHashTreeBuilder;
 import com.guardtime.ksi.tree.TreeNode;
+import com.guardtime.ksi.unisignature.AggregationHashChain;
 import com.guardtime.ksi.unisignature.KSISignature;
 import com.guardtime.ksi.unisignature.KSISignatureFactory;
 import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureFactory;
+import com.guardtime.ksi.unisignature.inmemory.LeafSignatureFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.guardtime.ksi.util.Util.notNull;
 
@@ -58,7 +62,10 @@ import static com.guardtime.ksi.util.Util.notNull;
  * <p>
  * Method {@link KsiBlockSigner#sign()} must be called to get the final group of
  * signatures.
- * The signatures are returned the same order as the data hashes were added to block signer.
+ * The signatures are returned the same order as the data hashes were added to block signer (see below for block
+ * signers with a concurrency level greater than one).
+ * For large blocks, methods {@link KsiBlockSigner#sign(BlockSignatureListener)} and
+ * {@link KsiBlockSigner#sign(OutputStream)} pass the signatures on one by one instead of returning them all at once.
  * </p>
  * <p>
  * Current implementation returns one signature per input hash.
@@ -84,7 +91,14 @@ import static com.guardtime.ksi.util.Util.notNull;
  * List<KSISignature> signatures = signer.sign();
  * }
  * </pre>
- * This class isn't thread safe.
+ * <p>
+ * The hash tree is kept in a compact form (see {@link com.guardtime.ksi.tree.CompactHashTreeBuilder}), so blocks of
+ * millions of data hashes take only a few bytes per data hash in addition to the hashes themselves.
+ * </p>
+ * This class isn't thread safe, unless it is created with a concurrency level greater than one (see {@link
+ * KsiBlockSignerBuilder#setConcurrencyLevel(int)}). Then the data hashes can be added by multiple threads at the same
+ * time, the signatures of the data hashes added by one thread are returned in the order they were added and signing
+ * must not be started before all the adding threads have returned.
  */
 public class KsiBlockSigner implements BlockSigner<List<KSISignature>> {
 
@@ -92,14 +106,14 @@ public class KsiBlockSigner implements BlockSigner<List<KSISignature>> {
 
     protected static final int MAXIMUM_LEVEL = 255;
 
-    private final List<ImprintNode> leafs = new LinkedList<>();
-    private final HashTreeBuilder treeBuilder;
+    private final ConcurrentHashTreeBuilder treeBuilder;
+    private final Map<Long, SettableFuture<KSISignature>> futures = new ConcurrentHashMap<>();
 
     private final KSISigningService signingService;
 
-    private KSISignatureFactory signatureFactory = new InMemoryKsiSignatureFactory();
-    private HashAlgorithm algorithm = HashAlgorithm.SHA2_256;
-    private int maxTreeHeight;
+    private final KSISignatureFactory signatureFactory;
+    private final HashAlgorithm algorithm;
+    private final int maxTreeHeight;
 
     /**
      * Creates a new instance of {@link KsiBlockSigner} with given {@link KSISigningService}. Default hash algorithm is
@@ -118,13 +132,7 @@ public class KsiBlockSigner implements BlockSigner<List<KSISignature>> {
      * @param algorithm hash algorithm to be used.
      */
     public KsiBlockSigner(KSISigningService signingService, HashAlgorithm algorithm) {
-        notNull(signingService, "KSI signing service");
-        if (algorithm != null) {
-            this.algorithm = algorithm;
-        }
-        this.signingService = signingService;
-        this.treeBuilder = new HashTreeBuilder(this.algorithm);
-        this.maxTreeHeight = MAXIMUM_LEVEL;
+        this(signingService, new InMemoryKsiSignatureFactory(), algorithm);
     }
 
     /**
@@ -171,14 +179,22 @@ public class KsiBlockSigner implements BlockSigner<List<KSISignature>> {
      * @param algorithm hash algorithm to be used.
      */
     public KsiBlockSigner(KSISigningService signingService, KSISignatureFactory signatureFactory, HashAlgorithm algorithm) {
-        this(signingService, algorithm);
-        notNull(signatureFactory, "KSI signature factory");
-        this.signatureFactory = signatureFactory;
+        this(signingService, signatureFactory, algorithm, MAXIMUM_LEVEL);
     }
 
     KsiBlockSigner(KSISigningService signingService, KSISignatureFactory signatureFactory, HashAlgorithm algorithm, int maxTreeHeight) {
-        this(signingService, signatureFactory, algorithm);
+        this(signingService, signatureFactory, algorithm, maxTreeHeight, 1);
+    }
+
+    KsiBlockSigner(KSISigningService signingService, KSISignatureFactory signatureFactory, HashAlgorithm algorithm,
+                   int maxTreeHeight, int concurrencyLevel) {
+        notNull(signingService, "KSI signing service");
+        notNull(signatureFactory, "KSI signature factory");
+        this.signingService = signingService;
+        this.signatureFactory = signatureFactory;
+        this.algorithm = algorithm != null ? algorithm : HashAlgorithm.SHA2_256;
         this.maxTreeHeight = maxTreeHeight;
+        this.treeBuilder = new ConcurrentHashTreeBuilder(this.algorithm, concurrencyLevel);
     }
 
     @Deprecated
@@ -232,49 +248,159 @@ public class KsiBlockSigner implements BlockSigner<List<KSISignature>> {
      * @throws KSIException
      */
     public boolean add(DataHash dataHash, long level, IdentityMetadata metadata) throws KSIException {
+        return add(dataHash, level, metadata, null);
+    }
+
+    /**
+     * Adds a hash (with specific level) and a signature metadata to the {@link KsiBlockSigner}. The future is
+     * completed with the signature of the data hash when the block is signed, or with the failure of signing.
+     */
+    boolean add(DataHash dataHash, long level, IdentityMetadata metadata, SettableFuture<KSISignature> future) throws KSIException {
         notNull(dataHash, "DataHash");
         dataHash.getAlgorithm().checkExpiration();
-        if (level < 0 || level > MAXIMUM_LEVEL) {
-            throw new IllegalStateException("Level must be between 0 and 255");
-        }
+        checkLevel(level);
         logger.debug("New input hash '{}' with level '{}' added to block signer.", dataHash, level);
 
-        ImprintNode leaf = new ImprintNode(dataHash, level);
-        if (metadata != null) {
-            if (treeBuilder.calculateHeight(leaf, metadata) > maxTreeHeight) {
-                return false;
-            }
-            treeBuilder.add(leaf, metadata);
-        } else {
-            if (treeBuilder.calculateHeight(leaf) > maxTreeHeight) {
-                return false;
-            }
-            treeBuilder.add(leaf);
+        long leaf = treeBuilder.add(dataHash, level, metadata, maxTreeHeight);
+        if (leaf == ConcurrentHashTreeBuilder.NO_LEAF) {
+            return false;
+        }
+        if (future != null) {
+            futures.put(leaf, future);
         }
-        leafs.add(leaf);
         return true;
     }
 
     /**
-     * Creates a block of multiple signatures.
+     * Checks that a data hash with the given level (and optional metadata) fits into an empty block, e.g. that it can
+     * be added to some block at all.
+     *
+     * @throws KSIException when the data hash exceeds the maximum tree height even in an empty block.
+     */
+    void checkFitsEmptyBlock(long level, IdentityMetadata metadata) throws KSIException {
+        checkLevel(level);
+        if (treeBuilder.calculateMinimumHeight(level, metadata) > maxTreeHeight) {
+            throw new KSIException("Data hash with level " + level + " exceeds the maximum tree height");
+        }
+    }
+
+    private void checkLevel(long level) {
+        if (level < 0 || level > MAXIMUM_LEVEL) {
+            throw new IllegalStateException("Level must be between 0 and 255");
+        }
+    }
+
+    /**
+     * Creates a block of multiple signatures. The signature of the root node is verified by the signature factory,
+     * the signatures of the leaves share its components and only their own aggregation hash chains are calculated
+     * when the default {@link InMemoryKsiSignatureFactory} is used.
+     * <p>
+     * The signatures are in the same order as the data hashes were added. With a concurrency level greater than one
+     * the signatures are ordered subtree by subtree instead: the signatures of the data hashes added by one thread are
+     * in the order they were added, but the signatures of the data hashes added by different threads are not in the
+     * order of adding.
+     * </p>
      *
      * @return Multiple signatures, according to number of input hashes.
      *
      * @throws KSIException
      */
     public List<KSISignature> sign() throws KSIException {
+        final List<KSISignature> signatures = new LinkedList<>();
+        sign(new BlockSignatureListener() {
+            public void signatureCreated(KSISignature signature) {
+                signatures.add(signature);
+            }
+        });
+        return signatures;
+    }
+
+    /**
+     * Creates a block of multiple signatures and passes every signature to the listener as soon as it is created,
+     * in the order the signatures are returned by {@link #sign()}. The signatures are not kept by the block signer after they have
+     * been passed to the listener, so the signatures of a large block do not have to fit into the memory at once.
+     *
+     * @param listener listener receiving the signatures, not null.
+     *
+     * @throws KSIException
+     */
+    public void sign(BlockSignatureListener listener) throws KSIException {
+        notNull(listener, "Block signature listener");
+        try {
+            signLeafs(listener);
+        } catch (KSIException | RuntimeException e) {
+            failLeafs(e);
+            throw e;
+        }
+    }
+
+    private void signLeafs(BlockSignatureListener listener) throws KSIException {
         TreeNode rootNode = treeBuilder.build();
         logger.debug("Root node calculated. {}(level={})", new DataHash(rootNode.getValue()), rootNode.getLevel());
         KSISignature rootNodeSignature = signRootNode(rootNode);
-        if (leafs.size() == 1 && !leafs.get(0).hasMetadata()) {
-            return Collections.singletonList(rootNodeSignature);
+        long leaf = treeBuilder.firstLeaf();
+        if (treeBuilder.nextLeaf(leaf) == ConcurrentHashTreeBuilder.NO_LEAF && !treeBuilder.hasMetadata(leaf)) {
+            signatureCreated(leaf, rootNodeSignature, listener);
+            return;
         }
-        List<KSISignature> signatures = new LinkedList<>();
-        AggregationHashChainBuilder chainBuilder = new AggregationHashChainBuilder();
-        for (ImprintNode leaf : leafs) {
-            signatures.add(signatureFactory.createSignature(rootNodeSignature, chainBuilder.build(leaf), new DataHash(leaf.getValue())));
+        LeafSignatureFactory leafSignatureFactory = null;
+        if (signatureFactory instanceof InMemoryKsiSignatureFactory) {
+            leafSignatureFactory = ((InMemoryKsiSignatureFactory) signatureFactory).createLeafSignatureFactory(rootNodeSignature);
         }
-        return signatures;
+        for (; leaf != ConcurrentHashTreeBuilder.NO_LEAF; leaf = treeBuilder.nextLeaf(leaf)) {
+            AggregationHashChain chain = treeBuilder.getAggregationHashChain(leaf);
+            DataHash inputHash = treeBuilder.getInputHash(leaf);
+            KSISignature signature;
+            if (leafSignatureFactory != null) {
+                signature = leafSignatureFactory.createSignature(chain, inputHash);
+            } else {
+                signature = signatureFactory.createSignature(rootNodeSignature, chain, inputHash);
+            }
+            signatureCreated(leaf, signature, listener);
+        }
+    }
+
+    private void signatureCreated(long leaf, KSISignature signature, BlockSignatureListener listener) throws KSIException {
+        SettableFuture<KSISignature> future = futures.remove(leaf);
+        if (future != null) {
+            future.set(signature);
+        }
+        listener.signatureCreated(signature);
+    }
+
+    /**
+     * Completes the futures of the leaves which did not get a signature.
+     */
+    void failLeafs(Exception e) {
+        for (Iterator<SettableFuture<KSISignature>> it = futures.values().iterator(); it.hasNext(); ) {
+            it.next().setException(e);
+            it.remove();
+        }
+    }
+
+    /**
+     * Creates a block of multiple signatures and writes every signature to the output stream as soon as it is
+     * created, in the order the signatures are returned by {@link #sign()}. The signatures are written one after another in their
+     * TLV encoding and can be read back one by one, e.g. using {@link com.guardtime.ksi.tlv.TLVInputStream}.
+     *
+     * @param output output stream the signatures are written to, not null. The stream is not closed.
+     *
+     * @throws KSIException
+     */
+    public void sign(final OutputStream output) throws KSIException {
+        notNull(output, "Output stream");
+        sign(new BlockSignatureListener() {
+            public void signatureCreated(KSISignature signature) throws KSIException {
+                signature.writeTo(output);
+            }
+        });
+    }
+
+    /**
+     * @return True, if no data hashes have been added.
+     */
+    boolean isEmpty() {
+        return treeBuilder.size() == 0;
     }
 
     private KSISignature signRootNode(TreeNode rootNode) throws KSIException {
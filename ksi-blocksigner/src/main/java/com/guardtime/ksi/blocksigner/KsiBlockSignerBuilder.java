@@ -45,6 +45,7 @@ public class KsiBlockSignerBuilder {
     private HashAlgorithm algorithm = HashAlgorithm.SHA2_256;
     private KSISignatureFactory signatureFactory = new InMemoryKsiSignatureFactory();
     private int maxTreeHeight = KsiBlockSigner.MAXIMUM_LEVEL;
+    private int concurrencyLevel = 1;
 
     public KsiBlockSignerBuilder setKsiSigningClient(KSISigningClient signingClient) {
         notNull(signingClient, "Signing client");
@@ -76,6 +77,19 @@ public class KsiBlockSignerBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of subtrees the data hashes are distributed to. With concurrency level greater than one the
+     * data hashes can be added by multiple threads at the same time, each thread building its own subtree. Default
+     * value is 1.
+     */
+    public KsiBlockSignerBuilder setConcurrencyLevel(int concurrencyLevel) {
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+        this.concurrencyLevel = concurrencyLevel;
+        return this;
+    }
+
     @Deprecated
     public KsiBlockSignerBuilder setPduVersion(PduVersion pduVersion) {
         logger.warn("KsiBlockSignerBuilder.setPduVersion(PduVersion) is deprecated and has no affect. PDU version is determined " +
@@ -90,6 +104,6 @@ public class KsiBlockSignerBuilder {
     }
 
     public KsiBlockSigner build() {
-        return new KsiBlockSigner(signingService, signatureFactory, algorithm, maxTreeHeight);
+        return new KsiBlockSigner(signingService, signatureFactory, algorithm, maxTreeHeight, concurrencyLevel);
     }
 }
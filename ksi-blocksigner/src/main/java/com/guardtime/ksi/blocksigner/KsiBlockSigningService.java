@@ -0,0 +1,365 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.blocksigner;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.pdu.AggregatorConfiguration;
+import com.guardtime.ksi.service.ConfigurationListener;
+import com.guardtime.ksi.service.ListenableFuture;
+import com.guardtime.ksi.service.KSISigningService;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.unisignature.KSISignature;
+import com.guardtime.ksi.unisignature.KSISignatureFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.guardtime.ksi.util.Util.notNull;
+
+/**
+ * Long-lived block signing service which signs the added data hashes in blocks.
+ * <p>
+ * The data hashes are aggregated into the hash tree of the current block. A block is sealed and its root hash is sent
+ * to the signing service when the block reaches the maximum number of data hashes, when adding a data hash would exceed
+ * the maximum tree height or when the block interval ends. Block intervals are aligned to the multiples of the
+ * interval, the interval is the aggregation period of the aggregator unless it is configured explicitly. The next block
+ * is filled while the previous blocks are being signed.
+ * </p>
+ * <p>
+ * Every data hash gets its own future, which is completed with the signature of the data hash when the block is signed.
+ * </p>
+ * <p>
+ * Data hashes can be added by multiple threads at the same time. The hash tree of a block is split into a number of
+ * subtrees (see {@link KsiBlockSigningServiceBuilder#setConcurrencyLevel(int)}), so the threads build their subtrees
+ * without waiting for each other and the subtrees are merged when the block is sealed.
+ * </p>
+ * <p> The following sample shows how to use {@link KsiBlockSigningService} class:
+ * </p>
+ * <pre>
+ * {@code
+ *
+ * KsiBlockSigningService service = new KsiBlockSigningServiceBuilder()
+ *     .setKsiSigningService(signingService)
+ *     .setMaxBlockSize(10000)
+ *     .build();
+ *
+ * ListenableFuture<KSISignature> future = service.sign(dataHash);
+ * future.addCallback(callback);
+ *
+ * // signs the current block and stops the service
+ * service.close();
+ * }
+ * </pre>
+ * This class is thread safe.
+ */
+public class KsiBlockSigningService implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(KsiBlockSigningService.class);
+
+    static final long DEFAULT_BLOCK_INTERVAL = 1000L;
+
+    private static final BlockSignatureListener IGNORING_LISTENER = new BlockSignatureListener() {
+        public void signatureCreated(KSISignature signature) {
+        }
+    };
+
+    private final KSISigningService signingService;
+    private final KSISignatureFactory signatureFactory;
+    private final HashAlgorithm algorithm;
+    private final int maxTreeHeight;
+    private final int maxBlockSize;
+    private final long blockInterval;
+    private final int concurrencyLevel;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Long aggregationPeriod;
+    private volatile Long maximumLevel;
+
+    /**
+     * Data hashes are added to the current block while holding the read lock, so multiple threads can add them at the
+     * same time. The current block is replaced while holding the write lock, which waits for the ongoing additions.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Block block;
+    private volatile boolean closed;
+
+    KsiBlockSigningService(KSISigningService signingService, KSISignatureFactory signatureFactory, HashAlgorithm algorithm,
+                           int maxTreeHeight, int maxBlockSize, long blockInterval, int concurrencyLevel, Executor executor) {
+        this.signingService = signingService;
+        this.signatureFactory = signatureFactory;
+        this.algorithm = algorithm;
+        this.maxTreeHeight = maxTreeHeight;
+        this.maxBlockSize = maxBlockSize;
+        this.blockInterval = blockInterval;
+        this.concurrencyLevel = concurrencyLevel;
+        this.executor = executor;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ksi-block-signing-service-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        signingService.registerAggregatorConfigurationListener(new ConfigurationListener<AggregatorConfiguration>() {
+            public void updated(AggregatorConfiguration configuration) {
+                if (closed) {
+                    return;
+                }
+                aggregationPeriod = configuration.getAggregationPeriod();
+                maximumLevel = configuration.getMaximumLevel();
+            }
+
+            public void updateFailed(Throwable reason) {
+                if (!closed) {
+                    logger.debug("Aggregator configuration update failed, using the current block settings", reason);
+                }
+            }
+        });
+        requestAggregatorConfiguration();
+        this.block = createBlock();
+    }
+
+    /**
+     * Asks the signing service for the aggregator configuration once, the response is delivered to the listener
+     * registered above. The blocks use the configured or the default settings until the response arrives.
+     */
+    private void requestAggregatorConfiguration() {
+        try {
+            signingService.getAggregationConfiguration();
+        } catch (RuntimeException e) {
+            logger.debug("Requesting the aggregator configuration failed, using the current block settings", e);
+        }
+    }
+
+    /**
+     * Adds a data hash to the current block.
+     *
+     * @param dataHash data hash to be signed, not null.
+     *
+     * @return Future of the signature of the data hash.
+     *
+     * @throws KSIException when the data hash can not be added.
+     */
+    public ListenableFuture<KSISignature> sign(DataHash dataHash) throws KSIException {
+        return sign(dataHash, 0L, null);
+    }
+
+    /**
+     * Adds a data hash and a signature metadata to the current block.
+     *
+     * @param dataHash data hash to be signed, not null.
+     * @param metadata metadata to be added.
+     *
+     * @return Future of the signature of the data hash.
+     *
+     * @throws KSIException when the data hash can not be added.
+     */
+    public ListenableFuture<KSISignature> sign(DataHash dataHash, IdentityMetadata metadata) throws KSIException {
+        return sign(dataHash, 0L, metadata);
+    }
+
+    /**
+     * Adds a data hash (with specific level) and a signature metadata to the current block.
+     *
+     * @param dataHash data hash to be signed, not null.
+     * @param level    hash level.
+     * @param metadata metadata to be added.
+     *
+     * @return Future of the signature of the data hash.
+     *
+     * @throws KSIException          when the data hash can not be added.
+     * @throws IllegalStateException when the service has been closed.
+     */
+    public ListenableFuture<KSISignature> sign(DataHash dataHash, long level, IdentityMetadata metadata) throws KSIException {
+        notNull(dataHash, "DataHash");
+        SettableFuture<KSISignature> future = new SettableFuture<>();
+        while (true) {
+            Block current;
+            int position;
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("Block signing service is closed");
+                }
+                current = block;
+                current.signer.checkFitsEmptyBlock(level, metadata);
+                position = current.add(dataHash, level, metadata, future);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (position == 0) {
+                logger.debug("Block is full, sealing the block");
+                seal(current);
+                continue;
+            }
+            if (position == maxBlockSize) {
+                logger.debug("Maximum block size reached, sealing the block of {} hashes", position);
+                seal(current);
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Signs the current block and stops accepting new data hashes. Does not wait for the signatures of the block and
+     * does not close the signing service. Aggregator configuration updates received after closing are ignored.
+     */
+    public void close() {
+        Block sealed;
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sealed = block;
+            block = null;
+            sealed.cancelTimer();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduler.shutdown();
+        sign(sealed);
+    }
+
+    /**
+     * Replaces the given block with a new one, unless it has already been replaced, and signs it in the executor.
+     */
+    private void seal(Block sealed) {
+        lock.writeLock().lock();
+        try {
+            if (block != sealed) {
+                return;
+            }
+            block = createBlock();
+            sealed.cancelTimer();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sign(sealed);
+    }
+
+    private void sign(final Block sealed) {
+        if (sealed.signer.isEmpty()) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    sealed.sign();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Executor rejected signing the block", e);
+            sealed.signer.failLeafs(new KSIException("Signing the block was rejected by the executor", e));
+        }
+    }
+
+    private Block createBlock() {
+        return new Block(new KsiBlockSigner(signingService, signatureFactory, algorithm, getMaxTreeHeight(), concurrencyLevel));
+    }
+
+    private int getMaxTreeHeight() {
+        Long level = maximumLevel;
+        return level != null && level < maxTreeHeight ? level.intValue() : maxTreeHeight;
+    }
+
+    private long getBlockInterval() {
+        if (blockInterval > 0) {
+            return blockInterval;
+        }
+        Long period = aggregationPeriod;
+        return period != null && period > 0 ? period : DEFAULT_BLOCK_INTERVAL;
+    }
+
+    /**
+     * Block of data hashes. The futures of the data hashes are completed by the block signer.
+     */
+    private class Block {
+
+        private final KsiBlockSigner signer;
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean timerStarted = new AtomicBoolean();
+        private ScheduledFuture<?> timer;
+
+        Block(KsiBlockSigner signer) {
+            this.signer = signer;
+        }
+
+        /**
+         * Adds the data hash to the block. Must be called while holding the read lock and only with data hashes that
+         * fit into an empty block. The first added data hash starts the timer which seals the block at the end of the
+         * block interval.
+         *
+         * @return Position of the data hash in the block, or 0 if the block has no room for the data hash.
+         */
+        int add(DataHash dataHash, long level, IdentityMetadata metadata, SettableFuture<KSISignature> future) throws KSIException {
+            int position = size.incrementAndGet();
+            if (position > maxBlockSize || !signer.add(dataHash, level, metadata, future)) {
+                return 0;
+            }
+            if (timerStarted.compareAndSet(false, true)) {
+                long interval = getBlockInterval();
+                long now = System.currentTimeMillis();
+                long delay = (now / interval + 1) * interval - now;
+                timer = scheduler.schedule(new Runnable() {
+                    public void run() {
+                        logger.debug("Block interval ended, sealing the block");
+                        seal(Block.this);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            return position;
+        }
+
+        /**
+         * Must be called while holding the write lock.
+         */
+        void cancelTimer() {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+
+        void sign() {
+            try {
+                signer.sign(IGNORING_LISTENER);
+            } catch (Exception e) {
+                logger.warn("Signing the block failed", e);
+            }
+        }
+    }
+}
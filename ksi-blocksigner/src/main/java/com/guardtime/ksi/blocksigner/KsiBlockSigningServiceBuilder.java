@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.blocksigner;
+
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.service.KSISigningClientServiceAdapter;
+import com.guardtime.ksi.service.KSISigningService;
+import com.guardtime.ksi.service.client.KSISigningClient;
+import com.guardtime.ksi.unisignature.KSISignatureFactory;
+import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureFactory;
+
+import java.util.concurrent.Executor;
+
+import static com.guardtime.ksi.util.Util.notNull;
+
+/**
+ * Provides functionality to obtain {@link KsiBlockSigningService} object(s), offering multiple
+ * methods to configure {@link KsiBlockSigningService} object.
+ */
+public class KsiBlockSigningServiceBuilder {
+
+    static final int DEFAULT_MAX_BLOCK_SIZE = 1 << 16;
+
+    private KSISigningService signingService;
+    private HashAlgorithm algorithm = HashAlgorithm.SHA2_256;
+    private KSISignatureFactory signatureFactory = new InMemoryKsiSignatureFactory();
+    private int maxTreeHeight = KsiBlockSigner.MAXIMUM_LEVEL;
+    private int maxBlockSize = DEFAULT_MAX_BLOCK_SIZE;
+    private long blockInterval;
+    private int concurrencyLevel = Runtime.getRuntime().availableProcessors();
+    private Executor executor;
+
+    public KsiBlockSigningServiceBuilder setKsiSigningClient(KSISigningClient signingClient) {
+        notNull(signingClient, "Signing client");
+        return setKsiSigningService(new KSISigningClientServiceAdapter(signingClient));
+    }
+
+    public KsiBlockSigningServiceBuilder setKsiSigningService(KSISigningService signingService) {
+        notNull(signingService, "Signing service");
+        this.signingService = signingService;
+        return this;
+    }
+
+    public KsiBlockSigningServiceBuilder setDefaultHashAlgorithm(HashAlgorithm algorithm) {
+        notNull(algorithm, "Hash algorithm");
+        algorithm.checkExpiration();
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    public KsiBlockSigningServiceBuilder setSignatureFactory(KSISignatureFactory signatureFactory) {
+        notNull(signatureFactory, "KSI signature factory");
+        this.signatureFactory = signatureFactory;
+        return this;
+    }
+
+    /**
+     * Sets the maximum height of the hash tree of a block. If the aggregator reports a smaller maximum level, then the
+     * maximum level of the aggregator is used.
+     */
+    public KsiBlockSigningServiceBuilder setMaxTreeHeight(Integer maxTreeHeight) {
+        notNull(maxTreeHeight, "Maximum aggregation tree height");
+        this.maxTreeHeight = maxTreeHeight;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of data hashes in a block. Default value is 65536.
+     */
+    public KsiBlockSigningServiceBuilder setMaxBlockSize(int maxBlockSize) {
+        if (maxBlockSize < 1) {
+            throw new IllegalArgumentException("Maximum block size must be positive");
+        }
+        this.maxBlockSize = maxBlockSize;
+        return this;
+    }
+
+    /**
+     * Sets the block interval in milliseconds. By default the aggregation period of the aggregator is used, or 1000
+     * milliseconds until the aggregator configuration is known.
+     */
+    public KsiBlockSigningServiceBuilder setBlockInterval(long blockInterval) {
+        if (blockInterval < 1) {
+            throw new IllegalArgumentException("Block interval must be positive");
+        }
+        this.blockInterval = blockInterval;
+        return this;
+    }
+
+    /**
+     * Sets the number of subtrees the data hashes of a block are distributed to, so that threads adding data hashes
+     * at the same time do not wait for each other. Default value is the number of available processors.
+     */
+    public KsiBlockSigningServiceBuilder setConcurrencyLevel(int concurrencyLevel) {
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+        this.concurrencyLevel = concurrencyLevel;
+        return this;
+    }
+
+    /**
+     * Sets the executor used for signing the sealed blocks. By default
+     * {@link DefaultExecutorServiceProvider#getExecutorService()} is used.
+     */
+    public KsiBlockSigningServiceBuilder setExecutor(Executor executor) {
+        notNull(executor, "Executor");
+        this.executor = executor;
+        return this;
+    }
+
+    public KsiBlockSigningService build() {
+        notNull(signingService, "Signing service");
+        Executor blockExecutor = executor != null ? executor : DefaultExecutorServiceProvider.getExecutorService();
+        return new KsiBlockSigningService(signingService, signatureFactory, algorithm, maxTreeHeight, maxBlockSize,
+                blockInterval, concurrencyLevel, blockExecutor);
+    }
+}
@@ -75,7 +75,10 @@ public class AggregationHashChainBuilder {
                 new DataHash(leaf.getValue()), new Date(), chainIndex, links, aggregationAlgorithm);
     }
 
-    private void createChainLinks(LinkedList<AggregationChainLink> links, long levelCorrection, TreeNode node) throws KSIException {
+    /**
+     * Adds the links from the node to the root, only the first link gets the given extra level correction.
+     */
+    void createChainLinks(LinkedList<AggregationChainLink> links, long levelCorrection, TreeNode node) throws KSIException {
         while (!node.isRoot()) {
             TreeNode parent = node.getParent();
             links.add(createLink(node, parent, levelCorrection));
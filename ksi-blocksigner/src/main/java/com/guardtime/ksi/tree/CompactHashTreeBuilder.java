@@ -0,0 +1,411 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tree;
+
+import com.guardtime.ksi.blocksigner.IdentityMetadata;
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.DataHasher;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.hashing.HashException;
+import com.guardtime.ksi.unisignature.AggregationChainLink;
+import com.guardtime.ksi.unisignature.AggregationHashChain;
+import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
+import com.guardtime.ksi.unisignature.LinkMetadata;
+import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureComponentFactory;
+import com.guardtime.ksi.util.Util;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import static com.guardtime.ksi.unisignature.AggregationHashChainUtil.calculateIndex;
+import static com.guardtime.ksi.util.Util.notNull;
+import static java.util.Collections.singletonList;
+
+/**
+ * Hash tree builder which keeps the tree in a compact form, for blocks of millions of leaves.
+ * <p>
+ * Builds the same tree as {@link HashTreeBuilder}, but no objects are created for the nodes. The nodes are numbered in
+ * the order they are created and the imprints of the nodes are stored one after another in shared byte arrays, the
+ * levels and flags of the nodes in primitive arrays. Every subtree occupies a contiguous range of node numbers that
+ * ends with its root, and one child of every inner node is the node created right before it. So only the start of the
+ * range of every node is stored, the other child and the path from the root to a leaf are found by comparing node
+ * numbers.
+ * </p>
+ * <p>
+ * Leaves are identified by their index, i.e. the order they were added in. After the tree has been built, {@link
+ * #getAggregationHashChain(int)} returns the aggregation hash chain of a leaf.
+ * </p>
+ * Levels of the nodes can not exceed 255. This builder can not be used multiple times. This class isn't thread safe.
+ */
+public class CompactHashTreeBuilder {
+
+    private static final KSISignatureComponentFactory SIGNATURE_COMPONENT_FACTORY = new InMemoryKsiSignatureComponentFactory();
+
+    private static final int MAXIMUM_LEVEL = 255;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The node created right before the node is its left child, otherwise it is the right child.
+     */
+    private static final byte PREVIOUS_IS_LEFT = 1;
+    /**
+     * The node is the parent of a leaf and its metadata, the metadata is its right child.
+     */
+    private static final byte METADATA = 2;
+    /**
+     * The node is a leaf whose imprint length differs from the tree hash algorithm, its imprint is kept separately.
+     */
+    private static final byte OTHER_ALGORITHM = 4;
+
+    private final HashAlgorithm algorithm;
+    private final int imprintLength;
+
+    /**
+     * Imprints of the nodes, {@link #CHUNK_SIZE} nodes per array. The first array grows until it is full.
+     */
+    private byte[][] imprints = new byte[1][];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private byte[] levels = new byte[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int nodeCount;
+
+    private int[] leaves = new int[INITIAL_CAPACITY];
+    private int leafCount;
+
+    /**
+     * Roots of the subtrees that are not complete yet, levels strictly decreasing.
+     */
+    private int[] heads = new int[32];
+    private int headCount;
+    private int root = -1;
+
+    private final Map<Integer, byte[]> metadata = new HashMap<>();
+    private final Map<Integer, byte[]> otherImprints = new HashMap<>();
+
+    /**
+     * Creates a new compact hash tree builder with given hash algorithm.
+     *
+     * @param algorithm hash algorithm to be used to calculate tree node hashes.
+     */
+    public CompactHashTreeBuilder(HashAlgorithm algorithm) {
+        notNull(algorithm, "Hash algorithm");
+        this.algorithm = algorithm;
+        this.imprintLength = algorithm.getLength() + 1;
+    }
+
+    /**
+     * Adds a new leaf (with optional metadata) to the hash tree.
+     *
+     * @param dataHash hash of the leaf, must not be null.
+     * @param level    level of the leaf.
+     * @param metadata metadata of the leaf, may be null.
+     * @return Index of the leaf.
+     * @throws HashException
+     * @throws KSIException
+     * @throws IllegalArgumentException if the height of the tree would exceed 255, the tree is left unchanged then.
+     */
+    public int add(DataHash dataHash, long level, IdentityMetadata metadata) throws HashException, KSIException {
+        notNull(dataHash, "DataHash");
+        checkLevel(level);
+        if (root >= 0) {
+            throw new IllegalStateException("Hash tree has already been built");
+        }
+        if (calculateHeight(level, metadata) > MAXIMUM_LEVEL) {
+            throw new IllegalArgumentException("Hash tree height would exceed " + MAXIMUM_LEVEL);
+        }
+        int leaf = addLeaf(dataHash.getImprint(), (int) level);
+        int node = leaf;
+        if (metadata != null) {
+            byte[] metadataBytes = getMetadataBytes(metadata);
+            node = addNode(leaf, metadataBytes, 0, metadataBytes.length, level + 1, leaf, METADATA);
+            this.metadata.put(node, metadataBytes);
+        }
+        if (leafCount == leaves.length) {
+            leaves = Arrays.copyOf(leaves, leafCount * 2);
+        }
+        leaves[leafCount] = leaf;
+        addToHeads(node);
+        return leafCount++;
+    }
+
+    /**
+     * Calculates the height of the hash tree in case a new leaf (with optional metadata) would be added.
+     *
+     * @param level    level of the leaf.
+     * @param metadata metadata of the leaf, may be null.
+     * @return Height of the hash tree.
+     */
+    public long calculateHeight(long level, IdentityMetadata metadata) {
+        if (metadata != null) {
+            level++;
+        }
+        int count = headCount;
+        while (count > 0 && getLevel(heads[count - 1]) <= level) {
+            level++;
+            count--;
+        }
+        return count == 0 ? level : getLevel(heads[0]) + 1;
+    }
+
+    /**
+     * Builds the hash tree and returns the root node of the tree. The returned node has no children, the aggregation
+     * hash chains of the leaves can be built using {@link #getAggregationHashChain(int)}.
+     *
+     * @return Root node of the finished tree.
+     * @throws HashException
+     */
+    public ImprintNode build() throws HashException {
+        if (headCount == 0) {
+            throw new IllegalStateException("Add leaf nodes before building a tree");
+        }
+        if (root < 0) {
+            int previous = heads[headCount - 1];
+            for (int i = headCount - 2; i > -1; i--) {
+                int head = heads[i];
+                long level = Math.max(getLevel(previous), getLevel(head)) + 1;
+                previous = addNode(previous, getImprintArray(head), getImprintOffset(head), getImprintLength(head),
+                        level, starts[head], PREVIOUS_IS_LEFT);
+            }
+            root = previous;
+        }
+        return new ImprintNode(getHash(root), getLevel(root));
+    }
+
+    /**
+     * @return Number of leaves in the tree.
+     */
+    public int size() {
+        return leafCount;
+    }
+
+    /**
+     * @return True, if no leaves have been added to the tree.
+     */
+    public boolean isEmpty() {
+        return leafCount == 0;
+    }
+
+    /**
+     * @param leaf index of the leaf.
+     * @return Hash of the leaf.
+     */
+    public DataHash getInputHash(int leaf) {
+        return getHash(getLeafNode(leaf));
+    }
+
+    /**
+     * @param leaf index of the leaf.
+     * @return True, if the leaf was added with metadata.
+     */
+    public boolean hasMetadata(int leaf) {
+        int node = getLeafNode(leaf);
+        return node + 1 < nodeCount && (flags[node + 1] & METADATA) != 0;
+    }
+
+    /**
+     * Builds the aggregation hash chain from a leaf to the root of the built tree.
+     *
+     * @param leaf index of the leaf.
+     * @return Instance of {@link AggregationHashChain}.
+     * @throws KSIException in case any error occurs.
+     */
+    public AggregationHashChain getAggregationHashChain(int leaf) throws KSIException {
+        LinkedList<AggregationChainLink> links = new LinkedList<>();
+        addChainLinks(leaf, links);
+        if (links.isEmpty()) {
+            throw new IllegalArgumentException("Aggregation hash chain can be built only from leaf nodes");
+        }
+        LinkedList<Long> chainIndex = new LinkedList<>(singletonList(calculateIndex(links)));
+        return SIGNATURE_COMPONENT_FACTORY.createAggregationHashChain(getInputHash(leaf), new Date(), chainIndex, links,
+                algorithm);
+    }
+
+    /**
+     * Adds the links from a leaf to the root of the built tree, in the same way as {@link AggregationHashChainBuilder}.
+     *
+     * @return Level correction left for the next link above the root, i.e. the level of the leaf in case the leaf is
+     * the root.
+     */
+    long addChainLinks(int leaf, LinkedList<AggregationChainLink> links) throws KSIException {
+        if (root < 0) {
+            throw new IllegalStateException("Build the tree before building the aggregation hash chains");
+        }
+        int node = getLeafNode(leaf);
+        int[] path = new int[MAXIMUM_LEVEL + 1];
+        int depth = 0;
+        for (int current = root; current != node; ) {
+            path[depth++] = current;
+            int previous = current - 1;
+            current = node >= starts[previous] ? previous : starts[previous] - 1;
+        }
+        long levelCorrection = getLevel(node);
+        int child = node;
+        int i = depth - 1;
+        if (i >= 0 && (flags[path[i]] & METADATA) != 0) {
+            links.add(SIGNATURE_COMPONENT_FACTORY.createLeftAggregationChainLink(metadata.get(path[i]), levelCorrection));
+            levelCorrection = 0L;
+            child = path[i--];
+        }
+        for (; i >= 0; i--) {
+            int parent = path[i];
+            boolean previous = child == parent - 1;
+            int sibling = previous ? starts[child] - 1 : parent - 1;
+            long linkLevelCorrection = getLevel(parent) - getLevel(child) - 1 + levelCorrection;
+            DataHash siblingHash = getHash(sibling);
+            if (previous == ((flags[parent] & PREVIOUS_IS_LEFT) != 0)) {
+                links.add(SIGNATURE_COMPONENT_FACTORY.createLeftAggregationChainLink(siblingHash, linkLevelCorrection));
+            } else {
+                links.add(SIGNATURE_COMPONENT_FACTORY.createRightAggregationChainLink(siblingHash, linkLevelCorrection));
+            }
+            levelCorrection = 0L;
+            child = parent;
+        }
+        return levelCorrection;
+    }
+
+    private void addToHeads(int node) {
+        while (headCount > 0 && getLevel(heads[headCount - 1]) <= getLevel(node)) {
+            int head = heads[--headCount];
+            long level = Math.max(getLevel(head), getLevel(node)) + 1;
+            node = addNode(node, getImprintArray(head), getImprintOffset(head), getImprintLength(head), level,
+                    starts[head], (byte) 0);
+        }
+        if (headCount == heads.length) {
+            heads = Arrays.copyOf(heads, headCount * 2);
+        }
+        heads[headCount++] = node;
+    }
+
+    private int addLeaf(byte[] imprint, int level) {
+        int node = allocateNode();
+        starts[node] = node;
+        levels[node] = (byte) level;
+        if (imprint.length == imprintLength) {
+            System.arraycopy(imprint, 0, imprints[node >>> CHUNK_BITS], (node & CHUNK_MASK) * imprintLength, imprintLength);
+        } else {
+            flags[node] = OTHER_ALGORITHM;
+            otherImprints.put(node, imprint);
+        }
+        return node;
+    }
+
+    /**
+     * Adds the parent of the previous node and the given other child.
+     *
+     * @param previous the node created right before the new node.
+     * @param start    start of the range of the new node, i.e. start of the range of the other child.
+     * @param flag     {@link #PREVIOUS_IS_LEFT} if the previous node is the left child, otherwise the other child is
+     *                 hashed before the previous node.
+     */
+    private int addNode(int previous, byte[] other, int otherOffset, int otherLength, long level, int start, byte flag) {
+        checkLevel(level);
+        algorithm.checkExpiration();
+        int node = allocateNode();
+        starts[node] = start;
+        levels[node] = (byte) level;
+        flags[node] = flag;
+        byte[] output = imprints[node >>> CHUNK_BITS];
+        int outputOffset = (node & CHUNK_MASK) * imprintLength;
+        if (flag == (byte) 0) {
+            DataHasher.hash(algorithm, other, otherOffset, otherLength, getImprintArray(previous),
+                    getImprintOffset(previous), getImprintLength(previous), level, output, outputOffset);
+        } else {
+            DataHasher.hash(algorithm, getImprintArray(previous), getImprintOffset(previous), getImprintLength(previous),
+                    other, otherOffset, otherLength, level, output, outputOffset);
+        }
+        return node;
+    }
+
+    private int allocateNode() {
+        if (nodeCount == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Hash tree is full");
+        }
+        int node = nodeCount;
+        if (node == starts.length) {
+            int capacity = (int) Math.min(node * 2L, Integer.MAX_VALUE);
+            starts = Arrays.copyOf(starts, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        int chunk = node >>> CHUNK_BITS;
+        if (chunk == imprints.length) {
+            imprints = Arrays.copyOf(imprints, chunk * 2);
+        }
+        byte[] imprintChunk = imprints[chunk];
+        int offset = (node & CHUNK_MASK) * imprintLength;
+        if (imprintChunk == null) {
+            imprints[chunk] = new byte[(chunk == 0 ? INITIAL_CAPACITY : CHUNK_SIZE) * imprintLength];
+        } else if (offset == imprintChunk.length) {
+            imprints[chunk] = Arrays.copyOf(imprintChunk, Math.min(imprintChunk.length * 2, CHUNK_SIZE * imprintLength));
+        }
+        nodeCount++;
+        return node;
+    }
+
+    private int getLeafNode(int leaf) {
+        if (leaf < 0 || leaf >= leafCount) {
+            throw new IndexOutOfBoundsException("Leaf index " + leaf + " is out of range");
+        }
+        return leaves[leaf];
+    }
+
+    private long getLevel(int node) {
+        return levels[node] & 0xFF;
+    }
+
+    private DataHash getHash(int node) {
+        return new DataHash(Util.copyOf(getImprintArray(node), getImprintOffset(node), getImprintLength(node)));
+    }
+
+    private byte[] getImprintArray(int node) {
+        if ((flags[node] & OTHER_ALGORITHM) != 0) {
+            return otherImprints.get(node);
+        }
+        return imprints[node >>> CHUNK_BITS];
+    }
+
+    private int getImprintOffset(int node) {
+        return (flags[node] & OTHER_ALGORITHM) != 0 ? 0 : (node & CHUNK_MASK) * imprintLength;
+    }
+
+    private int getImprintLength(int node) {
+        return (flags[node] & OTHER_ALGORITHM) != 0 ? otherImprints.get(node).length : imprintLength;
+    }
+
+    private void checkLevel(long level) {
+        if (level < 0 || level > MAXIMUM_LEVEL) {
+            throw new IllegalArgumentException("Level must be between 0 and 255");
+        }
+    }
+
+    private byte[] getMetadataBytes(IdentityMetadata metadata) throws KSIException {
+        LinkMetadata linkMetadata = SIGNATURE_COMPONENT_FACTORY.createLinkMetadata(metadata.getClientId(),
+                metadata.getMachineId(), metadata.getSequenceNumber(), metadata.getRequestTime());
+        return linkMetadata.getMetadataStructure().getRootElement().getContent();
+    }
+}
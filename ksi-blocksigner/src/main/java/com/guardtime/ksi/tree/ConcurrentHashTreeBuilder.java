@@ -0,0 +1,319 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tree;
+
+import com.guardtime.ksi.blocksigner.IdentityMetadata;
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.hashing.HashException;
+import com.guardtime.ksi.unisignature.AggregationChainLink;
+import com.guardtime.ksi.unisignature.AggregationHashChain;
+import com.guardtime.ksi.unisignature.KSISignatureComponentFactory;
+import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureComponentFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.guardtime.ksi.unisignature.AggregationHashChainUtil.calculateIndex;
+import static com.guardtime.ksi.util.Util.notNull;
+import static java.util.Collections.singletonList;
+
+/**
+ * Hash tree builder which can be fed by multiple threads at the same time.
+ * <p>
+ * The leaves are added to a number of independent subtrees (stripes), each one built by its own {@link
+ * CompactHashTreeBuilder}. A thread always adds its leaves to the same stripe, so threads working on different stripes
+ * do not contend with each other and the hashing of the subtrees runs in parallel. When the tree is built, the roots of
+ * the subtrees are merged pairwise into one root. The aggregation hash chain of a leaf consists of the links from the
+ * leaf to the root of its subtree followed by the links from the root of the subtree to the common root.
+ * </p>
+ * <p>
+ * Merging the subtrees adds at most <code>ceil(log2(concurrencyLevel))</code> levels on top of the highest subtree,
+ * the height calculations of this builder include these levels and are therefore an upper bound of the final tree
+ * height. With concurrency level 1 the resulting tree is identical to the one built by {@link HashTreeBuilder}.
+ * </p>
+ * <p>
+ * Leaves are identified by handles returned by the add methods. The leaves of one stripe follow each other in the
+ * order they were added, {@link #firstLeaf()} and {@link #nextLeaf(long)} iterate over all the leaves stripe by stripe.
+ * </p>
+ * This builder can not be used multiple times. This class is thread safe.
+ */
+public class ConcurrentHashTreeBuilder {
+
+    /**
+     * Returned by {@link #add(DataHash, long, IdentityMetadata, long)} when the leaf was not added, and by {@link
+     * #nextLeaf(long)} at the end of the leaves.
+     */
+    public static final long NO_LEAF = -1L;
+
+    private static final KSISignatureComponentFactory SIGNATURE_COMPONENT_FACTORY = new InMemoryKsiSignatureComponentFactory();
+
+    private final HashAlgorithm algorithm;
+    private final CompactHashTreeBuilder[] stripes;
+    private final ImprintNode[] stripeRoots;
+    private final HashTreeBuilder merger;
+    private final AggregationHashChainBuilder chainBuilder = new AggregationHashChainBuilder();
+    private final int mergeHeight;
+    private volatile boolean built;
+
+    /**
+     * Creates a new concurrent hash tree builder.
+     *
+     * @param algorithm        hash algorithm to be used to calculate tree node hashes, not null.
+     * @param concurrencyLevel number of subtrees the leaves are distributed to, must be positive.
+     */
+    public ConcurrentHashTreeBuilder(HashAlgorithm algorithm, int concurrencyLevel) {
+        notNull(algorithm, "Hash algorithm");
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+        this.algorithm = algorithm;
+        this.stripes = new CompactHashTreeBuilder[concurrencyLevel];
+        for (int i = 0; i < concurrencyLevel; i++) {
+            stripes[i] = new CompactHashTreeBuilder(algorithm);
+        }
+        this.stripeRoots = new ImprintNode[concurrencyLevel];
+        this.merger = new HashTreeBuilder(algorithm);
+        this.mergeHeight = 32 - Integer.numberOfLeadingZeros(concurrencyLevel - 1);
+    }
+
+    /**
+     * Adds a new leaf (with optional metadata) to the subtree of the current thread.
+     *
+     * @param dataHash hash of the leaf, must not be null.
+     * @param level    level of the leaf.
+     * @param metadata metadata of the leaf, may be null.
+     * @return Handle of the leaf.
+     * @throws HashException
+     * @throws KSIException
+     */
+    public long add(DataHash dataHash, long level, IdentityMetadata metadata) throws HashException, KSIException {
+        return add(dataHash, level, metadata, Long.MAX_VALUE);
+    }
+
+    /**
+     * Adds a new leaf (with optional metadata) to the subtree of the current thread, unless the height of the final
+     * tree could exceed the given maximum height. The height check and adding the leaf are done atomically.
+     *
+     * @param dataHash  hash of the leaf, must not be null.
+     * @param level     level of the leaf.
+     * @param metadata  metadata of the leaf, may be null.
+     * @param maxHeight maximum height of the final tree.
+     * @return Handle of the leaf, or {@link #NO_LEAF} if the leaf was not added.
+     * @throws HashException
+     * @throws KSIException
+     */
+    public long add(DataHash dataHash, long level, IdentityMetadata metadata, long maxHeight) throws HashException, KSIException {
+        int index = getStripeIndex();
+        CompactHashTreeBuilder stripe = stripes[index];
+        synchronized (stripe) {
+            checkNotBuilt();
+            if (stripe.calculateHeight(level, metadata) + mergeHeight > maxHeight) {
+                return NO_LEAF;
+            }
+            return toHandle(index, stripe.add(dataHash, level, metadata));
+        }
+    }
+
+    /**
+     * Calculates the upper bound of the hash tree height in case a new leaf (with optional metadata) would be added by
+     * the current thread.
+     *
+     * @param level    level of the leaf.
+     * @param metadata metadata of the leaf, may be null.
+     * @return Upper bound of the hash tree height.
+     */
+    public long calculateHeight(long level, IdentityMetadata metadata) {
+        CompactHashTreeBuilder stripe = stripes[getStripeIndex()];
+        synchronized (stripe) {
+            return stripe.calculateHeight(level, metadata) + mergeHeight;
+        }
+    }
+
+    /**
+     * Calculates the height of the hash tree in case a new leaf (with optional metadata) would be the first leaf added
+     * by the current thread. A leaf that exceeds the maximum height of the tree in this case can never be added.
+     *
+     * @param level    level of the leaf.
+     * @param metadata metadata of the leaf, may be null.
+     * @return Height of the hash tree.
+     */
+    public long calculateMinimumHeight(long level, IdentityMetadata metadata) {
+        return (metadata != null ? level + 1 : level) + mergeHeight;
+    }
+
+    /**
+     * Builds the subtrees, merges them and returns the root of the tree. Waits until the ongoing additions have
+     * finished, no leaves can be added afterwards.
+     *
+     * @return Root node of the finished tree. The node has children only if there are multiple subtrees.
+     * @throws HashException
+     */
+    public ImprintNode build() throws HashException {
+        List<ImprintNode> roots = new ArrayList<>(stripes.length);
+        lockAndBuild(0, roots);
+        if (roots.isEmpty()) {
+            throw new IllegalStateException("Add leaf nodes before building a tree");
+        }
+        while (roots.size() > 1) {
+            List<ImprintNode> merged = new ArrayList<>((roots.size() + 1) / 2);
+            for (int i = 0; i < roots.size(); i += 2) {
+                merged.add(i + 1 < roots.size() ? merger.aggregate(roots.get(i), roots.get(i + 1)) : roots.get(i));
+            }
+            roots = merged;
+        }
+        return roots.get(0);
+    }
+
+    /**
+     * @return Number of leaves in the tree.
+     */
+    public int size() {
+        int size = 0;
+        for (CompactHashTreeBuilder stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Handle of the first leaf of the built tree, or {@link #NO_LEAF} if there are no leaves.
+     */
+    public long firstLeaf() {
+        return nextLeaf(0, 0);
+    }
+
+    /**
+     * @param leaf handle of a leaf of the built tree.
+     * @return Handle of the leaf following the given leaf, or {@link #NO_LEAF} if it is the last one.
+     */
+    public long nextLeaf(long leaf) {
+        return nextLeaf(getStripeIndex(leaf), getLeafIndex(leaf) + 1);
+    }
+
+    /**
+     * @param leaf handle of a leaf.
+     * @return Hash of the leaf.
+     */
+    public DataHash getInputHash(long leaf) {
+        return getBuiltStripe(leaf).getInputHash(getLeafIndex(leaf));
+    }
+
+    /**
+     * @param leaf handle of a leaf.
+     * @return True, if the leaf was added with metadata.
+     */
+    public boolean hasMetadata(long leaf) {
+        return getBuiltStripe(leaf).hasMetadata(getLeafIndex(leaf));
+    }
+
+    /**
+     * Builds the aggregation hash chain from a leaf to the root of the built tree.
+     *
+     * @param leaf handle of a leaf.
+     * @return Instance of {@link AggregationHashChain}.
+     * @throws KSIException in case any error occurs.
+     */
+    public AggregationHashChain getAggregationHashChain(long leaf) throws KSIException {
+        int index = getStripeIndex(leaf);
+        LinkedList<AggregationChainLink> links = new LinkedList<>();
+        long levelCorrection = getBuiltStripe(leaf).addChainLinks(getLeafIndex(leaf), links);
+        ImprintNode stripeRoot = stripeRoots[index];
+        if (!stripeRoot.isRoot()) {
+            chainBuilder.createChainLinks(links, levelCorrection, stripeRoot);
+        }
+        if (links.isEmpty()) {
+            throw new IllegalArgumentException("Aggregation hash chain can be built only from leaf nodes");
+        }
+        LinkedList<Long> chainIndex = new LinkedList<>(singletonList(calculateIndex(links)));
+        return SIGNATURE_COMPONENT_FACTORY.createAggregationHashChain(getInputHash(leaf), new Date(), chainIndex, links,
+                algorithm);
+    }
+
+    private long nextLeaf(int stripe, int leaf) {
+        checkBuilt();
+        for (; stripe < stripes.length; stripe++, leaf = 0) {
+            if (leaf < stripes[stripe].size()) {
+                return toHandle(stripe, leaf);
+            }
+        }
+        return NO_LEAF;
+    }
+
+    /**
+     * Locks the stripes one by one, in the same order every time, and builds their subtrees once all of them are
+     * locked.
+     */
+    private void lockAndBuild(int index, List<ImprintNode> roots) throws HashException {
+        if (index < stripes.length) {
+            synchronized (stripes[index]) {
+                lockAndBuild(index + 1, roots);
+            }
+            return;
+        }
+        checkNotBuilt();
+        for (int i = 0; i < stripes.length; i++) {
+            if (!stripes[i].isEmpty()) {
+                stripeRoots[i] = stripes[i].build();
+                roots.add(stripeRoots[i]);
+            }
+        }
+        built = true;
+    }
+
+    private CompactHashTreeBuilder getBuiltStripe(long leaf) {
+        checkBuilt();
+        return stripes[getStripeIndex(leaf)];
+    }
+
+    private int getStripeIndex() {
+        return (int) (Thread.currentThread().getId() % stripes.length);
+    }
+
+    private static long toHandle(int stripe, int leaf) {
+        return ((long) stripe << 32) | leaf;
+    }
+
+    private static int getStripeIndex(long leaf) {
+        return (int) (leaf >>> 32);
+    }
+
+    private static int getLeafIndex(long leaf) {
+        return (int) leaf;
+    }
+
+    private void checkNotBuilt() {
+        if (built) {
+            throw new IllegalStateException("Hash tree has already been built");
+        }
+    }
+
+    private void checkBuilt() {
+        if (!built) {
+            throw new IllegalStateException("Build the tree before accessing its leaves");
+        }
+    }
+}
@@ -33,7 +33,14 @@ import com.guardtime.ksi.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static com.guardtime.ksi.util.Util.notNull;
 
@@ -43,6 +50,15 @@ import static com.guardtime.ksi.util.Util.notNull;
  * is labelled with the hash of the labels or values (in case of leaves) of its child nodes.
  * </p>
  * <p>
+ * Large batches of leaves added with {@link #add(ImprintNode...)} are hashed in parallel on a {@link ForkJoinPool}.
+ * The shape of the tree is determined first, exactly as if the leaves were added one by one, and then the independent
+ * subtrees are hashed in parallel, so the resulting tree is identical to the one built sequentially.
+ * </p>
+ * <p>
+ * By default the tree is shaped as described in {@link TreeShape#SEQUENTIAL}. When all the leaves are known before the
+ * tree is built, {@link TreeShape#BALANCED} can be used to get a tree of minimal height and shorter chains.
+ * </p>
+ * <p>
  * Note that {@link HashTreeBuilder} works only with {@link ImprintNode} objects.
  * Current implementation calculates the parent hash by connecting the child node
  * values and the parent node height before hashing.
@@ -54,17 +70,44 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
     private static final Logger LOGGER = LoggerFactory.getLogger(HashTreeBuilder.class);
 
     private static final HashAlgorithm DEFAULT_HASH_ALGORITHM = HashAlgorithm.SHA2_256;
+    private static final int INITIAL_HEADS_CAPACITY = 32;
+
+    /**
+     * Minimum number of leaves added at once to be hashed in parallel.
+     */
+    static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 12;
 
     /**
      * Queue for holding the head (root) nodes of hash subtrees.
      */
     private final LinkedList<ImprintNode> heads = new LinkedList<>();
 
+    /**
+     * Levels of the {@link #heads}, in the same order. Used to calculate the height of the tree without hashing or
+     * copying any nodes.
+     */
+    private long[] headLevels = new long[INITIAL_HEADS_CAPACITY];
+
     /**
      * Hash algorithm used to calculate the tree hashes.
      */
     private final HashAlgorithm algorithm;
 
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final TreeShape shape;
+
+    /**
+     * Nodes added to a {@link TreeShape#BALANCED} tree, aggregated only when the tree is built.
+     */
+    private final List<ImprintNode> balancedNodes = new ArrayList<>();
+
+    /**
+     * Sum of 2^level over the {@link #balancedNodes}. A tree of height h containing all the nodes exists only if the
+     * sum does not exceed 2^h, and a balanced tree always has the smallest such height.
+     */
+    private BigInteger weight = BigInteger.ZERO;
+
     /**
      * Creates a new hash tree builder with given hash algorithm.
      *
@@ -72,7 +115,45 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
      *         hash algorithm to be used to calculate tree node hashes.
      */
     public HashTreeBuilder(HashAlgorithm algorithm) {
+        this(algorithm, null, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates a new hash tree builder with given hash algorithm, large batches of leaves are hashed using the given
+     * pool.
+     *
+     * @param algorithm
+     *         hash algorithm to be used to calculate tree node hashes.
+     * @param pool
+     *         pool used to hash large batches of leaves in parallel, if null then a pool shared by all hash tree builders
+     *         is used.
+     */
+    public HashTreeBuilder(HashAlgorithm algorithm, ForkJoinPool pool) {
+        this(algorithm, pool, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates a new hash tree builder with given hash algorithm and tree shape.
+     *
+     * @param algorithm
+     *         hash algorithm to be used to calculate tree node hashes.
+     * @param shape
+     *         shape of the tree to build, must not be null.
+     */
+    public HashTreeBuilder(HashAlgorithm algorithm, TreeShape shape) {
+        this(algorithm, null, DEFAULT_PARALLEL_THRESHOLD, shape);
+    }
+
+    HashTreeBuilder(HashAlgorithm algorithm, ForkJoinPool pool, int parallelThreshold) {
+        this(algorithm, pool, parallelThreshold, TreeShape.SEQUENTIAL);
+    }
+
+    private HashTreeBuilder(HashAlgorithm algorithm, ForkJoinPool pool, int parallelThreshold, TreeShape shape) {
+        notNull(shape, "Tree shape");
         this.algorithm = algorithm;
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        this.shape = shape;
     }
 
     /**
@@ -90,7 +171,7 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
      * @throws HashException
      */
     public void add(ImprintNode node) throws HashException {
-        addToHeads(heads, node);
+        addToHeads(node);
     }
 
     /**
@@ -102,7 +183,7 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
      * @throws KSIException
      */
     public void add(ImprintNode node, IdentityMetadata metadata) throws HashException, KSIException {
-        addToHeads(heads, aggregate(node, metadata));
+        addToHeads(aggregate(node, metadata));
     }
 
     /**
@@ -116,17 +197,13 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
      * @throws HashException
      */
     public long calculateHeight(ImprintNode node) throws HashException {
-        LinkedList<ImprintNode> tmpHeads = new LinkedList<>();
-        for (ImprintNode in : heads) {
-            tmpHeads.add(new ImprintNode(in));
+        notNull(node, "Node");
+        long height = calculateHeight(node.hasMetadata() ? node.getParent().getLevel() : node.getLevel());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Adding node with hash {} and height {}, the hash tree height would be {}", node.getValue(),
+                    node.getLevel(), height);
         }
-
-        addToHeads(tmpHeads, new ImprintNode(node));
-
-        ImprintNode root = getRootNode(tmpHeads);
-        LOGGER.debug("Adding node with hash {} and height {}, the hash tree height would be {}", node.getValue(), node.getLevel(),
-                root.getLevel());
-        return root.getLevel();
+        return height;
     }
 
     /**
@@ -139,11 +216,31 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
      * @throws KSIException
      */
     public long calculateHeight(ImprintNode node, IdentityMetadata metadata) throws HashException, KSIException {
-        return calculateHeight(aggregate(node, metadata));
+        notNull(metadata, "IdentityMetadata");
+        notNull(node, "ImprintNode");
+        return calculateHeight(node.getLevel() + 1);
+    }
+
+    /**
+     * Simulates adding a node with given level to the heads and returns the resulting tree height. Every head that is
+     * not higher than the new node is merged into it. As the remaining head levels are strictly decreasing, folding
+     * them into the root ends up exactly one level above the first head.
+     */
+    private long calculateHeight(long level) {
+        if (shape == TreeShape.BALANCED) {
+            return ceilLog2(weight.add(BigInteger.ONE.shiftLeft((int) level)));
+        }
+        int count = heads.size();
+        while (count > 0 && headLevels[count - 1] <= level) {
+            level++;
+            count--;
+        }
+        return count == 0 ? level : headLevels[0] + 1;
     }
 
     /**
-     * Adds a new array of child nodes to the hash tree.
+     * Adds a new array of child nodes to the hash tree. Large arrays are hashed in parallel, the resulting tree is the
+     * same as if the nodes were added one by one.
      *
      * @param nodes array of nodes to be added.
      *
@@ -151,9 +248,17 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
      */
     public void add(ImprintNode... nodes) throws HashException {
         notNull(nodes, "Nodes");
+        if (nodes.length < parallelThreshold || shape == TreeShape.BALANCED) {
+            for (ImprintNode node : nodes) {
+                add(node);
+            }
+            return;
+        }
         for (ImprintNode node : nodes) {
-            add(node);
+            notNull(node, "Node");
         }
+        algorithm.checkExpiration();
+        new BulkBuild(nodes).build(pool != null ? pool : DefaultPool.POOL);
     }
 
     /**
@@ -164,13 +269,35 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
      * @throws HashException
      */
     public ImprintNode build() throws HashException {
-        if (heads.isEmpty()) {
+        if (heads.isEmpty() && balancedNodes.isEmpty()) {
             throw new IllegalStateException("Add leaf nodes before building a tree");
         }
-        return getRootNode(heads);
+        return shape == TreeShape.BALANCED ? getBalancedRootNode() : getRootNode();
     }
 
-    private ImprintNode getRootNode(LinkedList<ImprintNode> heads) {
+    /**
+     * Aggregates the two lowest nodes until a single node remains. Nodes of equal level are aggregated in the order they
+     * were added or created, so the leaves of equal level end up in a tree that is as balanced as possible.
+     */
+    private ImprintNode getBalancedRootNode() {
+        PriorityQueue<QueuedNode> queue = new PriorityQueue<>(balancedNodes.size());
+        long sequence = 0;
+        for (ImprintNode node : balancedNodes) {
+            queue.add(new QueuedNode(node, sequence++));
+        }
+        while (queue.size() > 1) {
+            ImprintNode left = queue.poll().node;
+            ImprintNode right = queue.poll().node;
+            queue.add(new QueuedNode(aggregate(left, right), sequence++));
+        }
+        return queue.poll().node;
+    }
+
+    private static long ceilLog2(BigInteger value) {
+        return value.subtract(BigInteger.ONE).bitLength();
+    }
+
+    private ImprintNode getRootNode() {
         ImprintNode previous = heads.getLast();
         if (heads.size() > 1) {
             for (int i = heads.size() - 2; i > -1; i--) {
@@ -181,35 +308,198 @@ public class HashTreeBuilder implements TreeBuilder<ImprintNode> {
         return previous;
     }
 
-    private void addToHeads(LinkedList<ImprintNode> heads, ImprintNode node) throws HashException {
+    private void addToHeads(ImprintNode node) throws HashException {
         notNull(node, "Node");
         LOGGER.debug("Adding node with hash {} and height {} to the hash tree", node.getValue(), node.getLevel());
         ImprintNode n = node.hasMetadata() ? (ImprintNode) node.getParent() : node;
+        if (shape == TreeShape.BALANCED) {
+            balancedNodes.add(n);
+            weight = weight.add(BigInteger.ONE.shiftLeft((int) n.getLevel()));
+            return;
+        }
         if (!heads.isEmpty()) {
             ImprintNode head = heads.getLast();
             if (head.getLevel() <= n.getLevel()) {
                 heads.removeLast();
-                addToHeads(heads, aggregate(head, n));
+                addToHeads(aggregate(head, n));
                 return;
             }
         }
+        if (heads.size() == headLevels.length) {
+            headLevels = Arrays.copyOf(headLevels, headLevels.length * 2);
+        }
+        headLevels[heads.size()] = n.getLevel();
         heads.add(n);
         LOGGER.debug("New root added. Roots size is {}", heads.size());
     }
 
-    private ImprintNode aggregate(ImprintNode left, ImprintNode right) throws HashException {
+    ImprintNode aggregate(ImprintNode left, ImprintNode right) throws HashException {
         long newLevel = Math.max(left.getLevel(), right.getLevel()) + 1;
         LOGGER.debug("Aggregating. Left {}(level={}), right {}(level={}), newLevel={}", left.getValue(), left.getLevel(), right.getValue(), right.getLevel(), newLevel);
         DataHash nodeHash = hash(algorithm, left.getValue(), right.getValue(), newLevel);
-        LOGGER.info("Aggregation result {}(level={})", nodeHash, newLevel);
+        LOGGER.debug("Aggregation result {}(level={})", nodeHash, newLevel);
         return new ImprintNode(left, right, nodeHash, newLevel);
     }
 
     private DataHash hash(HashAlgorithm hashAlgorithm, byte[] left, byte[] right, long level) throws HashException {
-        DataHasher hasher = new DataHasher(hashAlgorithm);
-        hasher.addData(left).addData(right);
-        hasher.addData(Util.encodeUnsignedLong(level));
-        return hasher.getHash();
+        hashAlgorithm.checkExpiration();
+        return DataHasher.hash(hashAlgorithm, left, right, level);
+    }
+
+    /**
+     * Adds a batch of nodes to the heads in two steps. First the merges are planned using only the levels of the nodes,
+     * following the same rules as {@link #addToHeads(ImprintNode)}. Then the planned nodes are hashed in waves, a wave
+     * consisting of the nodes at the same distance from the leaves. The nodes of a wave do not depend on each other, so
+     * large waves are split into tasks of the pool.
+     */
+    private final class BulkBuild {
+
+        private static final int TASK_SIZE = 1 << 8;
+
+        private final int inputCount;
+        private final ImprintNode[] nodes;
+        private final long[] levels;
+        private final int[] left;
+        private final int[] right;
+        private final int[] depths;
+        private int count;
+
+        private BulkBuild(ImprintNode[] leaves) {
+            this.inputCount = heads.size() + leaves.length;
+            int capacity = 2 * inputCount;
+            this.nodes = new ImprintNode[capacity];
+            this.levels = new long[capacity];
+            this.left = new int[capacity];
+            this.right = new int[capacity];
+            this.depths = new int[capacity];
+            for (ImprintNode head : heads) {
+                input(head);
+            }
+            for (ImprintNode leaf : leaves) {
+                input(leaf.hasMetadata() ? (ImprintNode) leaf.getParent() : leaf);
+            }
+        }
+
+        private void input(ImprintNode node) {
+            nodes[count] = node;
+            levels[count] = node.getLevel();
+            count++;
+        }
+
+        private void build(ForkJoinPool pool) {
+            int[] stack = new int[INITIAL_HEADS_CAPACITY];
+            int top = 0;
+            int maxDepth = 0;
+            for (int input = 0; input < inputCount; input++) {
+                int node = input;
+                if (input >= heads.size()) {
+                    while (top > 0 && levels[stack[top - 1]] <= levels[node]) {
+                        int head = stack[--top];
+                        int parent = count++;
+                        left[parent] = head;
+                        right[parent] = node;
+                        levels[parent] = Math.max(levels[head], levels[node]) + 1;
+                        depths[parent] = Math.max(depths[head], depths[node]) + 1;
+                        maxDepth = Math.max(maxDepth, depths[parent]);
+                        node = parent;
+                    }
+                }
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = node;
+            }
+
+            int[] waveStarts = new int[maxDepth + 2];
+            for (int node = inputCount; node < count; node++) {
+                waveStarts[depths[node] + 1]++;
+            }
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                waveStarts[depth + 1] += waveStarts[depth];
+            }
+            int[] order = new int[count - inputCount];
+            int[] positions = Arrays.copyOf(waveStarts, waveStarts.length);
+            for (int node = inputCount; node < count; node++) {
+                order[positions[depths[node]]++] = node;
+            }
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                int from = waveStarts[depth];
+                int to = waveStarts[depth + 1];
+                if (to - from > TASK_SIZE) {
+                    pool.invoke(new HashWave(order, from, to));
+                } else {
+                    hash(order, from, to);
+                }
+            }
+
+            heads.clear();
+            if (top > headLevels.length) {
+                headLevels = Arrays.copyOf(headLevels, Math.max(top, headLevels.length * 2));
+            }
+            for (int i = 0; i < top; i++) {
+                heads.add(nodes[stack[i]]);
+                headLevels[i] = levels[stack[i]];
+            }
+        }
+
+        private void hash(int[] order, int from, int to) {
+            for (int i = from; i < to; i++) {
+                int node = order[i];
+                ImprintNode leftChild = nodes[left[node]];
+                ImprintNode rightChild = nodes[right[node]];
+                DataHash hash = DataHasher.hash(algorithm, leftChild.getValue(), rightChild.getValue(), levels[node]);
+                nodes[node] = new ImprintNode(leftChild, rightChild, hash, levels[node]);
+            }
+        }
+
+        private final class HashWave extends RecursiveAction {
+
+            private final int[] order;
+            private final int from;
+            private final int to;
+
+            private HashWave(int[] order, int from, int to) {
+                this.order = order;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= TASK_SIZE) {
+                    hash(order, from, to);
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                invokeAll(new HashWave(order, from, middle), new HashWave(order, middle, to));
+            }
+        }
+    }
+
+    private static final class QueuedNode implements Comparable<QueuedNode> {
+
+        private final ImprintNode node;
+        private final long sequence;
+
+        private QueuedNode(ImprintNode node, long sequence) {
+            this.node = node;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(QueuedNode other) {
+            if (node.getLevel() != other.node.getLevel()) {
+                return node.getLevel() < other.node.getLevel() ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * Pool shared by the hash tree builders, created on first use.
+     */
+    private static final class DefaultPool {
+        private static final ForkJoinPool POOL = new ForkJoinPool();
     }
 
     private ImprintNode aggregate(ImprintNode node, IdentityMetadata metadata) throws KSIException {
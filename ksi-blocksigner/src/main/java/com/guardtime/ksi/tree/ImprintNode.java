@@ -90,6 +90,7 @@ public class ImprintNode implements TreeNode {
         leftChild.parent = this;
         leftChild.left = true;
         rightChild.parent = this;
+        rightChild.left = false;
         this.leftChild = leftChild;
         this.rightChild = rightChild;
     }
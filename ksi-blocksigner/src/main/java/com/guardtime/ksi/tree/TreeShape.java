@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tree;
+
+/**
+ * Shape of the hash tree built by the {@link HashTreeBuilder}.
+ */
+public enum TreeShape {
+
+    /**
+     * The leaves are aggregated as they are added, every pair of subtrees of equal height is aggregated as soon as
+     * possible and the remaining subtrees are aggregated when the tree is built. The leaves keep their order, but the
+     * leaves added last may get much longer aggregation hash chains than the others.
+     */
+    SEQUENTIAL,
+
+    /**
+     * The leaves are aggregated only when the tree is built, by always aggregating the two lowest nodes. The height of
+     * the resulting tree is the smallest possible for the levels of the leaves and the leaves of equal levels get chains
+     * of about the same length. The leaves do not keep their order.
+     */
+    BALANCED
+
+}
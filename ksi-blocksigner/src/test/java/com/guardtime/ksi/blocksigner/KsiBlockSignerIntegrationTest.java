@@ -26,9 +26,12 @@ import com.guardtime.ksi.hashing.HashAlgorithm;
 import com.guardtime.ksi.integration.AbstractCommonIntegrationTest;
 import com.guardtime.ksi.pdu.PduVersion;
 import com.guardtime.ksi.service.KSIProtocolException;
+import com.guardtime.ksi.service.ListenableFuture;
 import com.guardtime.ksi.service.client.ServiceCredentials;
+import com.guardtime.ksi.tlv.TLVInputStream;
 import com.guardtime.ksi.tlv.TLVStructure;
 import com.guardtime.ksi.unisignature.KSISignature;
+import com.guardtime.ksi.unisignature.inmemory.InMemoryKsiSignatureFactory;
 import com.guardtime.ksi.unisignature.verifier.VerificationResult;
 import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicy;
 import com.guardtime.ksi.unisignature.verifier.policies.ContextAwarePolicyAdapter;
@@ -39,11 +42,15 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH;
 import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH_2;
@@ -267,6 +274,98 @@ public class KsiBlockSignerIntegrationTest extends AbstractCommonIntegrationTest
 
     }
 
+    @Test
+    public void testSignToOutputStreamWritesSameSignaturesAsSign() throws Exception {
+        List<Input> inputs = Arrays.asList(
+                new Input(dataHash, 0L, metadata),
+                new Input(DATA_HASH_2, 0L, null),
+                new Input(DATA_HASH_3, 1L, metadata2));
+        KsiBlockSigner blockSigner = new KsiBlockSignerBuilder().setKsiSigningService(
+                mockSigningService(AGGREGATION_RESPONSE_FIRST_LINK_LEFT_WITH_SIBLING_HASH, credentials)).build();
+        KsiBlockSigner streamingBlockSigner = new KsiBlockSignerBuilder().setKsiSigningService(
+                mockSigningService(AGGREGATION_RESPONSE_FIRST_LINK_LEFT_WITH_SIBLING_HASH, credentials)).build();
+        for (Input input : inputs) {
+            blockSigner.add(input.getDataHash(), input.getLevel(), input.getMetadata());
+            streamingBlockSigner.add(input.getDataHash(), input.getLevel(), input.getMetadata());
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (KSISignature signature : blockSigner.sign()) {
+            signature.writeTo(expected);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streamingBlockSigner.sign(output);
+
+        assertEquals(output.toByteArray(), expected.toByteArray());
+        TLVInputStream input = new TLVInputStream(new ByteArrayInputStream(output.toByteArray()));
+        for (Input expectedInput : inputs) {
+            KSISignature signature = new InMemoryKsiSignatureFactory().createSignature(input.readElement(), null);
+            assertEquals(signature.getInputHash(), expectedInput.getDataHash());
+        }
+        assertFalse(input.hasNextElement());
+    }
+
+    @Test
+    public void testBlockSigningServiceSignsBlockWhenMaxBlockSizeIsReached() throws Exception {
+        KsiBlockSigningService service = new KsiBlockSigningServiceBuilder()
+                .setKsiSigningService(mockSigningService(AGGREGATION_RESPONSE_FIRST_LINK_LEFT_WITH_SIBLING_HASH, credentials))
+                .setMaxBlockSize(3)
+                .setBlockInterval(TimeUnit.HOURS.toMillis(1))
+                .setExecutor(new CallerThreadExecutor())
+                .build();
+        try {
+            ListenableFuture<KSISignature> first = service.sign(dataHash, metadata);
+            ListenableFuture<KSISignature> second = service.sign(DATA_HASH_2);
+            assertFalse(first.isFinished());
+            ListenableFuture<KSISignature> third = service.sign(DATA_HASH_3, 1L, metadata2);
+
+            assertTrue(first.isFinished());
+            assertEquals(first.getResult().getInputHash(), dataHash);
+            assertEquals(second.getResult().getInputHash(), DATA_HASH_2);
+            assertEquals(third.getResult().getInputHash(), DATA_HASH_3);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testBlockSigningServiceSignsBlockWhenBlockIntervalEnds() throws Exception {
+        KsiBlockSigningService service = new KsiBlockSigningServiceBuilder()
+                .setKsiSigningService(mockSigningService(AGGREGATION_RESPONSE_FIRST_LINK_LEFT_WITH_SIBLING_HASH, credentials))
+                .setBlockInterval(50L)
+                .setExecutor(new CallerThreadExecutor())
+                .build();
+        try {
+            ListenableFuture<KSISignature> future = service.sign(dataHash, metadata);
+            assertEquals(future.getResult().getInputHash(), dataHash);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testBlockSigningServiceSignsCurrentBlockWhenClosed() throws Exception {
+        KsiBlockSigningService service = new KsiBlockSigningServiceBuilder()
+                .setKsiSigningService(mockSigningService(AGGREGATION_RESPONSE_FIRST_LINK_LEFT_WITH_SIBLING_HASH, credentials))
+                .setBlockInterval(TimeUnit.HOURS.toMillis(1))
+                .setExecutor(new CallerThreadExecutor())
+                .build();
+        ListenableFuture<KSISignature> future = service.sign(dataHash, metadata);
+        service.close();
+
+        assertTrue(future.isFinished());
+        assertEquals(future.getResult().getInputHash(), dataHash);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Block signing service is closed")
+    public void testBlockSigningServiceDoesNotAcceptHashesWhenClosed() throws Exception {
+        KsiBlockSigningService service = new KsiBlockSigningServiceBuilder()
+                .setKsiSigningService(mockSigningService(AGGREGATION_RESPONSE_FIRST_LINK_LEFT_WITH_SIBLING_HASH, credentials))
+                .build();
+        service.close();
+        service.sign(dataHash);
+    }
+
     private void checkResponses(String response, long requestLevel, long levelCorrection, boolean firstLinkIsLeft, int expectedSiblingType) throws Exception {
         KsiBlockSigner blockSigner = new KsiBlockSignerBuilder().setKsiSigningService(mockSigningService(response, credentials)).build();
         Input input = new Input(dataHash, requestLevel, null);
@@ -342,4 +441,9 @@ public class KsiBlockSignerIntegrationTest extends AbstractCommonIntegrationTest
         }
     }
 
+    private static class CallerThreadExecutor implements Executor {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
 }
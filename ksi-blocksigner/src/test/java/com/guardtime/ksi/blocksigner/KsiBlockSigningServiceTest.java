@@ -0,0 +1,229 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.blocksigner;
+
+import com.guardtime.ksi.AbstractBlockSignatureTest;
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.pdu.AggregationResponse;
+import com.guardtime.ksi.service.ConfigurationListener;
+import com.guardtime.ksi.service.KSISigningService;
+import com.guardtime.ksi.service.ListenableFuture;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.unisignature.KSISignature;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class KsiBlockSigningServiceTest extends AbstractBlockSignatureTest {
+
+    private static final String SIGNING_FAILED = "Signing failed";
+
+    private KSISigningService signingService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        signingService = mock(KSISigningService.class);
+        when(signingService.sign(any(DataHash.class), anyLong())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                SettableFuture<AggregationResponse> future = new SettableFuture<>();
+                future.setException(new KSIException(SIGNING_FAILED));
+                return future;
+            }
+        });
+    }
+
+    @Test
+    public void testBlockIsSealedWhenMaxBlockSizeIsReached() throws Exception {
+        KsiBlockSigningService service = createBuilder().setMaxBlockSize(3).build();
+        try {
+            ListenableFuture<KSISignature> first = service.sign(DATA_HASH);
+            service.sign(DATA_HASH_2);
+            verify(signingService, never()).sign(any(DataHash.class), anyLong());
+            ListenableFuture<KSISignature> third = service.sign(DATA_HASH_3);
+
+            verify(signingService).sign(any(DataHash.class), eq(2L));
+            assertFailed(first, SIGNING_FAILED);
+            assertFailed(third, SIGNING_FAILED);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testBlockIsSealedWhenMaxTreeHeightIsReached() throws Exception {
+        KsiBlockSigningService service = createBuilder().setMaxTreeHeight(2).build();
+        try {
+            List<ListenableFuture<KSISignature>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(service.sign(DATA_HASH));
+            }
+            verify(signingService, never()).sign(any(DataHash.class), anyLong());
+            ListenableFuture<KSISignature> fifth = service.sign(DATA_HASH);
+
+            verify(signingService).sign(any(DataHash.class), eq(2L));
+            for (ListenableFuture<KSISignature> future : futures) {
+                assertFailed(future, SIGNING_FAILED);
+            }
+            assertFalse(fifth.isFinished());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testDataHashExceedingMaxTreeHeightIsRejectedBeforeAdding() throws Exception {
+        KsiBlockSigningService service = createBuilder().setMaxTreeHeight(2).setMaxBlockSize(1).build();
+        try {
+            service.sign(DATA_HASH, 2L, IDENTITY_METADATA);
+            fail("Data hash exceeding the maximum tree height must be rejected");
+        } catch (KSIException e) {
+            assertEquals(e.getMessage(), "Data hash with level 2 exceeds the maximum tree height");
+        }
+        verify(signingService, never()).sign(any(DataHash.class), anyLong());
+
+        ListenableFuture<KSISignature> future = service.sign(DATA_HASH, 1L, IDENTITY_METADATA);
+        verify(signingService, times(1)).sign(any(DataHash.class), eq(2L));
+        assertFailed(future, SIGNING_FAILED);
+        service.close();
+    }
+
+    @Test
+    public void testBlockIsSealedWhenBlockIntervalEnds() throws Exception {
+        KsiBlockSigningService service = createBuilder().setBlockInterval(50L).build();
+        try {
+            ListenableFuture<KSISignature> future = service.sign(DATA_HASH);
+            assertFailed(future, SIGNING_FAILED);
+            verify(signingService).sign(DATA_HASH, 0L);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testAggregatorConfigurationIsRequestedOnce() throws Exception {
+        KsiBlockSigningService service = createBuilder().build();
+        service.close();
+        verify(signingService).registerAggregatorConfigurationListener(any(ConfigurationListener.class));
+        verify(signingService, times(1)).getAggregationConfiguration();
+    }
+
+    @Test
+    public void testRejectedBlockFailsFutures() throws Exception {
+        KsiBlockSigningService service = createBuilder()
+                .setMaxBlockSize(1)
+                .setExecutor(new Executor() {
+                    public void execute(Runnable command) {
+                        throw new RejectedExecutionException("Executor is full");
+                    }
+                }).build();
+        try {
+            ListenableFuture<KSISignature> future = service.sign(DATA_HASH);
+            assertTrue(future.isFinished());
+            assertFailed(future, "Signing the block was rejected by the executor");
+            verify(signingService, never()).sign(any(DataHash.class), anyLong());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentSign() throws Exception {
+        final int threads = 8;
+        final int hashesPerThread = 1000;
+        final KsiBlockSigningService service = createBuilder().setMaxBlockSize(500).setConcurrencyLevel(4).build();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<List<ListenableFuture<KSISignature>>>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(new Callable<List<ListenableFuture<KSISignature>>>() {
+                public List<ListenableFuture<KSISignature>> call() throws Exception {
+                    List<ListenableFuture<KSISignature>> futures = new ArrayList<>();
+                    for (int j = 0; j < hashesPerThread; j++) {
+                        futures.add(service.sign(DATA_HASH));
+                    }
+                    return futures;
+                }
+            });
+        }
+        List<ListenableFuture<KSISignature>> futures = new ArrayList<>();
+        try {
+            for (Future<List<ListenableFuture<KSISignature>>> result : executor.invokeAll(tasks)) {
+                futures.addAll(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+            service.close();
+        }
+
+        assertEquals(futures.size(), threads * hashesPerThread);
+        verify(signingService, times(threads * hashesPerThread / 500)).sign(any(DataHash.class), anyLong());
+        for (ListenableFuture<KSISignature> future : futures) {
+            assertFailed(future, SIGNING_FAILED);
+        }
+    }
+
+    private KsiBlockSigningServiceBuilder createBuilder() {
+        return new KsiBlockSigningServiceBuilder()
+                .setKsiSigningService(signingService)
+                .setBlockInterval(TimeUnit.HOURS.toMillis(1))
+                .setConcurrencyLevel(1)
+                .setExecutor(new CallerThreadExecutor());
+    }
+
+    private static void assertFailed(ListenableFuture<KSISignature> future, String message) {
+        try {
+            future.getResult();
+            fail("Signing the block must fail");
+        } catch (KSIException e) {
+            assertEquals(e.getMessage(), message);
+        }
+    }
+
+    private static class CallerThreadExecutor implements Executor {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tree;
+
+import com.guardtime.ksi.blocksigner.IdentityMetadata;
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.DataHasher;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.tlv.TLVStructure;
+import com.guardtime.ksi.unisignature.AggregationChainLink;
+import com.guardtime.ksi.unisignature.AggregationHashChain;
+import com.guardtime.ksi.util.Util;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH;
+import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH_2;
+import static com.guardtime.ksi.AbstractBlockSignatureTest.IDENTITY_METADATA;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class CompactHashTreeBuilderTest {
+
+    @Test
+    public void testTreeAndChainsAreSameAsHashTree() throws KSIException {
+        Random random = new Random(7);
+        for (int size = 1; size < 40; size++) {
+            HashTreeBuilder expectedBuilder = new HashTreeBuilder();
+            CompactHashTreeBuilder builder = new CompactHashTreeBuilder(HashAlgorithm.SHA2_256);
+            List<ImprintNode> expectedLeaves = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                HashAlgorithm algorithm = random.nextInt(5) == 0 ? HashAlgorithm.SHA2_512 : HashAlgorithm.SHA2_256;
+                DataHash hash = DataHasher.hash(algorithm, Util.toByteArray(random.nextInt()));
+                long level = random.nextInt(3) == 0 ? random.nextInt(4) : 0;
+                IdentityMetadata metadata = random.nextInt(4) == 0 ? new IdentityMetadata("client-" + i) : null;
+                ImprintNode leaf = new ImprintNode(hash, level);
+                if (metadata != null) {
+                    assertEquals(builder.calculateHeight(level, metadata), expectedBuilder.calculateHeight(leaf, metadata));
+                    expectedBuilder.add(leaf, metadata);
+                } else {
+                    assertEquals(builder.calculateHeight(level, null), expectedBuilder.calculateHeight(leaf));
+                    expectedBuilder.add(leaf);
+                }
+                assertEquals(builder.add(hash, level, metadata), i);
+                expectedLeaves.add(leaf);
+            }
+            ImprintNode expectedRoot = expectedBuilder.build();
+            ImprintNode root = builder.build();
+            assertEquals(root, expectedRoot);
+            assertEquals(builder.size(), size);
+
+            if (size == 1 && !expectedLeaves.get(0).hasMetadata()) {
+                continue;
+            }
+            AggregationHashChainBuilder chainBuilder = new AggregationHashChainBuilder();
+            for (int i = 0; i < size; i++) {
+                ImprintNode expectedLeaf = expectedLeaves.get(i);
+                assertEquals(builder.getInputHash(i), new DataHash(expectedLeaf.getValue()));
+                assertEquals(builder.hasMetadata(i), expectedLeaf.hasMetadata());
+                assertSameChain(builder.getAggregationHashChain(i), chainBuilder.build(expectedLeaf));
+            }
+        }
+    }
+
+    @Test
+    public void testCalculateHeight() throws KSIException {
+        CompactHashTreeBuilder builder = new CompactHashTreeBuilder(HashAlgorithm.SHA2_256);
+        assertEquals(builder.calculateHeight(0, null), 0);
+        assertEquals(builder.calculateHeight(0, IDENTITY_METADATA), 1);
+        builder.add(DATA_HASH, 0, null);
+        builder.add(DATA_HASH_2, 0, null);
+        builder.add(DATA_HASH, 0, null);
+        assertEquals(builder.calculateHeight(0, null), 2);
+        assertEquals(builder.calculateHeight(3, null), 5);
+    }
+
+    @Test
+    public void testHasMetadata() throws KSIException {
+        CompactHashTreeBuilder builder = new CompactHashTreeBuilder(HashAlgorithm.SHA2_256);
+        builder.add(DATA_HASH, 0, null);
+        builder.add(DATA_HASH_2, 0, IDENTITY_METADATA);
+        builder.add(DATA_HASH, 0, null);
+        assertFalse(builder.hasMetadata(0));
+        assertTrue(builder.hasMetadata(1));
+        assertFalse(builder.hasMetadata(2));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Add leaf nodes before building a tree")
+    public void testBuildTreeWithoutLeafs() {
+        new CompactHashTreeBuilder(HashAlgorithm.SHA2_256).build();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Hash tree has already been built")
+    public void testAddAfterBuild() throws KSIException {
+        CompactHashTreeBuilder builder = new CompactHashTreeBuilder(HashAlgorithm.SHA2_256);
+        builder.add(DATA_HASH, 0, null);
+        builder.build();
+        builder.add(DATA_HASH_2, 0, null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Aggregation hash chain can be built only from leaf nodes")
+    public void testCreateAggregationHashChainFromRootLeaf() throws KSIException {
+        CompactHashTreeBuilder builder = new CompactHashTreeBuilder(HashAlgorithm.SHA2_256);
+        builder.add(DATA_HASH, 0, null);
+        builder.build();
+        builder.getAggregationHashChain(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Level must be between 0 and 255")
+    public void testAddLeafWithTooHighLevel() throws KSIException {
+        new CompactHashTreeBuilder(HashAlgorithm.SHA2_256).add(DATA_HASH, 256, null);
+    }
+
+    @Test
+    public void testAddLeafExceedingMaximumHeightLeavesTreeUnchanged() throws KSIException {
+        CompactHashTreeBuilder builder = new CompactHashTreeBuilder(HashAlgorithm.SHA2_256);
+        builder.add(DATA_HASH, 255, null);
+        try {
+            builder.add(DATA_HASH_2, 255, null);
+            fail("Adding a leaf that makes the tree too high should fail");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "Hash tree height would exceed 255");
+        }
+        try {
+            builder.add(DATA_HASH_2, 0, IDENTITY_METADATA);
+            fail("Adding a leaf that makes the tree too high should fail");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "Hash tree height would exceed 255");
+        }
+        assertEquals(builder.size(), 1);
+        ImprintNode root = builder.build();
+        assertEquals(root.getValue(), DATA_HASH.getImprint());
+        assertEquals(root.getLevel(), 255L);
+    }
+
+    static void assertSameChain(AggregationHashChain chain, AggregationHashChain expected) throws KSIException {
+        assertEquals(chain.getInputHash(), expected.getInputHash());
+        assertEquals(chain.getChainIndex(), expected.getChainIndex());
+        assertEquals(chain.getAggregationAlgorithm(), expected.getAggregationAlgorithm());
+        assertEquals(chain.getChainLinks().size(), expected.getChainLinks().size());
+        for (int i = 0; i < expected.getChainLinks().size(); i++) {
+            AggregationChainLink link = chain.getChainLinks().get(i);
+            AggregationChainLink expectedLink = expected.getChainLinks().get(i);
+            assertEquals(((TLVStructure) link).getRootElement().getEncoded(),
+                    ((TLVStructure) expectedLink).getRootElement().getEncoded());
+        }
+        assertEquals(chain.calculateOutputHash(0L).getOutputHash(), expected.calculateOutputHash(0L).getOutputHash());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tree;
+
+import com.guardtime.ksi.blocksigner.IdentityMetadata;
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.DataHasher;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.unisignature.AggregationHashChain;
+import com.guardtime.ksi.unisignature.ChainResult;
+import com.guardtime.ksi.util.Util;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH;
+import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH_2;
+import static com.guardtime.ksi.AbstractBlockSignatureTest.IDENTITY_METADATA;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ConcurrentHashTreeBuilderTest {
+
+    @Test
+    public void testTreeWithConcurrencyLevelOneIsSameAsHashTree() throws KSIException {
+        HashTreeBuilder expected = new HashTreeBuilder();
+        ConcurrentHashTreeBuilder builder = new ConcurrentHashTreeBuilder(HashAlgorithm.SHA2_256, 1);
+        List<ImprintNode> expectedLeaves = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            DataHash hash = i % 2 == 0 ? DATA_HASH : DATA_HASH_2;
+            ImprintNode leaf = new ImprintNode(hash, i % 4);
+            if (i % 3 == 0) {
+                expected.add(leaf, IDENTITY_METADATA);
+                builder.add(hash, i % 4, IDENTITY_METADATA);
+            } else {
+                expected.add(leaf);
+                builder.add(hash, i % 4, null);
+            }
+            expectedLeaves.add(leaf);
+        }
+        assertEquals(builder.build(), expected.build());
+
+        AggregationHashChainBuilder chainBuilder = new AggregationHashChainBuilder();
+        long leaf = builder.firstLeaf();
+        for (ImprintNode expectedLeaf : expectedLeaves) {
+            CompactHashTreeBuilderTest.assertSameChain(builder.getAggregationHashChain(leaf), chainBuilder.build(expectedLeaf));
+            leaf = builder.nextLeaf(leaf);
+        }
+        assertEquals(leaf, ConcurrentHashTreeBuilder.NO_LEAF);
+    }
+
+    @Test
+    public void testTreeAddedByMultipleThreads() throws Exception {
+        final int threads = 8;
+        final int leavesPerThread = 200;
+        final ConcurrentHashTreeBuilder builder = new ConcurrentHashTreeBuilder(HashAlgorithm.SHA2_256, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int i = 0; i < leavesPerThread; i++) {
+                            DataHash hash = DataHasher.hash(HashAlgorithm.SHA2_256, Util.toByteArray(thread * leavesPerThread + i));
+                            IdentityMetadata metadata = i % 10 == 0 ? new IdentityMetadata("client-" + thread) : null;
+                            assertTrue(builder.add(hash, 0, metadata, 255) != ConcurrentHashTreeBuilder.NO_LEAF);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            ImprintNode root = builder.build();
+
+            assertEquals(builder.size(), threads * leavesPerThread);
+            int count = 0;
+            for (long leaf = builder.firstLeaf(); leaf != ConcurrentHashTreeBuilder.NO_LEAF; leaf = builder.nextLeaf(leaf)) {
+                AggregationHashChain chain = builder.getAggregationHashChain(leaf);
+                ChainResult result = chain.calculateOutputHash(0L);
+                assertEquals(chain.getInputHash(), builder.getInputHash(leaf));
+                assertEquals(result.getOutputHash(), new DataHash(root.getValue()));
+                assertEquals(result.getLevel(), root.getLevel());
+                count++;
+            }
+            assertEquals(count, threads * leavesPerThread);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCalculateHeightIncludesMergedLevels() {
+        ConcurrentHashTreeBuilder builder = new ConcurrentHashTreeBuilder(HashAlgorithm.SHA2_256, 5);
+        assertEquals(builder.calculateHeight(0, null), 3);
+    }
+
+    @Test
+    public void testAddDoesNotExceedMaximumHeight() throws KSIException {
+        ConcurrentHashTreeBuilder builder = new ConcurrentHashTreeBuilder(HashAlgorithm.SHA2_256, 2);
+        assertTrue(builder.add(DATA_HASH, 0, null, 2) != ConcurrentHashTreeBuilder.NO_LEAF);
+        assertTrue(builder.add(DATA_HASH_2, 0, null, 2) != ConcurrentHashTreeBuilder.NO_LEAF);
+        assertEquals(builder.add(DATA_HASH, 0, null, 2), ConcurrentHashTreeBuilder.NO_LEAF);
+        assertEquals(builder.add(DATA_HASH, 0, IDENTITY_METADATA, 2), ConcurrentHashTreeBuilder.NO_LEAF);
+        assertEquals(builder.build().getLevel(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Add leaf nodes before building a tree")
+    public void testBuildTreeWithoutLeafs() {
+        new ConcurrentHashTreeBuilder(HashAlgorithm.SHA2_256, 2).build();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Hash tree has already been built")
+    public void testAddAfterBuild() throws KSIException {
+        ConcurrentHashTreeBuilder builder = new ConcurrentHashTreeBuilder(HashAlgorithm.SHA2_256, 2);
+        builder.add(DATA_HASH, 0, null);
+        builder.build();
+        builder.add(DATA_HASH_2, 0, null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Concurrency level must be positive")
+    public void testCreateBuilderWithInvalidConcurrencyLevel() {
+        new ConcurrentHashTreeBuilder(HashAlgorithm.SHA2_256, 0);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tree;
+
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.util.Util;
+
+/**
+ * Measures the cost of adding a leaf to the {@link HashTreeBuilder} the way {@link
+ * com.guardtime.ksi.blocksigner.KsiBlockSigner} does it, i.e. a height check followed by the actual add. The average
+ * cost per leaf is printed for every window of leaves and should stay flat as the block grows.
+ * <p>
+ * Not a unit test, run it manually: {@code HashTreeBuilderBenchmark [leafCount] [windowSize]}.
+ * </p>
+ */
+public class HashTreeBuilderBenchmark {
+
+    private static final int DEFAULT_LEAF_COUNT = 1 << 17;
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 13;
+    private static final int WARM_UP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int leafCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LEAF_COUNT;
+        int windowSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WINDOW_SIZE;
+        ImprintNode[] leaves = createLeaves(leafCount);
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            run(leaves, windowSize, false);
+        }
+        run(leaves, windowSize, true);
+    }
+
+    private static void run(ImprintNode[] leaves, int windowSize, boolean print) {
+        HashTreeBuilder builder = new HashTreeBuilder();
+        long maxHeight = 0;
+        long windowStart = System.nanoTime();
+        for (int i = 0; i < leaves.length; i++) {
+            maxHeight = Math.max(maxHeight, builder.calculateHeight(leaves[i]));
+            builder.add(leaves[i]);
+            if ((i + 1) % windowSize == 0) {
+                long now = System.nanoTime();
+                if (print) {
+                    System.out.printf("leaves %8d-%8d: %8d ns/leaf (tree height %d)%n", i + 1 - windowSize, i + 1,
+                            (now - windowStart) / windowSize, maxHeight);
+                }
+                windowStart = now;
+            }
+        }
+    }
+
+    private static ImprintNode[] createLeaves(int count) {
+        ImprintNode[] leaves = new ImprintNode[count];
+        for (int i = 0; i < count; i++) {
+            byte[] value = new byte[HashAlgorithm.SHA2_256.getLength()];
+            System.arraycopy(Util.toByteArray(i), 0, value, 0, 4);
+            leaves[i] = new ImprintNode(new DataHash(HashAlgorithm.SHA2_256, value));
+        }
+        return leaves;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tree;
+
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.util.Util;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how adding a large batch of leaves to the {@link HashTreeBuilder} with {@link
+ * HashTreeBuilder#add(ImprintNode...)} scales with the number of cores. The batch is hashed sequentially first and
+ * then in parallel with 1, 2, 4, ... threads up to the number of available processors, the time and the speedup
+ * compared to the sequential run is printed for each.
+ * <p>
+ * Not a unit test, run it manually: {@code HashTreeBuilderParallelBenchmark [leafCount] [rounds]}.
+ * </p>
+ */
+public class HashTreeBuilderParallelBenchmark {
+
+    private static final int DEFAULT_LEAF_COUNT = 1 << 20;
+    private static final int DEFAULT_ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int leafCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LEAF_COUNT;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        ForkJoinPool warmUpPool = new ForkJoinPool(processors);
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            run(leafCount, null, Integer.MAX_VALUE);
+            run(leafCount, warmUpPool, 1);
+        }
+        warmUpPool.shutdown();
+
+        long sequential = measure(leafCount, rounds, null, Integer.MAX_VALUE);
+        System.out.printf("sequential: %8d ms%n", sequential / 1000000);
+        for (int threads = 1; threads <= processors; threads = nextThreadCount(threads, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long parallel = measure(leafCount, rounds, pool, 1);
+            pool.shutdown();
+            System.out.printf("%2d threads: %8d ms, speedup %.2f%n", threads, parallel / 1000000,
+                    (double) sequential / parallel);
+        }
+    }
+
+    private static int nextThreadCount(int threads, int processors) {
+        return threads < processors && threads * 2 > processors ? processors : threads * 2;
+    }
+
+    private static long measure(int leafCount, int rounds, ForkJoinPool pool, int parallelThreshold) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            best = Math.min(best, run(leafCount, pool, parallelThreshold));
+        }
+        return best;
+    }
+
+    private static long run(int leafCount, ForkJoinPool pool, int parallelThreshold) {
+        ImprintNode[] leaves = createLeaves(leafCount);
+        HashTreeBuilder builder = new HashTreeBuilder(HashAlgorithm.SHA2_256, pool, parallelThreshold);
+        long start = System.nanoTime();
+        builder.add(leaves);
+        builder.build();
+        return System.nanoTime() - start;
+    }
+
+    private static ImprintNode[] createLeaves(int count) {
+        ImprintNode[] leaves = new ImprintNode[count];
+        for (int i = 0; i < count; i++) {
+            byte[] value = new byte[HashAlgorithm.SHA2_256.getLength()];
+            System.arraycopy(Util.toByteArray(i), 0, value, 0, 4);
+            leaves[i] = new ImprintNode(new DataHash(HashAlgorithm.SHA2_256, value));
+        }
+        return leaves;
+    }
+}
@@ -22,9 +22,16 @@ package com.guardtime.ksi.tree;
 
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.unisignature.ChainResult;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH;
 import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH_2;
 import static com.guardtime.ksi.AbstractBlockSignatureTest.DATA_HASH_3;
@@ -137,4 +144,138 @@ public class HashTreeBuilderTest {
         }
     }
 
+    @Test
+    public void testCalculateTreeHeightMatchesBuiltTreeHeight() {
+        long[] levels = {0, 3, 1, 1, 0, 5, 2, 0, 0, 7, 1, 4, 0, 2, 2, 6, 0, 1};
+        for (long level : levels) {
+            ImprintNode leaf = new ImprintNode(DATA_HASH, level);
+            long expectedHeight = builder.calculateHeight(leaf);
+            builder.add(leaf);
+            assertEquals(builder.build().getLevel(), expectedHeight);
+        }
+    }
+
+    @Test
+    public void testCalculateTreeHeightWithMetadataMatchesBuiltTreeHeight() throws KSIException {
+        for (int i = 0; i < 9; i++) {
+            ImprintNode leaf = new ImprintNode(DATA_HASH, i % 3);
+            long expectedHeight = builder.calculateHeight(leaf, IDENTITY_METADATA);
+            builder.add(leaf, IDENTITY_METADATA);
+            assertEquals(builder.build().getLevel(), expectedHeight);
+            assertEquals(builder.calculateHeight(leaf), builder.calculateHeight(new ImprintNode(DATA_HASH, i % 3 + 1)));
+        }
+    }
+
+    @Test
+    public void testParallelAddBuildsSameTreeAsSequentialAdd() {
+        Random random = new Random(7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 4; round++) {
+                HashTreeBuilder sequential = new HashTreeBuilder(HashAlgorithm.SHA2_256, pool, Integer.MAX_VALUE);
+                HashTreeBuilder parallel = new HashTreeBuilder(HashAlgorithm.SHA2_256, pool, 1);
+                int existing = random.nextInt(20);
+                for (int i = 0; i < existing; i++) {
+                    long level = random.nextInt(3);
+                    sequential.add(new ImprintNode(DATA_HASH_2, level));
+                    parallel.add(new ImprintNode(DATA_HASH_2, level));
+                }
+                int count = 3000 + random.nextInt(3000);
+                ImprintNode[] sequentialLeaves = new ImprintNode[count];
+                ImprintNode[] parallelLeaves = new ImprintNode[count];
+                for (int i = 0; i < count; i++) {
+                    byte[] value = new byte[HashAlgorithm.SHA2_256.getLength()];
+                    random.nextBytes(value);
+                    long level = round % 2 == 0 ? 0 : random.nextInt(4);
+                    sequentialLeaves[i] = new ImprintNode(new DataHash(HashAlgorithm.SHA2_256, value), level);
+                    parallelLeaves[i] = new ImprintNode(new DataHash(HashAlgorithm.SHA2_256, value), level);
+                }
+                sequential.add(sequentialLeaves);
+                parallel.add(parallelLeaves);
+                assertEquals(parallel.calculateHeight(node), sequential.calculateHeight(node));
+
+                ImprintNode root = parallel.build();
+                assertEquals(root.getValue(), sequential.build().getValue());
+                for (int i = 0; i < count; i += 97) {
+                    assertEquals(pathTo(parallelLeaves[i]), pathTo(sequentialLeaves[i]));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBalancedTreeHasMinimalHeight() {
+        HashTreeBuilder sequential = new HashTreeBuilder(HashAlgorithm.SHA2_256);
+        HashTreeBuilder balanced = new HashTreeBuilder(HashAlgorithm.SHA2_256, TreeShape.BALANCED);
+        for (long level : new long[]{0, 5, 0}) {
+            sequential.add(new ImprintNode(DATA_HASH, level));
+            balanced.add(new ImprintNode(DATA_HASH, level));
+        }
+        assertEquals(sequential.build().getLevel(), 7L);
+        assertEquals(balanced.build().getLevel(), 6L);
+    }
+
+    @Test
+    public void testBalancedTreeWithLeavesOfEqualLevel() {
+        HashTreeBuilder balanced = new HashTreeBuilder(HashAlgorithm.SHA2_256, TreeShape.BALANCED);
+        ImprintNode[] leaves = new ImprintNode[6];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = new ImprintNode(DATA_HASH);
+        }
+        balanced.add(leaves);
+        assertEquals(balanced.build().getLevel(), 3L);
+        for (ImprintNode leaf : leaves) {
+            int length = pathTo(leaf).size() - 1;
+            assertTrue(length == 2 || length == 3);
+        }
+    }
+
+    @Test
+    public void testBalancedTreeHeightMatchesCalculatedHeight() throws KSIException {
+        Random random = new Random(11);
+        HashTreeBuilder sequential = new HashTreeBuilder(HashAlgorithm.SHA2_256);
+        HashTreeBuilder balanced = new HashTreeBuilder(HashAlgorithm.SHA2_256, TreeShape.BALANCED);
+        List<ImprintNode> leaves = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            DataHash hash = i % 2 == 0 ? DATA_HASH : DATA_HASH_2;
+            long level = random.nextInt(6);
+            ImprintNode leaf = new ImprintNode(hash, level);
+            leaves.add(leaf);
+            if (i % 5 == 0) {
+                long expectedHeight = balanced.calculateHeight(leaf, IDENTITY_METADATA);
+                sequential.add(new ImprintNode(hash, level), IDENTITY_METADATA);
+                balanced.add(leaf, IDENTITY_METADATA);
+                assertEquals(balanced.build().getLevel(), expectedHeight);
+            } else {
+                long expectedHeight = balanced.calculateHeight(leaf);
+                sequential.add(new ImprintNode(hash, level));
+                balanced.add(leaf);
+                assertEquals(balanced.build().getLevel(), expectedHeight);
+            }
+            assertTrue(balanced.build().getLevel() <= sequential.build().getLevel());
+        }
+
+        ImprintNode root = balanced.build();
+        for (ImprintNode leaf : leaves) {
+            ChainResult result = new AggregationHashChainBuilder().build(leaf).calculateOutputHash(0L);
+            assertEquals(result.getOutputHash(), new DataHash(root.getValue()));
+            assertEquals(result.getLevel(), root.getLevel());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Add leaf nodes before building a tree")
+    public void testBuildBalancedTreeWithoutLeafs() {
+        new HashTreeBuilder(HashAlgorithm.SHA2_256, TreeShape.BALANCED).build();
+    }
+
+    private static List<DataHash> pathTo(TreeNode leaf) {
+        List<DataHash> path = new ArrayList<>();
+        for (TreeNode node = leaf; node != null; node = node.getParent()) {
+            path.add(new DataHash(node.getValue()));
+        }
+        return path;
+    }
+
 }
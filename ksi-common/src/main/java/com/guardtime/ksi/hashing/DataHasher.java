@@ -20,17 +20,16 @@
 package com.guardtime.ksi.hashing;
 
 import com.guardtime.ksi.util.Util;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.Security;
 
 /**
  * Functionality for hashing data.
@@ -64,6 +63,7 @@ import java.security.Security;
 public class DataHasher {
 
     private static final int DEFAULT_STREAM_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_FILE_BUFFER_SIZE = 1024 * 1024;
     private HashAlgorithm algorithm;
     private MessageDigest messageDigest;
     private DataHash outputHash = null;
@@ -106,19 +106,7 @@ public class DataHasher {
         }
 
         this.algorithm = algorithm;
-
-        String provider = BouncyCastleProvider.PROVIDER_NAME;
-        if (Security.getProvider(provider) == null) {
-            Security.addProvider(new BouncyCastleProvider());
-        }
-
-        try {
-            messageDigest = MessageDigest.getInstance(algorithm.getName(), provider);
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalArgumentException("Hash algorithm not supported: " + algorithm.getName());
-        } catch (NoSuchProviderException e) {
-            throw new IllegalArgumentException("Cryptographic provider not found: " + provider, e);
-        }
+        this.messageDigest = MessageDigestProviders.createMessageDigest(algorithm);
     }
 
     /**
@@ -178,7 +166,8 @@ public class DataHasher {
     }
 
     /**
-     * Adds data to the digest using the specified file, starting at the offset 0.
+     * Adds data to the digest using the specified file, starting at the offset 0. The file is read using a 1 MB
+     * direct buffer.
      *
      * @param file input file.
      *
@@ -187,7 +176,27 @@ public class DataHasher {
      * @throws HashException when hash calculation fails.
      */
     public final DataHasher addData(File file) {
-        return addData(file, DEFAULT_STREAM_BUFFER_SIZE);
+        return addData(file, DEFAULT_FILE_BUFFER_SIZE);
+    }
+
+    /**
+     * Adds the remaining bytes of the buffer to the digest. Upon return, the buffer's position will be equal to its
+     * limit.
+     *
+     * @param buffer buffer of bytes, may be a direct buffer.
+     *
+     * @return The same {@link DataHasher} object for chaining calls.
+     *
+     * @throws IllegalStateException when hash is already been calculated.
+     * @throws NullPointerException  when input buffer is null.
+     */
+    public final DataHasher addData(ByteBuffer buffer) {
+        Util.notNull(buffer, "Byte buffer");
+        if (outputHash != null) {
+            throw new IllegalStateException("Output hash has already been calculated");
+        }
+        messageDigest.update(buffer);
+        return this;
     }
 
     /**
@@ -233,7 +242,8 @@ public class DataHasher {
     }
 
     /**
-     * Adds data to the digest using the specified file, starting at the offset 0.
+     * Adds data to the digest using the specified file, starting at the offset 0. The file is read through a {@link
+     * FileChannel} into a direct buffer of the given size.
      *
      * @param file       input file.
      * @param bufferSize size of buffer for reading data.
@@ -248,15 +258,23 @@ public class DataHasher {
         FileInputStream inStream = null;
         try {
             inStream = new FileInputStream(file);
-            return addData(inStream, bufferSize);
+            FileChannel channel = inStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.max(1, Math.min(bufferSize, channel.size())));
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                addData(buffer);
+                buffer.clear();
+            }
+            return this;
         } catch (FileNotFoundException e) {
             throw new IllegalArgumentException("File not found, when calculating data hash", e);
+        } catch (IOException e) {
+            throw new HashException("Exception occurred when reading file while calculating hash", e);
         } finally {
             Util.closeQuietly(inStream);
         }
     }
 
-
     /**
      * Gets the final hash value for the digest.
      * <p> This will not reset hash calculation.</p>
@@ -285,4 +303,94 @@ public class DataHasher {
         return this;
     }
 
+    /**
+     * Calculates the hash of two byte arrays followed by the level encoded as an unsigned integer, i.e. the hash of a
+     * hash tree node or a hash chain step. Uses a message digest and buffer reused by the calling thread, so no hasher
+     * needs to be created. Expiration of the algorithm is not checked.
+     *
+     * @param algorithm {@link HashAlgorithm} to be used, must be implemented.
+     * @param left      left child of the node, e.g. imprint of the left hash.
+     * @param right     right child of the node, e.g. imprint of the right hash.
+     * @param level     level of the node, must not be negative.
+     *
+     * @return Hash of the node.
+     *
+     * @throws IllegalArgumentException when hash algorithm isn't implemented or level is negative.
+     */
+    public static DataHash hash(HashAlgorithm algorithm, byte[] left, byte[] right, long level) {
+        if (level < 0) {
+            throw new IllegalArgumentException("Only non-negative integer values are allowed");
+        }
+        ThreadLocalDigests digests = ThreadLocalDigests.get();
+        MessageDigest digest = digests.getDigest(algorithm);
+        digest.update(left);
+        digest.update(right);
+        updateLevel(digest, digests, level);
+        return new DataHash(algorithm, digest.digest());
+    }
+
+    /**
+     * Calculates the hash of a hash tree node like {@link #hash(HashAlgorithm, byte[], byte[], long)}, but reads the
+     * children from regions of byte arrays and writes the imprint of the result into a region of a byte array, so that
+     * the node hashes of a large tree can be kept in shared arrays.
+     *
+     * @param algorithm    {@link HashAlgorithm} to be used, must be implemented.
+     * @param left         array containing the left child of the node.
+     * @param leftOffset   offset of the left child.
+     * @param leftLength   length of the left child.
+     * @param right        array containing the right child of the node.
+     * @param rightOffset  offset of the right child.
+     * @param rightLength  length of the right child.
+     * @param level        level of the node, must not be negative.
+     * @param output       array receiving the imprint of the node hash.
+     * @param outputOffset offset of the imprint, the array must have room for the algorithm id and the hash value.
+     *
+     * @throws IllegalArgumentException when hash algorithm isn't implemented or level is negative.
+     */
+    public static void hash(HashAlgorithm algorithm, byte[] left, int leftOffset, int leftLength, byte[] right,
+                            int rightOffset, int rightLength, long level, byte[] output, int outputOffset) {
+        if (level < 0) {
+            throw new IllegalArgumentException("Only non-negative integer values are allowed");
+        }
+        ThreadLocalDigests digests = ThreadLocalDigests.get();
+        MessageDigest digest = digests.getDigest(algorithm);
+        digest.update(left, leftOffset, leftLength);
+        digest.update(right, rightOffset, rightLength);
+        updateLevel(digest, digests, level);
+        output[outputOffset] = (byte) algorithm.getId();
+        try {
+            digest.digest(output, outputOffset + 1, algorithm.getLength());
+        } catch (DigestException e) {
+            throw new HashException("Calculating the hash of a hash tree node failed", e);
+        }
+    }
+
+    private static void updateLevel(MessageDigest digest, ThreadLocalDigests digests, long level) {
+        byte[] levelBuffer = digests.getLevelBuffer();
+        int offset = levelBuffer.length;
+        for (long t = level; t > 0; t >>>= 8) {
+            levelBuffer[--offset] = (byte) t;
+        }
+        digest.update(levelBuffer, offset, levelBuffer.length - offset);
+    }
+
+    /**
+     * Calculates the hash of the concatenation of the given byte arrays. Uses a message digest reused by the calling
+     * thread, so no hasher needs to be created. Expiration of the algorithm is not checked.
+     *
+     * @param algorithm {@link HashAlgorithm} to be used, must be implemented.
+     * @param data      byte arrays to be hashed.
+     *
+     * @return Hash of the data.
+     *
+     * @throws IllegalArgumentException when hash algorithm isn't implemented.
+     */
+    public static DataHash hash(HashAlgorithm algorithm, byte[]... data) {
+        MessageDigest digest = ThreadLocalDigests.get().getDigest(algorithm);
+        for (byte[] bytes : data) {
+            digest.update(bytes);
+        }
+        return new DataHash(algorithm, digest.digest());
+    }
+
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.hashing;
+
+import com.guardtime.ksi.util.Util;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Selects the cryptographic provider used to calculate the hashes of each {@link HashAlgorithm}.
+ * <p>
+ * The candidates of an algorithm are the installed providers implementing it and BouncyCastle, which is also the only
+ * candidate for the algorithms the installed providers do not implement, e.g. RIPEMD-160. Every candidate is checked
+ * to produce the same hash as BouncyCastle, the candidates that do not are skipped. Of the remaining candidates the one
+ * that hashes a hash tree node input (65 bytes) the fastest is used, e.g. the SUN provider of the JDK, whose SHA-2
+ * implementations use the SHA instructions of the CPU when these are available. The time of a candidate is the best of
+ * a few rounds, in case of equal times the provider installed first wins.
+ * </p>
+ * <p>
+ * The provider is selected when the algorithm is used the first time. The provider of an algorithm can be changed
+ * using {@link #setProvider(HashAlgorithm, Provider)}.
+ * </p>
+ */
+public final class MessageDigestProviders {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageDigestProviders.class);
+
+    /**
+     * Input used to check and measure the providers, has the length of a hash tree node input (two SHA-256 imprints
+     * and a level).
+     */
+    private static final byte[] SELF_CHECK_INPUT = createSelfCheckInput();
+
+    private static final int BENCHMARK_ROUNDS = 5;
+    private static final int BENCHMARK_ITERATIONS = 500;
+
+    private static final Provider BOUNCY_CASTLE_PROVIDER = getBouncyCastleProvider();
+    private static final AtomicReferenceArray<Provider> PROVIDERS = new AtomicReferenceArray<>(HashAlgorithm.values().length);
+
+    private MessageDigestProviders() {
+    }
+
+    /**
+     * Returns the provider used to calculate the hashes with the given algorithm. The provider is selected when the
+     * algorithm is used the first time.
+     *
+     * @param algorithm implemented hash algorithm, not null.
+     *
+     * @return Provider of the algorithm.
+     *
+     * @throws IllegalArgumentException when hash algorithm isn't implemented or none of the providers supports it.
+     */
+    public static Provider getProvider(HashAlgorithm algorithm) {
+        checkImplemented(algorithm);
+        Provider provider = PROVIDERS.get(algorithm.ordinal());
+        if (provider == null) {
+            provider = selectProvider(algorithm);
+            if (!PROVIDERS.compareAndSet(algorithm.ordinal(), null, provider)) {
+                provider = PROVIDERS.get(algorithm.ordinal());
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * Sets the provider used to calculate the hashes with the given algorithm. Affects the {@link DataHasher}s created
+     * afterwards and threads that have not used the algorithm yet.
+     *
+     * @param algorithm implemented hash algorithm, not null.
+     * @param provider  provider implementing the algorithm, not null.
+     *
+     * @throws IllegalArgumentException when hash algorithm isn't implemented, the provider does not implement it or
+     *                                  calculates a different hash than BouncyCastle.
+     */
+    public static void setProvider(HashAlgorithm algorithm, Provider provider) {
+        checkImplemented(algorithm);
+        Util.notNull(provider, "Provider");
+        if (!isValid(algorithm, provider)) {
+            throw new IllegalArgumentException("Provider " + provider.getName() + " does not implement hash algorithm "
+                    + algorithm.getName() + " correctly");
+        }
+        PROVIDERS.set(algorithm.ordinal(), provider);
+    }
+
+    static MessageDigest createMessageDigest(HashAlgorithm algorithm) {
+        Provider provider = getProvider(algorithm);
+        try {
+            return MessageDigest.getInstance(algorithm.getName(), provider);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Hash algorithm not supported: " + algorithm.getName());
+        }
+    }
+
+    static Provider selectProvider(HashAlgorithm algorithm) {
+        Provider fastest = null;
+        long fastestTime = Long.MAX_VALUE;
+        for (Provider provider : getCandidates(algorithm)) {
+            if (!isValid(algorithm, provider)) {
+                logger.warn("Provider {} does not implement hash algorithm {} correctly, skipping it",
+                        provider.getName(), algorithm.getName());
+                continue;
+            }
+            long time = measure(algorithm, provider);
+            logger.debug("Provider {} calculated {} hashes with hash algorithm {} in {} ns", provider.getName(),
+                    BENCHMARK_ITERATIONS, algorithm.getName(), time);
+            if (fastest == null || time < fastestTime) {
+                fastest = provider;
+                fastestTime = time;
+            }
+        }
+        if (fastest == null) {
+            throw new IllegalArgumentException("Hash algorithm not supported: " + algorithm.getName());
+        }
+        logger.debug("Using provider {} for hash algorithm {}", fastest.getName(), algorithm.getName());
+        return fastest;
+    }
+
+    /**
+     * Measures the time the provider needs to hash the self-check input {@link #BENCHMARK_ITERATIONS} times. The best
+     * time of {@link #BENCHMARK_ROUNDS} rounds is returned, so the first rounds warm up the implementation.
+     */
+    private static long measure(HashAlgorithm algorithm, Provider provider) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(algorithm.getName(), provider);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                    digest.digest(SELF_CHECK_INPUT);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        } catch (NoSuchAlgorithmException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static List<Provider> getCandidates(HashAlgorithm algorithm) {
+        List<Provider> candidates = new ArrayList<>();
+        for (Provider provider : Security.getProviders()) {
+            if (provider != BOUNCY_CASTLE_PROVIDER && supports(provider, algorithm)) {
+                candidates.add(provider);
+            }
+        }
+        candidates.add(BOUNCY_CASTLE_PROVIDER);
+        return candidates;
+    }
+
+    private static boolean supports(Provider provider, HashAlgorithm algorithm) {
+        try {
+            MessageDigest.getInstance(algorithm.getName(), provider);
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Self-check of the provider, compares the hash calculated by the provider with the hash calculated by
+     * BouncyCastle.
+     */
+    private static boolean isValid(HashAlgorithm algorithm, Provider provider) {
+        try {
+            byte[] hash = MessageDigest.getInstance(algorithm.getName(), provider).digest(SELF_CHECK_INPUT);
+            if (provider == BOUNCY_CASTLE_PROVIDER) {
+                return hash.length == algorithm.getLength();
+            }
+            byte[] expected = MessageDigest.getInstance(algorithm.getName(), BOUNCY_CASTLE_PROVIDER).digest(SELF_CHECK_INPUT);
+            return Arrays.equals(hash, expected);
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        } catch (RuntimeException e) {
+            logger.warn("Hash calculation with provider " + provider.getName() + " failed", e);
+            return false;
+        }
+    }
+
+    private static void checkImplemented(HashAlgorithm algorithm) {
+        Util.notNull(algorithm, "Hash algorithm");
+        if (HashAlgorithm.Status.NOT_IMPLEMENTED.equals(algorithm.getStatus())) {
+            throw new IllegalArgumentException("Hash algorithm " + algorithm.name() + " is not implemented");
+        }
+    }
+
+    private static Provider getBouncyCastleProvider() {
+        synchronized (Security.class) {
+            Provider provider = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+            if (provider == null) {
+                provider = new BouncyCastleProvider();
+                Security.addProvider(provider);
+            }
+            return provider;
+        }
+    }
+
+    private static byte[] createSelfCheckInput() {
+        byte[] input = new byte[65];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (i * 31 + 7);
+        }
+        return input;
+    }
+}
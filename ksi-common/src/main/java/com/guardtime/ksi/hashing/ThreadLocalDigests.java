@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.hashing;
+
+import com.guardtime.ksi.util.Util;
+
+import java.security.MessageDigest;
+
+/**
+ * Message digests and buffers reused by a single thread, used by the static hashing methods of {@link DataHasher} to
+ * avoid looking up the cryptographic provider and creating a new digest for every hash calculation.
+ */
+final class ThreadLocalDigests {
+
+    private static final ThreadLocal<ThreadLocalDigests> DIGESTS = new ThreadLocal<ThreadLocalDigests>() {
+        @Override
+        protected ThreadLocalDigests initialValue() {
+            return new ThreadLocalDigests();
+        }
+    };
+
+    private final MessageDigest[] digests = new MessageDigest[HashAlgorithm.values().length];
+    private final byte[] levelBuffer = new byte[8];
+
+    private ThreadLocalDigests() {
+    }
+
+    static ThreadLocalDigests get() {
+        return DIGESTS.get();
+    }
+
+    /**
+     * Returns the reset message digest for the given algorithm, the digest is created on first use.
+     */
+    MessageDigest getDigest(HashAlgorithm algorithm) {
+        Util.notNull(algorithm, "Hash algorithm");
+        MessageDigest digest = digests[algorithm.ordinal()];
+        if (digest == null) {
+            digest = MessageDigestProviders.createMessageDigest(algorithm);
+            digests[algorithm.ordinal()] = digest;
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    /**
+     * Returns a buffer that can hold an unsigned long value.
+     */
+    byte[] getLevelBuffer() {
+        return levelBuffer;
+    }
+}
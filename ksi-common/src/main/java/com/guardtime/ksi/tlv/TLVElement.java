@@ -25,9 +25,6 @@ import com.guardtime.ksi.hashing.HashAlgorithm;
 import com.guardtime.ksi.util.Base16;
 import com.guardtime.ksi.util.Util;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.CharacterCodingException;
@@ -35,6 +32,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p> Representation of the Type-Length-Value (TLV) element. The TLV scheme is used to encode
@@ -53,11 +51,23 @@ import java.util.List;
  *     <li>The non-critical flag.
  *     <li>The Forward Unknown flag.
  * </ul>
+ * <p> The content of a parsed element is not copied, it refers to the region of the parsed buffer. The trade-off is
+ * that the whole buffer stays reachable as long as any element parsed from it is, even when only a small element is
+ * kept (e.g. a hash taken from a large response). Such an element can be detached from the buffer by re-creating it
+ * from its encoding, {@code TLVElement.create(element.getEncoded())}. </p>
  */
 public final class TLVElement {
 
     public static final int MAX_TLV16_CONTENT_LENGTH = 0xFFFF;
 
+    /**
+     * Generation of the memoized content lengths. Elements don't know their parents, so a change of an element that
+     * has been added to a parent starts a new generation, which invalidates the memoized lengths of all the elements.
+     * Changes of elements that haven't been added to a parent, e.g. the elements being built or parsed, only
+     * invalidate their own length.
+     */
+    private static final AtomicLong LENGTH_GENERATION = new AtomicLong();
+
     /**
      * TLV 16 bit flag.
      */
@@ -79,6 +89,20 @@ public final class TLVElement {
 
     private List<TLVElement> children = new LinkedList<>();
     private byte[] content = new byte[0];
+    private int contentOffset;
+    private int contentLength;
+
+    /**
+     * Copy of the content of a parsed element whose content refers to a region of the parsed buffer, made by the first
+     * {@link #getContent()} call.
+     */
+    private volatile byte[] contentCopy;
+
+    /**
+     * True, if the element has been added to a parent element.
+     */
+    private boolean attached;
+    private MemoizedLength memoizedLength;
 
     public TLVElement(boolean nonCritical, boolean forwarded, int type) {
         this(false, nonCritical, forwarded, type);
@@ -102,18 +126,35 @@ public final class TLVElement {
      */
     public static TLVElement create(byte[] bytes) throws TLVParserException {
         Util.notNull(bytes, "Byte array");
-        TLVInputStream input = null;
+        return create(new TLVReader(bytes));
+    }
+
+    /**
+     * Creates TLVElement from a region of the byte array. The content of the created element refers to the given
+     * array, the array must not be modified afterwards.
+     *
+     * @param bytes byte array to create the TLV element from.
+     * @param offset offset of the TLV element in the byte array.
+     * @param length length of the TLV element.
+     *
+     * @return {@link TLVElement}
+     *
+     * @throws TLVParserException
+     */
+    public static TLVElement create(byte[] bytes, int offset, int length) throws TLVParserException {
+        Util.notNull(bytes, "Byte array");
+        return create(new TLVReader(bytes, offset, length));
+    }
+
+    private static TLVElement create(TLVReader reader) throws TLVParserException {
         try {
-            input = new TLVInputStream(new ByteArrayInputStream(bytes));
-            TLVElement element = input.readElement();
-            if (input.hasNextElement()) {
+            TLVElement element = reader.readElement();
+            if (reader.hasNextElement()) {
                 throw new MultipleTLVElementException();
             }
             return element;
         } catch (IOException e) {
             throw new TLVParserException("Reading TLV bytes failed", e);
-        } finally {
-            Util.closeQuietly(input);
         }
     }
 
@@ -231,16 +272,17 @@ public final class TLVElement {
      *         - content contains leading zeros or content contains more than 63 unsigned bits
      */
     public final Long getDecodedLong() throws TLVParserException {
-        byte[] data = getContent();
-        if (data.length > 1 && data[0] == 0) {
+        byte[] data = children.isEmpty() ? content : getContent();
+        int ofs = children.isEmpty() ? contentOffset : 0;
+        int length = children.isEmpty() ? contentLength : data.length;
+        if (length > 1 && data[ofs] == 0) {
             throw new TLVParserException("Integer encoding cannot contain leading zeros");
         }
-        if (data.length > 8 || data.length == 8 && data[0] < 0) {
+        if (length > 8 || length == 8 && data[ofs] < 0) {
             throw new TLVParserException("Integers of at most 63 unsigned bits supported by this implementation");
         }
-        int ofs = 0;
         long t = 0;
-        for (int i = 0; i < data.length; ++i) {
+        for (int i = 0; i < length; ++i) {
             t = (t << 8) | ((long) data[ofs + i] & 0xff);
         }
         return t;
@@ -255,12 +297,14 @@ public final class TLVElement {
      *         when content string isn't null terminated or is malformed UTF-8 data.
      */
     public final String getDecodedString() throws TLVParserException {
-        byte[] data = getContent();
-        if (!(data.length > 0 && data[data.length - 1] == '\0')) {
+        byte[] data = children.isEmpty() ? content : getContent();
+        int ofs = children.isEmpty() ? contentOffset : 0;
+        int length = children.isEmpty() ? contentLength : data.length;
+        if (!(length > 0 && data[ofs + length - 1] == '\0')) {
             throw new TLVParserException("String must be null terminated");
         }
         try {
-            return Util.decodeString(data, 0, data.length - 1);
+            return Util.decodeString(data, ofs, length - 1);
         } catch (CharacterCodingException e) {
             throw new TLVParserException("Malformed UTF-8 data", e);
         }
@@ -310,20 +354,21 @@ public final class TLVElement {
     }
 
     /**
-     * Returns the TLV content. If TLV does not include content then empty array is returned.
+     * Returns the TLV content. If TLV does not include content then empty array is returned. The content of an element
+     * without child elements is not copied on every call, so the returned array must not be modified.
      *
      * @return Byte array including TLV element content.
      *
      * @throws TLVParserException
      */
     public byte[] getContent() throws TLVParserException {
-        byte[] content = this.content;
-        if (!children.isEmpty()) {
-            for (TLVElement child : children) {
-                content = Util.join(content, child.encodeHeader());
-                content = Util.join(content, child.getContent());
-            }
+        if (children.isEmpty()) {
+            return getOwnContent();
         }
+        ContentLengths lengths = new ContentLengths();
+        byte[] content = new byte[calculateContentLengths(lengths)];
+        lengths.position = 1;
+        encodeContent(content, 0, lengths);
         return content;
     }
 
@@ -339,6 +384,39 @@ public final class TLVElement {
         Util.notNull(content, "Content");
         assertActualContentLengthIsInTLVLimits(content.length);
         this.content = content;
+        this.contentOffset = 0;
+        this.contentLength = content.length;
+        this.contentCopy = null;
+        changed();
+    }
+
+    /**
+     * Sets the content to refer to the region of the given byte array. Used by {@link TLVReader} to avoid copying the
+     * content of the parsed elements.
+     */
+    void setContentView(byte[] buffer, int offset, int length) throws TLVParserException {
+        assertActualContentLengthIsInTLVLimits(length);
+        this.content = buffer;
+        this.contentOffset = offset;
+        this.contentLength = length;
+        this.contentCopy = null;
+        changed();
+    }
+
+    /**
+     * Returns the content of the element itself. The content of a view is copied once and the copy is returned by the
+     * following calls, the copy doesn't release the buffer the view refers to.
+     */
+    private byte[] getOwnContent() {
+        if (contentOffset == 0 && contentLength == content.length) {
+            return content;
+        }
+        byte[] copy = contentCopy;
+        if (copy == null) {
+            copy = Arrays.copyOfRange(content, contentOffset, contentOffset + contentLength);
+            contentCopy = copy;
+        }
+        return copy;
     }
 
     /**
@@ -433,6 +511,11 @@ public final class TLVElement {
         return elements;
     }
 
+    /**
+     * @return The child elements. The list must not be modified directly, as the content lengths of the elements are
+     * memoized, use {@link #addChildElement(TLVElement)}, {@link #remove(TLVElement)} and {@link #replace(TLVElement,
+     * TLVElement)} instead.
+     */
     public List<TLVElement> getChildElements() {
         return children;
     }
@@ -455,10 +538,15 @@ public final class TLVElement {
 
     public void setType(int type) {
         this.type = type;
+        changed();
     }
 
     public boolean isOutputTlv16() {
-        return getType() > TLVInputStream.TYPE_MASK || (getContentLength() > TLVInputStream.BYTE_MAX);
+        return isOutputTlv16(getContentLength());
+    }
+
+    private boolean isOutputTlv16(int contentLength) {
+        return getType() > TLVInputStream.TYPE_MASK || contentLength > TLVInputStream.BYTE_MAX;
     }
 
     public boolean isInputTlv16() {
@@ -482,59 +570,41 @@ public final class TLVElement {
      *         when TLV header encoding fails or I/O error occurs.
      */
     public byte[] encodeHeader() throws TLVParserException {
-        DataOutputStream out = null;
-        try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            out = new DataOutputStream(byteArrayOutputStream);
-
-            int dataLength = getContentLength();
-
-            boolean tlv16 = isOutputTlv16();
-            int firstByte = (tlv16 ? TLVInputStream.TLV16_FLAG : 0) + (isNonCritical() ? TLVInputStream.NON_CRITICAL_FLAG : 0)
-                    + (isForwarded() ? TLVInputStream.FORWARD_FLAG : 0);
-
-            if (tlv16) {
-                firstByte = firstByte | (getType() >>> TLVInputStream.BYTE_BITS) & TLVInputStream.TYPE_MASK;
-                out.writeByte(firstByte);
-                out.writeByte(getType());
-                if (dataLength < 1) {
-                    out.writeShort(0);
-                } else {
-                    out.writeShort(dataLength);
-                }
-            } else {
-                firstByte = firstByte | getType() & TLVInputStream.TYPE_MASK;
-                out.writeByte(firstByte);
-                if (dataLength < 1) {
-                    out.writeByte(0);
-                } else {
-                    out.writeByte(dataLength);
-                }
-            }
-            return byteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
-            throw new TLVParserException("TLV header encoding failed", e);
-        } finally {
-            Util.closeQuietly(out);
-        }
+        int contentLength = getContentLength();
+        byte[] header = new byte[getHeaderLength(contentLength)];
+        encodeHeader(header, 0, contentLength);
+        return header;
     }
 
     /**
-     * @return The length of the TLV element content.
+     * @return The length of the TLV element content. The length is memoized until the element or any element changes
+     * that has been added to a parent.
      */
     public int getContentLength() {
-        int contentLength = content.length;
-        if (!children.isEmpty()) {
-            for (TLVElement element : children) {
-                contentLength += element.getHeaderLength();
-                contentLength += element.getContentLength();
-            }
+        long generation = LENGTH_GENERATION.get();
+        MemoizedLength memoized = memoizedLength;
+        if (memoized != null && memoized.generation == generation) {
+            return memoized.length;
+        }
+        int length = contentLength;
+        for (TLVElement element : children) {
+            length += element.getEncodedLength();
         }
-        return contentLength;
+        this.memoizedLength = new MemoizedLength(generation, length);
+        return length;
+    }
+
+    private int getEncodedLength() {
+        int contentLength = getContentLength();
+        return getHeaderLength(contentLength) + contentLength;
     }
 
     public int getHeaderLength() {
-        return isOutputTlv16() ? 4 : 2;
+        return getHeaderLength(getContentLength());
+    }
+
+    private int getHeaderLength(int contentLength) {
+        return isOutputTlv16(contentLength) ? TLVInputStream.TLV16_HEADER_LENGTH : TLVInputStream.TLV8_HEADER_LENGTH;
     }
 
     /**
@@ -549,25 +619,50 @@ public final class TLVElement {
         for (int i = 0; i < children.size(); i++) {
             if (children.get(i).equals(childToBeReplaced)) {
                 children.set(i, newChild);
+                newChild.attached = true;
+                changed();
                 return;
             }
         }
     }
 
     public void remove(TLVElement elementToRemoved) {
-        children.remove(elementToRemoved);
+        if (children.remove(elementToRemoved)) {
+            changed();
+        }
     }
 
     public void addChildElement(TLVElement element) throws TLVParserException {
         Util.notNull(element, "Child TLV element");
-        this.children.add(element);
-        assertActualContentLengthIsInTLVLimits(getContentLength());
+        addChildElement(children.size(), element);
     }
 
     public void addFirstChildElement(TLVElement element) throws TLVParserException {
         Util.notNull(element, "Child TLV element");
-        this.children.add(0, element);
-        assertActualContentLengthIsInTLVLimits(getContentLength());
+        addChildElement(0, element);
+    }
+
+    /**
+     * Adds the child element if the content length stays within the limits. The memoized content length is updated
+     * by adding the length of the new child, so adding N children takes O(N) time.
+     */
+    private void addChildElement(int index, TLVElement element) throws TLVParserException {
+        long generation = LENGTH_GENERATION.get();
+        int length = getContentLength() + element.getEncodedLength();
+        assertActualContentLengthIsInTLVLimits(length);
+        children.add(index, element);
+        element.attached = true;
+        if (attached) {
+            generation = LENGTH_GENERATION.incrementAndGet();
+        }
+        this.memoizedLength = new MemoizedLength(generation, length);
+    }
+
+    private void changed() {
+        this.memoizedLength = null;
+        if (attached) {
+            LENGTH_GENERATION.incrementAndGet();
+        }
     }
 
     /**
@@ -582,9 +677,10 @@ public final class TLVElement {
     public void writeTo(OutputStream out) throws TLVParserException {
         Util.notNull(out, "Output stream");
         try {
-            assertActualContentLengthIsInTLVLimits(getContentLength());
-            out.write(encodeHeader());
-            out.write(getContent());
+            ContentLengths lengths = new ContentLengths();
+            int contentLength = calculateContentLengths(lengths);
+            assertActualContentLengthIsInTLVLimits(contentLength);
+            out.write(encode(contentLength, lengths));
         } catch (IOException e) {
             throw new TLVParserException("Writing TLV element (" + convertHeader() + ")  to output stream failed", e);
         }
@@ -596,8 +692,105 @@ public final class TLVElement {
         }
     }
 
+    /**
+     * Encodes the TLV element, including the header and all the child elements, into a single pre-sized byte array.
+     *
+     * @return Byte array containing the encoded TLV element.
+     *
+     * @throws TLVParserException
+     */
     public byte[] getEncoded() throws TLVParserException {
-        return Util.join(encodeHeader(), getContent());
+        ContentLengths lengths = new ContentLengths();
+        return encode(calculateContentLengths(lengths), lengths);
+    }
+
+    private byte[] encode(int contentLength, ContentLengths lengths) {
+        byte[] encoded = new byte[getHeaderLength(contentLength) + contentLength];
+        encodeTo(encoded, 0, lengths);
+        return encoded;
+    }
+
+    /**
+     * Calculates the content lengths of this element and its descendants bottom-up and records them in pre-order, so
+     * that the encoding pass doesn't need to calculate them again. Nothing is stored in the elements themselves, as the
+     * same element may be shared by several trees.
+     *
+     * @return The content length of this element.
+     */
+    private int calculateContentLengths(ContentLengths lengths) {
+        int index = lengths.reserve();
+        int length = contentLength;
+        for (TLVElement child : children) {
+            int childContentLength = child.calculateContentLengths(lengths);
+            length += child.getHeaderLength(childContentLength) + childContentLength;
+        }
+        lengths.values[index] = length;
+        return length;
+    }
+
+    /**
+     * Encodes the TLV element into the buffer starting from the given offset, using the content lengths calculated by
+     * {@link #calculateContentLengths(ContentLengths)}.
+     *
+     * @return The offset following the encoded element.
+     */
+    private int encodeTo(byte[] buffer, int offset, ContentLengths lengths) {
+        int position = encodeHeader(buffer, offset, lengths.values[lengths.position++]);
+        return encodeContent(buffer, position, lengths);
+    }
+
+    private int encodeContent(byte[] buffer, int offset, ContentLengths lengths) {
+        System.arraycopy(content, contentOffset, buffer, offset, contentLength);
+        int position = offset + contentLength;
+        for (TLVElement child : children) {
+            position = child.encodeTo(buffer, position, lengths);
+        }
+        return position;
+    }
+
+    private int encodeHeader(byte[] buffer, int offset, int dataLength) {
+        int firstByte = (isNonCritical() ? TLVInputStream.NON_CRITICAL_FLAG : 0) + (isForwarded() ? TLVInputStream.FORWARD_FLAG : 0);
+        if (isOutputTlv16(dataLength)) {
+            buffer[offset] = (byte) (firstByte | TLVInputStream.TLV16_FLAG | (getType() >>> TLVInputStream.BYTE_BITS) & TLVInputStream.TYPE_MASK);
+            buffer[offset + 1] = (byte) getType();
+            buffer[offset + 2] = (byte) (dataLength >>> TLVInputStream.BYTE_BITS);
+            buffer[offset + 3] = (byte) dataLength;
+            return offset + TLVInputStream.TLV16_HEADER_LENGTH;
+        }
+        buffer[offset] = (byte) (firstByte | getType() & TLVInputStream.TYPE_MASK);
+        buffer[offset + 1] = (byte) dataLength;
+        return offset + TLVInputStream.TLV8_HEADER_LENGTH;
+    }
+
+    /**
+     * Content length of an element, valid while the generation doesn't change.
+     */
+    private static final class MemoizedLength {
+
+        private final long generation;
+        private final int length;
+
+        private MemoizedLength(long generation, int length) {
+            this.generation = generation;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Content lengths of the elements of one tree in pre-order, valid for a single encoding.
+     */
+    private static final class ContentLengths {
+
+        private int[] values = new int[16];
+        private int size;
+        private int position;
+
+        private int reserve() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            return size++;
+        }
     }
 
     @Override
@@ -605,7 +798,7 @@ public final class TLVElement {
         StringBuilder builder = new StringBuilder(convertHeader());
         builder.append(":");
         if (children.isEmpty()) {
-            builder.append(Base16.encode(content));
+            builder.append(Base16.encode(content, contentOffset, contentLength));
         } else {
             for (TLVElement element : children) {
                 builder.append(element.toString());
@@ -639,7 +832,7 @@ public final class TLVElement {
         if (forwarded != that.forwarded) return false;
         if (type != that.type) return false;
         if (children != null ? !children.equals(that.children) : that.children != null) return false;
-        return Arrays.equals(content, that.content);
+        return Arrays.equals(getOwnContent(), that.getOwnContent());
     }
 
     @Override
@@ -648,7 +841,7 @@ public final class TLVElement {
         result = 31 * result + (forwarded ? 1 : 0);
         result = 31 * result + type;
         result = 31 * result + (children != null ? children.hashCode() : 0);
-        result = 31 * result + (content != null ? Arrays.hashCode(content) : 0);
+        result = 31 * result + Arrays.hashCode(getOwnContent());
         return result;
     }
 
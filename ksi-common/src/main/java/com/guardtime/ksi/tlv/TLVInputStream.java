@@ -19,9 +19,6 @@
  */
 package com.guardtime.ksi.tlv;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
@@ -33,8 +30,6 @@ import java.io.InputStream;
  */
 public class TLVInputStream extends InputStream {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(TLVInputStream.class);
-
     static final int TLV16_FLAG = 0x80;
     static final int NON_CRITICAL_FLAG = 0x40;
     static final int FORWARD_FLAG = 0x20;
@@ -81,12 +76,8 @@ public class TLVInputStream extends InputStream {
     public TLVElement readElement() throws IOException, TLVParserException {
         TlvHeader header = readHeader();
         TLVElement element = new TLVElement(header.tlv16, header.nonCritical, header.forwarded, header.type);
-        int count = countNestedTlvElements(header);
-        if (count > 0) {
-            readNestedElements(element, count);
-        } else {
-            element.setContent(readTlvContent(header));
-        }
+        byte[] content = readTlvContent(header);
+        TLVReader.readContent(element, content, 0, content.length);
         return element;
     }
 
@@ -120,12 +111,6 @@ public class TLVInputStream extends InputStream {
         return in.read();
     }
 
-    private void readNestedElements(TLVElement parent, int count) throws IOException, TLVParserException {
-        for (int i = 0; i < count; i++) {
-            parent.addChildElement(readElement());
-        }
-    }
-
     /**
      * Reads the TLV header form input stream. Reads two (TLV8 encoding is used) or four (TLV16 encoding is used) bytes
      * from underlying stream.
@@ -163,46 +148,6 @@ public class TLVInputStream extends InputStream {
         return new TlvHeader(tlv16, nonCritical, forward, type, length);
     }
 
-    private int countNestedTlvElements(TlvHeader parent) throws IOException {
-        LOGGER.debug("Checking TLV header {} nested elements", parent);
-        int maximumPosition = parent.getDataLength();
-
-        // mark the size of the inmemory data length and process the data to check if
-        // it contains the inmemory headers.
-        in.mark(maximumPosition);
-
-        int currentPosition = 0;
-        int count = 0;
-
-        // read the header candidates
-        while (true) {
-            try {
-                TlvHeader headerCandidate = readHeader();
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("currentPosition={}, maximumPosition={}", currentPosition, maximumPosition);
-                }
-                currentPosition = currentPosition + headerCandidate.getHeaderLength() + headerCandidate.getDataLength();
-
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("currentPosition={}, maximumPosition={}", currentPosition, maximumPosition);
-                }
-                count++;
-                if (currentPosition >= maximumPosition) {
-                    // NB! Don't read beyond the marked length.
-                    break;
-                }
-                in.skipBytes(headerCandidate.getDataLength());
-            } catch (IOException e) {
-                // Does not contain TLV Headers
-                break;
-            }
-        }
-        in.reset();
-        boolean hasNestedElement = currentPosition == maximumPosition;
-        LOGGER.debug("hasNestedElements={}", hasNestedElement);
-        return hasNestedElement ? count : 0;
-    }
-
     /**
      * Reads the TLV content bytes from the underlying stream.
      *
@@ -256,14 +201,6 @@ public class TLVInputStream extends InputStream {
             return dataLength;
         }
 
-        /**
-         * @return The header size. If header is TLV16 encoded then the size will be four. If the header is TLV8 encoded
-         * then the size will be two.
-         */
-        int getHeaderLength() {
-            return tlv16 ? TLV16_HEADER_LENGTH : TLV8_HEADER_LENGTH;
-        }
-
     }
 
 }
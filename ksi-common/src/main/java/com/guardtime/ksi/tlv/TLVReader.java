@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.tlv;
+
+import com.guardtime.ksi.util.Util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.guardtime.ksi.tlv.TLVInputStream.BYTE_BITS;
+import static com.guardtime.ksi.tlv.TLVInputStream.FORWARD_FLAG;
+import static com.guardtime.ksi.tlv.TLVInputStream.NON_CRITICAL_FLAG;
+import static com.guardtime.ksi.tlv.TLVInputStream.TLV16_FLAG;
+import static com.guardtime.ksi.tlv.TLVInputStream.TLV16_HEADER_LENGTH;
+import static com.guardtime.ksi.tlv.TLVInputStream.TLV8_HEADER_LENGTH;
+import static com.guardtime.ksi.tlv.TLVInputStream.TYPE_MASK;
+
+/**
+ * Reader for decoding TLV data directly from a byte array or {@link ByteBuffer}.
+ * <p>
+ * Unlike {@link TLVInputStream} the reader does not copy the data. The content of the decoded leaf elements refers to
+ * the given array by offset and length, therefore the array must not be modified as long as the decoded elements are
+ * in use.
+ * </p>
+ */
+public final class TLVReader {
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    /**
+     * Creates a reader over the whole byte array.
+     *
+     * @param bytes
+     *         TLV data, not null.
+     */
+    public TLVReader(byte[] bytes) {
+        this(bytes, 0, bytes == null ? 0 : bytes.length);
+    }
+
+    /**
+     * Creates a reader over a region of the byte array.
+     *
+     * @param bytes
+     *         TLV data, not null.
+     * @param offset
+     *         offset of the first byte to read.
+     * @param length
+     *         number of bytes to read.
+     */
+    public TLVReader(byte[] bytes, int offset, int length) {
+        Util.notNull(bytes, "Byte array");
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("Invalid offset " + offset + " or length " + length);
+        }
+        this.buffer = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Creates a reader over the remaining bytes of the buffer. The position of the given buffer isn't changed. Data of a
+     * buffer without an accessible backing array is copied once.
+     *
+     * @param buffer
+     *         TLV data, not null.
+     */
+    public TLVReader(ByteBuffer buffer) {
+        Util.notNull(buffer, "Byte buffer");
+        if (buffer.hasArray()) {
+            this.buffer = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+        } else {
+            this.buffer = new byte[buffer.remaining()];
+            buffer.duplicate().get(this.buffer);
+            this.position = 0;
+        }
+        this.limit = this.position + buffer.remaining();
+    }
+
+    /**
+     * @return True, if there are unread bytes left.
+     */
+    public boolean hasNextElement() {
+        return position < limit;
+    }
+
+    /**
+     * Reads the next TLV element.
+     *
+     * @return Instance of {@link TLVElement}.
+     *
+     * @throws EOFException
+     *         when the data ends before the element.
+     * @throws TLVParserException
+     *         when the element can not be decoded.
+     */
+    public TLVElement readElement() throws IOException, TLVParserException {
+        if (position >= limit) {
+            throw new EOFException();
+        }
+        int firstByte = buffer[position] & 0xff;
+        boolean tlv16 = (firstByte & TLV16_FLAG) != 0;
+        int headerLength = tlv16 ? TLV16_HEADER_LENGTH : TLV8_HEADER_LENGTH;
+        if (limit - position < headerLength) {
+            throw new EOFException();
+        }
+        int type = firstByte & TYPE_MASK;
+        int length;
+        if (tlv16) {
+            type = (type << BYTE_BITS) | (buffer[position + 1] & 0xff);
+            length = ((buffer[position + 2] & 0xff) << BYTE_BITS) | (buffer[position + 3] & 0xff);
+        } else {
+            length = buffer[position + 1] & 0xff;
+        }
+        int contentOffset = position + headerLength;
+        if (limit - contentOffset < length) {
+            throw new EOFException();
+        }
+        TLVElement element = new TLVElement(tlv16, (firstByte & NON_CRITICAL_FLAG) != 0, (firstByte & FORWARD_FLAG) != 0, type);
+        readContent(element, buffer, contentOffset, length);
+        position = contentOffset + length;
+        return element;
+    }
+
+    /**
+     * Decodes the content of the element. If the content consists of TLV elements then these are added as child
+     * elements, otherwise the content refers to the given region of the buffer.
+     */
+    static void readContent(TLVElement element, byte[] buffer, int offset, int length) throws IOException, TLVParserException {
+        if (containsNestedElements(buffer, offset, length)) {
+            TLVReader reader = new TLVReader(buffer, offset, length);
+            while (reader.hasNextElement()) {
+                element.addChildElement(reader.readElement());
+            }
+        } else {
+            element.setContentView(buffer, offset, length);
+        }
+    }
+
+    /**
+     * Checks if the TLV headers found in given region cover the region exactly. Only headers are read, the contents of
+     * the nested elements are skipped.
+     */
+    private static boolean containsNestedElements(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        int current = offset;
+        while (current < end) {
+            boolean tlv16 = (buffer[current] & TLV16_FLAG) != 0;
+            int headerLength = tlv16 ? TLV16_HEADER_LENGTH : TLV8_HEADER_LENGTH;
+            if (end - current < headerLength) {
+                return false;
+            }
+            int dataLength = tlv16
+                    ? ((buffer[current + 2] & 0xff) << BYTE_BITS) | (buffer[current + 3] & 0xff)
+                    : buffer[current + 1] & 0xff;
+            current += headerLength + dataLength;
+        }
+        return length > 0 && current == end;
+    }
+
+}
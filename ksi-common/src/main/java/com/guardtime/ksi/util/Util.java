@@ -543,6 +543,33 @@ public final class Util {
      *         if HMAC key is null.
      */
     public static byte[] calculateHMAC(byte[] message, byte[] keyBytes, String algorithm) throws NoSuchAlgorithmException, InvalidKeyException {
+        return calculateHMAC(message, 0, message.length, keyBytes, algorithm);
+    }
+
+    /**
+     * Calculates HMAC for a section of the given message.
+     *
+     * @param message
+     *         message for which the MAC is to be calculated.
+     * @param offset
+     *         offset of the first message byte.
+     * @param length
+     *         number of message bytes.
+     * @param keyBytes
+     *         key for calculation.
+     * @param algorithm
+     *         algorithm to be used (MD5, SHA1, SHA256).
+     *
+     * @return HMAC as byte array.
+     *
+     * @throws NoSuchAlgorithmException
+     *         if invalid algorithm is provided.
+     * @throws InvalidKeyException
+     *         if invalid key is provided.
+     * @throws IllegalArgumentException
+     *         if HMAC key is null.
+     */
+    public static byte[] calculateHMAC(byte[] message, int offset, int length, byte[] keyBytes, String algorithm) throws NoSuchAlgorithmException, InvalidKeyException {
         if (keyBytes == null) {
             throw new IllegalArgumentException("Invalid HMAC key: null");
         }
@@ -551,7 +578,8 @@ public final class Util {
         SecretKeySpec key = new SecretKeySpec(keyBytes, hmacAlgorithmName);
         Mac mac = Mac.getInstance(hmacAlgorithmName);
         mac.init(key);
-        return mac.doFinal(message);
+        mac.update(message, offset, length);
+        return mac.doFinal();
     }
 
     /**
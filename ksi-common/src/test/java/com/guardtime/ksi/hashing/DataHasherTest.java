@@ -21,6 +21,7 @@ package com.guardtime.ksi.hashing;
 
 import com.guardtime.ksi.hashing.HashAlgorithm.Status;
 import com.guardtime.ksi.util.Base16;
+import com.guardtime.ksi.util.Util;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
@@ -28,6 +29,7 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -139,6 +141,24 @@ public class DataHasherTest {
         Assert.assertEquals(Base16.encode(dataHash.getValue()), "CF00FC3A72A2F71C7DE2B718C0A4DFF38D83C0E1957EC219C3B266F8CC38B9EA");
     }
 
+    @Test
+    public void testHashGenerationAddFileWithSmallBuffer() throws Exception {
+        DataHasher hasher = new DataHasher(HashAlgorithm.SHA2_256);
+        hasher.addData(loadFile("test.txt"), 7);
+        Assert.assertEquals(Base16.encode(hasher.getHash().getValue()), "CF00FC3A72A2F71C7DE2B718C0A4DFF38D83C0E1957EC219C3B266F8CC38B9EA");
+    }
+
+    @Test
+    public void testHashGenerationAddDirectByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(testData.length);
+        buffer.put(testData);
+        buffer.flip();
+        DataHasher hasher = new DataHasher(HashAlgorithm.SHA2_256);
+        hasher.addData(buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals(Base16.encode(hasher.getHash().getValue()), "CF00FC3A72A2F71C7DE2B718C0A4DFF38D83C0E1957EC219C3B266F8CC38B9EA");
+    }
+
     @Test
     public void testGetHashMultipleTimes() {
         DataHasher hasher = new DataHasher(HashAlgorithm.SHA2_256);
@@ -206,6 +226,44 @@ public class DataHasherTest {
         new DataHasher(HashAlgorithm.SHA3_256);
     }
 
+    @Test(dataProvider = "workingAlgorithms")
+    public void testHashNodeMatchesDataHasher(HashAlgorithm algorithm) {
+        byte[] left = new DataHasher(algorithm, false).addData(testData).getHash().getImprint();
+        byte[] right = new DataHasher(algorithm, false).addData(left).getHash().getImprint();
+        for (long level : new long[]{0, 1, 0xFF, 0x1234, Long.MAX_VALUE}) {
+            DataHash expected = new DataHasher(algorithm, false)
+                    .addData(left).addData(right).addData(Util.encodeUnsignedLong(level)).getHash();
+            Assert.assertEquals(DataHasher.hash(algorithm, left, right, level), expected);
+        }
+    }
+
+    @Test
+    public void testHashConcatenationMatchesDataHasher() {
+        DataHash expected = new DataHasher(HashAlgorithm.SHA2_256).addData(testData).addData(new byte[0]).addData(testData).getHash();
+        Assert.assertEquals(DataHasher.hash(HashAlgorithm.SHA2_256, testData, new byte[0], testData), expected);
+        Assert.assertEquals(DataHasher.hash(HashAlgorithm.SHA2_256, testData, new byte[0], testData), expected);
+    }
+
+    @Test
+    public void testHashIsNotAffectedByFailedCalculation() {
+        try {
+            DataHasher.hash(HashAlgorithm.SHA2_256, testData, null);
+            Assert.fail("Hashing null data must fail");
+        } catch (RuntimeException expected) {
+        }
+        Assert.assertEquals(DataHasher.hash(HashAlgorithm.SHA2_256, testData), new DataHasher().addData(testData).getHash());
+    }
+
+    @Test(dataProvider = "notImplementedAlgorithms", expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Hash algorithm .* is not implemented")
+    public void testHashWithNotImplementedAlgorithm_throwsIllegalArgumentException(HashAlgorithm algorithm) {
+        DataHasher.hash(algorithm, testData, testData, 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Only non-negative integer values are allowed")
+    public void testHashWithNegativeLevel_throwsIllegalArgumentException() {
+        DataHasher.hash(HashAlgorithm.SHA2_256, testData, testData, -1);
+    }
+
     @DataProvider(name = "notImplementedAlgorithms")
     public Object[][] notImplementedHashAlgorithms() {
         return getHashAlgorithmsByStatus(Status.NOT_IMPLEMENTED);
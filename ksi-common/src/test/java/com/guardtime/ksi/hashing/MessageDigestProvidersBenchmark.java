@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.hashing;
+
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+
+/**
+ * Compares the hashing speed of the installed providers on 65-byte inputs, the size of a hash tree node input (two
+ * SHA-256 imprints and a level byte). Not a unit test, run the main method manually, e.g. after changing the provider
+ * selection in {@link MessageDigestProviders}.
+ */
+public class MessageDigestProvidersBenchmark {
+
+    private static final int WARM_UP_ITERATIONS = 500000;
+    private static final int ITERATIONS = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        byte[] input = new byte[65];
+        for (HashAlgorithm algorithm : HashAlgorithm.getImplementedHashAlgorithms()) {
+            System.out.println(algorithm.getName() + " (selected: " + MessageDigestProviders.getProvider(algorithm).getName() + ")");
+            for (Provider provider : Security.getProviders()) {
+                MessageDigest digest;
+                try {
+                    digest = MessageDigest.getInstance(algorithm.getName(), provider);
+                } catch (Exception e) {
+                    continue;
+                }
+                run(digest, input, WARM_UP_ITERATIONS);
+                long start = System.nanoTime();
+                run(digest, input, ITERATIONS);
+                long nanos = System.nanoTime() - start;
+                System.out.printf("  %-10s %8.1f ns/hash%n", provider.getName(), (double) nanos / ITERATIONS);
+            }
+        }
+    }
+
+    private static void run(MessageDigest digest, byte[] input, int iterations) throws Exception {
+        byte[] output = new byte[digest.getDigestLength()];
+        for (int i = 0; i < iterations; i++) {
+            digest.update(input);
+            digest.digest(output, 0, output.length);
+            input[0] = output[0];
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.hashing;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.concurrent.locks.LockSupport;
+
+public class MessageDigestProvidersTest {
+
+    private final Provider defaultSha256Provider = MessageDigestProviders.getProvider(HashAlgorithm.SHA2_256);
+
+    @AfterMethod
+    public void tearDown() {
+        MessageDigestProviders.setProvider(HashAlgorithm.SHA2_256, defaultSha256Provider);
+    }
+
+    @Test
+    public void testFastestProviderIsSelected() {
+        Provider slow = new SlowProvider();
+        Security.insertProviderAt(slow, 1);
+        try {
+            Provider selected = MessageDigestProviders.selectProvider(HashAlgorithm.SHA2_256);
+            Assert.assertNotSame(selected, slow);
+        } finally {
+            Security.removeProvider(slow.getName());
+        }
+    }
+
+    @Test
+    public void testBouncyCastleIsUsedAsFallback() {
+        Assert.assertEquals(MessageDigestProviders.getProvider(HashAlgorithm.RIPEMD_160).getName(),
+                BouncyCastleProvider.PROVIDER_NAME);
+        Assert.assertEquals(new DataHasher(HashAlgorithm.RIPEMD_160).addData(new byte[]{1}).getHash().getAlgorithm(),
+                HashAlgorithm.RIPEMD_160);
+    }
+
+    @Test
+    public void testProviderCanBeChanged() {
+        Provider bouncyCastle = new BouncyCastleProvider();
+        MessageDigestProviders.setProvider(HashAlgorithm.SHA2_256, bouncyCastle);
+        Assert.assertSame(MessageDigestProviders.getProvider(HashAlgorithm.SHA2_256), bouncyCastle);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Provider Broken does not implement hash algorithm SHA-256 correctly")
+    public void testProviderCalculatingWrongHash_throwsIllegalArgumentException() {
+        MessageDigestProviders.setProvider(HashAlgorithm.SHA2_256, new BrokenProvider());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Hash algorithm .* is not implemented")
+    public void testNotImplementedAlgorithm_throwsIllegalArgumentException() {
+        MessageDigestProviders.getProvider(HashAlgorithm.SHA3_256);
+    }
+
+    private static class SlowProvider extends Provider {
+
+        SlowProvider() {
+            super("Slow", 1.0, "Calculates SHA-256 hashes slowly");
+            put("MessageDigest.SHA-256", SlowDigest.class.getName());
+        }
+    }
+
+    public static class SlowDigest extends MessageDigest {
+
+        private final SHA256Digest digest = new SHA256Digest();
+
+        public SlowDigest() {
+            super("SHA-256");
+        }
+
+        protected void engineUpdate(byte input) {
+            digest.update(input);
+        }
+
+        protected void engineUpdate(byte[] input, int offset, int len) {
+            digest.update(input, offset, len);
+        }
+
+        protected byte[] engineDigest() {
+            LockSupport.parkNanos(20000L);
+            byte[] hash = new byte[digest.getDigestSize()];
+            digest.doFinal(hash, 0);
+            return hash;
+        }
+
+        protected void engineReset() {
+            digest.reset();
+        }
+    }
+
+    private static class BrokenProvider extends Provider {
+
+        BrokenProvider() {
+            super("Broken", 1.0, "Calculates wrong SHA-256 hashes");
+            put("MessageDigest.SHA-256", BrokenDigest.class.getName());
+        }
+    }
+
+    public static class BrokenDigest extends MessageDigest {
+
+        public BrokenDigest() {
+            super("SHA-256");
+        }
+
+        protected void engineUpdate(byte input) {
+        }
+
+        protected void engineUpdate(byte[] input, int offset, int len) {
+        }
+
+        protected byte[] engineDigest() {
+            return new byte[32];
+        }
+
+        protected void engineReset() {
+        }
+    }
+}
@@ -30,6 +30,8 @@ import org.testng.reporters.Files;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -470,6 +472,142 @@ public class TLVElementTest {
         element.addFirstChildElement(null);
     }
 
+    @Test
+    public void testCreateTlvElementFromByteArrayRegion_Ok() throws Exception {
+        byte[] bytes = new byte[]{(byte) 0xFF, 0x02, 0x03, 'O', 'K', 0x0, (byte) 0xFF};
+        TLVElement element = TLVElement.create(bytes, 1, 5);
+        Assert.assertEquals(element.getType(), 2);
+        Assert.assertEquals(element.getContentLength(), 3);
+        Assert.assertEquals(element.getDecodedString(), "OK");
+        Assert.assertEquals(element.getEncoded(), new byte[]{0x02, 0x03, 'O', 'K', 0x0});
+    }
+
+    @Test
+    public void testReadNestedTlvElementFromByteBuffer_Ok() throws Exception {
+        byte[] bytes = new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x02, 0x01, 0x00};
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+        TLVReader reader = new TLVReader(buffer);
+        TLVElement element = reader.readElement();
+        Assert.assertFalse(reader.hasNextElement());
+        Assert.assertEquals(buffer.position(), 2);
+        Assert.assertEquals(element.getType(), 3);
+        Assert.assertEquals(element.getChildElements().size(), 1);
+        Assert.assertEquals(element.getFirstChildElement(5).getDecodedLong(), Long.valueOf(0x0100));
+        Assert.assertEquals(element.getContent(), new byte[]{0x05, 0x02, 0x01, 0x00});
+        Assert.assertEquals(element, TLVElement.create(new byte[]{0x03, 0x04, 0x05, 0x02, 0x01, 0x00}));
+    }
+
+    @Test
+    public void testReadTlvElementFromDirectByteBuffer_Ok() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+        buffer.put(new byte[]{0x01, 0x02, 0x01, 0x01}).flip();
+        TLVElement element = new TLVReader(buffer).readElement();
+        Assert.assertEquals(element.getDecodedLong(), Long.valueOf(0x0101));
+    }
+
+    @Test(expectedExceptions = TLVParserException.class, expectedExceptionsMessageRegExp = "Reading TLV bytes failed")
+    public void testCreateTlvElementFromTruncatedByteArrayRegion_ThrowsTLVParserException() throws Exception {
+        TLVElement.create(new byte[]{0x02, 0x03, 'O', 'K', 0x0}, 0, 4);
+    }
+
+    @Test
+    public void testContentLengthIsUpdatedWhenNestedChildChanges_Ok() throws Exception {
+        TLVElement root = new TLVElement(false, false, 1);
+        TLVElement child = new TLVElement(false, false, 2);
+        TLVElement grandChild = TLVElement.create(3, 1L);
+        child.addChildElement(grandChild);
+        root.addChildElement(child);
+        Assert.assertEquals(root.getContentLength(), 5);
+        Assert.assertEquals(root.getEncoded(), new byte[]{0x01, 0x05, 0x02, 0x03, 0x03, 0x01, 0x01});
+
+        grandChild.setContent(new byte[]{1, 2});
+        Assert.assertEquals(root.getContentLength(), 6);
+        Assert.assertEquals(root.getEncoded(), new byte[]{0x01, 0x06, 0x02, 0x04, 0x03, 0x02, 0x01, 0x02});
+
+        child.remove(grandChild);
+        Assert.assertEquals(root.getEncoded(), new byte[]{0x01, 0x02, 0x02, 0x00});
+    }
+
+    @Test
+    public void testContentLengthOfAllParentsIsUpdatedWhenSharedChildChanges_Ok() throws Exception {
+        TLVElement shared = TLVElement.create(3, 1L);
+        TLVElement first = new TLVElement(false, false, 1);
+        TLVElement second = new TLVElement(false, false, 2);
+        first.addChildElement(shared);
+        second.addChildElement(shared);
+        Assert.assertEquals(first.getContentLength(), 3);
+        Assert.assertEquals(second.getContentLength(), 3);
+
+        shared.setType(0x0203);
+        Assert.assertEquals(first.getContentLength(), 5);
+        Assert.assertEquals(second.getEncoded(), new byte[]{0x02, 0x05, (byte) 0x82, 0x03, 0x00, 0x01, 0x01});
+    }
+
+    @Test
+    public void testContentLengthIsMaintainedWhileAddingChildren_Ok() throws Exception {
+        TLVElement root = new TLVElement(false, false, 1);
+        TLVElement element = new TLVElement(false, false, 2);
+        root.addChildElement(element);
+        for (int i = 0; i < 1000; i++) {
+            element.addChildElement(TLVElement.create(3, (long) i));
+            Assert.assertEquals(element.getContentLength(), element.getContent().length);
+        }
+        Assert.assertEquals(root.getContentLength(), root.getContent().length);
+
+        element.getFirstChildElement().setContent(new byte[300]);
+        Assert.assertEquals(element.getContentLength(), element.getContent().length);
+        Assert.assertEquals(root.getContentLength(), root.getContent().length);
+    }
+
+    @Test
+    public void testContentOfParsedElementIsCopiedOnce_Ok() throws Exception {
+        TLVElement parent = new TLVElement(false, false, 1);
+        parent.addChildElement(TLVElement.create(2, 300L));
+        TLVElement child = TLVElement.create(parent.getEncoded()).getFirstChildElement();
+
+        byte[] content = child.getContent();
+        Assert.assertEquals(content, new byte[]{0x01, 0x2C});
+        Assert.assertSame(child.getContent(), content);
+
+        child.setContent(new byte[]{0x01});
+        Assert.assertEquals(child.getContent(), new byte[]{0x01});
+    }
+
+    @Test
+    public void testAddingTooLargeChildLeavesElementUnchanged_Ok() throws Exception {
+        TLVElement element = new TLVElement(false, false, 1);
+        element.addChildElement(TLVElement.create(2, 1L));
+        TLVElement child = new TLVElement(false, false, 3);
+        child.setContent(new byte[TLVElement.MAX_TLV16_CONTENT_LENGTH - 4]);
+        try {
+            element.addChildElement(child);
+            Assert.fail("Adding a too large child should fail");
+        } catch (TLVParserException e) {
+            Assert.assertEquals(element.getChildElements().size(), 1);
+            Assert.assertEquals(element.getContentLength(), 3);
+        }
+    }
+
+    @Test
+    public void testNestedContentIsEncodedWithoutHeader_Ok() throws Exception {
+        TLVElement element = load(CommonTestUtil.load("aggregation-203-error.tlv"));
+        byte[] encoded = element.getEncoded();
+        Assert.assertEquals(element.getContent(), Arrays.copyOfRange(encoded, element.getHeaderLength(), encoded.length));
+        Assert.assertEquals(element.encodeHeader(), Arrays.copyOf(encoded, element.getHeaderLength()));
+    }
+
+    @Test
+    public void testEncodedElementCanBeParsed_Ok() throws Exception {
+        TLVElement element = load(CommonTestUtil.load("aggregation-203-error.tlv"));
+        byte[] encoded = element.getEncoded();
+        Assert.assertEquals(encoded.length, element.getHeaderLength() + element.getContentLength());
+        Assert.assertEquals(TLVElement.create(encoded), element);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        element.writeTo(out);
+        Assert.assertEquals(out.toByteArray(), encoded);
+    }
+
     private TLVElement load(InputStream input) throws Exception {
         return loadTlv(input);
     }
@@ -44,7 +44,6 @@ import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
-import java.util.concurrent.Future;
 
 /**
  * KSI HTTP client that uses Apache HTTP client library.
@@ -86,8 +85,9 @@ abstract class AbstractApacheHttpClient{
             ByteArrayEntity entity = new ByteArrayEntity(Util.toByteArray(request));
             entity.setChunked(false);
             httpRequest.setEntity(entity);
-            Future<HttpResponse> future = apacheClient.execute(httpRequest, null);
-            return new ApacheHttpPostRequestFuture(future);
+            ApacheHttpPostRequestFuture responseFuture = new ApacheHttpPostRequestFuture();
+            responseFuture.setFuture(apacheClient.execute(httpRequest, responseFuture.getHttpCallback()));
+            return responseFuture;
         } catch (URISyntaxException e) {
             throw new KSIClientException("Invalid URI " + settings.getUrl(), e);
         } catch (IOException e) {
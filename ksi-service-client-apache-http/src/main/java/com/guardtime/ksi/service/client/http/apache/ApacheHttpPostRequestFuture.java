@@ -20,6 +20,9 @@
 package com.guardtime.ksi.service.client.http.apache;
 
 import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.ListenableFuture;
+import com.guardtime.ksi.service.SettableFuture;
 import com.guardtime.ksi.service.client.KSIClientException;
 import com.guardtime.ksi.service.client.http.HttpPostRequestFuture;
 import com.guardtime.ksi.tlv.TLVElement;
@@ -28,34 +31,104 @@ import org.apache.http.HttpResponse;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Apache HTTP client specific response future class.
+ * Apache HTTP client specific response future class. If the future is created by the SDK then the response is parsed
+ * as soon as it arrives and the callbacks registered by {@link #addCallback(FutureCallback)} are called by the I/O
+ * thread of the Apache HTTP client.
+ * <p>
+ * A future created using the public constructor isn't notified by the Apache HTTP client, the response is parsed
+ * only when {@link #getResult()} is called. Its callbacks are called once the result has been asked for.
+ * </p>
  */
-public class ApacheHttpPostRequestFuture extends HttpPostRequestFuture {
+public class ApacheHttpPostRequestFuture extends HttpPostRequestFuture implements ListenableFuture<TLVElement> {
 
+    private final SettableFuture<TLVElement> result = new SettableFuture<>();
+    /**
+     * Set by the thread parsing the response, so the response stream is read only once.
+     */
+    private final AtomicBoolean responseClaimed = new AtomicBoolean();
+    private final boolean completedByHttpCallback;
     private Future<HttpResponse> future;
 
+    /**
+     * Creates a future whose response is parsed when {@link #getResult()} is called. The callbacks registered by
+     * {@link #addCallback(FutureCallback)} aren't called before that.
+     */
     public ApacheHttpPostRequestFuture(Future<HttpResponse> future) {
         this.future = future;
+        this.completedByHttpCallback = false;
+    }
+
+    /**
+     * Creates a future that is completed by the callback returned by {@link #getHttpCallback()}.
+     */
+    ApacheHttpPostRequestFuture() {
+        this.completedByHttpCallback = true;
+    }
+
+    void setFuture(Future<HttpResponse> future) {
+        this.future = future;
+    }
+
+    /**
+     * @return Apache HTTP client callback completing this future.
+     */
+    org.apache.http.concurrent.FutureCallback<HttpResponse> getHttpCallback() {
+        return new org.apache.http.concurrent.FutureCallback<HttpResponse>() {
+            public void completed(HttpResponse response) {
+                responseReceived(response);
+            }
+
+            public void failed(Exception e) {
+                result.setException(new KSIClientException("Getting KSI response failed", e));
+            }
+
+            public void cancelled() {
+                result.setException(new KSIClientException("Getting KSI response failed", new CancellationException()));
+            }
+        };
     }
 
     public boolean isFinished() {
-        return future.isDone();
+        return result.isFinished() || future.isDone();
     }
 
     public TLVElement getResult() throws KSIException {
+        if (!completedByHttpCallback && !result.isFinished()) {
+            try {
+                responseReceived(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                result.setException(new KSIClientException("Getting KSI response failed", e));
+            }
+        }
+        return result.getResult();
+    }
+
+    public void addCallback(FutureCallback<? super TLVElement> callback) {
+        result.addCallback(callback);
+    }
+
+    private void responseReceived(HttpResponse response) {
+        if (!responseClaimed.compareAndSet(false, true)) {
+            return;
+        }
         InputStream input = null;
         try {
-            HttpResponse response = future.get();
             int statusCode = response.getStatusLine().getStatusCode();
             String responseMessage = response.getStatusLine().getReasonPhrase();
             input = response.getEntity().getContent();
-            return parse(statusCode, responseMessage, input);
-        } catch (InterruptedException | IOException | ExecutionException e) {
-            throw new KSIClientException("Getting KSI response failed", e);
+            result.set(parse(statusCode, responseMessage, input));
+        } catch (IOException e) {
+            result.setException(new KSIClientException("Getting KSI response failed", e));
+        } catch (KSIException e) {
+            result.setException(e);
+        } catch (RuntimeException e) {
+            result.setException(new KSIClientException("Getting KSI response failed", e));
         } finally {
             Util.closeQuietly(input);
         }
@@ -19,36 +19,118 @@
  */
 package com.guardtime.ksi.service.tcp;
 
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
 /**
- * Holds a map of active KSI TCP transactions by ID. I helps to keep track which responses go together with which requests
- * Each request is added to this holder, and each response passes through it to check that there is a corresponding request waiting.
+ * Holds a map of active KSI TCP transactions of a single TCP session by ID. It helps to keep track which responses go
+ * together with which requests. Each request is added to this holder, and each response passes through it to check
+ * that there is a corresponding request waiting. A transaction carrying multiple request payloads is registered under
+ * the IDs of all of its payloads, so the response is matched to it by whichever payload the response starts with.
+ * <p>
+ * Configuration requests do not contain a request ID, these are matched with the responses in the order the requests
+ * were sent. The holder does not use locks, therefore responses of different sessions can be dispatched in parallel.
  */
 class ActiveTransactionsHolder {
 
     private static final Logger logger = LoggerFactory.getLogger(ActiveTransactionsHolder.class);
 
-    private static final ConcurrentMap<Long, KSITCPTransaction> ACTIVE_TRANSACTIONS = new ConcurrentHashMap<>();
+    private static final AttributeKey HOLDER_KEY = new AttributeKey(ActiveTransactionsHolder.class, "holder");
 
-    synchronized static void put(KSITCPTransaction transaction) {
-        ACTIVE_TRANSACTIONS.put(transaction.getCorrelationId(), transaction);
+    private final ConcurrentMap<Long, KSITCPTransaction> activeTransactions = new ConcurrentHashMap<>();
+    private final Queue<KSITCPTransaction> activeConfigurationTransactions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Returns the holder of the given TCP session, the holder is created when it does not exist yet.
+     */
+    static ActiveTransactionsHolder get(IoSession session) {
+        ActiveTransactionsHolder holder = (ActiveTransactionsHolder) session.getAttribute(HOLDER_KEY);
+        if (holder == null) {
+            ActiveTransactionsHolder newHolder = new ActiveTransactionsHolder();
+            holder = (ActiveTransactionsHolder) session.setAttributeIfAbsent(HOLDER_KEY, newHolder);
+            if (holder == null) {
+                holder = newHolder;
+            }
+        }
+        return holder;
+    }
+
+    void put(KSITCPTransaction transaction) {
+        if (transaction.isConfiguration()) {
+            activeConfigurationTransactions.add(transaction);
+        } else {
+            for (Long correlationId : transaction.getCorrelationIds()) {
+                activeTransactions.put(correlationId, transaction);
+            }
+        }
     }
 
-    synchronized static void remove(KSITCPTransaction transaction) {
-        ACTIVE_TRANSACTIONS.remove(transaction.getCorrelationId());
+    void remove(KSITCPTransaction transaction) {
+        if (transaction.isConfiguration()) {
+            activeConfigurationTransactions.remove(transaction);
+        } else {
+            removeAll(transaction);
+        }
     }
 
-    synchronized static void responseReceived(KSITCPTransaction transaction) {
-        long correlationId = transaction.getCorrelationId();
-        if (ACTIVE_TRANSACTIONS.get(correlationId) != null) {
-            ACTIVE_TRANSACTIONS.get(correlationId).responseReceived(transaction.getResponse());
+    void responseReceived(KSITCPTransaction response) {
+        KSITCPTransaction transaction;
+        if (response.isConfiguration()) {
+            transaction = activeConfigurationTransactions.poll();
+        } else {
+            transaction = activeTransactions.get(response.getCorrelationId());
+            if (transaction != null && !removeAll(transaction)) {
+                transaction = null;
+            }
+        }
+        if (transaction != null) {
+            transaction.responseReceived(response.getResponse());
         } else {
-            logger.info("Received TCP response with id {}, but did not find corresponding request. It might have timed out.", correlationId);
+            logger.info("Received TCP response with id {}, but did not find corresponding request. It might have timed out.",
+                    response.getCorrelationId());
         }
     }
+
+    /**
+     * Fails all the active transactions, called when the TCP session is closed.
+     */
+    void sessionClosed() {
+        for (KSITCPTransaction transaction : activeTransactions.values()) {
+            if (removeAll(transaction)) {
+                transaction.failed(new KSITCPTransactionException("TCP session was closed before the response was received"));
+            }
+        }
+        KSITCPTransaction transaction;
+        while ((transaction = activeConfigurationTransactions.poll()) != null) {
+            transaction.failed(new KSITCPTransactionException("TCP session was closed before the response was received"));
+        }
+    }
+
+    /**
+     * Removes the transaction by all of its IDs. Returns true if the transaction was still registered under its first
+     * ID, i.e. the caller is the one to complete the transaction.
+     */
+    private boolean removeAll(KSITCPTransaction transaction) {
+        List<Long> correlationIds = transaction.getCorrelationIds();
+        boolean removed = activeTransactions.remove(correlationIds.get(0), transaction);
+        for (int i = 1; i < correlationIds.size(); i++) {
+            activeTransactions.remove(correlationIds.get(i), transaction);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of outstanding request IDs and configuration requests.
+     */
+    int size() {
+        return activeTransactions.size() + activeConfigurationTransactions.size();
+    }
 }
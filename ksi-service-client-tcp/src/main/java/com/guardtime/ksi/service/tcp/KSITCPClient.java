@@ -25,6 +25,7 @@ import com.guardtime.ksi.service.client.ServiceCredentials;
 import com.guardtime.ksi.tlv.TLVElement;
 import com.guardtime.ksi.util.Util;
 import org.apache.mina.core.future.ConnectFuture;
+import org.apache.mina.core.future.IoFutureListener;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolCodecFilter;
 import org.apache.mina.transport.socket.nio.NioSocketConnector;
@@ -35,29 +36,44 @@ import java.io.Closeable;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Client for KSI+TCP communication (either for aggregation or extension) with a single endpoint.
+ * <p>
+ * The client keeps a pool of TCP sessions with the endpoint, the size of the pool is configured by {@link
+ * TCPClientSettings#getConnectionPoolSize()}. Each request is sent using the open session with the least outstanding
+ * requests. When the pool contains more than one session, the sessions are opened in the background when the client is
+ * created and closed sessions are reopened in the background. With a single session, the session is opened when the
+ * first request is sent or the previous session has been closed.
  */
 class KSITCPClient implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(TCPClient.class);
 
-    private IoSession tcpSession;
     private final TCPClientSettings tcpClientSettings;
     private final NioSocketConnector connector;
+    private final AtomicReferenceArray<IoSession> sessions;
+    private final ConnectFuture[] pendingConnects;
+    private volatile boolean closed;
 
     KSITCPClient(TCPClientSettings tcpClientSettings) {
         Util.notNull(tcpClientSettings, "KSITCPClient.tcpClientSettings");
         this.tcpClientSettings = tcpClientSettings;
+        this.sessions = new AtomicReferenceArray<>(tcpClientSettings.getConnectionPoolSize());
+        this.pendingConnects = new ConnectFuture[tcpClientSettings.getConnectionPoolSize()];
         this.connector = createConnector();
+        if (isPooled()) {
+            for (int i = 0; i < sessions.length(); i++) {
+                connect(i);
+            }
+        }
     }
 
     Future<TLVElement> sendRequest(InputStream request) throws KSITCPTransactionException {
-        synchronized (this) {
-            if (tcpSession == null || tcpSession.isClosing()) {
-                this.tcpSession = createTcpSession();
-            }
+        IoSession tcpSession = selectSession();
+        if (tcpSession == null) {
+            tcpSession = createTcpSession();
         }
 
         try {
@@ -70,8 +86,12 @@ class KSITCPClient implements Closeable {
     }
 
     public void close() {
-        if (tcpSession != null) {
-            tcpSession.closeOnFlush();
+        closed = true;
+        for (int i = 0; i < sessions.length(); i++) {
+            IoSession tcpSession = sessions.get(i);
+            if (tcpSession != null) {
+                tcpSession.closeOnFlush();
+            }
         }
         if (connector != null) {
             connector.dispose();
@@ -86,10 +106,40 @@ class KSITCPClient implements Closeable {
         return tcpClientSettings.getPduVersion();
     }
 
+    /**
+     * Returns the open session with the least outstanding requests or null if there are no open sessions. Sessions
+     * that are not open are reopened in the background if there is another session the request can be sent with.
+     */
+    private IoSession selectSession() {
+        IoSession selected = null;
+        int selectedOutstanding = Integer.MAX_VALUE;
+        boolean reconnectNeeded = false;
+        for (int i = 0; i < sessions.length(); i++) {
+            IoSession tcpSession = sessions.get(i);
+            if (isOpen(tcpSession)) {
+                int outstanding = ActiveTransactionsHolder.get(tcpSession).size();
+                if (outstanding < selectedOutstanding) {
+                    selected = tcpSession;
+                    selectedOutstanding = outstanding;
+                }
+            } else {
+                reconnectNeeded = true;
+            }
+        }
+        if (selected != null && reconnectNeeded) {
+            for (int i = 0; i < sessions.length(); i++) {
+                if (!isOpen(sessions.get(i))) {
+                    connect(i);
+                }
+            }
+        }
+        return selected;
+    }
+
     private IoSession createTcpSession() throws KSITCPTransactionException {
         InetSocketAddress endpoint = tcpClientSettings.getEndpoint();
         logger.debug("Creating a new TCP session with host '{}'...", endpoint);
-        ConnectFuture connectFuture = connector.connect(endpoint);
+        ConnectFuture connectFuture = connect(0);
         try {
             return connectFuture.await().getSession();
         } catch (Exception e) {
@@ -98,11 +148,79 @@ class KSITCPClient implements Closeable {
         }
     }
 
+    /**
+     * Starts opening a session into the given slot of the pool, unless it is already being opened. Does not wait for
+     * the session to be opened.
+     */
+    private synchronized ConnectFuture connect(final int index) {
+        ConnectFuture pending = pendingConnects[index];
+        if (pending != null) {
+            return pending;
+        }
+        final ConnectFuture connectFuture = connector.connect(tcpClientSettings.getEndpoint());
+        pendingConnects[index] = connectFuture;
+        connectFuture.addListener(new IoFutureListener<ConnectFuture>() {
+            public void operationComplete(ConnectFuture future) {
+                connected(index, future);
+            }
+        });
+        return connectFuture;
+    }
+
+    /**
+     * Publishes the opened session before the slot stops being pending, so a concurrent {@link #selectSession()} never
+     * sees the slot empty and not pending, which would open a second session into the slot.
+     */
+    private void connected(int index, ConnectFuture connectFuture) {
+        IoSession tcpSession = connectFuture.isConnected() ? connectFuture.getSession() : null;
+        synchronized (this) {
+            if (tcpSession != null && !closed) {
+                sessions.set(index, tcpSession);
+            }
+            pendingConnects[index] = null;
+        }
+        if (tcpSession == null) {
+            logger.warn("Failed to initiate the TCP session with endpoint: {}", tcpClientSettings.getEndpoint(),
+                    connectFuture.getException());
+            return;
+        }
+        if (closed) {
+            // the client may have been closed after the session was published
+            tcpSession.closeNow();
+        }
+    }
+
+    private void sessionClosed(IoSession tcpSession) {
+        if (closed || !isPooled()) {
+            return;
+        }
+        for (int i = 0; i < sessions.length(); i++) {
+            if (sessions.get(i) == tcpSession) {
+                logger.debug("TCP session ID={} was closed, reconnecting in the background.", tcpSession.getId());
+                connect(i);
+            }
+        }
+    }
+
+    private boolean isOpen(IoSession tcpSession) {
+        return tcpSession != null && tcpSession.isConnected() && !tcpSession.isClosing();
+    }
+
+    private boolean isPooled() {
+        return sessions.length() > 1;
+    }
+
     private NioSocketConnector createConnector() {
         NioSocketConnector connector = new NioSocketConnector();
         connector.setConnectTimeoutMillis(tcpClientSettings.getTcpTransactionTimeoutSec() * 1000);
         connector.getFilterChain().addLast("codec", new ProtocolCodecFilter(new TransactionCodecFactory()));
-        connector.setHandler(new TCPSessionHandler());
+        connector.setHandler(new TCPSessionHandler() {
+            @Override
+            public void sessionClosed(IoSession session) throws Exception {
+                super.sessionClosed(session);
+                KSITCPClient.this.sessionClosed(session);
+            }
+        });
         return connector;
     }
 
@@ -111,7 +229,8 @@ class KSITCPClient implements Closeable {
         return "TCPClient{" +
                 "Gateway='" + tcpClientSettings.getEndpoint() + "', " +
                 "LoginID='" + tcpClientSettings.getServiceCredentials().getLoginId() + "', " +
-                "PDUVersion='" + tcpClientSettings.getPduVersion() +
+                "PDUVersion='" + tcpClientSettings.getPduVersion() + "', " +
+                "ConnectionPoolSize='" + tcpClientSettings.getConnectionPoolSize() +
                 "'}";
     }
 
@@ -17,29 +17,38 @@
  *  reserves and retains all trademark rights.
  *
  */
+
 package com.guardtime.ksi.service.tcp;
 
 import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.SettableFuture;
 import com.guardtime.ksi.tlv.TLVElement;
+import org.apache.mina.core.future.IoFutureListener;
 import org.apache.mina.core.future.WriteFuture;
 import org.apache.mina.core.session.IoSession;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Holds the initiated TCP request. From this class the response can be asked for.
+ * Holds the initiated TCP request. From this class the response can be asked for. The future is completed by the TCP
+ * session handler when the response arrives or by a timer when the transaction times out, therefore the callbacks
+ * registered by {@link #addCallback(FutureCallback)} are called without any thread waiting for the response.
  */
-class KSITCPRequestFuture implements com.guardtime.ksi.service.Future<TLVElement> {
+class KSITCPRequestFuture extends SettableFuture<TLVElement> {
+
+    private static final ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER = createTimeoutScheduler();
 
-    private KSITCPTransaction transaction;
     private final long timeoutMs;
-    private WriteFuture writeFuture;
-    private long transactionStartedMillis;
-    private TLVElement response;
-    private KSITCPTransactionException exception;
-    private boolean finished;
+    private KSITCPTransaction transaction;
+    private ActiveTransactionsHolder transactionsHolder;
+    private volatile WriteFuture writeFuture;
+    private volatile ScheduledFuture<?> timeoutTask;
 
     KSITCPRequestFuture(InputStream request, IoSession tcpSession, long timeoutMs) throws IOException, KSIException {
         this.timeoutMs = timeoutMs;
@@ -48,74 +57,80 @@ class KSITCPRequestFuture implements com.guardtime.ksi.service.Future<TLVElement
 
     private void startTransaction(IoSession tcpSession, InputStream request) throws IOException, KSIException {
         this.transaction = KSITCPTransaction.fromRequest(request);
-        transactionStartedMillis = System.currentTimeMillis();
-        ActiveTransactionsHolder.put(transaction);
+        transaction.setResponseListener(new FutureCallback<TLVElement>() {
+            public void onSuccess(TLVElement response) {
+                set(response);
+            }
+
+            public void onFailure(Exception exception) {
+                setException(exception);
+            }
+        });
+        this.transactionsHolder = ActiveTransactionsHolder.get(tcpSession);
+        transactionsHolder.put(transaction);
         try {
+            this.timeoutTask = TIMEOUT_SCHEDULER.schedule(new Runnable() {
+                public void run() {
+                    timeout();
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
             this.writeFuture = transaction.send(tcpSession);
         } catch (Exception e) {
-            ActiveTransactionsHolder.remove(transaction);
+            transactionsHolder.remove(transaction);
+            cancelTimeout();
             throw e;
         }
+        writeFuture.addListener(new IoFutureListener<WriteFuture>() {
+            public void operationComplete(WriteFuture future) {
+                if (!future.isWritten()) {
+                    setException(new KSITCPTransactionException("TCP request sending failed", future.getException()));
+                }
+            }
+        });
     }
 
-    /**
-     * Blocks until response timeout occurs or the response arrives.
-     *
-     * @return Bytes of the TCP response.
-     */
-    public synchronized TLVElement getResult() throws KSITCPTransactionException {
-        if (finished) {
-            if (response != null) {
-                return response;
-            }
-            if (exception != null) {
-                throw exception;
-            }
+    private void timeout() {
+        if (writeFuture == null || !writeFuture.isWritten()) {
+            setException(new TCPTimeoutException("TCP request sending could not be completed in " + timeoutMs + " ms"));
+        } else {
+            setException(new TCPTimeoutException("Response was not received in " + timeoutMs + " ms"));
         }
-        return blockUntilTransactionFinished();
     }
 
-    private TLVElement blockUntilTransactionFinished() throws KSITCPTransactionException {
-        try {
-            boolean written = writeFuture.await(timeoutMs, TimeUnit.MILLISECONDS);
-            if (!written) {
-                throw saveException(new TCPTimeoutException("TCP request sending could not be completed in " + timeoutMs + " ms"));
-            }
-
-            long timeoutMs = getMsLeftBeforeTimeout();
-            response = transaction.waitResponse(timeoutMs);
-
-            if (response != null) {
-                return response;
-            } else {
-                throw saveException(new TCPTimeoutException("Response was not received in " + this.timeoutMs + " ms"));
-            }
-        } catch (InterruptedException e) {
-            throw saveException(new KSITCPTransactionException("TCP transaction was interrupted", e));
-        } finally {
-            finished = true;
-            ActiveTransactionsHolder.remove(transaction);
-        }
+    @Override
+    public boolean set(TLVElement result) {
+        return finish(super.set(result));
     }
 
-    private KSITCPTransactionException saveException(KSITCPTransactionException e) {
-        this.exception = e;
-        return e;
+    @Override
+    public boolean setException(Exception exception) {
+        return finish(super.setException(exception));
     }
 
-    private long getMsLeftBeforeTimeout() {
-        long timePassed = System.currentTimeMillis() - transactionStartedMillis;
-        return Math.max(timeoutMs - timePassed, 0);
+    private boolean finish(boolean completed) {
+        if (completed) {
+            transactionsHolder.remove(transaction);
+            cancelTimeout();
+        }
+        return completed;
     }
 
-    /**
-     * @return True, if the TCP request is finished.
-     */
-    public boolean isFinished() {
-        if (finished) {
-            return true;
+    private void cancelTimeout() {
+        ScheduledFuture<?> task = timeoutTask;
+        if (task != null) {
+            task.cancel(false);
         }
-        // If following is true, it means that it's now safe to call getResult() because it will time out immediately even if it is not ready
-        return (System.currentTimeMillis() - transactionStartedMillis) > timeoutMs;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ksi-tcp-transaction-timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
     }
 }
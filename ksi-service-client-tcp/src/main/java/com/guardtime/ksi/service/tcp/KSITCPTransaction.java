@@ -20,7 +20,9 @@
 package com.guardtime.ksi.service.tcp;
 
 import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.service.FutureCallback;
 import com.guardtime.ksi.service.KSIProtocolException;
+import com.guardtime.ksi.service.client.KSIRequestInputStream;
 import com.guardtime.ksi.tlv.GlobalTlvTypes;
 import com.guardtime.ksi.tlv.MultipleTLVElementException;
 import com.guardtime.ksi.tlv.TLVElement;
@@ -32,12 +34,14 @@ import org.apache.mina.core.session.IoSession;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Represents a single TCP transaction.
+ * Represents a single TCP transaction. A request PDU may carry multiple request payloads (e.g. a batch of aggregation
+ * requests), in which case the transaction has a correlation ID per payload and the response is matched to the
+ * transaction by any of them.
  */
 class KSITCPTransaction {
 
@@ -45,51 +49,52 @@ class KSITCPTransaction {
     private static final int RESPONSE_WRAPPER_TAG = 0x202;
     private static final int REQ_ID_TAG = 0x1;
     private static final int PDU_V2_PAYLOAD_ELEMENT_TAG = 0x02;
+    private static final int PDU_V2_CONFIGURATION_ELEMENT_TAG = 0x04;
 
-    private final BlockingQueue<TLVElement> availableResponse = new ArrayBlockingQueue<>(1);
-    private long correlationId;
-    private TLVElement request;
+    private volatile FutureCallback<TLVElement> responseListener;
+    private List<Long> correlationIds = Collections.emptyList();
+    private boolean configuration;
+    private byte[] request;
     private TLVElement response;
-    private static final Object CONF_REQUEST_LOCK = new Object();
-    private static Long confRequestId = 0L;
 
     private KSITCPTransaction() {
     }
 
     static KSITCPTransaction fromRequest(InputStream request) throws IOException, KSIException {
         KSITCPTransaction transaction = new KSITCPTransaction();
-        TLVElement tlv = TLVElement.create(Util.toByteArray(request));
-        transaction.correlationId = isConfigurationPayload(tlv) ? getNewConfId() : extractTransactionIdFromRequestTLV(tlv);
-        transaction.request = tlv;
+        if (request instanceof KSIRequestInputStream) {
+            // request ID is known by the caller, the encoded request can be sent as is
+            KSIRequestInputStream requestStream = (KSIRequestInputStream) request;
+            transaction.configuration = requestStream.isConfigurationRequest();
+            transaction.correlationIds = requestStream.getRequestIds();
+            transaction.request = requestStream.getRequestBytes();
+            return transaction;
+        }
+        byte[] requestBytes = Util.toByteArray(request);
+        TLVElement tlv = TLVElement.create(requestBytes);
+        transaction.configuration = isConfigurationPayload(tlv);
+        if (!transaction.configuration) {
+            transaction.correlationIds = extractTransactionIdsFromRequestTLV(tlv);
+        }
+        transaction.request = requestBytes;
         return transaction;
     }
 
     static KSITCPTransaction fromResponse(IoBuffer ioBuffer) throws KSIException {
         KSITCPTransaction transaction = new KSITCPTransaction();
+        // MINA reuses the buffer, the parsed TLV elements refer to this copy instead
         byte[] responseData = new byte[ioBuffer.remaining()];
         ioBuffer.get(responseData);
         TLVElement tlv = parse(responseData);
 
-        if (isConfigurationPayload(tlv)) {
-            synchronized (CONF_REQUEST_LOCK) {
-                transaction.correlationId = confRequestId;
-                confRequestId = confRequestId + 1;
-            }
-        } else {
-            transaction.correlationId = extractTransactionIdFromResponseTLV(tlv);
+        transaction.configuration = isConfigurationPayload(tlv);
+        if (!transaction.configuration) {
+            transaction.correlationIds = Collections.singletonList(extractTransactionIdFromResponseTLV(tlv));
         }
-
-
         transaction.response = tlv;
         return transaction;
     }
 
-    private static long getNewConfId() {
-        synchronized (CONF_REQUEST_LOCK) {
-            return --confRequestId;
-        }
-    }
-
     private static TLVElement parse(byte[] data) throws KSIProtocolException {
         try {
             return TLVElement.create(data);
@@ -100,21 +105,37 @@ class KSITCPTransaction {
         }
     }
 
+    /**
+     * A PDU is a configuration PDU only if it carries a configuration payload and no request/response payload. The
+     * server may push a configuration payload along with a response, such PDU still belongs to the request.
+     */
     private static boolean isConfigurationPayload(TLVElement tlv) {
         if (tlv.getType() == GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_REQUEST_PDU_V2 ||
-                tlv.getType() == GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_RESPONSE_PDU_V2) {
-            return tlv.getFirstChildElement(0x04) != null;
+                tlv.getType() == GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_RESPONSE_PDU_V2 ||
+                tlv.getType() == GlobalTlvTypes.ELEMENT_TYPE_EXTENSION_REQUEST_PDU_V2 ||
+                tlv.getType() == GlobalTlvTypes.ELEMENT_TYPE_EXTENSION_RESPONSE_PDU_V2) {
+            return tlv.getFirstChildElement(PDU_V2_CONFIGURATION_ELEMENT_TAG) != null
+                    && tlv.getFirstChildElement(PDU_V2_PAYLOAD_ELEMENT_TAG) == null;
         }
         return false;
     }
 
-    private static long extractTransactionIdFromRequestTLV(TLVElement tlvData) throws KSITCPTransactionException {
+    private static List<Long> extractTransactionIdsFromRequestTLV(TLVElement tlvData)
+            throws KSITCPTransactionException {
         try {
             if (tlvData.getType() == GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_REQUEST_PDU_V2
                     || tlvData.getType() == GlobalTlvTypes.ELEMENT_TYPE_EXTENSION_REQUEST_PDU_V2) {
-                return extractRequestId(tlvData, PDU_V2_PAYLOAD_ELEMENT_TAG);
+                List<TLVElement> payloads = tlvData.getChildElements(PDU_V2_PAYLOAD_ELEMENT_TAG);
+                if (payloads.isEmpty()) {
+                    throw new IllegalStateException("TLV does not contain payload element tag");
+                }
+                List<Long> requestIds = new ArrayList<>(payloads.size());
+                for (TLVElement payload : payloads) {
+                    requestIds.add(extractRequestId(payload));
+                }
+                return requestIds;
             }
-            return extractRequestId(tlvData, REQUEST_WRAPPER_TAG);
+            return Collections.singletonList(extractRequestId(tlvData, REQUEST_WRAPPER_TAG));
         } catch (Exception e) {
             throw new KSITCPTransactionException("Request TLV was corrupt. Could not parse request ID.", e);
         }
@@ -137,6 +158,10 @@ class KSITCPTransaction {
         if (payloadElementTag == null) {
             throw new IllegalStateException("TLV does not contain payload element tag");
         }
+        return extractRequestId(payloadElementTag);
+    }
+
+    private static long extractRequestId(TLVElement payloadElementTag) throws TLVParserException {
         TLVElement reqIdTag = payloadElementTag.getFirstChildElement(REQ_ID_TAG);
         if (reqIdTag == null) {
             throw new IllegalStateException("Payload element tag does not contain request ID tag");
@@ -144,11 +169,31 @@ class KSITCPTransaction {
         return reqIdTag.getDecodedLong();
     }
 
+    /**
+     * Returns the request ID of the first payload.
+     */
     long getCorrelationId() {
-        return correlationId;
+        return correlationIds.get(0);
+    }
+
+    /**
+     * Returns the request IDs of all the payloads, empty for configuration transactions.
+     */
+    List<Long> getCorrelationIds() {
+        return correlationIds;
+    }
+
+    /**
+     * Returns true if the transaction carries a configuration request or response. These do not have a request ID.
+     */
+    boolean isConfiguration() {
+        return configuration;
     }
 
-    TLVElement getRequest() {
+    /**
+     * Returns the encoded request.
+     */
+    byte[] getRequest() {
         return request;
     }
 
@@ -159,12 +204,25 @@ class KSITCPTransaction {
 
     void responseReceived(TLVElement response) {
         this.response = response;
-        availableResponse.offer(response);
-        ActiveTransactionsHolder.remove(this);
+        FutureCallback<TLVElement> listener = responseListener;
+        if (listener != null) {
+            listener.onSuccess(response);
+        }
+    }
+
+    void failed(Exception exception) {
+        FutureCallback<TLVElement> listener = responseListener;
+        if (listener != null) {
+            listener.onFailure(exception);
+        }
     }
 
-    TLVElement waitResponse(long timeoutMs) throws InterruptedException {
-        return availableResponse.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    /**
+     * Sets the listener to be notified when the response of this transaction arrives or the transaction fails. Must be
+     * set before the request is sent.
+     */
+    void setResponseListener(FutureCallback<TLVElement> responseListener) {
+        this.responseListener = responseListener;
     }
 
     WriteFuture send(IoSession session) {
@@ -173,7 +231,7 @@ class KSITCPTransaction {
 
     @Override
     public String toString() {
-        return "KSITCPTransaction [correlationId=" + correlationId + ", request=" + request + ", response=" + response + "]";
+        return "KSITCPTransaction [correlationIds=" + correlationIds + ", configuration=" + configuration + ", requestLength=" + (request == null ? 0 : request.length) + ", response=" + response + "]";
     }
 
 }
@@ -39,6 +39,7 @@ public class TCPClientSettings {
     private final int tcpTransactionTimeoutSec;
     private final ServiceCredentials serviceCredentials;
     private final PduVersion pduVersion;
+    private final int connectionPoolSize;
 
     /**
      * Settings for TCP client.
@@ -52,10 +53,24 @@ public class TCPClientSettings {
     }
 
     public TCPClientSettings(InetSocketAddress endpoint, int tcpTransactionTimeoutSec, ServiceCredentials serviceCredentials, PduVersion pduVersion) {
+        this(endpoint, tcpTransactionTimeoutSec, serviceCredentials, pduVersion, 1);
+    }
+
+    /**
+     * Settings for TCP client.
+     *
+     * @param endpoint TCP gateway endpoint address.
+     * @param tcpTransactionTimeoutSec maximum time in seconds when a TCP transaction should time out from initiating the connection to receiving the whole response.
+     * @param serviceCredentials credentials for authenticating the client to the TCP gateway.
+     * @param pduVersion PDU version used for communication.
+     * @param connectionPoolSize number of parallel TCP sessions kept open with the gateway, must be at least 1.
+     */
+    public TCPClientSettings(InetSocketAddress endpoint, int tcpTransactionTimeoutSec, ServiceCredentials serviceCredentials, PduVersion pduVersion, int connectionPoolSize) {
         this.endpoint = endpoint;
         this.tcpTransactionTimeoutSec = tcpTransactionTimeoutSec;
         this.serviceCredentials = serviceCredentials;
         this.pduVersion = pduVersion;
+        this.connectionPoolSize = getVerifiedConnectionPoolSize(connectionPoolSize);
     }
 
     /**
@@ -68,10 +83,25 @@ public class TCPClientSettings {
      * @param pduVersion                      PDU version used for communication.
      */
     public TCPClientSettings(String uri, int tcpTransactionTimeoutSec, ServiceCredentials serviceCredentials, PduVersion pduVersion) throws IllegalArgumentException {
+        this(uri, tcpTransactionTimeoutSec, serviceCredentials, pduVersion, 1);
+    }
+
+    /**
+     * Settings for TCP client.
+     * The created {@link TCPClientSettings} instance constructs a new {@link InetSocketAddress} for every {@link #getEndpoint()} call.
+     *
+     * @param uri                             string containing the URI of endpoint. Must be in format: &lt;protocol&gt;://&lt;host&gt;:&lt;port&gt;
+     * @param tcpTransactionTimeoutSec        maximum time in seconds when a TCP transaction should time out from initiating the connection to receiving the whole response.
+     * @param serviceCredentials              credentials for authenticating the client to the TCP gateway.
+     * @param pduVersion                      PDU version used for communication.
+     * @param connectionPoolSize              number of parallel TCP sessions kept open with the gateway, must be at least 1.
+     */
+    public TCPClientSettings(String uri, int tcpTransactionTimeoutSec, ServiceCredentials serviceCredentials, PduVersion pduVersion, int connectionPoolSize) throws IllegalArgumentException {
         this.uri = getVerifiedUri(uri);
         this.tcpTransactionTimeoutSec = tcpTransactionTimeoutSec;
         this.serviceCredentials = serviceCredentials;
         this.pduVersion = pduVersion;
+        this.connectionPoolSize = getVerifiedConnectionPoolSize(connectionPoolSize);
     }
 
     private URI getVerifiedUri(String uri) {
@@ -82,6 +112,13 @@ public class TCPClientSettings {
         return parsedUri;
     }
 
+    private int getVerifiedConnectionPoolSize(int connectionPoolSize) {
+        if (connectionPoolSize < 1) {
+            throw new IllegalArgumentException("Connection pool size must be at least 1");
+        }
+        return connectionPoolSize;
+    }
+
     /**
      * Returns either the {@link InetSocketAddress} provided to the constructor or a new instance for every invocation based on the {@link String} provided to the constructor.
      *
@@ -102,4 +139,12 @@ public class TCPClientSettings {
     public PduVersion getPduVersion() {
         return pduVersion;
     }
+
+    /**
+     * Returns the number of parallel TCP sessions kept open with the gateway. Requests are spread between the sessions
+     * by the number of outstanding requests of each session. Defaults to 1.
+     */
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
 }
@@ -39,7 +39,7 @@ class TCPSessionHandler implements IoHandler {
 
     public void messageReceived(IoSession session, Object message) throws Exception {
         LOGGER.debug("Message received. {}", message);
-        ActiveTransactionsHolder.responseReceived((KSITCPTransaction) message);
+        ActiveTransactionsHolder.get(session).responseReceived((KSITCPTransaction) message);
     }
 
     public void messageSent(IoSession session, Object message) throws Exception {
@@ -51,6 +51,7 @@ class TCPSessionHandler implements IoHandler {
     }
 
     public void sessionClosed(IoSession session) throws Exception {
+        ActiveTransactionsHolder.get(session).sessionClosed();
     }
 
     public void sessionCreated(IoSession session) throws Exception {
@@ -24,8 +24,6 @@ import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
 import org.apache.mina.filter.codec.ProtocolEncoderOutput;
 
-import java.io.ByteArrayOutputStream;
-
 /**
  * Encodes the Transaction to TCP raw request.
  */
@@ -33,12 +31,6 @@ class TransactionEncoder extends ProtocolEncoderAdapter {
 
     public void encode(IoSession session, Object message, ProtocolEncoderOutput out) throws Exception {
         KSITCPTransaction transaction = (KSITCPTransaction) message;
-        ByteArrayOutputStream requestBytesStream = new ByteArrayOutputStream();
-        transaction.getRequest().writeTo(requestBytesStream);
-        byte[] requestBytes = requestBytesStream.toByteArray();
-        IoBuffer buffer = IoBuffer.allocate(requestBytes.length).setAutoExpand(true);
-        buffer.put(requestBytes);
-        buffer.flip();
-        out.write(buffer);
+        out.write(IoBuffer.wrap(transaction.getRequest()));
     }
 }
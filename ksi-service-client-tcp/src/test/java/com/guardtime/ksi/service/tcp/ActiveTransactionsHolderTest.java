@@ -0,0 +1,188 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.service.tcp;
+
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.client.KSIRequestInputStream;
+import com.guardtime.ksi.tlv.GlobalTlvTypes;
+import com.guardtime.ksi.tlv.TLVElement;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.DummySession;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ActiveTransactionsHolderTest {
+
+    private static final int PAYLOAD_TAG = 0x02;
+    private static final int CONFIGURATION_TAG = 0x04;
+
+    @Test
+    public void testResponseIsDispatchedToRequestWithSameId() throws Exception {
+        ActiveTransactionsHolder holder = new ActiveTransactionsHolder();
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        holder.put(request(1L, first));
+        holder.put(request(2L, second));
+
+        holder.responseReceived(response(2L));
+        Assert.assertTrue(first.responses.isEmpty());
+        Assert.assertEquals(second.responses.size(), 1);
+        Assert.assertEquals(holder.size(), 1);
+
+        holder.responseReceived(response(2L));
+        Assert.assertEquals(second.responses.size(), 1);
+    }
+
+    @Test
+    public void testBatchResponseIsDispatchedByAnyPayloadId() throws Exception {
+        ActiveTransactionsHolder holder = new ActiveTransactionsHolder();
+        RecordingListener batch = new RecordingListener();
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(
+                KSIRequestInputStream.withRequestIds(new byte[]{0x01}, Arrays.asList(1L, 2L, 3L)));
+        transaction.setResponseListener(batch);
+        holder.put(transaction);
+        Assert.assertEquals(holder.size(), 3);
+
+        holder.responseReceived(response(2L));
+        Assert.assertEquals(batch.responses.size(), 1);
+        Assert.assertEquals(holder.size(), 0);
+
+        holder.responseReceived(response(1L));
+        Assert.assertEquals(batch.responses.size(), 1);
+    }
+
+    @Test
+    public void testSessionCloseFailsBatchOnce() throws Exception {
+        ActiveTransactionsHolder holder = new ActiveTransactionsHolder();
+        RecordingListener batch = new RecordingListener();
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(
+                KSIRequestInputStream.withRequestIds(new byte[]{0x01}, Arrays.asList(1L, 2L)));
+        transaction.setResponseListener(batch);
+        holder.put(transaction);
+
+        holder.sessionClosed();
+        Assert.assertEquals(batch.failures.size(), 1);
+        Assert.assertEquals(holder.size(), 0);
+    }
+
+    @Test
+    public void testConfigurationResponsesAreDispatchedInRequestOrder() throws Exception {
+        ActiveTransactionsHolder holder = new ActiveTransactionsHolder();
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        holder.put(configurationRequest(first));
+        holder.put(configurationRequest(second));
+
+        holder.responseReceived(configurationResponse());
+        Assert.assertEquals(first.responses.size(), 1);
+        Assert.assertTrue(second.responses.isEmpty());
+        holder.responseReceived(configurationResponse());
+        Assert.assertEquals(second.responses.size(), 1);
+        Assert.assertEquals(holder.size(), 0);
+    }
+
+    @Test
+    public void testRemovedTransactionDoesNotReceiveResponse() throws Exception {
+        ActiveTransactionsHolder holder = new ActiveTransactionsHolder();
+        RecordingListener timedOut = new RecordingListener();
+        RecordingListener active = new RecordingListener();
+        KSITCPTransaction timedOutTransaction = configurationRequest(timedOut);
+        holder.put(timedOutTransaction);
+        holder.put(configurationRequest(active));
+        holder.remove(timedOutTransaction);
+
+        holder.responseReceived(configurationResponse());
+        Assert.assertTrue(timedOut.responses.isEmpty());
+        Assert.assertEquals(active.responses.size(), 1);
+    }
+
+    @Test
+    public void testSessionCloseFailsActiveTransactions() throws Exception {
+        ActiveTransactionsHolder holder = new ActiveTransactionsHolder();
+        RecordingListener listener = new RecordingListener();
+        RecordingListener configurationListener = new RecordingListener();
+        holder.put(request(1L, listener));
+        holder.put(configurationRequest(configurationListener));
+
+        holder.sessionClosed();
+        Assert.assertEquals(listener.failures.size(), 1);
+        Assert.assertEquals(configurationListener.failures.size(), 1);
+        Assert.assertEquals(holder.size(), 0);
+    }
+
+    @Test
+    public void testEachSessionHasOwnHolder() throws Exception {
+        DummySession session = new DummySession();
+        ActiveTransactionsHolder holder = ActiveTransactionsHolder.get(session);
+        Assert.assertSame(ActiveTransactionsHolder.get(session), holder);
+        Assert.assertNotSame(ActiveTransactionsHolder.get(new DummySession()), holder);
+    }
+
+    private KSITCPTransaction request(long requestId, RecordingListener listener) throws Exception {
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(new ByteArrayInputStream(
+                pdu(GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_REQUEST_PDU_V2, PAYLOAD_TAG, requestId).getEncoded()));
+        transaction.setResponseListener(listener);
+        return transaction;
+    }
+
+    private KSITCPTransaction configurationRequest(RecordingListener listener) throws Exception {
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(new ByteArrayInputStream(
+                pdu(GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_REQUEST_PDU_V2, CONFIGURATION_TAG, 0L).getEncoded()));
+        transaction.setResponseListener(listener);
+        return transaction;
+    }
+
+    private KSITCPTransaction response(long requestId) throws Exception {
+        return KSITCPTransaction.fromResponse(IoBuffer.wrap(
+                pdu(GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_RESPONSE_PDU_V2, PAYLOAD_TAG, requestId).getEncoded()));
+    }
+
+    private KSITCPTransaction configurationResponse() throws Exception {
+        return KSITCPTransaction.fromResponse(IoBuffer.wrap(
+                pdu(GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_RESPONSE_PDU_V2, CONFIGURATION_TAG, 0L).getEncoded()));
+    }
+
+    private TLVElement pdu(int type, int payloadType, long requestId) throws Exception {
+        TLVElement payload = new TLVElement(false, false, payloadType);
+        payload.addChildElement(TLVElement.create(0x01, requestId));
+        TLVElement pdu = new TLVElement(false, false, type);
+        pdu.addChildElement(payload);
+        return pdu;
+    }
+
+    private static class RecordingListener implements FutureCallback<TLVElement> {
+
+        private final List<TLVElement> responses = new ArrayList<>();
+        private final List<Exception> failures = new ArrayList<>();
+
+        public void onSuccess(TLVElement response) {
+            responses.add(response);
+        }
+
+        public void onFailure(Exception exception) {
+            failures.add(exception);
+        }
+    }
+}
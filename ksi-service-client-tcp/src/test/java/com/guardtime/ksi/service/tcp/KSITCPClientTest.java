@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service.tcp;
+
+import com.guardtime.ksi.pdu.PduVersion;
+import com.guardtime.ksi.service.client.KSIServiceCredentials;
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.transport.socket.nio.NioSocketAcceptor;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+
+public class KSITCPClientTest {
+
+    private NioSocketAcceptor acceptor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        acceptor = new NioSocketAcceptor();
+        acceptor.setHandler(new IoHandlerAdapter());
+        acceptor.bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        acceptor.dispose(true);
+    }
+
+    @Test
+    public void testPooledSessionsAreOpenedOnCreation() throws Exception {
+        KSITCPClient client = new KSITCPClient(createSettings(3));
+        try {
+            waitForSessionCount(3);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testClosedPooledSessionIsReopened() throws Exception {
+        KSITCPClient client = new KSITCPClient(createSettings(2));
+        try {
+            waitForSessionCount(2);
+            IoSession session = acceptor.getManagedSessions().values().iterator().next();
+            session.closeNow().awaitUninterruptibly();
+            Thread.sleep(100);
+            waitForSessionCount(2);
+            Assert.assertFalse(acceptor.getManagedSessions().containsKey(session.getId()));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testPooledSessionIsReopenedOnceWhileRequestsAreSent() throws Exception {
+        final KSITCPClient client = new KSITCPClient(createSettings(2));
+        try {
+            waitForSessionCount(2);
+            IoSession session = acceptor.getManagedSessions().values().iterator().next();
+            session.closeNow().awaitUninterruptibly();
+            Thread[] senders = new Thread[4];
+            for (int i = 0; i < senders.length; i++) {
+                senders[i] = new Thread() {
+                    public void run() {
+                        for (int j = 0; j < 100; j++) {
+                            try {
+                                client.sendRequest(new ByteArrayInputStream(new byte[]{0x02, 0x00}));
+                            } catch (KSITCPTransactionException e) {
+                                // the closed session may still be selected until the client notices it
+                            }
+                        }
+                    }
+                };
+                senders[i].start();
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            Thread.sleep(200);
+            waitForSessionCount(2);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testSingleSessionIsNotOpenedOnCreation() throws Exception {
+        KSITCPClient client = new KSITCPClient(createSettings(1));
+        try {
+            Thread.sleep(200);
+            Assert.assertEquals(acceptor.getManagedSessionCount(), 0);
+        } finally {
+            client.close();
+        }
+    }
+
+    private void waitForSessionCount(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (acceptor.getManagedSessionCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(acceptor.getManagedSessionCount(), expected);
+    }
+
+    private TCPClientSettings createSettings(int connectionPoolSize) {
+        return new TCPClientSettings(acceptor.getLocalAddress(), 10, new KSIServiceCredentials("anon", "anon"),
+                PduVersion.V2, connectionPoolSize);
+    }
+}
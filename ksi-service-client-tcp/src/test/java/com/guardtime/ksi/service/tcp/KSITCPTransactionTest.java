@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service.tcp;
+
+import com.guardtime.ksi.service.client.KSIRequestInputStream;
+import com.guardtime.ksi.tlv.GlobalTlvTypes;
+import com.guardtime.ksi.tlv.TLVElement;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+public class KSITCPTransactionTest {
+
+    @Test
+    public void testEncodedRequestIsSentWithoutParsing() throws Exception {
+        byte[] request = new byte[]{0x01, 0x02, 0x03};
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(new KSIRequestInputStream(request, 42L));
+        Assert.assertSame(transaction.getRequest(), request);
+        Assert.assertEquals(transaction.getCorrelationId(), 42L);
+        Assert.assertFalse(transaction.isConfiguration());
+    }
+
+    @Test
+    public void testEncodedConfigurationRequest() throws Exception {
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(new KSIRequestInputStream(new byte[]{0x01}, null));
+        Assert.assertTrue(transaction.isConfiguration());
+    }
+
+    @Test
+    public void testRequestIdIsParsedFromPlainStream() throws Exception {
+        TLVElement payload = new TLVElement(false, false, 0x02);
+        payload.addChildElement(TLVElement.create(0x01, 7L));
+        TLVElement pdu = new TLVElement(false, false, GlobalTlvTypes.ELEMENT_TYPE_EXTENSION_REQUEST_PDU_V2);
+        pdu.addChildElement(payload);
+        byte[] request = pdu.getEncoded();
+
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(new ByteArrayInputStream(request));
+        Assert.assertEquals(transaction.getRequest(), request);
+        Assert.assertEquals(transaction.getCorrelationId(), 7L);
+        Assert.assertFalse(transaction.isConfiguration());
+    }
+
+    @Test
+    public void testRequestIdsOfAllPayloadsAreParsedFromPlainStream() throws Exception {
+        TLVElement pdu = new TLVElement(false, false, GlobalTlvTypes.ELEMENT_TYPE_AGGREGATION_REQUEST_PDU_V2);
+        for (long requestId = 1; requestId <= 3; requestId++) {
+            TLVElement payload = new TLVElement(false, false, 0x02);
+            payload.addChildElement(TLVElement.create(0x01, requestId));
+            pdu.addChildElement(payload);
+        }
+
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(new ByteArrayInputStream(pdu.getEncoded()));
+        Assert.assertEquals(transaction.getCorrelationIds(), Arrays.asList(1L, 2L, 3L));
+        Assert.assertEquals(transaction.getCorrelationId(), 1L);
+    }
+
+    @Test
+    public void testExtenderConfigurationRequestIsRecognized() throws Exception {
+        TLVElement pdu = new TLVElement(false, false, GlobalTlvTypes.ELEMENT_TYPE_EXTENSION_REQUEST_PDU_V2);
+        pdu.addChildElement(new TLVElement(false, false, 0x04));
+
+        KSITCPTransaction transaction = KSITCPTransaction.fromRequest(new ByteArrayInputStream(pdu.getEncoded()));
+        Assert.assertTrue(transaction.isConfiguration());
+    }
+
+    @Test
+    public void testResponseWithConfigurationPayloadIsMatchedToRequest() throws Exception {
+        TLVElement payload = new TLVElement(false, false, 0x02);
+        payload.addChildElement(TLVElement.create(0x01, 7L));
+        TLVElement pdu = new TLVElement(false, false, GlobalTlvTypes.ELEMENT_TYPE_EXTENSION_RESPONSE_PDU_V2);
+        pdu.addChildElement(payload);
+        pdu.addChildElement(new TLVElement(false, false, 0x04));
+
+        KSITCPTransaction transaction = KSITCPTransaction.fromResponse(IoBuffer.wrap(pdu.getEncoded()));
+        Assert.assertFalse(transaction.isConfiguration());
+        Assert.assertEquals(transaction.getCorrelationId(), 7L);
+    }
+
+    @Test
+    public void testConfigurationResponseIsRecognized() throws Exception {
+        TLVElement pdu = new TLVElement(false, false, GlobalTlvTypes.ELEMENT_TYPE_EXTENSION_RESPONSE_PDU_V2);
+        pdu.addChildElement(new TLVElement(false, false, 0x04));
+
+        KSITCPTransaction transaction = KSITCPTransaction.fromResponse(IoBuffer.wrap(pdu.getEncoded()));
+        Assert.assertTrue(transaction.isConfiguration());
+    }
+}
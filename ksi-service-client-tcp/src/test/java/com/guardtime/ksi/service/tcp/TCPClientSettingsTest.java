@@ -25,6 +25,7 @@ import org.testng.annotations.Test;
 
 import java.net.InetSocketAddress;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
@@ -49,4 +50,15 @@ public class TCPClientSettingsTest {
         assertTrue(settings.getEndpoint() == settings.getEndpoint());
     }
 
+    @Test
+    public void testConnectionPoolSizeDefaultsToOne() {
+        TCPClientSettings settings = new TCPClientSettings("tcp://www.guardtime.com:80", 0, null, null);
+        assertEquals(settings.getConnectionPoolSize(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Connection pool size must be at least 1")
+    public void testCreateWithInvalidConnectionPoolSize_ThrowsIllegalArgumentException() {
+        new TCPClientSettings("tcp://www.guardtime.com:80", 0, null, null, 0);
+    }
+
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.pdu;
+
+import com.guardtime.ksi.hashing.DataHash;
+
+import static com.guardtime.ksi.util.Util.notNull;
+
+/**
+ * Holds the data of a single aggregation request payload. Used to create aggregation requests containing multiple
+ * payloads.
+ *
+ * @see AggregatorPduFactory#createAggregationRequest(KSIRequestContext, com.guardtime.ksi.service.client.ServiceCredentials,
+ *      java.util.List)
+ */
+public final class AggregationRequestItem {
+
+    private final Long requestId;
+    private final DataHash dataHash;
+    private final Long level;
+
+    public AggregationRequestItem(Long requestId, DataHash dataHash, Long level) {
+        notNull(requestId, "Request ID");
+        notNull(dataHash, "DataHash");
+        notNull(level, "Level");
+        this.requestId = requestId;
+        this.dataHash = dataHash;
+        this.level = level;
+    }
+
+    public Long getRequestId() {
+        return requestId;
+    }
+
+    public DataHash getDataHash() {
+        return dataHash;
+    }
+
+    public Long getLevel() {
+        return level;
+    }
+
+}
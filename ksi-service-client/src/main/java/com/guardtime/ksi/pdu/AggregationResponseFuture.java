@@ -21,6 +21,9 @@ package com.guardtime.ksi.pdu;
 
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.Futures;
+import com.guardtime.ksi.service.ListenableFuture;
 import com.guardtime.ksi.service.KSIProtocolException;
 import com.guardtime.ksi.service.client.ServiceCredentials;
 import com.guardtime.ksi.tlv.TLVElement;
@@ -30,7 +33,7 @@ import com.guardtime.ksi.tlv.TLVElement;
  *
  * @see Future
  */
-public final class AggregationResponseFuture implements Future<AggregationResponse> {
+public final class AggregationResponseFuture implements ListenableFuture<AggregationResponse> {
 
     private Future<TLVElement> requestFuture;
     private KSIRequestContext requestContext;
@@ -46,7 +49,7 @@ public final class AggregationResponseFuture implements Future<AggregationRespon
         this.pduFactory = pduFactory;
     }
 
-    public AggregationResponse getResult() throws KSIException {
+    public synchronized AggregationResponse getResult() throws KSIException {
         try {
             if (response == null) {
                 TLVElement responseTlv = requestFuture.getResult();
@@ -61,4 +64,11 @@ public final class AggregationResponseFuture implements Future<AggregationRespon
     public boolean isFinished() {
         return requestFuture.isFinished();
     }
+
+    /**
+     * Registers a callback which is notified with the parsed response as soon as the response arrives.
+     */
+    public void addCallback(FutureCallback<? super AggregationResponse> callback) {
+        Futures.addDerivedCallback(requestFuture, this, callback);
+    }
 }
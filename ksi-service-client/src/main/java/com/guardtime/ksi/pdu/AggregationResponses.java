@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.pdu;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.service.KSIProtocolException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.guardtime.ksi.util.Util.notNull;
+
+/**
+ * Aggregation response payloads of a single response message, by request identifiers. A payload containing an error
+ * is kept as the exception describing the error, so that it can be reported to the caller of the given request.
+ *
+ * @see com.guardtime.ksi.pdu.v2.AggregatorPduV2Factory#readAggregationResponses(
+ *      com.guardtime.ksi.service.client.ServiceCredentials, com.guardtime.ksi.tlv.TLVElement)
+ */
+public final class AggregationResponses {
+
+    private final Map<Long, AggregationResponse> responses;
+    private final Map<Long, KSIException> failures;
+
+    public AggregationResponses(Map<Long, AggregationResponse> responses, Map<Long, KSIException> failures) {
+        notNull(responses, "Responses");
+        notNull(failures, "Failures");
+        this.responses = Collections.unmodifiableMap(new LinkedHashMap<>(responses));
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * Returns the response payload with the given request identifier.
+     *
+     * @throws KSIException the error contained by the payload or {@link KSIProtocolException} when the response doesn't
+     *                      contain a payload with the given request identifier.
+     */
+    public AggregationResponse getResponse(Long requestId) throws KSIException {
+        KSIException failure = failures.get(requestId);
+        if (failure != null) {
+            throw failure;
+        }
+        AggregationResponse response = responses.get(requestId);
+        if (response == null) {
+            throw new KSIProtocolException("Aggregation response payload with requestId " + requestId + " wasn't found");
+        }
+        return response;
+    }
+
+    /**
+     * @return successful response payloads by their request identifiers.
+     */
+    public Map<Long, AggregationResponse> getResponses() {
+        return responses;
+    }
+
+    /**
+     * @return errors contained by the response payloads by their request identifiers.
+     */
+    public Map<Long, KSIException> getFailures() {
+        return failures;
+    }
+
+}
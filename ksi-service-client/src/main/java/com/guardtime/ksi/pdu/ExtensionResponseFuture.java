@@ -21,6 +21,9 @@ package com.guardtime.ksi.pdu;
 
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.Futures;
+import com.guardtime.ksi.service.ListenableFuture;
 import com.guardtime.ksi.service.KSIProtocolException;
 import com.guardtime.ksi.service.client.ServiceCredentials;
 import com.guardtime.ksi.tlv.TLVElement;
@@ -30,7 +33,7 @@ import com.guardtime.ksi.tlv.TLVElement;
  *
  * @see Future
  */
-public final class ExtensionResponseFuture implements Future<ExtensionResponse> {
+public final class ExtensionResponseFuture implements ListenableFuture<ExtensionResponse> {
 
     private final Future<TLVElement> future;
     private final KSIRequestContext context;
@@ -46,7 +49,7 @@ public final class ExtensionResponseFuture implements Future<ExtensionResponse>
         this.pduFactory = pduFactory;
     }
 
-    public ExtensionResponse getResult() throws KSIException {
+    public synchronized ExtensionResponse getResult() throws KSIException {
         if (extensionResponse == null) {
             try {
                 TLVElement tlvElement = future.getResult();
@@ -61,4 +64,11 @@ public final class ExtensionResponseFuture implements Future<ExtensionResponse>
     public boolean isFinished() {
         return future.isFinished();
     }
+
+    /**
+     * Registers a callback which is notified with the parsed response as soon as the response arrives.
+     */
+    public void addCallback(FutureCallback<? super ExtensionResponse> callback) {
+        Futures.addDerivedCallback(future, this, callback);
+    }
 }
@@ -27,7 +27,9 @@ import com.guardtime.ksi.tlv.TLVParserException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.guardtime.ksi.tlv.GlobalTlvTypes.ELEMENT_TYPE_CONFIGURATION_PAYLOAD;
 
@@ -67,24 +69,34 @@ abstract class AbstractPduV2Factory<T> {
     }
 
     TLVElement getPayload(List<TLVElement> payloads, Long requestId) throws TLVParserException {
-        TLVElement responsePayload = null;
+        Map<Long, TLVElement> responsePayloads = getPayloadsByRequestId(payloads);
+        for (Long id : responsePayloads.keySet()) {
+            if (!requestId.equals(id)) {
+                logger.warn("Response payload with requestId={} encountered, expected requestId={}", id, requestId);
+            }
+        }
+        return responsePayloads.get(requestId);
+    }
+
+    /**
+     * Returns the payloads by their request identifiers in the order of the payloads. Payloads without a request
+     * identifier are skipped, of the payloads with the same request identifier only the first one is kept.
+     */
+    Map<Long, TLVElement> getPayloadsByRequestId(List<TLVElement> payloads) throws TLVParserException {
+        Map<Long, TLVElement> responsePayloads = new LinkedHashMap<>();
         for (TLVElement payload : payloads) {
             TLVElement requestIdElement = payload.getFirstChildElement(ELEMENT_TYPE_REQUEST_ID);
 
             if (requestIdElement != null) {
                 Long id = requestIdElement.getDecodedLong();
-                if (requestId.equals(id)) {
-                    if (responsePayload == null) {
-                        responsePayload = payload;
-                    } else {
-                        logger.warn("Duplicate response payload received");
-                    }
+                if (!responsePayloads.containsKey(id)) {
+                    responsePayloads.put(id, payload);
                 } else {
-                    logger.warn("Response payload with requestId={} encountered, expected requestId={}", id, requestId);
+                    logger.warn("Duplicate response payload received");
                 }
             }
         }
-        return responsePayload;
+        return responsePayloads;
     }
 
     abstract T getConfiguration(List<TLVElement> confPayload) throws TLVParserException;
@@ -22,7 +22,9 @@ package com.guardtime.ksi.pdu.v2;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.pdu.AggregationRequest;
+import com.guardtime.ksi.pdu.AggregationRequestItem;
 import com.guardtime.ksi.pdu.AggregationResponse;
+import com.guardtime.ksi.pdu.AggregationResponses;
 import com.guardtime.ksi.pdu.AggregatorConfiguration;
 import com.guardtime.ksi.pdu.AggregatorPduFactory;
 import com.guardtime.ksi.pdu.KSIRequestContext;
@@ -34,8 +36,11 @@ import com.guardtime.ksi.tlv.TLVElement;
 import com.guardtime.ksi.tlv.TLVParserException;
 import com.guardtime.ksi.util.Util;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.guardtime.ksi.tlv.GlobalTlvTypes.ELEMENT_TYPE_CONFIGURATION_PAYLOAD;
 
@@ -59,6 +64,25 @@ public class AggregatorPduV2Factory extends AbstractPduV2Factory<AggregatorConfi
         return new AggregationRequestPduV2(Collections.singletonList(payload.getRootElement()), context, credentials);
     }
 
+    /**
+     * Creates a new aggregation request containing one payload per item. Message header is created using the given
+     * context, payloads use the request identifiers of the items. Batching is specific to PDU v2, therefore this
+     * method is not part of {@link AggregatorPduFactory}.
+     */
+    public AggregationRequest createAggregationRequest(KSIRequestContext context, ServiceCredentials credentials, List<AggregationRequestItem> items) throws KSIException {
+        Util.notNull(context, "KsiRequestContext");
+        Util.notNull(credentials, "ServiceCredentials");
+        Util.notNull(items, "AggregationRequestItems");
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("At least one aggregation request item is required");
+        }
+        List<TLVElement> payloads = new ArrayList<>(items.size());
+        for (AggregationRequestItem item : items) {
+            payloads.add(new AggregationRequestPayloadV2(item.getDataHash(), item.getRequestId(), item.getLevel()).getRootElement());
+        }
+        return new AggregationRequestPduV2(payloads, context, credentials);
+    }
+
     public AggregationResponse readAggregationResponse(KSIRequestContext context, ServiceCredentials credentials, TLVElement input) throws KSIException {
         updateConfiguration(credentials, input);
 
@@ -70,6 +94,26 @@ public class AggregatorPduV2Factory extends AbstractPduV2Factory<AggregatorConfi
         return new AggregationResponsePayloadV2(responsePayload);
     }
 
+    /**
+     * Reads an aggregation response containing multiple payloads. The response message is verified only once and
+     * the response payloads, or the errors contained by them, are returned by their request identifiers.
+     */
+    public AggregationResponses readAggregationResponses(ServiceCredentials credentials, TLVElement input) throws KSIException {
+        updateConfiguration(credentials, input);
+
+        List<TLVElement> payloads = getMandatoryPayloadElements(credentials, input, AggregationResponsePayloadV2.ELEMENT_TYPE);
+        Map<Long, AggregationResponse> responses = new LinkedHashMap<>();
+        Map<Long, KSIException> failures = new LinkedHashMap<>();
+        for (Map.Entry<Long, TLVElement> entry : getPayloadsByRequestId(payloads).entrySet()) {
+            try {
+                responses.put(entry.getKey(), new AggregationResponsePayloadV2(entry.getValue()));
+            } catch (KSIProtocolException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        return new AggregationResponses(responses, failures);
+    }
+
     public AggregationRequest createAggregatorConfigurationRequest(KSIRequestContext context, ServiceCredentials credentials) throws KSIException {
         Util.notNull(context, "KsiRequestContext");
         Util.notNull(credentials, "ServiceCredentials");
@@ -222,8 +222,8 @@ abstract class PduV2 extends TLVStructure {
     private DataHash calculateMac(HashAlgorithm macAlgorithm, byte[] loginKey) throws KSIException {
         try {
             byte[] tlvBytes = rootElement.getEncoded();
-            byte[] macCalculationInput = Util.copyOf(tlvBytes, 0, tlvBytes.length - macAlgorithm.getLength());
-            return new DataHash(macAlgorithm, Util.calculateHMAC(macCalculationInput, loginKey, macAlgorithm.getName()));
+            int macCalculationInputLength = tlvBytes.length - macAlgorithm.getLength();
+            return new DataHash(macAlgorithm, Util.calculateHMAC(tlvBytes, 0, macCalculationInputLength, loginKey, macAlgorithm.getName()));
         } catch (NoSuchAlgorithmException e) {
             throw new KSIException("MAC calculation failed. Invalid algorithm.", e);
         } catch (InvalidKeyException e) {
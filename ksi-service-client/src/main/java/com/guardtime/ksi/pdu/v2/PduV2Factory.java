@@ -22,7 +22,9 @@ package com.guardtime.ksi.pdu.v2;
 import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.pdu.AggregationRequest;
+import com.guardtime.ksi.pdu.AggregationRequestItem;
 import com.guardtime.ksi.pdu.AggregationResponse;
+import com.guardtime.ksi.pdu.AggregationResponses;
 import com.guardtime.ksi.pdu.AggregatorConfiguration;
 import com.guardtime.ksi.pdu.ExtenderConfiguration;
 import com.guardtime.ksi.pdu.ExtensionRequest;
@@ -33,6 +35,7 @@ import com.guardtime.ksi.service.client.ServiceCredentials;
 import com.guardtime.ksi.tlv.TLVElement;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * Implementation of the {@link PduFactory}.
@@ -66,10 +69,18 @@ public class PduV2Factory implements PduFactory {
         return this.aggregatorPduV2Factory.createAggregationRequest(context, credentials, imprint, level);
     }
 
+    public AggregationRequest createAggregationRequest(KSIRequestContext context, ServiceCredentials credentials, List<AggregationRequestItem> items) throws KSIException {
+        return this.aggregatorPduV2Factory.createAggregationRequest(context, credentials, items);
+    }
+
     public AggregationResponse readAggregationResponse(KSIRequestContext context, ServiceCredentials credentials, TLVElement input) throws KSIException {
         return this.aggregatorPduV2Factory.readAggregationResponse(context, credentials, input);
     }
 
+    public AggregationResponses readAggregationResponses(ServiceCredentials credentials, TLVElement input) throws KSIException {
+        return this.aggregatorPduV2Factory.readAggregationResponses(credentials, input);
+    }
+
     public AggregationRequest createAggregatorConfigurationRequest(KSIRequestContext context, ServiceCredentials credentials) throws KSIException {
         return this.aggregatorPduV2Factory.createAggregatorConfigurationRequest(context, credentials);
     }
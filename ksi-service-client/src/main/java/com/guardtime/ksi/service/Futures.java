@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service;
+
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
+import com.guardtime.ksi.util.Util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Helper methods for registering callbacks on {@link Future}s.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Registers a callback to be notified when the future completes. If the future is a {@link ListenableFuture} then
+     * the callback is registered directly, otherwise the result is waited for in a thread of the {@link
+     * DefaultExecutorServiceProvider}'s executor.
+     *
+     * @param future
+     *         future to listen, not null.
+     * @param callback
+     *         callback to be notified, not null.
+     */
+    public static <T> void addCallback(final Future<T> future, final FutureCallback<? super T> callback) {
+        Util.notNull(future, "Future");
+        Util.notNull(callback, "Future callback");
+        if (future instanceof ListenableFuture) {
+            ((ListenableFuture<T>) future).addCallback(callback);
+        } else {
+            DefaultExecutorServiceProvider.getExecutorService().execute(new Runnable() {
+                public void run() {
+                    notifyCallback(future, callback);
+                }
+            });
+        }
+    }
+
+    /**
+     * Registers a callback to be notified when the future completes. The callback is called using the given executor,
+     * this should be used when the callback does blocking work (e.g. signature verification), as otherwise the
+     * callback may be called in the I/O thread that completes the future. If the executor rejects the task then the
+     * callback is notified about the rejection in the calling thread.
+     *
+     * @param future
+     *         future to listen, not null.
+     * @param callback
+     *         callback to be notified, not null.
+     * @param executor
+     *         executor used to call the callback, not null.
+     */
+    public static <T> void addCallback(Future<T> future, final FutureCallback<? super T> callback, final Executor executor) {
+        Util.notNull(callback, "Future callback");
+        Util.notNull(executor, "Executor");
+        addCallback(future, new FutureCallback<T>() {
+            public void onSuccess(final T result) {
+                execute(executor, new Runnable() {
+                    public void run() {
+                        callback.onSuccess(result);
+                    }
+                }, callback);
+            }
+
+            public void onFailure(final Exception exception) {
+                execute(executor, new Runnable() {
+                    public void run() {
+                        callback.onFailure(exception);
+                    }
+                }, callback);
+            }
+        });
+    }
+
+    /**
+     * Registers a callback on a future whose result is derived from the result of another future. When the source
+     * future completes, the callback is notified with the result of the derived future. The derived future must not
+     * block once the source future has completed.
+     *
+     * @param source
+     *         future the derived future depends on, not null.
+     * @param derived
+     *         future whose result is passed to the callback, not null.
+     * @param callback
+     *         callback to be notified, not null.
+     */
+    public static <T> void addDerivedCallback(Future<?> source, final Future<T> derived, final FutureCallback<? super T> callback) {
+        Util.notNull(derived, "Derived future");
+        Util.notNull(callback, "Future callback");
+        addCallback(source, new FutureCallback<Object>() {
+            public void onSuccess(Object result) {
+                notifyCallback(derived, callback);
+            }
+
+            public void onFailure(Exception exception) {
+                notifyCallback(derived, callback);
+            }
+        });
+    }
+
+    /**
+     * Registers a callback on a future whose result is derived from the result of another future. When the source
+     * future completes, the result of the derived future is resolved and passed to the callback using the given
+     * executor. This should be used when resolving the derived result does blocking work (e.g. signature creation and
+     * verification), as otherwise it is done in the I/O thread that completes the source future. If the executor
+     * rejects the task then the callback is notified about the rejection in the calling thread.
+     *
+     * @param source
+     *         future the derived future depends on, not null.
+     * @param derived
+     *         future whose result is passed to the callback, not null.
+     * @param callback
+     *         callback to be notified, not null.
+     * @param executor
+     *         executor used to resolve the derived result and call the callback, not null.
+     */
+    public static <T> void addDerivedCallback(Future<?> source, final Future<T> derived, final FutureCallback<? super T> callback,
+                                              final Executor executor) {
+        Util.notNull(derived, "Derived future");
+        Util.notNull(callback, "Future callback");
+        Util.notNull(executor, "Executor");
+        final Runnable notification = new Runnable() {
+            public void run() {
+                notifyCallback(derived, callback);
+            }
+        };
+        addCallback(source, new FutureCallback<Object>() {
+            public void onSuccess(Object result) {
+                execute(executor, notification, callback);
+            }
+
+            public void onFailure(Exception exception) {
+                execute(executor, notification, callback);
+            }
+        });
+    }
+
+    private static void execute(Executor executor, Runnable task, FutureCallback<?> callback) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            callback.onFailure(e);
+        }
+    }
+
+    private static <T> void notifyCallback(Future<T> future, FutureCallback<? super T> callback) {
+        T result;
+        try {
+            result = future.getResult();
+        } catch (Exception e) {
+            callback.onFailure(e);
+            return;
+        }
+        callback.onSuccess(result);
+    }
+
+}
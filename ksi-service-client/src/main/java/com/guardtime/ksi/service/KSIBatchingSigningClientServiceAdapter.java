@@ -0,0 +1,306 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.service;
+
+import com.guardtime.ksi.concurrency.DefaultExecutorServiceProvider;
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.pdu.AggregationRequest;
+import com.guardtime.ksi.pdu.AggregationRequestItem;
+import com.guardtime.ksi.pdu.AggregationResponse;
+import com.guardtime.ksi.pdu.AggregationResponses;
+import com.guardtime.ksi.pdu.AggregatorConfiguration;
+import com.guardtime.ksi.pdu.KSIRequestContext;
+import com.guardtime.ksi.pdu.PduVersion;
+import com.guardtime.ksi.pdu.RequestContextFactory;
+import com.guardtime.ksi.pdu.v2.AggregatorPduV2Factory;
+import com.guardtime.ksi.service.client.KSIClientException;
+import com.guardtime.ksi.service.client.KSIRequestInputStream;
+import com.guardtime.ksi.service.client.KSISigningClient;
+import com.guardtime.ksi.service.client.ServiceCredentials;
+import com.guardtime.ksi.tlv.TLVElement;
+import com.guardtime.ksi.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapter which wraps {@link KSISigningClient} so it can be used as a batching {@link KSISigningService}.
+ * <p>
+ * Concurrent {@link #sign(DataHash, Long)} calls are collected into a batch, which is sent to the aggregator as a single
+ * aggregation request containing one payload per call. A batch is sent as soon as it contains the maximum number of
+ * requests, when the next request wouldn't fit into a single PDU (TLV16 limits the content to 65535 bytes) or when the
+ * batching window, started by the first request of the batch, has passed. Response payloads are
+ * matched to the callers by request identifiers, so every batch costs a single message header, MAC and round trip.
+ * </p>
+ * <p>
+ * Batching requires PDU v2. The request IDs of all the payloads are passed to the client, so the TCP client correlates
+ * the response with the batch by any of its payloads, regardless of the order the aggregator returns them in.
+ * </p>
+ */
+public final class KSIBatchingSigningClientServiceAdapter implements KSISigningService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KSIBatchingSigningClientServiceAdapter.class);
+
+    private static final int MAX_PDU_CONTENT_LENGTH = 0xFFFF;
+    /**
+     * Upper bound of the encoded length of the PDU header and MAC, without the login id.
+     */
+    private static final int PDU_OVERHEAD_LENGTH = 128;
+    /**
+     * Upper bound of the encoded length of an aggregation request payload, without the data hash imprint.
+     */
+    private static final int PAYLOAD_OVERHEAD_LENGTH = 32;
+
+    private final KSISigningClient client;
+    private final RequestContextFactory requestContextFactory = RequestContextFactory.DEFAULT_FACTORY;
+    private final ConfigurationHandler<AggregatorConfiguration> aggregatorConfHandler;
+    private final AggregatorPduV2Factory pduFactory;
+    private final int maxBatchSize;
+    private final long batchWindowMs;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private Batch currentBatch;
+
+    /**
+     * @param client signing client used to send the batches.
+     * @param maxBatchSize maximum number of signing requests in a single batch.
+     * @param batchWindowMs time in milliseconds to wait for more signing requests after the first request of a batch.
+     */
+    public KSIBatchingSigningClientServiceAdapter(KSISigningClient client, int maxBatchSize, long batchWindowMs) {
+        this(client, DefaultExecutorServiceProvider.getExecutorService(), maxBatchSize, batchWindowMs);
+    }
+
+    /**
+     * @param client signing client used to send the batches.
+     * @param executorService executor service used for configuration requests.
+     * @param maxBatchSize maximum number of signing requests in a single batch.
+     * @param batchWindowMs time in milliseconds to wait for more signing requests after the first request of a batch.
+     */
+    public KSIBatchingSigningClientServiceAdapter(KSISigningClient client, ExecutorService executorService, int maxBatchSize,
+                                                  long batchWindowMs) {
+        Util.notNull(client, "KSIBatchingSigningClientServiceAdapter.client");
+        Util.notNull(executorService, "KSIBatchingSigningClientServiceAdapter.executorService");
+        if (client.getPduVersion() != PduVersion.V2) {
+            throw new IllegalArgumentException("Batching signing requests requires PDU version V2");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be positive");
+        }
+        if (batchWindowMs < 0) {
+            throw new IllegalArgumentException("Batch window must not be negative");
+        }
+        this.client = client;
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowMs = batchWindowMs;
+        this.aggregatorConfHandler = new ConfigurationHandler<>(executorService);
+        this.pduFactory = new AggregatorPduV2Factory(new PushConfigurationListener<>(aggregatorConfHandler));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ksi-signing-batch-" + KSIBatchingSigningClientServiceAdapter.this.client);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public Future<AggregationResponse> sign(DataHash dataHash, Long level) throws KSIException {
+        Util.notNull(dataHash, "dataHash");
+        Util.notNull(level, "level");
+        Long requestId = requestContextFactory.createContext().getRequestId();
+        int payloadLength = PAYLOAD_OVERHEAD_LENGTH + dataHash.getImprint().length;
+        Batch batch;
+        Batch overflownBatch = null;
+        boolean full;
+        synchronized (lock) {
+            if (currentBatch != null && currentBatch.encodedLength + payloadLength > MAX_PDU_CONTENT_LENGTH) {
+                overflownBatch = currentBatch;
+                overflownBatch.flushTask.cancel(false);
+                currentBatch = null;
+            }
+            if (currentBatch == null) {
+                currentBatch = new Batch();
+                currentBatch.flushTask = scheduler.schedule(currentBatch, batchWindowMs, TimeUnit.MILLISECONDS);
+            }
+            batch = currentBatch;
+            batch.items.add(new AggregationRequestItem(requestId, dataHash, level));
+            batch.encodedLength += payloadLength;
+            full = batch.items.size() >= maxBatchSize;
+            if (full) {
+                currentBatch = null;
+                batch.flushTask.cancel(false);
+            }
+        }
+        if (overflownBatch != null) {
+            overflownBatch.send();
+        }
+        if (full) {
+            batch.send();
+        }
+        return new BatchedAggregationResponseFuture(batch, requestId);
+    }
+
+    public List<KSISigningService> getSubSigningServices() {
+        return Collections.emptyList();
+    }
+
+    public void registerAggregatorConfigurationListener(ConfigurationListener<AggregatorConfiguration> listener) {
+        aggregatorConfHandler.registerListener(listener);
+    }
+
+    public Future<AggregatorConfiguration> getAggregationConfiguration() {
+        return new ConfigurationFuture<>(aggregatorConfHandler.doConfigurationUpdate(
+                new ConfigurationRequest<AggregatorConfiguration>() {
+                    public AggregatorConfiguration invoke() throws KSIException {
+                        KSIRequestContext requestContext = requestContextFactory.createContext();
+                        ServiceCredentials credentials = client.getServiceCredentials();
+                        AggregationRequest requestMessage = pduFactory.createAggregatorConfigurationRequest(requestContext, credentials);
+                        Future<TLVElement> future = client.sign(new KSIRequestInputStream(requestMessage.toByteArray(), null));
+                        return pduFactory.readAggregatorConfigurationResponse(requestContext, credentials, future.getResult());
+                    }
+                }));
+    }
+
+    /**
+     * Sends the pending batch, if there is one, and closes the client.
+     */
+    public void close() throws IOException {
+        Batch batch;
+        synchronized (lock) {
+            batch = currentBatch;
+            currentBatch = null;
+        }
+        if (batch != null) {
+            batch.flushTask.cancel(false);
+            batch.send();
+        }
+        scheduler.shutdown();
+        client.close();
+    }
+
+    @Override
+    public String toString() {
+        return "KSIBatchingSigningClientServiceAdapter{" +
+                "client=" + client +
+                ", maxBatchSize=" + maxBatchSize +
+                ", batchWindowMs=" + batchWindowMs +
+                '}';
+    }
+
+    private int getPduOverheadLength() {
+        ServiceCredentials credentials = client.getServiceCredentials();
+        byte[] loginId = credentials != null ? Util.toByteArray(credentials.getLoginId()) : null;
+        return PDU_OVERHEAD_LENGTH + (loginId != null ? loginId.length : 0);
+    }
+
+    /**
+     * Signing requests sent as a single aggregation request. Runs as the flush task of the batching window. The
+     * response is parsed once, by the callback registered on the response future, and the parsed responses are handed
+     * over to the callers through {@link #result}.
+     */
+    private final class Batch implements Runnable {
+
+        private final List<AggregationRequestItem> items = new ArrayList<>();
+        private int encodedLength = getPduOverheadLength();
+        private final SettableFuture<AggregationResponses> result = new SettableFuture<>();
+        private ScheduledFuture<?> flushTask;
+
+        public void run() {
+            synchronized (lock) {
+                if (currentBatch != this) {
+                    return;
+                }
+                currentBatch = null;
+            }
+            send();
+        }
+
+        void send() {
+            final ServiceCredentials credentials = client.getServiceCredentials();
+            Future<TLVElement> responseFuture;
+            try {
+                KSIRequestContext requestContext = requestContextFactory.createContext();
+                AggregationRequest request = pduFactory.createAggregationRequest(requestContext, credentials, items);
+                logger.debug("Sending a batch of {} aggregation requests", items.size());
+                List<Long> requestIds = new ArrayList<>(items.size());
+                for (AggregationRequestItem item : items) {
+                    requestIds.add(item.getRequestId());
+                }
+                responseFuture = client.sign(KSIRequestInputStream.withRequestIds(request.toByteArray(), requestIds));
+            } catch (KSIException e) {
+                result.setException(e);
+                return;
+            } catch (RuntimeException e) {
+                result.setException(new KSIClientException("Sending the aggregation request batch failed", e));
+                return;
+            }
+            Futures.addCallback(responseFuture, new FutureCallback<TLVElement>() {
+                public void onSuccess(TLVElement response) {
+                    try {
+                        result.set(pduFactory.readAggregationResponses(credentials, response));
+                    } catch (Exception e) {
+                        result.setException(e);
+                    }
+                }
+
+                public void onFailure(Exception exception) {
+                    result.setException(exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Future of a single signing request in a batch.
+     */
+    private static final class BatchedAggregationResponseFuture implements ListenableFuture<AggregationResponse> {
+
+        private final Batch batch;
+        private final Long requestId;
+
+        BatchedAggregationResponseFuture(Batch batch, Long requestId) {
+            this.batch = batch;
+            this.requestId = requestId;
+        }
+
+        public AggregationResponse getResult() throws KSIException {
+            return batch.result.getResult().getResponse(requestId);
+        }
+
+        public boolean isFinished() {
+            return batch.result.isFinished();
+        }
+
+        public void addCallback(FutureCallback<? super AggregationResponse> callback) {
+            Futures.addDerivedCallback(batch.result, this, callback);
+        }
+    }
+}
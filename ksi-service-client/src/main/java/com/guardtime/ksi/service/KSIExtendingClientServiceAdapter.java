@@ -31,11 +31,11 @@ import com.guardtime.ksi.pdu.PduFactory;
 import com.guardtime.ksi.pdu.PduFactoryProvider;
 import com.guardtime.ksi.pdu.RequestContextFactory;
 import com.guardtime.ksi.service.client.KSIExtenderClient;
+import com.guardtime.ksi.service.client.KSIRequestInputStream;
 import com.guardtime.ksi.service.client.ServiceCredentials;
 import com.guardtime.ksi.tlv.TLVElement;
 import com.guardtime.ksi.util.Util;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Date;
@@ -70,8 +70,8 @@ public final class KSIExtendingClientServiceAdapter implements KSIExtendingServi
         KSIRequestContext requestContext = requestContextFactory.createContext();
         ServiceCredentials credentials = client.getServiceCredentials();
         ExtensionRequest requestMessage = pduFactory.createExtensionRequest(requestContext, credentials, aggregationTime, publicationTime);
-        ByteArrayInputStream requestStream = new ByteArrayInputStream(requestMessage.toByteArray());
-        Future<TLVElement> extensionResponse = client.extend(requestStream);
+        Future<TLVElement> extensionResponse = client.extend(
+                new KSIRequestInputStream(requestMessage.toByteArray(), requestContext.getRequestId()));
         return new ExtensionResponseFuture(extensionResponse, requestContext, credentials, pduFactory);
     }
 
@@ -90,7 +90,7 @@ public final class KSIExtendingClientServiceAdapter implements KSIExtendingServi
                         KSIRequestContext requestContext = requestContextFactory.createContext();
                         ServiceCredentials credentials = client.getServiceCredentials();
                         ExtensionRequest request = pduFactory.createExtensionConfigurationRequest(requestContext, credentials);
-                        Future<TLVElement> future = client.extend(new ByteArrayInputStream(request.toByteArray()));
+                        Future<TLVElement> future = client.extend(new KSIRequestInputStream(request.toByteArray(), null));
                         return pduFactory.readExtenderConfigurationResponse(credentials, future.getResult());
                     }
                 }));
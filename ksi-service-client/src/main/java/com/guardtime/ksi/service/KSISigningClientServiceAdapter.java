@@ -31,12 +31,12 @@ import com.guardtime.ksi.pdu.KSIRequestContext;
 import com.guardtime.ksi.pdu.PduFactory;
 import com.guardtime.ksi.pdu.PduFactoryProvider;
 import com.guardtime.ksi.pdu.RequestContextFactory;
+import com.guardtime.ksi.service.client.KSIRequestInputStream;
 import com.guardtime.ksi.service.client.KSISigningClient;
 import com.guardtime.ksi.service.client.ServiceCredentials;
 import com.guardtime.ksi.tlv.TLVElement;
 import com.guardtime.ksi.util.Util;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
@@ -70,8 +70,9 @@ public final class KSISigningClientServiceAdapter implements KSISigningService {
         Util.notNull(level, "level");
         KSIRequestContext requestContext = requestContextFactory.createContext();
         ServiceCredentials credentials = client.getServiceCredentials();
-        Future<TLVElement> requestFuture = client.sign(new ByteArrayInputStream(
-                pduFactory.createAggregationRequest(requestContext, credentials, dataHash, level).toByteArray()));
+        Future<TLVElement> requestFuture = client.sign(new KSIRequestInputStream(
+                pduFactory.createAggregationRequest(requestContext, credentials, dataHash, level).toByteArray(),
+                requestContext.getRequestId()));
         return new AggregationResponseFuture(requestFuture, requestContext, credentials, pduFactory);
     }
 
@@ -90,7 +91,7 @@ public final class KSISigningClientServiceAdapter implements KSISigningService {
                         KSIRequestContext requestContext = requestContextFactory.createContext();
                         ServiceCredentials credentials = client.getServiceCredentials();
                         AggregationRequest requestMessage = pduFactory.createAggregatorConfigurationRequest(requestContext, credentials);
-                        Future<TLVElement> future = client.sign(new ByteArrayInputStream(requestMessage.toByteArray()));
+                        Future<TLVElement> future = client.sign(new KSIRequestInputStream(requestMessage.toByteArray(), null));
                         return pduFactory.readAggregatorConfigurationResponse(requestContext, credentials, future.getResult());
                     }
                 }));
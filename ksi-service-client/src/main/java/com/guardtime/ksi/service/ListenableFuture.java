@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service;
+
+/**
+ * A {@link Future} which notifies the registered callbacks when the result becomes available. The callbacks allow to
+ * process the result as soon as it arrives without blocking a thread in {@link #getResult()}.
+ *
+ * @param <T>
+ *         future return type
+ */
+public interface ListenableFuture<T> extends Future<T> {
+
+    /**
+     * Registers a callback that is called once when the future completes. If the future has already completed then
+     * the callback is called immediately in the calling thread. Otherwise the callback is called in the thread that
+     * completes the future, therefore the callbacks should not block.
+     *
+     * @param callback
+     *         callback to be notified, not null.
+     */
+    void addCallback(FutureCallback<? super T> callback);
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ListenableFuture} which is completed explicitly by calling {@link #set(Object)} or {@link
+ * #setException(Exception)}. Only the first completion is taken into account.
+ *
+ * @param <T>
+ *         future return type
+ */
+public class SettableFuture<T> implements ListenableFuture<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SettableFuture.class);
+
+    private List<FutureCallback<? super T>> callbacks = new ArrayList<>(1);
+    private boolean finished;
+    private T result;
+    private Exception exception;
+
+    /**
+     * Completes the future successfully.
+     *
+     * @param result
+     *         result of the future.
+     *
+     * @return True, if the future was completed by this call.
+     */
+    public boolean set(T result) {
+        return complete(result, null);
+    }
+
+    /**
+     * Completes the future with a failure. {@link #getResult()} throws the given exception if it is a {@link
+     * KSIException}, otherwise it is wrapped into {@link KSIException}.
+     *
+     * @param exception
+     *         the reason of the failure, not null.
+     *
+     * @return True, if the future was completed by this call.
+     */
+    public boolean setException(Exception exception) {
+        Util.notNull(exception, "Exception");
+        return complete(null, exception);
+    }
+
+    public synchronized T getResult() throws KSIException {
+        while (!finished) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KSIException("Waiting for the result was interrupted", e);
+            }
+        }
+        if (exception instanceof KSIException) {
+            throw (KSIException) exception;
+        }
+        if (exception != null) {
+            throw new KSIException(exception.getMessage(), exception);
+        }
+        return result;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public void addCallback(FutureCallback<? super T> callback) {
+        Util.notNull(callback, "Future callback");
+        synchronized (this) {
+            if (!finished) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+
+    private boolean complete(T result, Exception exception) {
+        List<FutureCallback<? super T>> callbacksToNotify;
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            this.finished = true;
+            this.result = result;
+            this.exception = exception;
+            callbacksToNotify = callbacks;
+            this.callbacks = null;
+            notifyAll();
+        }
+        for (FutureCallback<? super T> callback : callbacksToNotify) {
+            notifyCallback(callback);
+        }
+        return true;
+    }
+
+    private void notifyCallback(FutureCallback<? super T> callback) {
+        try {
+            if (exception == null) {
+                callback.onSuccess(result);
+            } else {
+                callback.onFailure(exception);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Future callback failed", e);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service.client;
+
+import com.guardtime.ksi.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Request stream created by the service adapters from an already encoded request PDU. Besides the request bytes it
+ * carries the request IDs of its payloads, so that the clients that need them (e.g. the TCP client for matching
+ * responses to requests) can use the encoded bytes directly instead of reading and parsing the stream.
+ */
+public class KSIRequestInputStream extends ByteArrayInputStream {
+
+    private final List<Long> requestIds;
+
+    /**
+     * @param request
+     *         encoded request PDU, not null. The array is not copied and must not be modified afterwards.
+     * @param requestId
+     *         ID of the request, null for configuration requests.
+     */
+    public KSIRequestInputStream(byte[] request, Long requestId) {
+        this(notNull(request),
+                requestId == null ? Collections.<Long>emptyList() : Collections.singletonList(requestId));
+    }
+
+    private KSIRequestInputStream(byte[] request, List<Long> requestIds) {
+        super(request);
+        this.requestIds = requestIds;
+    }
+
+    /**
+     * Creates a stream of a request PDU carrying multiple request payloads, e.g. a batch of aggregation requests.
+     *
+     * @param request
+     *         encoded request PDU, not null. The array is not copied and must not be modified afterwards.
+     * @param requestIds
+     *         IDs of the request payloads in the order of the payloads, not null. Empty for configuration requests.
+     */
+    public static KSIRequestInputStream withRequestIds(byte[] request, List<Long> requestIds) {
+        Util.notNull(requestIds, "KSIRequestInputStream.requestIds");
+        return new KSIRequestInputStream(notNull(request), Collections.unmodifiableList(new ArrayList<>(requestIds)));
+    }
+
+    private static byte[] notNull(byte[] request) {
+        Util.notNull(request, "KSIRequestInputStream.request");
+        return request;
+    }
+
+    /**
+     * Returns the encoded request PDU. The returned array must not be modified.
+     */
+    public byte[] getRequestBytes() {
+        return buf;
+    }
+
+    /**
+     * Returns the ID of the first request payload or null if this is a configuration request.
+     */
+    public Long getRequestId() {
+        return requestIds.isEmpty() ? null : requestIds.get(0);
+    }
+
+    /**
+     * Returns the IDs of all the request payloads, the list is empty if this is a configuration request.
+     */
+    public List<Long> getRequestIds() {
+        return requestIds;
+    }
+
+    /**
+     * Returns true if this is a configuration request, which does not have a request ID.
+     */
+    public boolean isConfigurationRequest() {
+        return requestIds.isEmpty();
+    }
+}
@@ -23,7 +23,9 @@ import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.hashing.HashAlgorithm;
 import com.guardtime.ksi.pdu.AggregationRequest;
+import com.guardtime.ksi.pdu.AggregationRequestItem;
 import com.guardtime.ksi.pdu.AggregationResponse;
+import com.guardtime.ksi.pdu.AggregationResponses;
 import com.guardtime.ksi.pdu.AggregatorConfiguration;
 import com.guardtime.ksi.pdu.ExtenderConfiguration;
 import com.guardtime.ksi.pdu.ExtensionRequest;
@@ -42,6 +44,8 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
 import static com.guardtime.ksi.CommonTestUtil.loadTlv;
@@ -294,6 +298,41 @@ public class PduV2FactoryTest {
         Assert.assertNotNull(response);
     }
 
+    @Test
+    public void testCreateAggregationRequestWithMultipleItems_Ok() throws Exception {
+        AggregationRequest request = pduFactory.createAggregationRequest(requestContext, CREDENTIALS, Arrays.asList(
+                new AggregationRequestItem(1L, dataHash, DEFAULT_LEVEL), new AggregationRequestItem(2L, dataHash, 3L)));
+        TLVElement requestElement = TLVElement.create(request.toByteArray());
+        Assert.assertEquals(requestElement.getChildElements(AggregationRequestPayloadV2.ELEMENT_TYPE).size(), 2);
+        Assert.assertEquals(requestElement.getChildElements(AggregationRequestPayloadV2.ELEMENT_TYPE).get(1).getFirstChildElement(0x01).getDecodedLong(), Long.valueOf(2L));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "At least one aggregation request item is required")
+    public void testCreateAggregationRequestWithoutItems_ThrowsIllegalArgumentException() throws Exception {
+        pduFactory.createAggregationRequest(requestContext, CREDENTIALS, Collections.<AggregationRequestItem>emptyList());
+    }
+
+    @Test
+    public void testAggregationResponsesParsingWithMultipleResponses() throws Exception {
+        AggregationResponses responses = pduFactory.readAggregationResponses(CREDENTIALS, loadTlv("pdu/aggregation/aggregator-response-v2-multiple-mixed-and-duplicate-payloads.tlv"));
+        Assert.assertNotNull(responses.getResponse(requestContext.getRequestId()));
+        Assert.assertEquals(responses.getResponse(requestContext.getRequestId()).getPayload(),
+                pduFactory.readAggregationResponse(requestContext, CREDENTIALS, loadTlv("pdu/aggregation/aggregator-response-v2-multiple-mixed-and-duplicate-payloads.tlv")).getPayload());
+    }
+
+    @Test
+    public void testAggregationResponsesParsingKeepsErrorOfPayload() throws Exception {
+        AggregationResponses responses = pduFactory.readAggregationResponses(CREDENTIALS, loadTlv("pdu/aggregation/aggregation-response-v2-with-error.tlv"));
+        Assert.assertFalse(responses.getResponses().containsKey(8530358545345979581L));
+        Assert.assertTrue(responses.getFailures().get(8530358545345979581L) instanceof KSIProtocolException);
+        try {
+            responses.getResponse(8530358545345979581L);
+            Assert.fail("Error of the response payload wasn't thrown");
+        } catch (KSIProtocolException e) {
+            Assert.assertSame(e, responses.getFailures().get(8530358545345979581L));
+        }
+    }
+
     @Test
     public void testAggregationResponseParsingWithoutConfUpdate() throws Exception {
         ConfigurationListener<AggregatorConfiguration> aggregatorConfigurationListener = mock(ConfigurationListener.class);
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+package com.guardtime.ksi.service;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FuturesTest {
+
+    @Test
+    public void testDerivedCallbackIsNotifiedWithDerivedResult() throws Exception {
+        final SettableFuture<String> source = new SettableFuture<>();
+        Future<Integer> derived = new Future<Integer>() {
+            public Integer getResult() throws KSIException {
+                return source.getResult().length();
+            }
+
+            public boolean isFinished() {
+                return source.isFinished();
+            }
+        };
+        final AtomicReference<Integer> result = new AtomicReference<>();
+        Futures.addDerivedCallback(source, derived, new FutureCallback<Integer>() {
+            public void onSuccess(Integer value) {
+                result.set(value);
+            }
+
+            public void onFailure(Exception exception) {
+                Assert.fail("Derived future failed", exception);
+            }
+        });
+        Assert.assertNull(result.get());
+        source.set("result");
+        Assert.assertEquals(result.get(), Integer.valueOf(6));
+    }
+
+    @Test
+    public void testCallbackOnNonListenableFutureIsNotified() throws Exception {
+        Future<String> future = new Future<String>() {
+            public String getResult() throws KSIException {
+                throw new KSIException("Failed");
+            }
+
+            public boolean isFinished() {
+                return true;
+            }
+        };
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Futures.addCallback(future, new FutureCallback<String>() {
+            public void onSuccess(String value) {
+                latch.countDown();
+            }
+
+            public void onFailure(Exception exception) {
+                failure.set(exception);
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(failure.get().getMessage(), "Failed");
+    }
+
+    @Test
+    public void testCallbackIsCalledUsingGivenExecutor() throws Exception {
+        final Thread[] callbackThread = new Thread[1];
+        final Thread executorThread = new Thread();
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                callbackThread[0] = executorThread;
+                command.run();
+            }
+        };
+        final AtomicReference<String> result = new AtomicReference<>();
+        SettableFuture<String> future = new SettableFuture<>();
+        Futures.addCallback(future, new FutureCallback<String>() {
+            public void onSuccess(String value) {
+                result.set(value);
+            }
+
+            public void onFailure(Exception exception) {
+                Assert.fail("Future failed", exception);
+            }
+        }, executor);
+        future.set("result");
+        Assert.assertEquals(result.get(), "result");
+        Assert.assertSame(callbackThread[0], executorThread);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SettableFutureTest {
+
+    @Test
+    public void testCallbackRegisteredBeforeCompletionIsNotified() throws Exception {
+        SettableFuture<String> future = new SettableFuture<>();
+        RecordingCallback callback = new RecordingCallback();
+        future.addCallback(callback);
+        Assert.assertTrue(callback.results.isEmpty());
+        Assert.assertFalse(future.isFinished());
+
+        Assert.assertTrue(future.set("result"));
+        Assert.assertTrue(future.isFinished());
+        Assert.assertEquals(callback.results.size(), 1);
+        Assert.assertEquals(callback.results.get(0), "result");
+        Assert.assertEquals(future.getResult(), "result");
+    }
+
+    @Test
+    public void testCallbackRegisteredAfterCompletionIsNotifiedImmediately() throws Exception {
+        SettableFuture<String> future = new SettableFuture<>();
+        future.set("result");
+        RecordingCallback callback = new RecordingCallback();
+        future.addCallback(callback);
+        Assert.assertEquals(callback.results.size(), 1);
+    }
+
+    @Test
+    public void testOnlyFirstCompletionIsUsed() throws Exception {
+        SettableFuture<String> future = new SettableFuture<>();
+        RecordingCallback callback = new RecordingCallback();
+        future.addCallback(callback);
+        Assert.assertTrue(future.set("first"));
+        Assert.assertFalse(future.set("second"));
+        Assert.assertFalse(future.setException(new KSIException("Failure")));
+        Assert.assertEquals(callback.results.size(), 1);
+        Assert.assertEquals(future.getResult(), "first");
+    }
+
+    @Test
+    public void testFailureIsPassedToCallback() throws Exception {
+        SettableFuture<String> future = new SettableFuture<>();
+        RecordingCallback callback = new RecordingCallback();
+        future.addCallback(callback);
+        KSIException exception = new KSIException("Failure");
+        future.setException(exception);
+        Assert.assertEquals(callback.failures.size(), 1);
+        Assert.assertSame(callback.failures.get(0), exception);
+    }
+
+    @Test(expectedExceptions = KSIException.class, expectedExceptionsMessageRegExp = "Failure")
+    public void testGetResultThrowsFailure() throws Exception {
+        SettableFuture<String> future = new SettableFuture<>();
+        future.setException(new IllegalStateException("Failure"));
+        future.getResult();
+    }
+
+    @Test(timeOut = 1000)
+    public void testGetResultWaitsForCompletion() throws Exception {
+        final SettableFuture<String> future = new SettableFuture<>();
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                future.set("result");
+            }
+        }).start();
+        Assert.assertEquals(future.getResult(), "result");
+    }
+
+    private static class RecordingCallback implements FutureCallback<String> {
+        private final List<String> results = new ArrayList<>();
+        private final List<Exception> failures = new ArrayList<>();
+
+        public void onSuccess(String result) {
+            results.add(result);
+        }
+
+        public void onFailure(Exception exception) {
+            failures.add(exception);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service.client;
+
+import com.guardtime.ksi.hashing.DataHash;
+import com.guardtime.ksi.hashing.HashAlgorithm;
+import com.guardtime.ksi.pdu.AggregationResponse;
+import com.guardtime.ksi.pdu.PduVersion;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.KSIBatchingSigningClientServiceAdapter;
+import com.guardtime.ksi.service.KSISigningService;
+import com.guardtime.ksi.service.ListenableFuture;
+import com.guardtime.ksi.service.SettableFuture;
+import com.guardtime.ksi.tlv.TLVElement;
+import com.guardtime.ksi.util.Util;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class KSIBatchingSigningClientServiceAdapterTest {
+
+    private static final DataHash DATA_HASH = new DataHash(HashAlgorithm.SHA2_256, new byte[32]);
+    private static final int AGGREGATION_REQUEST_PAYLOAD_TYPE = 0x02;
+
+    private RecordingClient testClient;
+
+    @BeforeMethod
+    public void setUp() {
+        testClient = new RecordingClient();
+    }
+
+    @Test
+    public void testFullBatchIsSentAsSingleRequest() throws Exception {
+        KSISigningService service = new KSIBatchingSigningClientServiceAdapter(testClient, 3, 60000L);
+        service.sign(DATA_HASH, 0L);
+        service.sign(DATA_HASH, 1L);
+        assertEquals(testClient.getRequests().size(), 0);
+        service.sign(DATA_HASH, 2L);
+        assertEquals(testClient.getRequests().size(), 1);
+        assertEquals(testClient.getRequests().get(0).getChildElements(AGGREGATION_REQUEST_PAYLOAD_TYPE).size(), 3);
+    }
+
+    @Test
+    public void testBatchIsSentWhenNextRequestDoesNotFitIntoPdu() throws Exception {
+        DataHash dataHash = new DataHash(HashAlgorithm.SHA2_512, new byte[64]);
+        KSISigningService service = new KSIBatchingSigningClientServiceAdapter(testClient, 100000, 60000L);
+        int count = 0;
+        while (testClient.getRequests().isEmpty()) {
+            service.sign(dataHash, 0L);
+            count++;
+        }
+        assertEquals(testClient.getRequests().size(), 1);
+        TLVElement request = testClient.getRequests().get(0);
+        assertEquals(request.getChildElements(AGGREGATION_REQUEST_PAYLOAD_TYPE).size(), count - 1);
+        assertTrue(request.getContentLength() <= 0xFFFF);
+        assertTrue(count > 600);
+    }
+
+    @Test
+    public void testPartialBatchIsSentAfterBatchWindow() throws Exception {
+        KSISigningService service = new KSIBatchingSigningClientServiceAdapter(testClient, 100, 10L);
+        service.sign(DATA_HASH, 0L);
+        service.sign(DATA_HASH, 0L);
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (testClient.getRequests().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(testClient.getRequests().size(), 1);
+        assertEquals(testClient.getRequests().get(0).getChildElements(AGGREGATION_REQUEST_PAYLOAD_TYPE).size(), 2);
+    }
+
+    @Test
+    public void testPendingBatchIsSentOnClose() throws Exception {
+        KSISigningService service = new KSIBatchingSigningClientServiceAdapter(testClient, 100, 60000L);
+        service.sign(DATA_HASH, 0L);
+        service.close();
+        assertEquals(testClient.getRequests().size(), 1);
+        assertTrue(testClient.isClosed());
+    }
+
+    @Test(expectedExceptions = KSIClientException.class, expectedExceptionsMessageRegExp = "Sending the aggregation request batch failed")
+    public void testClientFailureIsReportedToEveryRequest() throws Exception {
+        testClient.fail = true;
+        KSISigningService service = new KSIBatchingSigningClientServiceAdapter(testClient, 2, 60000L);
+        Future<AggregationResponse> future = service.sign(DATA_HASH, 0L);
+        service.sign(DATA_HASH, 0L);
+        assertTrue(future.isFinished());
+        future.getResult();
+    }
+
+    @Test
+    public void testResponseOfBatchIsHandedOverToEveryRequest() throws Exception {
+        KSISigningService service = new KSIBatchingSigningClientServiceAdapter(testClient, 2, 60000L);
+        Future<AggregationResponse> first = service.sign(DATA_HASH, 0L);
+        Future<AggregationResponse> second = service.sign(DATA_HASH, 0L);
+        final List<Exception> failures = new ArrayList<>();
+        ((ListenableFuture<AggregationResponse>) first).addCallback(new FutureCallback<AggregationResponse>() {
+            public void onSuccess(AggregationResponse result) {
+            }
+
+            public void onFailure(Exception exception) {
+                failures.add(exception);
+            }
+        });
+        assertFalse(first.isFinished());
+        assertFalse(second.isFinished());
+
+        KSIClientException failure = new KSIClientException("response failed");
+        testClient.getResponses().get(0).setException(failure);
+        assertTrue(first.isFinished());
+        assertTrue(second.isFinished());
+        assertEquals(failures.size(), 1);
+        assertSame(failures.get(0), failure);
+        try {
+            second.getResult();
+            fail("Failure of the batch response wasn't reported");
+        } catch (KSIClientException e) {
+            assertSame(e, failure);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Maximum batch size must be positive")
+    public void testInvalidMaxBatchSize() {
+        new KSIBatchingSigningClientServiceAdapter(testClient, 0, 10L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Batching signing requests requires PDU version V2")
+    public void testPduV1IsNotSupported() {
+        testClient.pduVersion = PduVersion.V1;
+        new KSIBatchingSigningClientServiceAdapter(testClient, 10, 10L);
+    }
+
+    private static class RecordingClient implements KSISigningClient {
+
+        private final List<TLVElement> requests = new ArrayList<>();
+        private final List<SettableFuture<TLVElement>> responses = new ArrayList<>();
+        private PduVersion pduVersion = PduVersion.V2;
+        private boolean fail = false;
+        private boolean closed = false;
+
+        public synchronized Future<TLVElement> sign(InputStream request) throws KSIClientException {
+            if (fail) {
+                throw new RuntimeException("signing client failed");
+            }
+            try {
+                requests.add(TLVElement.create(Util.toByteArray(request)));
+            } catch (Exception e) {
+                throw new KSIClientException("Invalid request", e);
+            }
+            SettableFuture<TLVElement> response = new SettableFuture<>();
+            responses.add(response);
+            return response;
+        }
+
+        synchronized List<TLVElement> getRequests() {
+            return new ArrayList<>(requests);
+        }
+
+        synchronized List<SettableFuture<TLVElement>> getResponses() {
+            return new ArrayList<>(responses);
+        }
+
+        public ServiceCredentials getServiceCredentials() {
+            return new KSIServiceCredentials("testUser", "testKey");
+        }
+
+        public PduVersion getPduVersion() {
+            return pduVersion;
+        }
+
+        public void close() {
+            closed = true;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+    }
+}
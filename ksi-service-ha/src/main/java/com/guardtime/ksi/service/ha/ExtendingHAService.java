@@ -34,11 +34,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -64,20 +62,18 @@ public class ExtendingHAService implements KSIExtendingService {
 
     /**
      * Creates a non-blocking extending request. Sends the request to all the subservices in parallel. First successful response is
-     * used, others are cancelled. Request fails only if all the subservices fail.
+     * used, others are ignored. Request fails only if all the subservices fail. Responses of the subservices returning a
+     * {@link com.guardtime.ksi.service.ListenableFuture} are received by callbacks without occupying executor threads.
      *
      * @see KSIExtendingService#extend(Date, Date)
      */
     public Future<ExtensionResponse> extend(Date aggregationTime, Date publicationTime) throws KSIException {
         Util.notNull(aggregationTime, "aggregationTime");
-        Collection<KSIExtendingService> services = subservices;
-        Collection<Callable<ExtensionResponse>> tasks = new ArrayList<>(services.size());
-        for (KSIExtendingService service : services) {
-            tasks.add(new ExtendingTask(service, aggregationTime, publicationTime));
+        HAServiceCallFuture<ExtensionResponse> future = new HAServiceCallFuture<>(subservices.size());
+        for (KSIExtendingService service : subservices) {
+            executorService.execute(new ExtendingTask(future, service, aggregationTime, publicationTime));
         }
-        return new ServiceCallFuture<>(
-                executorService.submit(new ServiceCallsTask<>(executorService, tasks))
-        );
+        return future;
     }
 
     /**
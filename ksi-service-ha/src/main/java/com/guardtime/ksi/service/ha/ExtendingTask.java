@@ -19,23 +19,25 @@
  */
 package com.guardtime.ksi.service.ha;
 
+import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.pdu.ExtensionResponse;
+import com.guardtime.ksi.service.Future;
 import com.guardtime.ksi.service.KSIExtendingService;
-import com.guardtime.ksi.service.client.KSIClientException;
 
 import java.util.Date;
-import java.util.concurrent.Callable;
 
 /**
  * Creates an extension request.
  */
-class ExtendingTask implements Callable<ExtensionResponse> {
+class ExtendingTask extends ServiceCallTask<ExtensionResponse> {
 
     private final KSIExtendingService service;
     private Date aggregationTime;
     private Date publicationTime;
 
     /**
+     * @param haFuture
+     *          {@link HAServiceCallFuture} to be notified about the response.
      * @param service
      *          {@link KSIExtendingService} used for the extension request.
      * @param aggregationTime
@@ -43,17 +45,18 @@ class ExtendingTask implements Callable<ExtensionResponse> {
      * @param publicationTime
      *          publication time until which the signature is to be extended.
      */
-    public ExtendingTask(KSIExtendingService service, Date aggregationTime, Date publicationTime) {
+    public ExtendingTask(HAServiceCallFuture<ExtensionResponse> haFuture, KSIExtendingService service, Date aggregationTime, Date publicationTime) {
+        super(haFuture);
         this.service = service;
         this.aggregationTime = aggregationTime;
         this.publicationTime = publicationTime;
     }
 
-    public ExtensionResponse call() throws KSIClientException {
-        try {
-            return service.extend(aggregationTime, publicationTime).getResult();
-        } catch (Exception e) {
-            throw new KSIClientException("Extending via client '" + service + "' failed", e);
-        }
+    Future<ExtensionResponse> call() throws KSIException {
+        return service.extend(aggregationTime, publicationTime);
+    }
+
+    String getFailureMessage() {
+        return "Extending via client '" + service + "' failed";
     }
 }
@@ -17,33 +17,33 @@
  *  reserves and retains all trademark rights.
  *
  */
+
 package com.guardtime.ksi.service.ha;
 
-import com.guardtime.ksi.exceptions.KSIException;
-import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.SettableFuture;
 import com.guardtime.ksi.service.client.KSIClientException;
 
-class ServiceCallFuture<T> implements Future<T> {
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Future of a HA service call. Completes with the first successful subservice response or fails when all the
+ * subservices have failed.
+ */
+class HAServiceCallFuture<T> extends SettableFuture<T> {
 
-    private final java.util.concurrent.Future<T> serviceCallFuture;
-    private T result;
+    private final AtomicInteger pendingCalls;
 
-    ServiceCallFuture(java.util.concurrent.Future<T> serviceCallFuture) {
-        this.serviceCallFuture = serviceCallFuture;
+    HAServiceCallFuture(int subserviceCount) {
+        this.pendingCalls = new AtomicInteger(subserviceCount);
     }
 
-    public T getResult() throws KSIException {
-        if (result == null) {
-            try {
-                this.result = serviceCallFuture.get();
-            } catch (Exception e) {
-                throw new KSIClientException("All subclients of HAService failed", e);
-            }
-        }
-        return result;
+    void subserviceSucceeded(T result) {
+        set(result);
     }
 
-    public boolean isFinished() {
-        return result != null;
+    void subserviceFailed(Exception exception) {
+        if (pendingCalls.decrementAndGet() == 0) {
+            setException(new KSIClientException("All subclients of HAService failed", exception));
+        }
     }
 }
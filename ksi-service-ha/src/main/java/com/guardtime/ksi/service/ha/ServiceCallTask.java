@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013-2018 Guardtime, Inc.
+ *
+ *  This file is part of the Guardtime client SDK.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES, CONDITIONS, OR OTHER LICENSES OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *  "Guardtime" and "KSI" are trademarks or registered trademarks of
+ *  Guardtime, Inc., and no license to trademarks is granted; Guardtime
+ *  reserves and retains all trademark rights.
+ *
+ */
+
+package com.guardtime.ksi.service.ha;
+
+import com.guardtime.ksi.exceptions.KSIException;
+import com.guardtime.ksi.service.Future;
+import com.guardtime.ksi.service.FutureCallback;
+import com.guardtime.ksi.service.ListenableFuture;
+import com.guardtime.ksi.service.client.KSIClientException;
+
+/**
+ * Task for doing a request via one subservice. The task only sends the request, if the subservice returns a {@link
+ * ListenableFuture} then the response is passed to the {@link HAServiceCallFuture} by a callback. Only if the
+ * subservice future can not notify about its completion the task waits for the response.
+ */
+abstract class ServiceCallTask<T> implements Runnable, FutureCallback<T> {
+
+    private final HAServiceCallFuture<T> haFuture;
+
+    ServiceCallTask(HAServiceCallFuture<T> haFuture) {
+        this.haFuture = haFuture;
+    }
+
+    public void run() {
+        try {
+            Future<T> future = call();
+            if (future instanceof ListenableFuture) {
+                ((ListenableFuture<T>) future).addCallback(this);
+            } else {
+                onSuccess(future.getResult());
+            }
+        } catch (Exception e) {
+            onFailure(e);
+        }
+    }
+
+    public void onSuccess(T result) {
+        haFuture.subserviceSucceeded(result);
+    }
+
+    public void onFailure(Exception exception) {
+        haFuture.subserviceFailed(new KSIClientException(getFailureMessage(), exception));
+    }
+
+    /**
+     * Sends the request to the subservice.
+     */
+    abstract Future<T> call() throws KSIException;
+
+    abstract String getFailureMessage();
+}
@@ -35,10 +35,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -64,20 +62,19 @@ public class SigningHAService implements KSISigningService {
 
     /**
      * Creates a non-blocking signing request. Sends the request to all the subservices in parallel. First successful response is
-     * used, others are cancelled. Request fails only if all the subservices fail.
+     * used, others are ignored. Request fails only if all the subservices fail. Responses of the subservices returning a
+     * {@link com.guardtime.ksi.service.ListenableFuture} are received by callbacks without occupying executor threads.
      *
      * @see KSISigningService#sign(DataHash, Long)
      */
     public Future<AggregationResponse> sign(DataHash dataHash, Long level) throws KSIException {
         Util.notNull(dataHash, "dataHash");
         Util.notNull(level, "level");
-        final Collection<Callable<AggregationResponse>> tasks = new ArrayList<>(subservices.size());
+        HAServiceCallFuture<AggregationResponse> future = new HAServiceCallFuture<>(subservices.size());
         for (KSISigningService subservice : subservices) {
-            tasks.add(new SigningTask(subservice, dataHash, level));
+            executorService.execute(new SigningTask(future, subservice, dataHash, level));
         }
-        return new ServiceCallFuture<>(
-                executorService.submit(new ServiceCallsTask<>(executorService, tasks))
-        );
+        return future;
     }
 
     /**
@@ -19,23 +19,24 @@
  */
 package com.guardtime.ksi.service.ha;
 
+import com.guardtime.ksi.exceptions.KSIException;
 import com.guardtime.ksi.hashing.DataHash;
 import com.guardtime.ksi.pdu.AggregationResponse;
+import com.guardtime.ksi.service.Future;
 import com.guardtime.ksi.service.KSISigningService;
-import com.guardtime.ksi.service.client.KSIClientException;
-
-import java.util.concurrent.Callable;
 
 /**
  * Task for doing a signing request.
  */
-class SigningTask implements Callable<AggregationResponse> {
+class SigningTask extends ServiceCallTask<AggregationResponse> {
 
     private final KSISigningService service;
     private DataHash dataHash;
     private Long level;
 
     /**
+     * @param haFuture
+     *          {@link HAServiceCallFuture} to be notified about the response.
      * @param service
      *          {@link KSISigningService} used for the signing request.
      * @param dataHash
@@ -43,17 +44,18 @@ class SigningTask implements Callable<AggregationResponse> {
      * @param level
      *          level of the hash to be signed.
      */
-    public SigningTask(KSISigningService service, DataHash dataHash, Long level) {
+    public SigningTask(HAServiceCallFuture<AggregationResponse> haFuture, KSISigningService service, DataHash dataHash, Long level) {
+        super(haFuture);
         this.service = service;
         this.dataHash = dataHash;
         this.level = level;
     }
 
-    public AggregationResponse call() throws KSIClientException {
-        try {
-            return service.sign(dataHash, level).getResult();
-        } catch (Exception e) {
-            throw new KSIClientException("Signing via service '" + service + "' failed", e);
-        }
+    Future<AggregationResponse> call() throws KSIException {
+        return service.sign(dataHash, level);
+    }
+
+    String getFailureMessage() {
+        return "Signing via service '" + service + "' failed";
     }
 }
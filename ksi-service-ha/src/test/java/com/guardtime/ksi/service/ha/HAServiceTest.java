@@ -32,6 +32,7 @@ import com.guardtime.ksi.service.Future;
 import com.guardtime.ksi.service.ConfigurationHandler;
 import com.guardtime.ksi.service.ConfigurationListener;
 import com.guardtime.ksi.service.ConfigurationRequest;
+import com.guardtime.ksi.service.SettableFuture;
 import com.guardtime.ksi.service.client.KSIClientException;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -44,6 +45,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -138,6 +140,39 @@ public class HAServiceTest {
         Assert.assertEquals(haServiceResponse, subclientResponse);
     }
 
+    @Test(timeOut = 1000)
+    public void testAggregatorResponseIsReceivedByCallback() throws Exception {
+        AggregationResponse subclientResponse = mock(AggregationResponse.class);
+        SettableFuture<AggregationResponse> pendingResponse = new SettableFuture<>();
+        KSISigningService listenableClient = mock(KSISigningService.class);
+        when(listenableClient.sign(any(DataHash.class), anyLong())).thenReturn(pendingResponse);
+        SigningHAService haService = new SigningHAService.Builder().addServices(Arrays.asList(
+                listenableClient,
+                initFailingSigningClient("Test failed. Client 2")))
+                .setExecutorService(new DirectExecutorService())
+                .build();
+        Future<AggregationResponse> haFuture = haService.sign(mock(DataHash.class), 0L);
+        Assert.assertFalse(haFuture.isFinished());
+        pendingResponse.set(subclientResponse);
+        Assert.assertTrue(haFuture.isFinished());
+        Assert.assertEquals(haFuture.getResult(), subclientResponse);
+    }
+
+    @Test(timeOut = 1000, expectedExceptions = KSIClientException.class, expectedExceptionsMessageRegExp = "All subclients of HAService failed")
+    public void testAllExtenderCallbacksFail() throws Exception {
+        SettableFuture<ExtensionResponse> pendingResponse = new SettableFuture<>();
+        KSIExtendingService listenableClient = mock(KSIExtendingService.class);
+        when(listenableClient.extend(any(Date.class), any(Date.class))).thenReturn(pendingResponse);
+        ExtendingHAService haService = new ExtendingHAService.Builder().addServices(Arrays.asList(
+                listenableClient,
+                initFailingExtenderClient("Test failed. Client 2")))
+                .setExecutorService(new DirectExecutorService())
+                .build();
+        Future<ExtensionResponse> haFuture = haService.extend(new Date(), new Date());
+        pendingResponse.setException(new KSIException("Test failed. Client 1"));
+        haFuture.getResult();
+    }
+
     @Test
     public void testGetSubclients() throws Exception {
         List<KSISigningService> signingServices = new ArrayList<>();
@@ -296,6 +331,35 @@ public class HAServiceTest {
         return client;
     }
 
+    /**
+     * Runs the tasks in the calling thread, used to check that HA services don't block executor threads.
+     */
+    private static class DirectExecutorService extends AbstractExecutorService {
+
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        public void shutdown() {
+        }
+
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        public boolean isShutdown() {
+            return false;
+        }
+
+        public boolean isTerminated() {
+            return false;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
     private void setConsolidatedConf(ExtenderConfiguration conf) {
         this.extenderConsolidatedConf = conf;
     }